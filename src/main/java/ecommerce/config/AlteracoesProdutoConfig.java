@@ -0,0 +1,126 @@
+package ecommerce.config;
+
+import java.util.List;
+import java.util.Set;
+
+import org.hibernate.boot.Metadata;
+import org.hibernate.boot.spi.BootstrapContext;
+import org.hibernate.engine.spi.SessionFactoryImplementor;
+import org.hibernate.event.service.spi.EventListenerRegistry;
+import org.hibernate.event.spi.EventType;
+import org.hibernate.event.spi.PostDeleteEvent;
+import org.hibernate.event.spi.PostDeleteEventListener;
+import org.hibernate.event.spi.PostUpdateEvent;
+import org.hibernate.event.spi.PostUpdateEventListener;
+import org.hibernate.integrator.spi.Integrator;
+import org.hibernate.jpa.boot.spi.IntegratorProvider;
+import org.hibernate.persister.entity.EntityPersister;
+import org.hibernate.service.spi.SessionFactoryServiceRegistry;
+import org.springframework.boot.autoconfigure.orm.jpa.HibernatePropertiesCustomizer;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+
+import ecommerce.entity.Produto;
+import ecommerce.service.TotaisCarrinhoListener;
+import ecommerce.service.preco.ProdutoListener;
+
+/**
+ * Avisa {@link ProdutoListener} (cotações em cache) e {@link TotaisCarrinhoListener} (totais
+ * gravados dos carrinhos) quando um {@link Produto} é removido ou tem preço, peso ou
+ * fragilidade alterados. Os listeners são registrados nos eventos do Hibernate por um
+ * {@link Integrator}, de modo que a entidade não depende das classes de serviço, e uma
+ * alteração só de nome ou descrição não descarta nada.
+ */
+@Configuration
+public class AlteracoesProdutoConfig
+{
+	/** Propriedades de {@link Produto} que entram no custo do carrinho. */
+	static final Set<String> PROPRIEDADES_DO_CUSTO = Set.of("preco", "pesoFisico", "fragil");
+
+	@Bean
+	public HibernatePropertiesCustomizer alteracoesProduto(ProdutoListener produtoListener,
+			TotaisCarrinhoListener totaisCarrinhoListener)
+	{
+		Integrador integrador = new Integrador(produtoListener, totaisCarrinhoListener);
+		return propriedades -> propriedades.put("hibernate.integrator_provider",
+				(IntegratorProvider) () -> List.of(integrador));
+	}
+
+	/**
+	 * Indica se a atualização mudou alguma propriedade do custo. Sem as propriedades sujas
+	 * (atualização sem estado anterior conhecido), considera que mudou.
+	 */
+	static boolean alterouCusto(int[] propriedadesSujas, String[] nomes)
+	{
+		if (propriedadesSujas == null)
+		{
+			return true;
+		}
+
+		for (int indice : propriedadesSujas)
+		{
+			if (PROPRIEDADES_DO_CUSTO.contains(nomes[indice]))
+			{
+				return true;
+			}
+		}
+		return false;
+	}
+
+	private static final class Integrador implements Integrator, PostUpdateEventListener, PostDeleteEventListener
+	{
+		private final ProdutoListener produtoListener;
+		private final TotaisCarrinhoListener totaisCarrinhoListener;
+
+		Integrador(ProdutoListener produtoListener, TotaisCarrinhoListener totaisCarrinhoListener)
+		{
+			this.produtoListener = produtoListener;
+			this.totaisCarrinhoListener = totaisCarrinhoListener;
+		}
+
+		@Override
+		public void integrate(Metadata metadata, BootstrapContext bootstrapContext,
+				SessionFactoryImplementor sessionFactory)
+		{
+			EventListenerRegistry registro = sessionFactory.getServiceRegistry().getService(EventListenerRegistry.class);
+			registro.appendListeners(EventType.POST_UPDATE, this);
+			registro.appendListeners(EventType.POST_DELETE, this);
+		}
+
+		@Override
+		public void disintegrate(SessionFactoryImplementor sessionFactory, SessionFactoryServiceRegistry serviceRegistry)
+		{
+		}
+
+		@Override
+		public void onPostUpdate(PostUpdateEvent evento)
+		{
+			if (evento.getEntity() instanceof Produto produto
+					&& alterouCusto(evento.getDirtyProperties(), evento.getPersister().getPropertyNames()))
+			{
+				avisar(produto);
+			}
+		}
+
+		@Override
+		public void onPostDelete(PostDeleteEvent evento)
+		{
+			if (evento.getEntity() instanceof Produto produto)
+			{
+				avisar(produto);
+			}
+		}
+
+		@Override
+		public boolean requiresPostCommitHandling(EntityPersister persister)
+		{
+			return false;
+		}
+
+		private void avisar(Produto produto)
+		{
+			produtoListener.aoAlterar(produto);
+			totaisCarrinhoListener.aoAlterar(produto);
+		}
+	}
+}
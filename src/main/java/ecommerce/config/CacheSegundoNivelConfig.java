@@ -0,0 +1,76 @@
+package ecommerce.config;
+
+import java.net.URI;
+import java.time.Duration;
+import java.util.OptionalLong;
+import java.util.UUID;
+import javax.cache.CacheManager;
+import javax.cache.Caching;
+
+import org.hibernate.cache.spi.RegionFactory;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.autoconfigure.orm.jpa.HibernatePropertiesCustomizer;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+
+import com.github.benmanes.caffeine.jcache.configuration.CaffeineConfiguration;
+import com.github.benmanes.caffeine.jcache.spi.CaffeineCachingProvider;
+import ecommerce.entity.Cliente;
+
+/**
+ * Cache de segundo nível do Hibernate (JCache sobre Caffeine) para {@link Cliente}, mais o
+ * cache de consultas. {@code Produto} fica fora: o checkout lê os preços pela projeção das
+ * linhas do carrinho, não pela entidade. Cada região é criada aqui com tamanho e validade
+ * próprios ({@code ecommerce.cache.<regiao>.*}); uma região não criada faz o Hibernate falhar
+ * na inicialização em vez de usar um cache sem limites.
+ * <p>
+ * O {@link CacheManager} é exclusivo desta aplicação (URI própria), de modo que dois contextos
+ * na mesma JVM, como nos testes, não compartilham entradas.
+ */
+@Configuration
+public class CacheSegundoNivelConfig
+{
+
+	@Bean(destroyMethod = "close")
+	public CacheManager cacheManagerHibernate(
+			@Value("${ecommerce.cache.cliente.tamanho:10000}") long tamanhoCliente,
+			@Value("${ecommerce.cache.cliente.validade:6h}") Duration validadeCliente,
+			@Value("${ecommerce.cache.consultas.tamanho:1000}") long tamanhoConsultas,
+			@Value("${ecommerce.cache.consultas.validade:10m}") Duration validadeConsultas)
+	{
+		CacheManager cacheManager = Caching.getCachingProvider(CaffeineCachingProvider.class.getName())
+				.getCacheManager(URI.create("ecommerce:hibernate-" + UUID.randomUUID()),
+						CacheSegundoNivelConfig.class.getClassLoader());
+
+		cacheManager.createCache(Cliente.REGIAO_CACHE, regiao(tamanhoCliente, validadeCliente));
+		cacheManager.createCache(RegionFactory.DEFAULT_QUERY_RESULTS_REGION_UNQUALIFIED_NAME,
+				regiao(tamanhoConsultas, validadeConsultas));
+		// Marcas de atualização das tabelas: sem limite nem validade, ou consultas em cache
+		// poderiam ser servidas depois de uma alteração
+		cacheManager.createCache(RegionFactory.DEFAULT_UPDATE_TIMESTAMPS_REGION_UNQUALIFIED_NAME,
+				new CaffeineConfiguration<Object, Object>());
+		return cacheManager;
+	}
+
+	@Bean
+	public HibernatePropertiesCustomizer cacheSegundoNivel(CacheManager cacheManagerHibernate)
+	{
+		return propriedades -> {
+			propriedades.put("hibernate.javax.cache.cache_manager", cacheManagerHibernate);
+			propriedades.put("hibernate.javax.cache.missing_cache_strategy", "fail");
+		};
+	}
+
+	private static CaffeineConfiguration<Object, Object> regiao(long tamanho, Duration validade)
+	{
+		if (tamanho < 1)
+		{
+			throw new IllegalArgumentException("Tamanho da região de cache deve ser positivo.");
+		}
+
+		CaffeineConfiguration<Object, Object> configuracao = new CaffeineConfiguration<>();
+		configuracao.setMaximumSize(OptionalLong.of(tamanho));
+		configuracao.setExpireAfterWrite(OptionalLong.of(validade.toNanos()));
+		return configuracao;
+	}
+}
@@ -0,0 +1,80 @@
+package ecommerce.config;
+
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+import org.springframework.boot.actuate.health.Health;
+import org.springframework.boot.actuate.health.HealthIndicator;
+import org.springframework.stereotype.Component;
+
+import ecommerce.external.ProtecaoDependencia;
+import io.micrometer.core.instrument.FunctionCounter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.binder.MeterBinder;
+
+/**
+ * Expõe no actuator o estado das proteções de cada dependência externa: em
+ * {@code /actuator/health} (componente {@code dependenciasExternas}) e como métricas
+ * {@code ecommerce.dependencia.*} com a tag {@code dependencia}.
+ * <p>
+ * Um circuito aberto não derruba a saúde da aplicação (o checkout responde 503 rapidamente);
+ * ele aparece nos detalhes.
+ */
+@Component
+public class DependenciasExternasHealthIndicator implements HealthIndicator, MeterBinder
+{
+	private final List<ProtecaoDependencia> protecoes;
+
+	public DependenciasExternasHealthIndicator(List<ProtecaoDependencia> protecoes)
+	{
+		this.protecoes = protecoes;
+	}
+
+	@Override
+	public Health health()
+	{
+		Health.Builder health = Health.up();
+		for (ProtecaoDependencia protecao : protecoes)
+		{
+			Map<String, Object> detalhes = new LinkedHashMap<>();
+			detalhes.put("circuito", protecao.getEstado());
+			detalhes.put("taxaFalhas", protecao.getTaxaFalhas());
+			detalhes.put("chamadasEmAndamento", protecao.getChamadasEmAndamento());
+			detalhes.put("concorrenciaMaxima", protecao.getConfiguracao().concorrenciaMaxima());
+			detalhes.put("timeout", protecao.getConfiguracao().timeout().toString());
+			detalhes.put("rejeitadasCircuito", protecao.getRejeitadasCircuito());
+			detalhes.put("rejeitadasConcorrencia", protecao.getRejeitadasConcorrencia());
+			health.withDetail(protecao.getNome(), detalhes);
+		}
+		return health.build();
+	}
+
+	@Override
+	public void bindTo(MeterRegistry registry)
+	{
+		for (ProtecaoDependencia protecao : protecoes)
+		{
+			Gauge.builder("ecommerce.dependencia.circuito.aberto",
+					protecao, p -> p.getEstado() == ProtecaoDependencia.EstadoCircuito.FECHADO ? 0 : 1)
+					.tag("dependencia", protecao.getNome())
+					.register(registry);
+			Gauge.builder("ecommerce.dependencia.chamadas.andamento", protecao,
+					ProtecaoDependencia::getChamadasEmAndamento)
+					.tag("dependencia", protecao.getNome())
+					.register(registry);
+			FunctionCounter.builder("ecommerce.dependencia.rejeitadas", protecao,
+					ProtecaoDependencia::getRejeitadasCircuito)
+					.tag("dependencia", protecao.getNome()).tag("motivo", "circuito")
+					.register(registry);
+			FunctionCounter.builder("ecommerce.dependencia.rejeitadas", protecao,
+					ProtecaoDependencia::getRejeitadasConcorrencia)
+					.tag("dependencia", protecao.getNome()).tag("motivo", "concorrencia")
+					.register(registry);
+			FunctionCounter.builder("ecommerce.dependencia.falhas", protecao, ProtecaoDependencia::getFalhasTotais)
+					.tag("dependencia", protecao.getNome())
+					.register(registry);
+		}
+	}
+}
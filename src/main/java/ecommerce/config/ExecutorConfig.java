@@ -0,0 +1,95 @@
+package ecommerce.config;
+
+import java.util.concurrent.Executor;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.boot.web.embedded.tomcat.TomcatProtocolHandlerCustomizer;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+import org.springframework.scheduling.annotation.EnableScheduling;
+import org.springframework.scheduling.concurrent.ThreadPoolTaskExecutor;
+
+@Configuration
+@EnableScheduling // Despachante do outbox
+public class ExecutorConfig
+{
+	private static final Logger log = LoggerFactory.getLogger(ExecutorConfig.class);
+
+	private final boolean threadsVirtuais;
+
+	public ExecutorConfig(@Value("${ecommerce.threads.virtuais:false}") boolean threadsVirtuais)
+	{
+		this.threadsVirtuais = threadsVirtuais;
+	}
+
+	/**
+	 * Threads próprias das chamadas ao estoque: uma dependência lenta prende só as suas, sem
+	 * esgotar as threads das requisições nem as da outra dependência.
+	 */
+	@Bean(name = "estoqueExecutor")
+	public Executor estoqueExecutor(
+			@Value("${ecommerce.dependencias.estoque.concorrencia-maxima:20}") int concorrenciaMaxima)
+	{
+		return executorDependencia("estoque", concorrenciaMaxima);
+	}
+
+	/**
+	 * Threads próprias das chamadas ao pagamento (ver {@link #estoqueExecutor}).
+	 */
+	@Bean(name = "pagamentoExecutor")
+	public Executor pagamentoExecutor(
+			@Value("${ecommerce.dependencias.pagamento.concorrencia-maxima:20}") int concorrenciaMaxima)
+	{
+		return executorDependencia("pagamento", concorrenciaMaxima);
+	}
+
+	/**
+	 * Tantas threads quanto chamadas simultâneas permitidas à dependência. A fila só recebe
+	 * tarefas na troca entre uma chamada que terminou e a próxima: cada tarefa enfileirada já
+	 * tem a permissão de concorrência de {@link ecommerce.external.ProtecaoDependencia}.
+	 */
+	private Executor executorDependencia(String dependencia, int concorrenciaMaxima)
+	{
+		if (usarThreadsVirtuais())
+		{
+			return ThreadsVirtuais.novoExecutorPorTarefa(dependencia + "-v-");
+		}
+
+		ThreadPoolTaskExecutor executor = new ThreadPoolTaskExecutor();
+		executor.setCorePoolSize(concorrenciaMaxima);
+		executor.setMaxPoolSize(concorrenciaMaxima);
+		executor.setQueueCapacity(concorrenciaMaxima);
+		executor.setThreadNamePrefix(dependencia + "-");
+		return executor;
+	}
+
+	/**
+	 * Substitui o pool de threads do Tomcat por threads virtuais, de modo que uma requisição
+	 * bloqueada em chamadas externas não ocupe uma thread de plataforma.
+	 */
+	@Bean
+	@ConditionalOnProperty(name = "ecommerce.threads.virtuais", havingValue = "true")
+	public TomcatProtocolHandlerCustomizer<?> tomcatThreadsVirtuais()
+	{
+		return protocolHandler -> {
+			if (usarThreadsVirtuais())
+			{
+				protocolHandler.setExecutor(ThreadsVirtuais.novoExecutorPorTarefa("tomcat-v-"));
+			}
+		};
+	}
+
+	private boolean usarThreadsVirtuais()
+	{
+		if (threadsVirtuais && !ThreadsVirtuais.disponiveis())
+		{
+			log.warn("ecommerce.threads.virtuais=true, mas a JVM não suporta threads virtuais. "
+					+ "Usando threads de plataforma.");
+			return false;
+		}
+		return threadsVirtuais;
+	}
+}
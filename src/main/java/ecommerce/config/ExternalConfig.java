@@ -0,0 +1,85 @@
+package ecommerce.config;
+
+import java.time.Duration;
+import java.util.concurrent.Executor;
+
+import org.springframework.beans.factory.annotation.Qualifier;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+import org.springframework.core.env.Environment;
+
+import ecommerce.external.EstoqueAsyncAdapter;
+import ecommerce.external.EstoqueCoalescente;
+import ecommerce.external.EstoqueProtegido;
+import ecommerce.external.IEstoqueExternal;
+import ecommerce.external.IEstoqueExternalAsync;
+import ecommerce.external.IPagamentoExternal;
+import ecommerce.external.IPagamentoExternalAsync;
+import ecommerce.external.PagamentoAsyncAdapter;
+import ecommerce.external.PagamentoProtegido;
+import ecommerce.external.ProtecaoDependencia;
+
+/**
+ * Adapta os clientes síncronos de estoque e pagamento para as interfaces assíncronas
+ * usadas pelo checkout. As chamadas de cada dependência rodam em threads próprias, protegidas
+ * por timeout, circuit breaker e limite de concorrência próprios
+ * ({@code ecommerce.dependencias.<estoque|pagamento>.*}).
+ */
+@Configuration
+public class ExternalConfig
+{
+
+	/**
+	 * Com {@code ecommerce.estoque.coalescencia.habilitada=true}, as verificações de
+	 * disponibilidade concorrentes são agrupadas por {@link EstoqueCoalescente} antes de
+	 * seguir ao serviço de estoque.
+	 */
+	@Bean
+	public IEstoqueExternalAsync estoqueExternalAsync(IEstoqueExternal estoqueExternal,
+			@Qualifier("estoqueExecutor") Executor estoqueExecutor,
+			@Value("${ecommerce.estoque.coalescencia.habilitada:false}") boolean coalescer,
+			@Value("${ecommerce.estoque.coalescencia.janela:2ms}") Duration janela,
+			@Value("${ecommerce.estoque.coalescencia.tamanho-maximo:64}") int tamanhoMaximo,
+			@Qualifier("protecaoEstoque") ProtecaoDependencia protecaoEstoque)
+	{
+		IEstoqueExternal estoque = coalescer ? EstoqueCoalescente.de(estoqueExternal, janela, tamanhoMaximo)
+				: estoqueExternal;
+		return EstoqueProtegido.de(EstoqueAsyncAdapter.de(estoque, protecaoEstoque.executor(estoqueExecutor)),
+				protecaoEstoque);
+	}
+
+	@Bean
+	public IPagamentoExternalAsync pagamentoExternalAsync(IPagamentoExternal pagamentoExternal,
+			@Qualifier("pagamentoExecutor") Executor pagamentoExecutor,
+			@Qualifier("protecaoPagamento") ProtecaoDependencia protecaoPagamento)
+	{
+		return new PagamentoProtegido(
+				new PagamentoAsyncAdapter(pagamentoExternal, protecaoPagamento.executor(pagamentoExecutor)),
+				protecaoPagamento);
+	}
+
+	@Bean
+	public ProtecaoDependencia protecaoEstoque(Environment environment)
+	{
+		return new ProtecaoDependencia("estoque", configuracao(environment, "estoque"));
+	}
+
+	@Bean
+	public ProtecaoDependencia protecaoPagamento(Environment environment)
+	{
+		return new ProtecaoDependencia("pagamento", configuracao(environment, "pagamento"));
+	}
+
+	private static ProtecaoDependencia.Configuracao configuracao(Environment environment, String dependencia)
+	{
+		String prefixo = "ecommerce.dependencias." + dependencia + ".";
+		return new ProtecaoDependencia.Configuracao(
+				environment.getProperty(prefixo + "timeout", Duration.class, Duration.ofSeconds(3)),
+				environment.getProperty(prefixo + "concorrencia-maxima", Integer.class, 20),
+				environment.getProperty(prefixo + "circuito.janela", Integer.class, 20),
+				environment.getProperty(prefixo + "circuito.minimo-chamadas", Integer.class, 10),
+				environment.getProperty(prefixo + "circuito.percentual-falhas", Integer.class, 50),
+				environment.getProperty(prefixo + "circuito.tempo-aberto", Duration.class, Duration.ofSeconds(30)));
+	}
+}
@@ -0,0 +1,78 @@
+package ecommerce.config;
+
+import java.sql.Connection;
+import java.sql.SQLException;
+
+import javax.sql.DataSource;
+
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.beans.factory.config.BeanPostProcessor;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+import org.springframework.jdbc.datasource.DelegatingDataSource;
+
+import io.micrometer.core.instrument.FunctionCounter;
+import io.micrometer.core.instrument.binder.MeterBinder;
+
+/**
+ * Guarda contra pinning no modo de threads virtuais. Toda transação e toda consulta começam
+ * pela obtenção de uma conexão, e o pool e o driver JDBC bloqueiam dentro de monitores
+ * {@code synchronized}: uma thread virtual nesse trecho prende a thread portadora. O
+ * {@link DataSource} é embrulhado para passar por {@link ThreadsVirtuais#guardarSecaoComPinning}
+ * a cada conexão obtida; as ocorrências ficam em {@code ecommerce.threads.virtuais.pinning}.
+ * Com {@code ecommerce.threads.virtuais.pinning-estrito=true}, a conexão é recusada.
+ */
+@Configuration
+@ConditionalOnProperty(name = "ecommerce.threads.virtuais", havingValue = "true")
+public class GuardaPinningConfig
+{
+	@Bean
+	public static BeanPostProcessor guardaPinningDataSource(
+			@Value("${ecommerce.threads.virtuais.pinning-estrito:false}") boolean estrito)
+	{
+		return new BeanPostProcessor()
+		{
+			@Override
+			public Object postProcessAfterInitialization(Object bean, String beanName)
+			{
+				return bean instanceof DataSource dataSource && !(bean instanceof DataSourceComGuarda)
+						? new DataSourceComGuarda(dataSource, estrito)
+						: bean;
+			}
+		};
+	}
+
+	@Bean
+	public MeterBinder metricasPinning()
+	{
+		return registry -> FunctionCounter.builder("ecommerce.threads.virtuais.pinning", ThreadsVirtuais.class,
+				c -> ThreadsVirtuais.entradasComPinning())
+				.register(registry);
+	}
+
+	static final class DataSourceComGuarda extends DelegatingDataSource
+	{
+		private final boolean estrito;
+
+		DataSourceComGuarda(DataSource alvo, boolean estrito)
+		{
+			super(alvo);
+			this.estrito = estrito;
+		}
+
+		@Override
+		public Connection getConnection() throws SQLException
+		{
+			ThreadsVirtuais.guardarSecaoComPinning("jdbc", estrito);
+			return obtainTargetDataSource().getConnection();
+		}
+
+		@Override
+		public Connection getConnection(String usuario, String senha) throws SQLException
+		{
+			ThreadsVirtuais.guardarSecaoComPinning("jdbc", estrito);
+			return obtainTargetDataSource().getConnection(usuario, senha);
+		}
+	}
+}
@@ -0,0 +1,136 @@
+package ecommerce.config;
+
+import java.lang.invoke.MethodHandle;
+import java.lang.invoke.MethodHandles;
+import java.lang.invoke.MethodType;
+import java.lang.reflect.Method;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.atomic.AtomicLong;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * Acesso às threads virtuais sem exigir Java 21 em tempo de compilação.
+ * Em JVMs sem suporte, {@link #disponiveis()} retorna {@code false} e quem chama deve usar
+ * threads de plataforma.
+ */
+public final class ThreadsVirtuais
+{
+	private static final Logger log = LoggerFactory.getLogger(ThreadsVirtuais.class);
+
+	private static final MethodHandle IS_VIRTUAL = localizarIsVirtual();
+
+	private static final AtomicLong entradasComPinning = new AtomicLong();
+	private static final Set<String> secoesJaSinalizadas = ConcurrentHashMap.newKeySet();
+
+	private ThreadsVirtuais()
+	{
+	}
+
+	public static boolean disponiveis()
+	{
+		return IS_VIRTUAL != null;
+	}
+
+	/**
+	 * Cria um executor que inicia uma thread virtual nova por tarefa.
+	 *
+	 * @throws IllegalStateException se a JVM não suporta threads virtuais
+	 */
+	public static ExecutorService novoExecutorPorTarefa(String prefixoNome)
+	{
+		if (!disponiveis())
+		{
+			throw new IllegalStateException("Threads virtuais exigem Java 21 ou superior.");
+		}
+
+		try
+		{
+			Object builder = Thread.class.getMethod("ofVirtual").invoke(null);
+			Class<?> builderClass = Class.forName("java.lang.Thread$Builder");
+			builder = builderClass.getMethod("name", String.class, long.class).invoke(builder, prefixoNome, 0L);
+			ThreadFactory factory = (ThreadFactory) builderClass.getMethod("factory").invoke(builder);
+
+			Method newThreadPerTaskExecutor = Executors.class.getMethod("newThreadPerTaskExecutor",
+					ThreadFactory.class);
+			return (ExecutorService) newThreadPerTaskExecutor.invoke(null, factory);
+		}
+		catch (ReflectiveOperationException e)
+		{
+			throw new IllegalStateException("Não foi possível criar executor de threads virtuais.", e);
+		}
+	}
+
+	public static boolean isThreadVirtual(Thread thread)
+	{
+		if (IS_VIRTUAL == null)
+		{
+			return false;
+		}
+
+		try
+		{
+			return (boolean) IS_VIRTUAL.invokeExact(thread);
+		}
+		catch (Throwable e)
+		{
+			return false;
+		}
+	}
+
+	/**
+	 * Guarda contra pinning, chamada na entrada de uma seção que prende a thread portadora
+	 * quando executada numa thread virtual (monitores {@code synchronized} do pool de conexões
+	 * e do driver JDBC). Numa thread virtual, conta a entrada e a registra uma vez por seção;
+	 * no modo estrito, recusa a entrada.
+	 *
+	 * @return {@code true} se a thread atual é virtual
+	 * @throws IllegalStateException no modo estrito, se a thread atual é virtual
+	 */
+	public static boolean guardarSecaoComPinning(String secao, boolean estrito)
+	{
+		if (!isThreadVirtual(Thread.currentThread()))
+		{
+			return false;
+		}
+
+		entradasComPinning.incrementAndGet();
+		if (estrito)
+		{
+			throw new IllegalStateException("Seção '" + secao + "' não pode ser executada em thread virtual: "
+					+ "risco de pinning da thread portadora.");
+		}
+		if (secoesJaSinalizadas.add(secao))
+		{
+			log.warn("Seção '{}' executada em thread virtual: risco de pinning da thread portadora. "
+					+ "Use -Djdk.tracePinnedThreads=short para o diagnóstico completo.", secao);
+		}
+		return true;
+	}
+
+	/**
+	 * Entradas de threads virtuais em seções com risco de pinning desde o início da JVM.
+	 */
+	public static long entradasComPinning()
+	{
+		return entradasComPinning.get();
+	}
+
+	private static MethodHandle localizarIsVirtual()
+	{
+		try
+		{
+			return MethodHandles.publicLookup().findVirtual(Thread.class, "isVirtual",
+					MethodType.methodType(boolean.class));
+		}
+		catch (NoSuchMethodException | IllegalAccessException e)
+		{
+			return null;
+		}
+	}
+}
@@ -0,0 +1,93 @@
+package ecommerce.controller;
+
+import java.nio.charset.StandardCharsets;
+import java.security.MessageDigest;
+
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.http.HttpStatus;
+import org.springframework.http.ResponseEntity;
+import org.springframework.web.bind.annotation.*;
+
+import ecommerce.service.CacheEntidades;
+
+/**
+ * Invalidação dos caches após alterações de catálogo ou de clientes feitas
+ * fora da aplicação. Cada chamada deve trazer o cabeçalho {@value #CABECALHO_TOKEN} com o
+ * valor de {@code ecommerce.cache.invalidacao.token}; sem token configurado, toda chamada é
+ * recusada.
+ */
+@RestController
+@RequestMapping("/cache")
+public class CacheController
+{
+	static final String CABECALHO_TOKEN = "X-Token-Cache";
+
+	private final CacheEntidades cacheEntidades;
+	private final byte[] token;
+
+	@Autowired
+	public CacheController(CacheEntidades cacheEntidades,
+			@Value("${ecommerce.cache.invalidacao.token:}") String token)
+	{
+		this.cacheEntidades = cacheEntidades;
+		this.token = token.getBytes(StandardCharsets.UTF_8);
+	}
+
+	@DeleteMapping("/produtos/{id}")
+	public ResponseEntity<Void> invalidarProduto(@PathVariable Long id,
+			@RequestHeader(name = CABECALHO_TOKEN, required = false) String tokenRecebido)
+	{
+		if (!autorizado(tokenRecebido))
+		{
+			return ResponseEntity.status(HttpStatus.FORBIDDEN).build();
+		}
+		cacheEntidades.invalidarProduto(id);
+		return ResponseEntity.noContent().build();
+	}
+
+	@DeleteMapping("/produtos")
+	public ResponseEntity<Void> invalidarProdutos(
+			@RequestHeader(name = CABECALHO_TOKEN, required = false) String tokenRecebido)
+	{
+		if (!autorizado(tokenRecebido))
+		{
+			return ResponseEntity.status(HttpStatus.FORBIDDEN).build();
+		}
+		cacheEntidades.invalidarProdutos();
+		return ResponseEntity.noContent().build();
+	}
+
+	@DeleteMapping("/clientes/{id}")
+	public ResponseEntity<Void> invalidarCliente(@PathVariable Long id,
+			@RequestHeader(name = CABECALHO_TOKEN, required = false) String tokenRecebido)
+	{
+		if (!autorizado(tokenRecebido))
+		{
+			return ResponseEntity.status(HttpStatus.FORBIDDEN).build();
+		}
+		cacheEntidades.invalidarCliente(id);
+		return ResponseEntity.noContent().build();
+	}
+
+	@DeleteMapping
+	public ResponseEntity<Void> invalidarTudo(
+			@RequestHeader(name = CABECALHO_TOKEN, required = false) String tokenRecebido)
+	{
+		if (!autorizado(tokenRecebido))
+		{
+			return ResponseEntity.status(HttpStatus.FORBIDDEN).build();
+		}
+		cacheEntidades.invalidarTudo();
+		return ResponseEntity.noContent().build();
+	}
+
+	/**
+	 * Comparação em tempo constante, para o tempo de resposta não revelar o token.
+	 */
+	private boolean autorizado(String tokenRecebido)
+	{
+		return token.length > 0 && tokenRecebido != null
+				&& MessageDigest.isEqual(token, tokenRecebido.getBytes(StandardCharsets.UTF_8));
+	}
+}
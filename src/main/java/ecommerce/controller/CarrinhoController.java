@@ -0,0 +1,57 @@
+package ecommerce.controller;
+
+import java.util.List;
+
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.http.HttpStatus;
+import org.springframework.http.ResponseEntity;
+import org.springframework.web.bind.annotation.*;
+
+import ecommerce.dto.AlteracaoItemDTO;
+import ecommerce.dto.CarrinhoAtualizadoDTO;
+import ecommerce.external.ServicoIndisponivelException;
+import ecommerce.service.AlteracaoCarrinhoService;
+
+@RestController
+@RequestMapping("/carrinhos")
+public class CarrinhoController
+{
+
+	private final AlteracaoCarrinhoService alteracaoCarrinhoService;
+
+	@Autowired
+	public CarrinhoController(AlteracaoCarrinhoService alteracaoCarrinhoService)
+	{
+		this.alteracaoCarrinhoService = alteracaoCarrinhoService;
+	}
+
+	/**
+	 * Inclui, altera e remove linhas do carrinho numa única transação. Requisições seguidas
+	 * para o mesmo carrinho podem ser agrupadas numa só gravação; a resposta traz os itens do
+	 * carrinho depois dela.
+	 */
+	@PatchMapping("/{carrinhoId}/itens")
+	public ResponseEntity<CarrinhoAtualizadoDTO> alterarItens(@PathVariable Long carrinhoId,
+			@RequestParam Long clienteId, @RequestBody List<AlteracaoItemDTO> alteracoes)
+	{
+		try
+		{
+			return ResponseEntity.ok(alteracaoCarrinhoService.alterar(carrinhoId, clienteId, alteracoes));
+		}
+		catch (IllegalArgumentException e)
+		{
+			return ResponseEntity.status(HttpStatus.BAD_REQUEST)
+					.body(CarrinhoAtualizadoDTO.erro(carrinhoId, e.getMessage()));
+		}
+		catch (ServicoIndisponivelException e)
+		{
+			return ResponseEntity.status(HttpStatus.SERVICE_UNAVAILABLE)
+					.body(CarrinhoAtualizadoDTO.erro(carrinhoId, e.getMessage()));
+		}
+		catch (Exception e)
+		{
+			return ResponseEntity.status(HttpStatus.INTERNAL_SERVER_ERROR)
+					.body(CarrinhoAtualizadoDTO.erro(carrinhoId, "Erro ao alterar itens do carrinho."));
+		}
+	}
+}
@@ -1,11 +1,16 @@
 package ecommerce.controller;
 
+import java.util.List;
+
 import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.http.HttpStatus;
 import org.springframework.http.ResponseEntity;
 import org.springframework.web.bind.annotation.*;
 
 import ecommerce.dto.CompraDTO;
+import ecommerce.dto.CotacaoDTO;
+import ecommerce.dto.PedidoCompraDTO;
+import ecommerce.external.ServicoIndisponivelException;
 import ecommerce.service.CompraService;
 
 @RestController
@@ -21,18 +26,27 @@ public class CompraController
 		this.compraService = compraService;
 	}
 
+	/**
+	 * Retentativas com o mesmo {@code Idempotency-Key} (ou, sem o cabeçalho, com o mesmo
+	 * carrinho, cliente e conteúdo do carrinho) recebem o resultado da primeira compra concluída.
+	 */
 	@PostMapping("/finalizar")
-	public ResponseEntity<CompraDTO> finalizarCompra(@RequestParam Long carrinhoId, @RequestParam Long clienteId)
+	public ResponseEntity<CompraDTO> finalizarCompra(@RequestParam Long carrinhoId, @RequestParam Long clienteId,
+			@RequestHeader(value = "Idempotency-Key", required = false) String chaveIdempotencia)
 	{
 		try
 		{
-			CompraDTO compraDTO = compraService.finalizarCompra(carrinhoId, clienteId);
+			CompraDTO compraDTO = compraService.finalizarCompra(carrinhoId, clienteId, chaveIdempotencia);
 			return ResponseEntity.ok(compraDTO);
 		}
 		catch (IllegalArgumentException e)
 		{
 			return ResponseEntity.status(HttpStatus.BAD_REQUEST).body(new CompraDTO(false, null, e.getMessage()));
 		}
+		catch (ServicoIndisponivelException e)
+		{
+			return ResponseEntity.status(HttpStatus.SERVICE_UNAVAILABLE).body(new CompraDTO(false, null, e.getMessage()));
+		}
 		catch (IllegalStateException e)
 		{
 			return ResponseEntity.status(HttpStatus.CONFLICT).body(new CompraDTO(false, null, e.getMessage()));
@@ -43,4 +57,45 @@ public class CompraController
 					.body(new CompraDTO(false, null, "Erro ao processar compra."));
 		}
 	}
+
+	@GetMapping("/cotacao")
+	public ResponseEntity<CotacaoDTO> cotar(@RequestParam Long carrinhoId, @RequestParam Long clienteId)
+	{
+		try
+		{
+			return ResponseEntity.ok(new CotacaoDTO(carrinhoId, compraService.cotar(carrinhoId, clienteId), null));
+		}
+		catch (IllegalArgumentException e)
+		{
+			return ResponseEntity.status(HttpStatus.BAD_REQUEST).body(new CotacaoDTO(carrinhoId, null, e.getMessage()));
+		}
+		catch (Exception e)
+		{
+			return ResponseEntity.status(HttpStatus.INTERNAL_SERVER_ERROR)
+					.body(new CotacaoDTO(carrinhoId, null, "Erro ao calcular cotação."));
+		}
+	}
+
+	/**
+	 * Cada carrinho do lote segue as mesmas regras de idempotência do {@code POST /finalizar},
+	 * com a chave informada no pedido ou a chave padrão.
+	 */
+	@PostMapping("/finalizar/lote")
+	public ResponseEntity<List<CompraDTO>> finalizarCompras(@RequestBody List<PedidoCompraDTO> pedidos)
+	{
+		try
+		{
+			List<CompraDTO> compras = compraService.finalizarCompras(pedidos);
+			return ResponseEntity.ok(compras);
+		}
+		catch (IllegalArgumentException e)
+		{
+			return ResponseEntity.status(HttpStatus.BAD_REQUEST).body(List.of(new CompraDTO(false, null, e.getMessage())));
+		}
+		catch (Exception e)
+		{
+			return ResponseEntity.status(HttpStatus.INTERNAL_SERVER_ERROR)
+					.body(List.of(new CompraDTO(false, null, "Erro ao processar compras.")));
+		}
+	}
 }
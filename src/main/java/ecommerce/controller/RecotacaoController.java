@@ -0,0 +1,77 @@
+package ecommerce.controller;
+
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.http.HttpStatus;
+import org.springframework.http.ResponseEntity;
+import org.springframework.web.bind.annotation.*;
+
+import ecommerce.dto.ProgressoRecotacaoDTO;
+import ecommerce.service.RecotacaoService;
+
+@RestController
+@RequestMapping("/recotacoes")
+public class RecotacaoController
+{
+
+	private final RecotacaoService recotacaoService;
+
+	@Autowired
+	public RecotacaoController(RecotacaoService recotacaoService)
+	{
+		this.recotacaoService = recotacaoService;
+	}
+
+	/**
+	 * Inicia a recotação de todos os carrinhos em segundo plano; o progresso é consultado
+	 * em {@code GET /recotacoes/{id}}.
+	 */
+	@PostMapping
+	public ResponseEntity<ProgressoRecotacaoDTO> iniciar()
+	{
+		try
+		{
+			return ResponseEntity.status(HttpStatus.ACCEPTED)
+					.body(ProgressoRecotacaoDTO.de(recotacaoService.iniciarEmSegundoPlano()));
+		}
+		catch (Exception e)
+		{
+			return ResponseEntity.status(HttpStatus.INTERNAL_SERVER_ERROR)
+					.body(ProgressoRecotacaoDTO.erro(null, "Erro ao iniciar recotação."));
+		}
+	}
+
+	@GetMapping("/{id}")
+	public ResponseEntity<ProgressoRecotacaoDTO> progresso(@PathVariable Long id)
+	{
+		try
+		{
+			return ResponseEntity.ok(ProgressoRecotacaoDTO.de(recotacaoService.buscar(id)));
+		}
+		catch (IllegalArgumentException e)
+		{
+			return ResponseEntity.status(HttpStatus.NOT_FOUND).body(ProgressoRecotacaoDTO.erro(id, e.getMessage()));
+		}
+	}
+
+	/**
+	 * Retoma uma execução interrompida a partir do último lote gravado.
+	 */
+	@PostMapping("/{id}/retomar")
+	public ResponseEntity<ProgressoRecotacaoDTO> retomar(@PathVariable Long id)
+	{
+		try
+		{
+			return ResponseEntity.status(HttpStatus.ACCEPTED)
+					.body(ProgressoRecotacaoDTO.de(recotacaoService.retomarEmSegundoPlano(id)));
+		}
+		catch (IllegalArgumentException e)
+		{
+			return ResponseEntity.status(HttpStatus.BAD_REQUEST).body(ProgressoRecotacaoDTO.erro(id, e.getMessage()));
+		}
+		catch (Exception e)
+		{
+			return ResponseEntity.status(HttpStatus.INTERNAL_SERVER_ERROR)
+					.body(ProgressoRecotacaoDTO.erro(id, "Erro ao retomar recotação."));
+		}
+	}
+}
@@ -0,0 +1,11 @@
+package ecommerce.dto;
+
+/**
+ * Alteração de uma linha do carrinho, identificada pelo produto: {@code quantidade} define a
+ * quantidade final (zero remove a linha) e {@code variacao} soma à quantidade atual (negativa
+ * para diminuir; se o resultado não for positivo, a linha é removida). Exatamente um dos dois
+ * deve ser informado.
+ */
+public record AlteracaoItemDTO(Long produtoId, Long quantidade, Long variacao)
+{
+}
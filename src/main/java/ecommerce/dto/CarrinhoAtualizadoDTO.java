@@ -0,0 +1,19 @@
+package ecommerce.dto;
+
+import java.util.List;
+
+import ecommerce.entity.CarrinhoDeCompras;
+
+public record CarrinhoAtualizadoDTO(Long carrinhoId, List<ItemCarrinhoDTO> itens, String mensagem)
+{
+	public static CarrinhoAtualizadoDTO de(CarrinhoDeCompras carrinho)
+	{
+		return new CarrinhoAtualizadoDTO(carrinho.getId(), carrinho.getItens().stream()
+				.map(item -> new ItemCarrinhoDTO(item.getProduto().getId(), item.getQuantidade())).toList(), null);
+	}
+
+	public static CarrinhoAtualizadoDTO erro(Long carrinhoId, String mensagem)
+	{
+		return new CarrinhoAtualizadoDTO(carrinhoId, null, mensagem);
+	}
+}
@@ -0,0 +1,38 @@
+package ecommerce.dto;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.stream.Collectors;
+
+import ecommerce.entity.CarrinhoDeCompras;
+import ecommerce.entity.ItemCompra;
+
+/**
+ * Carrinho como o checkout o usa: as linhas lidas por projeção ({@link LinhaCheckoutDTO}) e a
+ * versão do conteúdo, sem entidades. O custo é calculado direto das linhas.
+ */
+public record CarrinhoCheckoutDTO(Long carrinhoId, long versao, List<LinhaCheckoutDTO> linhas)
+{
+	/**
+	 * Linhas de um carrinho já carregado como entidade, como no checkout em lote.
+	 */
+	public static CarrinhoCheckoutDTO de(CarrinhoDeCompras carrinho)
+	{
+		List<LinhaCheckoutDTO> linhas = new ArrayList<>(carrinho.getItens().size());
+		for (ItemCompra item : carrinho.getItens())
+		{
+			linhas.add(LinhaCheckoutDTO.de(item, carrinho.getVersao()));
+		}
+		return new CarrinhoCheckoutDTO(carrinho.getId(), carrinho.getVersao(), linhas);
+	}
+
+	public List<Long> produtosIds()
+	{
+		return linhas.stream().map(LinhaCheckoutDTO::produtoId).collect(Collectors.toList());
+	}
+
+	public List<Long> produtosQuantidades()
+	{
+		return linhas.stream().map(LinhaCheckoutDTO::quantidade).collect(Collectors.toList());
+	}
+}
@@ -0,0 +1,43 @@
+package ecommerce.dto;
+
+import java.math.BigDecimal;
+import java.math.RoundingMode;
+
+/**
+ * Valor monetário em centavos de real. Evita o {@code double} nas chamadas ao pagamento e os
+ * {@link BigDecimal} intermediários no cálculo do custo.
+ */
+public record Dinheiro(long centavos)
+{
+	public static final Dinheiro ZERO = new Dinheiro(0);
+
+	/**
+	 * Converte reais para centavos, arredondando com {@link RoundingMode#HALF_UP}.
+	 */
+	public static Dinheiro deReais(BigDecimal reais)
+	{
+		return new Dinheiro(reais.setScale(2, RoundingMode.HALF_UP).unscaledValue().longValueExact());
+	}
+
+	/**
+	 * Valor em reais com escala 2.
+	 */
+	public BigDecimal emReais()
+	{
+		return BigDecimal.valueOf(centavos, 2);
+	}
+
+	/**
+	 * Para clientes de pagamento que só aceitam {@code double}.
+	 */
+	public double emReaisDouble()
+	{
+		return emReais().doubleValue();
+	}
+
+	@Override
+	public String toString()
+	{
+		return "R$ " + emReais().toPlainString();
+	}
+}
@@ -0,0 +1,22 @@
+package ecommerce.dto;
+
+import java.math.BigDecimal;
+
+import ecommerce.entity.ItemCompra;
+import ecommerce.entity.Produto;
+
+/**
+ * Uma linha do carrinho com apenas o que o checkout usa no preço e no estoque, lida por
+ * projeção, sem carregar {@code Produto} como entidade. A versão do conteúdo do carrinho vem
+ * repetida em todas as linhas.
+ */
+public record LinhaCheckoutDTO(Long itemId, Long produtoId, Long quantidade, BigDecimal preco, BigDecimal pesoFisico,
+		Boolean fragil, Long versaoCarrinho)
+{
+	public static LinhaCheckoutDTO de(ItemCompra item, long versaoCarrinho)
+	{
+		Produto produto = item.getProduto();
+		return new LinhaCheckoutDTO(item.getId(), produto.getId(), item.getQuantidade(), produto.getPreco(),
+				produto.getPesoFisico(), produto.isFragil(), versaoCarrinho);
+	}
+}
@@ -0,0 +1,13 @@
+package ecommerce.dto;
+
+/**
+ * Um carrinho do {@code POST /finalizar/lote}. Sem {@code chaveIdempotencia}, vale a chave
+ * padrão, como no {@code POST /finalizar} sem o cabeçalho {@code Idempotency-Key}.
+ */
+public record PedidoCompraDTO(Long carrinhoId, Long clienteId, String chaveIdempotencia)
+{
+	public PedidoCompraDTO(Long carrinhoId, Long clienteId)
+	{
+		this(carrinhoId, clienteId, null);
+	}
+}
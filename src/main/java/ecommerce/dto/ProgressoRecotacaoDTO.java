@@ -0,0 +1,24 @@
+package ecommerce.dto;
+
+import java.math.BigDecimal;
+
+import ecommerce.entity.ExecucaoRecotacao;
+import ecommerce.entity.StatusExecucaoRecotacao;
+
+public record ProgressoRecotacaoDTO(Long execucaoId, StatusExecucaoRecotacao status, long carrinhosRecotados,
+		long carrinhosAlterados, long carrinhosNovos, long carrinhosComFalha, BigDecimal deltaTotal,
+		long ultimoCarrinhoId, double carrinhosPorSegundo, String mensagem)
+{
+	public static ProgressoRecotacaoDTO de(ExecucaoRecotacao execucao)
+	{
+		return new ProgressoRecotacaoDTO(execucao.getId(), execucao.getStatus(), execucao.getCarrinhosRecotados(),
+				execucao.getCarrinhosAlterados(), execucao.getCarrinhosNovos(), execucao.getCarrinhosComFalha(),
+				new Dinheiro(execucao.getDeltaTotalCentavos()).emReais(), execucao.getUltimoCarrinhoId(),
+				execucao.carrinhosPorSegundo(), execucao.getUltimoErro());
+	}
+
+	public static ProgressoRecotacaoDTO erro(Long execucaoId, String mensagem)
+	{
+		return new ProgressoRecotacaoDTO(execucaoId, null, 0, 0, 0, 0, null, 0, 0, mensagem);
+	}
+}
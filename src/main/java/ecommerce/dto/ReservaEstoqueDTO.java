@@ -0,0 +1,9 @@
+package ecommerce.dto;
+
+import java.time.Instant;
+import java.util.List;
+
+public record ReservaEstoqueDTO(Boolean reservado, Long reservaId, List<Long> idsProdutosIndisponiveis,
+		Instant expiraEm)
+{
+}
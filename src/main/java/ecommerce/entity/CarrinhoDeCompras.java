@@ -5,6 +5,7 @@ import java.util.ArrayList;
 import java.util.List;
 
 import jakarta.persistence.CascadeType;
+import jakarta.persistence.Embedded;
 import jakarta.persistence.Entity;
 import jakarta.persistence.GeneratedValue;
 import jakarta.persistence.GenerationType;
@@ -12,13 +13,21 @@ import jakarta.persistence.Id;
 import jakarta.persistence.JoinColumn;
 import jakarta.persistence.ManyToOne;
 import jakarta.persistence.OneToMany;
-
+import jakarta.persistence.SequenceGenerator;
+
+/**
+ * Os {@link TotaisCarrinho} são mantidos incrementalmente por {@link #adicionarItem},
+ * {@link #removerItem} e {@link #alterarQuantidade} e gravados com o carrinho. Alterações
+ * feitas diretamente na lista de {@link #getItens()} ou num {@link ItemCompra} não os
+ * atualizam; {@link #getTotais()} descarta os agregados quando não conferem com os itens.
+ */
 @Entity
 public class CarrinhoDeCompras
 {
 
 	@Id
-	@GeneratedValue(strategy = GenerationType.IDENTITY)
+	@GeneratedValue(strategy = GenerationType.SEQUENCE, generator = "carrinho_de_compras_seq")
+	@SequenceGenerator(name = "carrinho_de_compras_seq", sequenceName = "carrinho_de_compras_seq", allocationSize = 50)
 	private Long id;
 
 	@ManyToOne // Um cliente pode ter vários carrinhos
@@ -26,11 +35,20 @@ public class CarrinhoDeCompras
 	private Cliente cliente;
 
 	@OneToMany(cascade = CascadeType.ALL, orphanRemoval = true) // Um carrinho tem vários itens
-	@JoinColumn(name = "carrinho_id") // Mapeamento de chave estrangeira na tabela ItemCompra
+	// Chave estrangeira na tabela ItemCompra, gravada já no INSERT do item: sem ela obrigatória e
+	// não atualizável, o Hibernate insere o item sem carrinho e depois emite um UPDATE por item
+	@JoinColumn(name = "carrinho_id", nullable = false, updatable = false)
 	private List<ItemCompra> itens = new ArrayList<>();
 
 	private LocalDate data;
 
+	@Embedded // Nulo enquanto não calculados ou após alteração de um produto do carrinho
+	private TotaisCarrinho totais;
+
+	// Incrementada a cada alteração dos itens pelos métodos do carrinho; não é controle de
+	// concorrência, só identifica o conteúdo (chave de idempotência do checkout)
+	private long versao;
+
 	public CarrinhoDeCompras()
 	{
 	}
@@ -72,6 +90,69 @@ public class CarrinhoDeCompras
 	public void setItens(List<ItemCompra> itens)
 	{
 		this.itens = itens;
+		this.totais = null;
+		versao++;
+	}
+
+	public void adicionarItem(ItemCompra item)
+	{
+		itens.add(item);
+		totais = totais != null ? totais.somar(item) : TotaisCarrinho.de(itens);
+		versao++;
+	}
+
+	public boolean removerItem(ItemCompra item)
+	{
+		if (!itens.remove(item))
+		{
+			return false;
+		}
+		totais = totais != null ? totais.subtrair(item) : TotaisCarrinho.de(itens);
+		versao++;
+		return true;
+	}
+
+	/**
+	 * @throws IllegalArgumentException se o item não pertence ao carrinho
+	 */
+	public void alterarQuantidade(ItemCompra item, Long quantidade)
+	{
+		if (!itens.contains(item))
+		{
+			throw new IllegalArgumentException("Item não pertence ao carrinho.");
+		}
+
+		TotaisCarrinho semItem = totais != null ? totais.subtrair(item) : null;
+		item.setQuantidade(quantidade);
+		totais = semItem != null ? semItem.somar(item) : TotaisCarrinho.de(itens);
+		versao++;
+	}
+
+	/**
+	 * Agregados dos itens, ou {@code null} se ainda não foram calculados, não têm
+	 * representação inteira ou não conferem com os itens carregados. A conferência cobre
+	 * preço, peso e fragilidade: totais gravados antes de uma alteração de produto feita fora
+	 * da aplicação, sem os listeners, são ignorados e o custo sai dos valores atuais.
+	 */
+	public TotaisCarrinho getTotais()
+	{
+		return totais != null && totais.linhas() == itens.size() && totais.equals(TotaisCarrinho.de(itens)) ? totais
+				: null;
+	}
+
+	public void recalcularTotais()
+	{
+		totais = TotaisCarrinho.de(itens);
+	}
+
+	public void invalidarTotais()
+	{
+		totais = null;
+	}
+
+	public long getVersao()
+	{
+		return versao;
 	}
 
 	public LocalDate getData()
@@ -0,0 +1,90 @@
+package ecommerce.entity;
+
+import java.time.Instant;
+
+import jakarta.persistence.Entity;
+import jakarta.persistence.Id;
+
+/**
+ * Resultado de uma compra finalizada, indexado pela chave de idempotência da requisição.
+ */
+@Entity
+public class CompraIdempotente
+{
+
+	@Id
+	private String chave;
+
+	private String pedido; // carrinhoId:clienteId que originou a chave
+
+	private Long transacaoPagamentoId;
+
+	private String mensagem;
+
+	private Instant criadaEm;
+
+	public CompraIdempotente()
+	{
+	}
+
+	public CompraIdempotente(String chave, String pedido, Long transacaoPagamentoId, String mensagem,
+			Instant criadaEm)
+	{
+		this.chave = chave;
+		this.pedido = pedido;
+		this.transacaoPagamentoId = transacaoPagamentoId;
+		this.mensagem = mensagem;
+		this.criadaEm = criadaEm;
+	}
+
+	// Getters e Setters
+	public String getChave()
+	{
+		return chave;
+	}
+
+	public void setChave(String chave)
+	{
+		this.chave = chave;
+	}
+
+	public String getPedido()
+	{
+		return pedido;
+	}
+
+	public void setPedido(String pedido)
+	{
+		this.pedido = pedido;
+	}
+
+	public Long getTransacaoPagamentoId()
+	{
+		return transacaoPagamentoId;
+	}
+
+	public void setTransacaoPagamentoId(Long transacaoPagamentoId)
+	{
+		this.transacaoPagamentoId = transacaoPagamentoId;
+	}
+
+	public String getMensagem()
+	{
+		return mensagem;
+	}
+
+	public void setMensagem(String mensagem)
+	{
+		this.mensagem = mensagem;
+	}
+
+	public Instant getCriadaEm()
+	{
+		return criadaEm;
+	}
+
+	public void setCriadaEm(Instant criadaEm)
+	{
+		this.criadaEm = criadaEm;
+	}
+}
@@ -0,0 +1,110 @@
+package ecommerce.entity;
+
+import java.time.Instant;
+
+import org.springframework.data.domain.Persistable;
+
+import jakarta.persistence.Entity;
+import jakarta.persistence.Id;
+import jakarta.persistence.PostLoad;
+import jakarta.persistence.PostPersist;
+import jakarta.persistence.Transient;
+
+/**
+ * Último custo total calculado para um carrinho pela recotação em massa, em centavos.
+ * <p>
+ * O id é o do carrinho, atribuído à mão: sem {@link Persistable}, o {@code save} de uma
+ * cotação nova faria um merge, com um SELECT por linha antes do INSERT.
+ */
+@Entity
+public class CotacaoCarrinho implements Persistable<Long>
+{
+
+	@Id
+	private Long carrinhoId;
+
+	private long custoCentavos;
+
+	private Long execucaoId; // Execução de recotação que gravou o valor
+
+	private Instant calculadaEm;
+
+	@Transient
+	private boolean nova;
+
+	public CotacaoCarrinho()
+	{
+	}
+
+	/**
+	 * Cotação ainda não gravada: o {@code save} faz um INSERT direto.
+	 */
+	public CotacaoCarrinho(Long carrinhoId, long custoCentavos, Long execucaoId, Instant calculadaEm)
+	{
+		this.carrinhoId = carrinhoId;
+		this.custoCentavos = custoCentavos;
+		this.execucaoId = execucaoId;
+		this.calculadaEm = calculadaEm;
+		this.nova = true;
+	}
+
+	@PostLoad
+	@PostPersist
+	void marcarGravada()
+	{
+		nova = false;
+	}
+
+	@Override
+	public Long getId()
+	{
+		return carrinhoId;
+	}
+
+	@Override
+	public boolean isNew()
+	{
+		return nova;
+	}
+
+	// Getters e Setters
+	public Long getCarrinhoId()
+	{
+		return carrinhoId;
+	}
+
+	public void setCarrinhoId(Long carrinhoId)
+	{
+		this.carrinhoId = carrinhoId;
+	}
+
+	public long getCustoCentavos()
+	{
+		return custoCentavos;
+	}
+
+	public void setCustoCentavos(long custoCentavos)
+	{
+		this.custoCentavos = custoCentavos;
+	}
+
+	public Long getExecucaoId()
+	{
+		return execucaoId;
+	}
+
+	public void setExecucaoId(Long execucaoId)
+	{
+		this.execucaoId = execucaoId;
+	}
+
+	public Instant getCalculadaEm()
+	{
+		return calculadaEm;
+	}
+
+	public void setCalculadaEm(Instant calculadaEm)
+	{
+		this.calculadaEm = calculadaEm;
+	}
+}
@@ -0,0 +1,173 @@
+package ecommerce.entity;
+
+import java.time.Instant;
+
+import jakarta.persistence.Entity;
+import jakarta.persistence.EnumType;
+import jakarta.persistence.Enumerated;
+import jakarta.persistence.GeneratedValue;
+import jakarta.persistence.GenerationType;
+import jakarta.persistence.Id;
+import jakarta.persistence.Version;
+
+/**
+ * Evento do checkout (compensação ou notificação) a ser entregue pelo despachante do outbox.
+ */
+@Entity
+public class EventoOutbox
+{
+
+	@Id
+	@GeneratedValue(strategy = GenerationType.IDENTITY)
+	private Long id;
+
+	@Enumerated(EnumType.STRING)
+	private TipoEventoOutbox tipo;
+
+	@Enumerated(EnumType.STRING)
+	private StatusEventoOutbox status;
+
+	private Long carrinhoId;
+
+	private Long clienteId;
+
+	private Long transacaoPagamentoId;
+
+	private int tentativas;
+
+	private Instant criadoEm;
+
+	private Instant proximaTentativaEm;
+
+	private String ultimoErro;
+
+	@Version // Evita que duas instâncias do despachante concluam o mesmo evento
+	private Long versao;
+
+	public EventoOutbox()
+	{
+	}
+
+	public EventoOutbox(TipoEventoOutbox tipo, Long carrinhoId, Long clienteId, Long transacaoPagamentoId,
+			Instant criadoEm)
+	{
+		this.tipo = tipo;
+		this.status = StatusEventoOutbox.PENDENTE;
+		this.carrinhoId = carrinhoId;
+		this.clienteId = clienteId;
+		this.transacaoPagamentoId = transacaoPagamentoId;
+		this.criadoEm = criadoEm;
+		this.proximaTentativaEm = criadoEm;
+	}
+
+	// Getters e Setters
+	public Long getId()
+	{
+		return id;
+	}
+
+	public void setId(Long id)
+	{
+		this.id = id;
+	}
+
+	public TipoEventoOutbox getTipo()
+	{
+		return tipo;
+	}
+
+	public void setTipo(TipoEventoOutbox tipo)
+	{
+		this.tipo = tipo;
+	}
+
+	public StatusEventoOutbox getStatus()
+	{
+		return status;
+	}
+
+	public void setStatus(StatusEventoOutbox status)
+	{
+		this.status = status;
+	}
+
+	public Long getCarrinhoId()
+	{
+		return carrinhoId;
+	}
+
+	public void setCarrinhoId(Long carrinhoId)
+	{
+		this.carrinhoId = carrinhoId;
+	}
+
+	public Long getClienteId()
+	{
+		return clienteId;
+	}
+
+	public void setClienteId(Long clienteId)
+	{
+		this.clienteId = clienteId;
+	}
+
+	public Long getTransacaoPagamentoId()
+	{
+		return transacaoPagamentoId;
+	}
+
+	public void setTransacaoPagamentoId(Long transacaoPagamentoId)
+	{
+		this.transacaoPagamentoId = transacaoPagamentoId;
+	}
+
+	public int getTentativas()
+	{
+		return tentativas;
+	}
+
+	public void setTentativas(int tentativas)
+	{
+		this.tentativas = tentativas;
+	}
+
+	public Instant getCriadoEm()
+	{
+		return criadoEm;
+	}
+
+	public void setCriadoEm(Instant criadoEm)
+	{
+		this.criadoEm = criadoEm;
+	}
+
+	public Instant getProximaTentativaEm()
+	{
+		return proximaTentativaEm;
+	}
+
+	public void setProximaTentativaEm(Instant proximaTentativaEm)
+	{
+		this.proximaTentativaEm = proximaTentativaEm;
+	}
+
+	public String getUltimoErro()
+	{
+		return ultimoErro;
+	}
+
+	public void setUltimoErro(String ultimoErro)
+	{
+		this.ultimoErro = ultimoErro;
+	}
+
+	public Long getVersao()
+	{
+		return versao;
+	}
+
+	public void setVersao(Long versao)
+	{
+		this.versao = versao;
+	}
+}
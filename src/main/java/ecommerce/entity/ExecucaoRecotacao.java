@@ -0,0 +1,213 @@
+package ecommerce.entity;
+
+import java.time.Instant;
+
+import jakarta.persistence.Entity;
+import jakarta.persistence.EnumType;
+import jakarta.persistence.Enumerated;
+import jakarta.persistence.GeneratedValue;
+import jakarta.persistence.GenerationType;
+import jakarta.persistence.Id;
+import jakarta.persistence.Version;
+
+/**
+ * Progresso de uma recotação em massa. {@code ultimoCarrinhoId} é o ponto de retomada: é
+ * gravado na mesma transação das cotações do lote, então uma execução interrompida continua
+ * do carrinho seguinte sem repetir nem perder lotes.
+ */
+@Entity
+public class ExecucaoRecotacao
+{
+
+	@Id
+	@GeneratedValue(strategy = GenerationType.IDENTITY)
+	private Long id;
+
+	@Enumerated(EnumType.STRING)
+	private StatusExecucaoRecotacao status;
+
+	private long ultimoCarrinhoId;
+
+	private long carrinhosRecotados;
+
+	private long carrinhosAlterados; // Custo diferente da cotação anterior
+
+	private long carrinhosNovos; // Sem cotação anterior
+
+	private long carrinhosComFalha;
+
+	private long deltaTotalCentavos; // Soma de (novo - anterior) dos carrinhos já cotados antes
+
+	private long duracaoMillis; // Tempo efetivo de processamento, somado entre retomadas
+
+	private Instant iniciadaEm;
+
+	private Instant atualizadaEm;
+
+	private Instant concluidaEm;
+
+	private String ultimoErro;
+
+	@Version // Impede que duas instâncias processem a mesma execução
+	private Long versao;
+
+	public ExecucaoRecotacao()
+	{
+	}
+
+	public ExecucaoRecotacao(Instant iniciadaEm)
+	{
+		this.status = StatusExecucaoRecotacao.EM_ANDAMENTO;
+		this.iniciadaEm = iniciadaEm;
+		this.atualizadaEm = iniciadaEm;
+	}
+
+	/**
+	 * Carrinhos recotados por segundo de processamento efetivo.
+	 */
+	public double carrinhosPorSegundo()
+	{
+		return duracaoMillis == 0 ? 0 : carrinhosRecotados * 1000.0 / duracaoMillis;
+	}
+
+	// Getters e Setters
+	public Long getId()
+	{
+		return id;
+	}
+
+	public void setId(Long id)
+	{
+		this.id = id;
+	}
+
+	public StatusExecucaoRecotacao getStatus()
+	{
+		return status;
+	}
+
+	public void setStatus(StatusExecucaoRecotacao status)
+	{
+		this.status = status;
+	}
+
+	public long getUltimoCarrinhoId()
+	{
+		return ultimoCarrinhoId;
+	}
+
+	public void setUltimoCarrinhoId(long ultimoCarrinhoId)
+	{
+		this.ultimoCarrinhoId = ultimoCarrinhoId;
+	}
+
+	public long getCarrinhosRecotados()
+	{
+		return carrinhosRecotados;
+	}
+
+	public void setCarrinhosRecotados(long carrinhosRecotados)
+	{
+		this.carrinhosRecotados = carrinhosRecotados;
+	}
+
+	public long getCarrinhosAlterados()
+	{
+		return carrinhosAlterados;
+	}
+
+	public void setCarrinhosAlterados(long carrinhosAlterados)
+	{
+		this.carrinhosAlterados = carrinhosAlterados;
+	}
+
+	public long getCarrinhosNovos()
+	{
+		return carrinhosNovos;
+	}
+
+	public void setCarrinhosNovos(long carrinhosNovos)
+	{
+		this.carrinhosNovos = carrinhosNovos;
+	}
+
+	public long getCarrinhosComFalha()
+	{
+		return carrinhosComFalha;
+	}
+
+	public void setCarrinhosComFalha(long carrinhosComFalha)
+	{
+		this.carrinhosComFalha = carrinhosComFalha;
+	}
+
+	public long getDeltaTotalCentavos()
+	{
+		return deltaTotalCentavos;
+	}
+
+	public void setDeltaTotalCentavos(long deltaTotalCentavos)
+	{
+		this.deltaTotalCentavos = deltaTotalCentavos;
+	}
+
+	public long getDuracaoMillis()
+	{
+		return duracaoMillis;
+	}
+
+	public void setDuracaoMillis(long duracaoMillis)
+	{
+		this.duracaoMillis = duracaoMillis;
+	}
+
+	public Instant getIniciadaEm()
+	{
+		return iniciadaEm;
+	}
+
+	public void setIniciadaEm(Instant iniciadaEm)
+	{
+		this.iniciadaEm = iniciadaEm;
+	}
+
+	public Instant getAtualizadaEm()
+	{
+		return atualizadaEm;
+	}
+
+	public void setAtualizadaEm(Instant atualizadaEm)
+	{
+		this.atualizadaEm = atualizadaEm;
+	}
+
+	public Instant getConcluidaEm()
+	{
+		return concluidaEm;
+	}
+
+	public void setConcluidaEm(Instant concluidaEm)
+	{
+		this.concluidaEm = concluidaEm;
+	}
+
+	public String getUltimoErro()
+	{
+		return ultimoErro;
+	}
+
+	public void setUltimoErro(String ultimoErro)
+	{
+		this.ultimoErro = ultimoErro;
+	}
+
+	public Long getVersao()
+	{
+		return versao;
+	}
+
+	public void setVersao(Long versao)
+	{
+		this.versao = versao;
+	}
+}
@@ -8,13 +8,23 @@ import jakarta.persistence.Enumerated;
 import jakarta.persistence.GeneratedValue;
 import jakarta.persistence.GenerationType;
 import jakarta.persistence.Id;
-
+import jakarta.persistence.SequenceGenerator;
+import jakarta.persistence.Transient;
+
+/**
+ * Alterações de preço, peso ou fragilidade invalidam as cotações em cache que incluem o
+ * produto e os totais gravados dos carrinhos que o contêm (ver {@code AlteracoesProdutoConfig}).
+ * Alterações feitas fora do Hibernate precisam ser informadas a {@code CacheEntidades}.
+ * <p>
+ * Sem cache de segundo nível: o checkout lê preço, peso e fragilidade pela projeção das linhas
+ * do carrinho, junto com os itens, e nunca carregaria o produto do cache.
+ */
 @Entity
 public class Produto
 {
-
 	@Id
-	@GeneratedValue(strategy = GenerationType.IDENTITY)
+	@GeneratedValue(strategy = GenerationType.SEQUENCE, generator = "produto_seq")
+	@SequenceGenerator(name = "produto_seq", sequenceName = "produto_seq", allocationSize = 50)
 	private Long id;
 
 	private String nome;
@@ -38,6 +48,20 @@ public class Produto
 	@Enumerated(EnumType.STRING)
 	private TipoProduto tipo;
 
+	/**
+	 * Valor de {@link #getPrecoEmCentavos()}/{@link #getPesoEmGramas()} sem representação
+	 * inteira exata.
+	 */
+	public static final long NAO_REPRESENTAVEL = Long.MIN_VALUE;
+
+	// Preço e peso em inteiros para o cálculo do custo, derivados sob demanda. A referência de
+	// origem invalida o valor quando o campo muda, inclusive quando o Hibernate o preenche.
+	@Transient
+	private ValorInteiro precoEmCentavos;
+
+	@Transient
+	private ValorInteiro pesoEmGramas;
+
 	public Produto()
 	{
 	}
@@ -98,6 +122,21 @@ public class Produto
 		this.preco = preco;
 	}
 
+	/**
+	 * Preço em centavos, ou {@link #NAO_REPRESENTAVEL} se o preço for nulo ou tiver mais de
+	 * duas casas decimais.
+	 */
+	public long getPrecoEmCentavos()
+	{
+		ValorInteiro cache = precoEmCentavos;
+		if (cache == null || cache.origem() != preco)
+		{
+			cache = new ValorInteiro(preco, paraInteiro(preco, 2));
+			precoEmCentavos = cache;
+		}
+		return cache.valor();
+	}
+
 	public BigDecimal getPesoFisico()
 	{
 		return pesoFisico;
@@ -108,6 +147,21 @@ public class Produto
 		this.pesoFisico = pesoFisico;
 	}
 
+	/**
+	 * Peso em gramas, ou {@link #NAO_REPRESENTAVEL} se o peso for nulo ou tiver mais de três
+	 * casas decimais.
+	 */
+	public long getPesoEmGramas()
+	{
+		ValorInteiro cache = pesoEmGramas;
+		if (cache == null || cache.origem() != pesoFisico)
+		{
+			cache = new ValorInteiro(pesoFisico, paraInteiro(pesoFisico, 3));
+			pesoEmGramas = cache;
+		}
+		return cache.valor();
+	}
+
 	public BigDecimal getComprimento()
 	{
 		return comprimento;
@@ -157,4 +211,43 @@ public class Produto
 	{
 		this.tipo = tipo;
 	}
-}
\ No newline at end of file
+
+	/**
+	 * Como {@link #getPrecoEmCentavos()}, para um preço lido sem a entidade.
+	 */
+	public static long emCentavos(BigDecimal preco)
+	{
+		return paraInteiro(preco, 2);
+	}
+
+	/**
+	 * Como {@link #getPesoEmGramas()}, para um peso lido sem a entidade.
+	 */
+	public static long emGramas(BigDecimal pesoFisico)
+	{
+		return paraInteiro(pesoFisico, 3);
+	}
+
+	private static long paraInteiro(BigDecimal valor, int casas)
+	{
+		if (valor == null)
+		{
+			return NAO_REPRESENTAVEL;
+		}
+		try
+		{
+			return valor.movePointRight(casas).longValueExact();
+		}
+		catch (ArithmeticException e)
+		{
+			return NAO_REPRESENTAVEL;
+		}
+	}
+
+	/**
+	 * Imutável, para que o cache possa ser lido por várias threads sem sincronização.
+	 */
+	private record ValorInteiro(BigDecimal origem, long valor)
+	{
+	}
+}
@@ -0,0 +1,6 @@
+package ecommerce.entity;
+
+public enum StatusEventoOutbox
+{
+	PENDENTE, CONCLUIDO, FALHOU
+}
@@ -0,0 +1,6 @@
+package ecommerce.entity;
+
+public enum StatusExecucaoRecotacao
+{
+	EM_ANDAMENTO, CONCLUIDA, FALHOU
+}
@@ -0,0 +1,6 @@
+package ecommerce.entity;
+
+public enum TipoEventoOutbox
+{
+	CANCELAR_PAGAMENTO, COMPRA_FINALIZADA
+}
@@ -0,0 +1,130 @@
+package ecommerce.entity;
+
+import java.util.List;
+
+import jakarta.persistence.Embeddable;
+
+/**
+ * Agregados dos itens do carrinho usados no cálculo do custo: subtotal em centavos, peso em
+ * gramas e unidades frágeis, mais o número de linhas que os originou. Mantidos por
+ * {@link CarrinhoDeCompras} a cada alteração dos itens, para que o custo seja calculado sem
+ * percorrer a lista.
+ * <p>
+ * Imutável: cada alteração produz uma nova instância. {@code null} (em {@link #de} e nas
+ * operações) indica que os agregados não têm representação inteira (preço com mais de 2
+ * casas, peso com mais de 3, item incompleto ou estouro) e o custo deve ser calculado item a item.
+ */
+@Embeddable
+public class TotaisCarrinho
+{
+	private Long subtotalCentavos;
+
+	private Long pesoGramas;
+
+	private Long unidadesFrageis;
+
+	private Integer linhas;
+
+	protected TotaisCarrinho()
+	{
+	}
+
+	private TotaisCarrinho(long subtotalCentavos, long pesoGramas, long unidadesFrageis, int linhas)
+	{
+		this.subtotalCentavos = subtotalCentavos;
+		this.pesoGramas = pesoGramas;
+		this.unidadesFrageis = unidadesFrageis;
+		this.linhas = linhas;
+	}
+
+	public static TotaisCarrinho de(List<ItemCompra> itens)
+	{
+		TotaisCarrinho totais = new TotaisCarrinho(0, 0, 0, 0);
+		for (int i = 0, n = itens.size(); i < n && totais != null; i++)
+		{
+			totais = totais.somar(itens.get(i));
+		}
+		return totais;
+	}
+
+	public TotaisCarrinho somar(ItemCompra item)
+	{
+		return combinar(item, 1);
+	}
+
+	public TotaisCarrinho subtrair(ItemCompra item)
+	{
+		return combinar(item, -1);
+	}
+
+	private TotaisCarrinho combinar(ItemCompra item, int sinal)
+	{
+		Produto produto = item.getProduto();
+		if (produto == null || item.getQuantidade() == null || produto.isFragil() == null)
+		{
+			return null;
+		}
+
+		long precoCentavos = produto.getPrecoEmCentavos();
+		long gramas = produto.getPesoEmGramas();
+		if (precoCentavos == Produto.NAO_REPRESENTAVEL || gramas == Produto.NAO_REPRESENTAVEL)
+		{
+			return null;
+		}
+
+		try
+		{
+			long quantidade = Math.multiplyExact(item.getQuantidade(), sinal);
+			return new TotaisCarrinho(
+					Math.addExact(subtotalCentavos, Math.multiplyExact(precoCentavos, quantidade)),
+					Math.addExact(pesoGramas, Math.multiplyExact(gramas, quantidade)),
+					produto.isFragil() ? Math.addExact(unidadesFrageis, quantidade) : unidadesFrageis,
+					linhas + sinal);
+		}
+		catch (ArithmeticException e)
+		{
+			return null;
+		}
+	}
+
+	public long subtotalCentavos()
+	{
+		return subtotalCentavos;
+	}
+
+	public long pesoGramas()
+	{
+		return pesoGramas;
+	}
+
+	public long unidadesFrageis()
+	{
+		return unidadesFrageis;
+	}
+
+	public int linhas()
+	{
+		return linhas;
+	}
+
+	@Override
+	public boolean equals(Object outro)
+	{
+		return outro instanceof TotaisCarrinho totais && subtotalCentavos.equals(totais.subtotalCentavos)
+				&& pesoGramas.equals(totais.pesoGramas) && unidadesFrageis.equals(totais.unidadesFrageis)
+				&& linhas.equals(totais.linhas);
+	}
+
+	@Override
+	public int hashCode()
+	{
+		return (int) (31 * (31 * (31 * subtotalCentavos + pesoGramas) + unidadesFrageis) + linhas);
+	}
+
+	@Override
+	public String toString()
+	{
+		return "TotaisCarrinho[subtotalCentavos=" + subtotalCentavos + ", pesoGramas=" + pesoGramas
+				+ ", unidadesFrageis=" + unidadesFrageis + ", linhas=" + linhas + "]";
+	}
+}
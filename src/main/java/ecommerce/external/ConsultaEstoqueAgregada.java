@@ -0,0 +1,56 @@
+package ecommerce.external;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Agrega os pedidos de estoque de vários carrinhos numa única consulta, somando as
+ * quantidades por produto. Se o estoque atende a soma, atende cada pedido individual;
+ * se não atende, apenas os pedidos com produtos indisponíveis precisam ser reavaliados.
+ */
+public class ConsultaEstoqueAgregada
+{
+	private final Map<Long, Long> quantidadePorProduto = new LinkedHashMap<>();
+
+	public void adicionar(List<Long> produtosIds, List<Long> produtosQuantidades)
+	{
+		for (int i = 0; i < produtosIds.size(); i++)
+		{
+			quantidadePorProduto.merge(produtosIds.get(i), produtosQuantidades.get(i), Long::sum);
+		}
+	}
+
+	public boolean isVazia()
+	{
+		return quantidadePorProduto.isEmpty();
+	}
+
+	public List<Long> produtosIds()
+	{
+		return new ArrayList<>(quantidadePorProduto.keySet());
+	}
+
+	public List<Long> produtosQuantidades()
+	{
+		return new ArrayList<>(quantidadePorProduto.values());
+	}
+
+	/**
+	 * Indica se um pedido contém algum dos produtos apontados como indisponíveis na
+	 * resposta agregada.
+	 */
+	public static boolean afetado(List<Long> produtosIds, Collection<Long> idsProdutosIndisponiveis)
+	{
+		for (Long produtoId : produtosIds)
+		{
+			if (idsProdutosIndisponiveis.contains(produtoId))
+			{
+				return true;
+			}
+		}
+		return false;
+	}
+}
@@ -0,0 +1,91 @@
+package ecommerce.external;
+
+import java.time.Duration;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.Executor;
+
+import ecommerce.dto.DisponibilidadeDTO;
+import ecommerce.dto.EstoqueBaixaDTO;
+import ecommerce.dto.ReservaEstoqueDTO;
+
+/**
+ * Expõe uma implementação síncrona de {@link IEstoqueExternal} como
+ * {@link IEstoqueExternalAsync}, executando cada chamada no executor informado. O timeout
+ * interrompe a chamada em andamento.
+ */
+public class EstoqueAsyncAdapter implements IEstoqueExternalAsync
+{
+	private final IEstoqueExternal estoque;
+	private final Executor executor;
+
+	private EstoqueAsyncAdapter(IEstoqueExternal estoque, Executor executor)
+	{
+		this.estoque = estoque;
+		this.executor = executor;
+	}
+
+	/**
+	 * Adapta o estoque, implementando também {@link IReservaEstoqueAsync} se ele implementa
+	 * {@link IReservaEstoque}.
+	 */
+	public static IEstoqueExternalAsync de(IEstoqueExternal estoque, Executor executor)
+	{
+		if (estoque instanceof IReservaEstoque reserva)
+		{
+			return new ComReserva(reserva, executor);
+		}
+		return new EstoqueAsyncAdapter(estoque, executor);
+	}
+
+	@Override
+	public CompletableFuture<EstoqueBaixaDTO> darBaixa(List<Long> produtosIds, List<Long> produtosQuantidades,
+			Duration timeout)
+	{
+		return Futuros.executar(() -> estoque.darBaixa(produtosIds, produtosQuantidades), executor, timeout);
+	}
+
+	@Override
+	public CompletableFuture<DisponibilidadeDTO> verificarDisponibilidade(List<Long> produtosIds,
+			List<Long> produtosQuantidades, Duration timeout)
+	{
+		return Futuros.executar(() -> estoque.verificarDisponibilidade(produtosIds, produtosQuantidades), executor,
+				timeout);
+	}
+
+	private static final class ComReserva extends EstoqueAsyncAdapter implements IReservaEstoqueAsync
+	{
+		private final IReservaEstoque reserva;
+		private final Executor executor;
+
+		ComReserva(IReservaEstoque reserva, Executor executor)
+		{
+			super(reserva, executor);
+			this.reserva = reserva;
+			this.executor = executor;
+		}
+
+		@Override
+		public CompletableFuture<ReservaEstoqueDTO> reservar(List<Long> produtosIds, List<Long> produtosQuantidades,
+				Duration validade, Duration timeout)
+		{
+			return Futuros.executar(() -> reserva.reservar(produtosIds, produtosQuantidades, validade), executor,
+					timeout);
+		}
+
+		@Override
+		public CompletableFuture<EstoqueBaixaDTO> confirmarReserva(Long reservaId, Duration timeout)
+		{
+			return Futuros.executar(() -> reserva.confirmarReserva(reservaId), executor, timeout);
+		}
+
+		@Override
+		public CompletableFuture<Void> liberarReserva(Long reservaId, Duration timeout)
+		{
+			return Futuros.executar(() -> {
+				reserva.liberarReserva(reservaId);
+				return null;
+			}, executor, timeout);
+		}
+	}
+}
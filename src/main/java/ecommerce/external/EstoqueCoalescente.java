@@ -0,0 +1,269 @@
+package ecommerce.external;
+
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ScheduledFuture;
+import java.util.concurrent.ScheduledThreadPoolExecutor;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.locks.ReentrantLock;
+
+import ecommerce.dto.DisponibilidadeDTO;
+import ecommerce.dto.EstoqueBaixaDTO;
+import ecommerce.dto.ReservaEstoqueDTO;
+
+/**
+ * Decorador de {@link IEstoqueExternal} que agrupa chamadas concorrentes de
+ * {@link #verificarDisponibilidade} (group commit). Os pedidos que chegam dentro da janela
+ * configurada, ou até atingir o tamanho máximo do lote, seguem ao serviço de estoque como
+ * uma única consulta com as quantidades somadas por produto.
+ * <p>
+ * Se a soma é atendida, todos os chamadores recebem "disponível". Caso contrário, os
+ * chamadores cujos produtos não aparecem como indisponíveis também recebem "disponível" e
+ * apenas os afetados são consultados individualmente, recebendo a própria lista de
+ * {@code idsProdutosIndisponiveis}. As demais operações são repassadas diretamente.
+ */
+public class EstoqueCoalescente implements IEstoqueExternal
+{
+	private final IEstoqueExternal estoque;
+	private final Duration janela;
+	private final int tamanhoMaximo;
+	private final ScheduledExecutorService agendador;
+	private final ExecutorService despachante;
+
+	private final ReentrantLock lock = new ReentrantLock();
+	private List<Pedido> pendentes = new ArrayList<>();
+	private ScheduledFuture<?> disparoAgendado;
+
+	private final AtomicLong chamadasRecebidas = new AtomicLong();
+	private final AtomicLong chamadasEnviadas = new AtomicLong();
+
+	/**
+	 * Agrupa as verificações do estoque, implementando também {@link IReservaEstoque} se ele
+	 * a implementa. As reservas são repassadas diretamente.
+	 */
+	public static EstoqueCoalescente de(IEstoqueExternal estoque, Duration janela, int tamanhoMaximo)
+	{
+		if (estoque instanceof IReservaEstoque reserva)
+		{
+			return new ComReserva(reserva, janela, tamanhoMaximo);
+		}
+		return new EstoqueCoalescente(estoque, janela, tamanhoMaximo);
+	}
+
+	private EstoqueCoalescente(IEstoqueExternal estoque, Duration janela, int tamanhoMaximo)
+	{
+		if (tamanhoMaximo < 1)
+		{
+			throw new IllegalArgumentException("Tamanho máximo do lote deve ser positivo.");
+		}
+
+		this.estoque = estoque;
+		this.janela = janela;
+		this.tamanhoMaximo = tamanhoMaximo;
+
+		// Threads próprias: os chamadores podem ocupar todas as threads do executor do estoque
+		// enquanto aguardam o lote, então o envio por tempo não pode depender dele.
+		ScheduledThreadPoolExecutor scheduler = new ScheduledThreadPoolExecutor(1,
+				threadDaemon("estoque-coalescente-timer"));
+		scheduler.setRemoveOnCancelPolicy(true);
+		this.agendador = scheduler;
+		this.despachante = Executors.newCachedThreadPool(threadDaemon("estoque-coalescente"));
+	}
+
+	@Override
+	public DisponibilidadeDTO verificarDisponibilidade(List<Long> produtosIds, List<Long> produtosQuantidades)
+	{
+		chamadasRecebidas.incrementAndGet();
+
+		if (produtosIds == null || produtosQuantidades == null || produtosIds.size() != produtosQuantidades.size())
+		{
+			chamadasEnviadas.incrementAndGet();
+			return estoque.verificarDisponibilidade(produtosIds, produtosQuantidades);
+		}
+
+		Pedido pedido = new Pedido(produtosIds, produtosQuantidades, new CompletableFuture<>());
+		List<Pedido> loteCheio = null;
+
+		lock.lock();
+		try
+		{
+			pendentes.add(pedido);
+			if (pendentes.size() >= tamanhoMaximo)
+			{
+				loteCheio = retirarPendentes();
+			}
+			else if (pendentes.size() == 1)
+			{
+				disparoAgendado = agendador.schedule(this::dispararPorTempo, janela.toNanos(), TimeUnit.NANOSECONDS);
+			}
+		}
+		finally
+		{
+			lock.unlock();
+		}
+
+		if (loteCheio != null)
+		{
+			// Quem fecha o lote envia a consulta na própria thread, que ficaria bloqueada
+			// de qualquer forma
+			enviar(loteCheio);
+		}
+
+		return Futuros.aguardar(pedido.resposta());
+	}
+
+	public long chamadasRecebidas()
+	{
+		return chamadasRecebidas.get();
+	}
+
+	public long chamadasEnviadas()
+	{
+		return chamadasEnviadas.get();
+	}
+
+	private void dispararPorTempo()
+	{
+		List<Pedido> lote;
+
+		lock.lock();
+		try
+		{
+			lote = retirarPendentes();
+		}
+		finally
+		{
+			lock.unlock();
+		}
+
+		if (!lote.isEmpty())
+		{
+			despachante.execute(() -> enviar(lote));
+		}
+	}
+
+	/**
+	 * Deve ser chamado com o lock adquirido.
+	 */
+	private List<Pedido> retirarPendentes()
+	{
+		List<Pedido> lote = pendentes;
+		pendentes = new ArrayList<>();
+
+		if (disparoAgendado != null)
+		{
+			disparoAgendado.cancel(false);
+			disparoAgendado = null;
+		}
+		return lote;
+	}
+
+	private void enviar(List<Pedido> lote)
+	{
+		try
+		{
+			if (lote.size() == 1)
+			{
+				Pedido pedido = lote.get(0);
+				pedido.resposta().complete(consultarIndividualmente(pedido));
+				return;
+			}
+
+			ConsultaEstoqueAgregada consulta = new ConsultaEstoqueAgregada();
+			for (Pedido pedido : lote)
+			{
+				consulta.adicionar(pedido.produtosIds(), pedido.produtosQuantidades());
+			}
+
+			chamadasEnviadas.incrementAndGet();
+			DisponibilidadeDTO agregada = estoque.verificarDisponibilidade(consulta.produtosIds(),
+					consulta.produtosQuantidades());
+			List<Long> indisponiveis = agregada.idsProdutosIndisponiveis() == null ? List.of()
+					: agregada.idsProdutosIndisponiveis();
+
+			for (Pedido pedido : lote)
+			{
+				boolean naoAfetado = !indisponiveis.isEmpty()
+						&& !ConsultaEstoqueAgregada.afetado(pedido.produtosIds(), indisponiveis);
+				if (agregada.disponivel() || naoAfetado)
+				{
+					pedido.resposta().complete(new DisponibilidadeDTO(true, new ArrayList<>()));
+				}
+				else
+				{
+					pedido.resposta().complete(consultarIndividualmente(pedido));
+				}
+			}
+		}
+		catch (RuntimeException e)
+		{
+			for (Pedido pedido : lote)
+			{
+				pedido.resposta().completeExceptionally(e);
+			}
+		}
+	}
+
+	private DisponibilidadeDTO consultarIndividualmente(Pedido pedido)
+	{
+		chamadasEnviadas.incrementAndGet();
+		return estoque.verificarDisponibilidade(pedido.produtosIds(), pedido.produtosQuantidades());
+	}
+
+	@Override
+	public EstoqueBaixaDTO darBaixa(List<Long> produtosIds, List<Long> produtosQuantidades)
+	{
+		return estoque.darBaixa(produtosIds, produtosQuantidades);
+	}
+
+
+	private static final class ComReserva extends EstoqueCoalescente implements IReservaEstoque
+	{
+		private final IReservaEstoque reserva;
+
+		ComReserva(IReservaEstoque reserva, Duration janela, int tamanhoMaximo)
+		{
+			super(reserva, janela, tamanhoMaximo);
+			this.reserva = reserva;
+		}
+
+		@Override
+		public ReservaEstoqueDTO reservar(List<Long> produtosIds, List<Long> produtosQuantidades, Duration validade)
+		{
+			return reserva.reservar(produtosIds, produtosQuantidades, validade);
+		}
+
+		@Override
+		public EstoqueBaixaDTO confirmarReserva(Long reservaId)
+		{
+			return reserva.confirmarReserva(reservaId);
+		}
+
+		@Override
+		public void liberarReserva(Long reservaId)
+		{
+			reserva.liberarReserva(reservaId);
+		}
+	}
+
+	private static ThreadFactory threadDaemon(String nome)
+	{
+		return tarefa -> {
+			Thread thread = new Thread(tarefa, nome);
+			thread.setDaemon(true);
+			return thread;
+		};
+	}
+
+	private record Pedido(List<Long> produtosIds, List<Long> produtosQuantidades,
+			CompletableFuture<DisponibilidadeDTO> resposta)
+	{
+	}
+}
@@ -0,0 +1,82 @@
+package ecommerce.external;
+
+import java.time.Duration;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+
+import ecommerce.dto.DisponibilidadeDTO;
+import ecommerce.dto.EstoqueBaixaDTO;
+import ecommerce.dto.ReservaEstoqueDTO;
+
+/**
+ * Aplica as proteções de {@link ProtecaoDependencia} a todas as chamadas ao estoque.
+ */
+public class EstoqueProtegido implements IEstoqueExternalAsync
+{
+	private final IEstoqueExternalAsync estoque;
+	private final ProtecaoDependencia protecao;
+
+	private EstoqueProtegido(IEstoqueExternalAsync estoque, ProtecaoDependencia protecao)
+	{
+		this.estoque = estoque;
+		this.protecao = protecao;
+	}
+
+	/**
+	 * Protege o estoque, implementando também {@link IReservaEstoqueAsync} se ele a implementa.
+	 */
+	public static IEstoqueExternalAsync de(IEstoqueExternalAsync estoque, ProtecaoDependencia protecao)
+	{
+		if (estoque instanceof IReservaEstoqueAsync reserva)
+		{
+			return new ComReserva(reserva, protecao);
+		}
+		return new EstoqueProtegido(estoque, protecao);
+	}
+
+	@Override
+	public CompletableFuture<EstoqueBaixaDTO> darBaixa(List<Long> produtosIds, List<Long> produtosQuantidades,
+			Duration timeout)
+	{
+		return protecao.executar(timeout, t -> estoque.darBaixa(produtosIds, produtosQuantidades, t));
+	}
+
+	@Override
+	public CompletableFuture<DisponibilidadeDTO> verificarDisponibilidade(List<Long> produtosIds,
+			List<Long> produtosQuantidades, Duration timeout)
+	{
+		return protecao.executar(timeout, t -> estoque.verificarDisponibilidade(produtosIds, produtosQuantidades, t));
+	}
+
+	private static final class ComReserva extends EstoqueProtegido implements IReservaEstoqueAsync
+	{
+		private final IReservaEstoqueAsync reserva;
+		private final ProtecaoDependencia protecao;
+
+		ComReserva(IReservaEstoqueAsync reserva, ProtecaoDependencia protecao)
+		{
+			super(reserva, protecao);
+			this.reserva = reserva;
+			this.protecao = protecao;
+		}
+
+		@Override
+		public CompletableFuture<ReservaEstoqueDTO> reservar(List<Long> produtosIds, List<Long> produtosQuantidades,
+				Duration validade, Duration timeout)
+		{
+			return protecao.executar(timeout, t -> reserva.reservar(produtosIds, produtosQuantidades, validade, t));
+		}
+
+		@Override
+		public CompletableFuture<EstoqueBaixaDTO> confirmarReserva(Long reservaId, Duration timeout)
+		{
+			return protecao.executar(timeout, t -> reserva.confirmarReserva(reservaId, t));
+		}
+
+		@Override
+		public CompletableFuture<Void> liberarReserva(Long reservaId, Duration timeout)
+		{
+			return protecao.executar(timeout, t -> reserva.liberarReserva(reservaId, t));
+		}
+	}
+}
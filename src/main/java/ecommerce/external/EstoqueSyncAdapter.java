@@ -0,0 +1,80 @@
+package ecommerce.external;
+
+import java.time.Duration;
+import java.util.List;
+
+import ecommerce.dto.DisponibilidadeDTO;
+import ecommerce.dto.EstoqueBaixaDTO;
+import ecommerce.dto.ReservaEstoqueDTO;
+
+/**
+ * Expõe uma implementação assíncrona de {@link IEstoqueExternalAsync} como
+ * {@link IEstoqueExternal}, bloqueando até a resposta ou até o prazo configurado.
+ */
+public class EstoqueSyncAdapter implements IEstoqueExternal
+{
+	private final IEstoqueExternalAsync estoque;
+	private final Duration timeout;
+
+	private EstoqueSyncAdapter(IEstoqueExternalAsync estoque, Duration timeout)
+	{
+		this.estoque = estoque;
+		this.timeout = timeout;
+	}
+
+	/**
+	 * Adapta o estoque, implementando também {@link IReservaEstoque} se ele implementa
+	 * {@link IReservaEstoqueAsync}.
+	 */
+	public static IEstoqueExternal de(IEstoqueExternalAsync estoque, Duration timeout)
+	{
+		if (estoque instanceof IReservaEstoqueAsync reserva)
+		{
+			return new ComReserva(reserva, timeout);
+		}
+		return new EstoqueSyncAdapter(estoque, timeout);
+	}
+
+	@Override
+	public EstoqueBaixaDTO darBaixa(List<Long> produtosIds, List<Long> produtosQuantidades)
+	{
+		return Futuros.aguardar(estoque.darBaixa(produtosIds, produtosQuantidades, timeout));
+	}
+
+	@Override
+	public DisponibilidadeDTO verificarDisponibilidade(List<Long> produtosIds, List<Long> produtosQuantidades)
+	{
+		return Futuros.aguardar(estoque.verificarDisponibilidade(produtosIds, produtosQuantidades, timeout));
+	}
+
+	private static final class ComReserva extends EstoqueSyncAdapter implements IReservaEstoque
+	{
+		private final IReservaEstoqueAsync reserva;
+		private final Duration timeout;
+
+		ComReserva(IReservaEstoqueAsync reserva, Duration timeout)
+		{
+			super(reserva, timeout);
+			this.reserva = reserva;
+			this.timeout = timeout;
+		}
+
+		@Override
+		public ReservaEstoqueDTO reservar(List<Long> produtosIds, List<Long> produtosQuantidades, Duration validade)
+		{
+			return Futuros.aguardar(reserva.reservar(produtosIds, produtosQuantidades, validade, timeout));
+		}
+
+		@Override
+		public EstoqueBaixaDTO confirmarReserva(Long reservaId)
+		{
+			return Futuros.aguardar(reserva.confirmarReserva(reservaId, timeout));
+		}
+
+		@Override
+		public void liberarReserva(Long reservaId)
+		{
+			Futuros.aguardar(reserva.liberarReserva(reservaId, timeout));
+		}
+	}
+}
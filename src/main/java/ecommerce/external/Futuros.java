@@ -0,0 +1,151 @@
+package ecommerce.external;
+
+import java.time.Duration;
+import java.util.concurrent.CancellationException;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Executor;
+import java.util.concurrent.Future;
+import java.util.concurrent.FutureTask;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+import java.util.function.Supplier;
+
+/**
+ * Utilitários para aguardar chamadas externas assíncronas de forma síncrona.
+ */
+public final class Futuros
+{
+	private Futuros()
+	{
+	}
+
+	/**
+	 * Executa a chamada bloqueante no executor com prazo de {@code timeout}. Diferente de
+	 * {@link CompletableFuture#supplyAsync}, o cancelamento ou o esgotamento do prazo
+	 * interrompem a thread que executa a chamada, em vez de só descartar o resultado.
+	 */
+	public static <T> CompletableFuture<T> executar(Supplier<T> chamada, Executor executor, Duration timeout)
+	{
+		CompletableFuture<T> resultado = new CompletableFuture<>();
+		FutureTask<T> tarefa = new FutureTask<>(chamada::get)
+		{
+			@Override
+			protected void done()
+			{
+				try
+				{
+					resultado.complete(get());
+				}
+				catch (ExecutionException e)
+				{
+					resultado.completeExceptionally(e.getCause());
+				}
+				catch (CancellationException | InterruptedException e)
+				{
+					// Cancelada a partir do próprio resultado, que já está completo
+				}
+			}
+		};
+		resultado.whenComplete((valor, erro) -> {
+			if (erro != null)
+			{
+				tarefa.cancel(true);
+			}
+		});
+
+		try
+		{
+			executor.execute(tarefa);
+		}
+		catch (RejectedExecutionException e)
+		{
+			resultado.completeExceptionally(e);
+		}
+		return resultado.orTimeout(timeout.toMillis(), TimeUnit.MILLISECONDS);
+	}
+
+	/**
+	 * Repassa à {@code origem} o cancelamento de {@code derivado}. Cancelar um estágio
+	 * derivado ({@code thenApply}, {@code whenComplete}) não cancela o estágio de origem.
+	 *
+	 * @return o próprio {@code derivado}
+	 */
+	public static <T> CompletableFuture<T> cancelandoOrigem(CompletableFuture<T> derivado, Future<?> origem)
+	{
+		derivado.whenComplete((valor, erro) -> {
+			if (derivado.isCancelled())
+			{
+				origem.cancel(true);
+			}
+		});
+		return derivado;
+	}
+
+	/**
+	 * Aguarda o future e relança a exceção original da chamada, sem os invólucros de
+	 * {@link CompletionException}.
+	 */
+	public static <T> T aguardar(CompletableFuture<T> future)
+	{
+		try
+		{
+			return future.join();
+		}
+		catch (CompletionException e)
+		{
+			throw desembrulhar(e);
+		}
+	}
+
+	/**
+	 * Como {@link #aguardar(CompletableFuture)}, desistindo após {@code timeout} com
+	 * {@link ServicoIndisponivelException}. O future não é cancelado.
+	 */
+	public static <T> T aguardar(CompletableFuture<T> future, Duration timeout)
+	{
+		try
+		{
+			return future.get(timeout.toNanos(), TimeUnit.NANOSECONDS);
+		}
+		catch (ExecutionException e)
+		{
+			throw desembrulhar(e);
+		}
+		catch (TimeoutException e)
+		{
+			throw new ServicoIndisponivelException("Tempo esgotado aguardando o resultado.", e);
+		}
+		catch (InterruptedException e)
+		{
+			Thread.currentThread().interrupt();
+			throw new IllegalStateException("Interrompido aguardando o resultado.", e);
+		}
+	}
+
+	public static RuntimeException desembrulhar(Throwable erro)
+	{
+		Throwable causa = erro;
+		while ((causa instanceof CompletionException || causa instanceof ExecutionException)
+				&& causa.getCause() != null)
+		{
+			causa = causa.getCause();
+		}
+
+		if (causa instanceof RuntimeException runtime)
+		{
+			return runtime;
+		}
+		if (causa instanceof Error error)
+		{
+			throw error;
+		}
+		if (causa instanceof TimeoutException)
+		{
+			return new ServicoIndisponivelException("Tempo esgotado aguardando serviço externo.", causa);
+		}
+		return new IllegalStateException("Falha ao chamar serviço externo.", causa);
+	}
+}
@@ -5,6 +5,10 @@ import java.util.List;
 import ecommerce.dto.DisponibilidadeDTO;
 import ecommerce.dto.EstoqueBaixaDTO;
 
+/**
+ * Serviço de estoque. Implementações que também oferecem reserva implementam
+ * {@link IReservaEstoque}.
+ */
 public interface IEstoqueExternal
 {
 
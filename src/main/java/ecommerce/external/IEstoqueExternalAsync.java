@@ -0,0 +1,23 @@
+package ecommerce.external;
+
+import java.time.Duration;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+
+import ecommerce.dto.DisponibilidadeDTO;
+import ecommerce.dto.EstoqueBaixaDTO;
+
+/**
+ * Versão assíncrona de {@link IEstoqueExternal}. Os futures completam com
+ * {@link java.util.concurrent.TimeoutException} quando o prazo informado se esgota.
+ */
+public interface IEstoqueExternalAsync
+{
+
+	public CompletableFuture<EstoqueBaixaDTO> darBaixa(List<Long> produtosIds, List<Long> produtosQuantidades,
+			Duration timeout);
+
+	public CompletableFuture<DisponibilidadeDTO> verificarDisponibilidade(List<Long> produtosIds,
+			List<Long> produtosQuantidades, Duration timeout);
+
+}
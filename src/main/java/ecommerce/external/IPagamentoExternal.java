@@ -1,5 +1,6 @@
 package ecommerce.external;
 
+import ecommerce.dto.Dinheiro;
 import ecommerce.dto.PagamentoDTO;
 
 public interface IPagamentoExternal
@@ -8,4 +9,12 @@ public interface IPagamentoExternal
 	PagamentoDTO autorizarPagamento(Long clienteId, Double custoTotal);
 
 	void cancelarPagamento(Long clienteId, Long pagamentoTransacaoId);
+
+	/**
+	 * Valor exato em centavos. Sem sobrescrever, repassa o valor como {@code double}.
+	 */
+	default PagamentoDTO autorizarPagamento(Long clienteId, Dinheiro valor)
+	{
+		return autorizarPagamento(clienteId, valor.emReaisDouble());
+	}
 }
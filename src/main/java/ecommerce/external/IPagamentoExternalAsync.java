@@ -0,0 +1,19 @@
+package ecommerce.external;
+
+import java.time.Duration;
+import java.util.concurrent.CompletableFuture;
+
+import ecommerce.dto.Dinheiro;
+import ecommerce.dto.PagamentoDTO;
+
+/**
+ * Versão assíncrona de {@link IPagamentoExternal}. Os futures completam com
+ * {@link java.util.concurrent.TimeoutException} quando o prazo informado se esgota.
+ */
+public interface IPagamentoExternalAsync
+{
+
+	CompletableFuture<PagamentoDTO> autorizarPagamento(Long clienteId, Dinheiro valor, Duration timeout);
+
+	CompletableFuture<Void> cancelarPagamento(Long clienteId, Long pagamentoTransacaoId, Duration timeout);
+}
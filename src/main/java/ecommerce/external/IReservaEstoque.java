@@ -0,0 +1,32 @@
+package ecommerce.external;
+
+import java.time.Duration;
+import java.util.List;
+
+import ecommerce.dto.EstoqueBaixaDTO;
+import ecommerce.dto.ReservaEstoqueDTO;
+
+/**
+ * Serviço de estoque com protocolo de reserva. O checkout usa a reserva no lugar do par
+ * verificarDisponibilidade + darBaixa quando o estoque implementa esta interface.
+ */
+public interface IReservaEstoque extends IEstoqueExternal
+{
+
+	/**
+	 * Reserva atomicamente as quantidades informadas. A reserva segura o estoque até ser
+	 * confirmada, liberada ou até expirar após {@code validade}.
+	 */
+	public ReservaEstoqueDTO reservar(List<Long> produtosIds, List<Long> produtosQuantidades, Duration validade);
+
+	/**
+	 * Converte a reserva em baixa definitiva. Falha se a reserva não existe ou expirou.
+	 */
+	public EstoqueBaixaDTO confirmarReserva(Long reservaId);
+
+	/**
+	 * Devolve ao estoque as quantidades de uma reserva ainda não confirmada.
+	 */
+	public void liberarReserva(Long reservaId);
+
+}
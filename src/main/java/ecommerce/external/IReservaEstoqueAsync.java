@@ -0,0 +1,23 @@
+package ecommerce.external;
+
+import java.time.Duration;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+
+import ecommerce.dto.EstoqueBaixaDTO;
+import ecommerce.dto.ReservaEstoqueDTO;
+
+/**
+ * Versão assíncrona de {@link IReservaEstoque}.
+ */
+public interface IReservaEstoqueAsync extends IEstoqueExternalAsync
+{
+
+	public CompletableFuture<ReservaEstoqueDTO> reservar(List<Long> produtosIds, List<Long> produtosQuantidades,
+			Duration validade, Duration timeout);
+
+	public CompletableFuture<EstoqueBaixaDTO> confirmarReserva(Long reservaId, Duration timeout);
+
+	public CompletableFuture<Void> liberarReserva(Long reservaId, Duration timeout);
+
+}
@@ -0,0 +1,40 @@
+package ecommerce.external;
+
+import java.time.Duration;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.Executor;
+
+import ecommerce.dto.Dinheiro;
+import ecommerce.dto.PagamentoDTO;
+
+/**
+ * Expõe uma implementação síncrona de {@link IPagamentoExternal} como
+ * {@link IPagamentoExternalAsync}, executando cada chamada no executor informado. O timeout
+ * interrompe a chamada em andamento.
+ */
+public class PagamentoAsyncAdapter implements IPagamentoExternalAsync
+{
+	private final IPagamentoExternal pagamento;
+	private final Executor executor;
+
+	public PagamentoAsyncAdapter(IPagamentoExternal pagamento, Executor executor)
+	{
+		this.pagamento = pagamento;
+		this.executor = executor;
+	}
+
+	@Override
+	public CompletableFuture<PagamentoDTO> autorizarPagamento(Long clienteId, Dinheiro valor, Duration timeout)
+	{
+		return Futuros.executar(() -> pagamento.autorizarPagamento(clienteId, valor), executor, timeout);
+	}
+
+	@Override
+	public CompletableFuture<Void> cancelarPagamento(Long clienteId, Long pagamentoTransacaoId, Duration timeout)
+	{
+		return Futuros.executar(() -> {
+			pagamento.cancelarPagamento(clienteId, pagamentoTransacaoId);
+			return null;
+		}, executor, timeout);
+	}
+}
@@ -0,0 +1,34 @@
+package ecommerce.external;
+
+import java.time.Duration;
+import java.util.concurrent.CompletableFuture;
+
+import ecommerce.dto.Dinheiro;
+import ecommerce.dto.PagamentoDTO;
+
+/**
+ * Aplica as proteções de {@link ProtecaoDependencia} a todas as chamadas ao pagamento.
+ */
+public class PagamentoProtegido implements IPagamentoExternalAsync
+{
+	private final IPagamentoExternalAsync pagamento;
+	private final ProtecaoDependencia protecao;
+
+	public PagamentoProtegido(IPagamentoExternalAsync pagamento, ProtecaoDependencia protecao)
+	{
+		this.pagamento = pagamento;
+		this.protecao = protecao;
+	}
+
+	@Override
+	public CompletableFuture<PagamentoDTO> autorizarPagamento(Long clienteId, Dinheiro valor, Duration timeout)
+	{
+		return protecao.executar(timeout, t -> pagamento.autorizarPagamento(clienteId, valor, t));
+	}
+
+	@Override
+	public CompletableFuture<Void> cancelarPagamento(Long clienteId, Long pagamentoTransacaoId, Duration timeout)
+	{
+		return protecao.executar(timeout, t -> pagamento.cancelarPagamento(clienteId, pagamentoTransacaoId, t));
+	}
+}
@@ -0,0 +1,41 @@
+package ecommerce.external;
+
+import java.math.BigDecimal;
+import java.time.Duration;
+
+import ecommerce.dto.Dinheiro;
+import ecommerce.dto.PagamentoDTO;
+
+/**
+ * Expõe uma implementação assíncrona de {@link IPagamentoExternalAsync} como
+ * {@link IPagamentoExternal}, bloqueando até a resposta ou até o prazo configurado.
+ */
+public class PagamentoSyncAdapter implements IPagamentoExternal
+{
+	private final IPagamentoExternalAsync pagamento;
+	private final Duration timeout;
+
+	public PagamentoSyncAdapter(IPagamentoExternalAsync pagamento, Duration timeout)
+	{
+		this.pagamento = pagamento;
+		this.timeout = timeout;
+	}
+
+	@Override
+	public PagamentoDTO autorizarPagamento(Long clienteId, Double custoTotal)
+	{
+		return autorizarPagamento(clienteId, Dinheiro.deReais(BigDecimal.valueOf(custoTotal)));
+	}
+
+	@Override
+	public PagamentoDTO autorizarPagamento(Long clienteId, Dinheiro valor)
+	{
+		return Futuros.aguardar(pagamento.autorizarPagamento(clienteId, valor, timeout));
+	}
+
+	@Override
+	public void cancelarPagamento(Long clienteId, Long pagamentoTransacaoId)
+	{
+		Futuros.aguardar(pagamento.cancelarPagamento(clienteId, pagamentoTransacaoId, timeout));
+	}
+}
@@ -0,0 +1,339 @@
+package ecommerce.external;
+
+import java.time.Duration;
+import java.util.Arrays;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.Executor;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.Function;
+
+/**
+ * Proteções de uma dependência externa (estoque ou pagamento):
+ * <ul>
+ * <li>timeout: limita o prazo de cada chamada ao configurado para a dependência;</li>
+ * <li>bulkhead: limita as chamadas simultâneas; as excedentes falham na hora. A permissão de
+ * uma chamada só volta quando o future dela completa e as tarefas que ela submeteu a
+ * {@link #executor(Executor)} terminam: uma chamada bloqueante que passou do timeout continua
+ * ocupando o limite enquanto prende uma thread;</li>
+ * <li>circuit breaker: com taxa de falhas acima do limite nas últimas chamadas, o circuito
+ * abre e as chamadas falham na hora até o fim do tempo aberto. Depois disso uma chamada de
+ * teste decide se o circuito fecha ou volta a abrir.</li>
+ * </ul>
+ * As rejeições completam o future com {@link ServicoIndisponivelException}.
+ */
+public class ProtecaoDependencia
+{
+	public enum EstadoCircuito
+	{
+		FECHADO, ABERTO, MEIO_ABERTO
+	}
+
+	/**
+	 * @param percentualFalhas percentual (1-100) de falhas na janela que abre o circuito
+	 * @param janela quantidade de chamadas recentes consideradas
+	 * @param minimoChamadas chamadas necessárias na janela antes de avaliar a taxa de falhas
+	 */
+	public record Configuracao(Duration timeout, int concorrenciaMaxima, int janela, int minimoChamadas,
+			int percentualFalhas, Duration tempoAberto)
+	{
+		public Configuracao
+		{
+			if (concorrenciaMaxima < 1 || janela < 1 || minimoChamadas < 1 || minimoChamadas > janela
+					|| percentualFalhas < 1 || percentualFalhas > 100)
+			{
+				throw new IllegalArgumentException("Configuração de proteção de dependência inválida.");
+			}
+		}
+	}
+
+	private final String nome;
+	private final Configuracao configuracao;
+	private final Semaphore permissoes;
+	// Permissão da chamada em andamento em executar(), lida por executor() na mesma thread
+	private final ThreadLocal<Permissao> permissaoAtual = new ThreadLocal<>();
+
+	// Janela circular de resultados, protegida por this
+	private final boolean[] falhas;
+	private int posicao;
+	private int registradas;
+	private int falhasNaJanela;
+	private EstadoCircuito estado = EstadoCircuito.FECHADO;
+	private long abertoAteNanos;
+	private boolean chamadaDeTesteEmAndamento;
+
+	private final AtomicLong rejeitadasCircuito = new AtomicLong();
+	private final AtomicLong rejeitadasConcorrencia = new AtomicLong();
+	private final AtomicLong falhasTotais = new AtomicLong();
+
+	public ProtecaoDependencia(String nome, Configuracao configuracao)
+	{
+		this.nome = nome;
+		this.configuracao = configuracao;
+		this.permissoes = new Semaphore(configuracao.concorrenciaMaxima());
+		this.falhas = new boolean[configuracao.janela()];
+	}
+
+	/**
+	 * Executa a chamada se o circuito e o limite de concorrência permitirem.
+	 *
+	 * @param chamada recebe o timeout efetivo: o menor entre o pedido e o da dependência
+	 */
+	public <T> CompletableFuture<T> executar(Duration timeoutSolicitado, Function<Duration, CompletableFuture<T>> chamada)
+	{
+		boolean chamadaDeTeste;
+		synchronized (this)
+		{
+			if (!permitirChamada())
+			{
+				rejeitadasCircuito.incrementAndGet();
+				return CompletableFuture.failedFuture(
+						new ServicoIndisponivelException("Serviço de " + nome + " indisponível no momento."));
+			}
+			chamadaDeTeste = estado == EstadoCircuito.MEIO_ABERTO;
+		}
+
+		if (!permissoes.tryAcquire())
+		{
+			rejeitadasConcorrencia.incrementAndGet();
+			if (chamadaDeTeste)
+			{
+				liberarChamadaDeTeste();
+			}
+			return CompletableFuture.failedFuture(
+					new ServicoIndisponivelException("Serviço de " + nome + " sobrecarregado no momento."));
+		}
+
+		Permissao permissao = new Permissao();
+		CompletableFuture<T> resultado;
+		permissaoAtual.set(permissao);
+		try
+		{
+			resultado = chamada.apply(limitar(timeoutSolicitado));
+		}
+		catch (RuntimeException e)
+		{
+			resultado = CompletableFuture.failedFuture(e);
+		}
+		finally
+		{
+			permissaoAtual.remove();
+		}
+
+		return Futuros.cancelandoOrigem(resultado.whenComplete((valor, erro) -> {
+			permissao.devolver();
+			registrar(erro == null);
+		}), resultado);
+	}
+
+	/**
+	 * Executor para as chamadas bloqueantes da dependência, sobre as threads informadas. Uma
+	 * tarefa submetida de dentro de {@link #executar} retém a permissão da chamada até
+	 * terminar de fato, mesmo que o timeout ou um cancelamento já tenham completado o future.
+	 */
+	public Executor executor(Executor threads)
+	{
+		return tarefa -> {
+			Permissao permissao = permissaoAtual.get();
+			if (permissao == null)
+			{
+				threads.execute(tarefa);
+				return;
+			}
+
+			permissao.reter();
+			try
+			{
+				threads.execute(() -> {
+					try
+					{
+						tarefa.run();
+					}
+					finally
+					{
+						permissao.devolver();
+					}
+				});
+			}
+			catch (RuntimeException e)
+			{
+				permissao.devolver();
+				throw e;
+			}
+		};
+	}
+
+	public String getNome()
+	{
+		return nome;
+	}
+
+	public Configuracao getConfiguracao()
+	{
+		return configuracao;
+	}
+
+	public synchronized EstadoCircuito getEstado()
+	{
+		if (estado == EstadoCircuito.ABERTO && System.nanoTime() - abertoAteNanos >= 0)
+		{
+			return EstadoCircuito.MEIO_ABERTO;
+		}
+		return estado;
+	}
+
+	public synchronized double getTaxaFalhas()
+	{
+		return registradas == 0 ? 0.0 : (double) falhasNaJanela / registradas;
+	}
+
+	public int getChamadasEmAndamento()
+	{
+		return configuracao.concorrenciaMaxima() - permissoes.availablePermits();
+	}
+
+	public long getRejeitadasCircuito()
+	{
+		return rejeitadasCircuito.get();
+	}
+
+	public long getRejeitadasConcorrencia()
+	{
+		return rejeitadasConcorrencia.get();
+	}
+
+	public long getFalhasTotais()
+	{
+		return falhasTotais.get();
+	}
+
+	private Duration limitar(Duration timeoutSolicitado)
+	{
+		if (timeoutSolicitado == null || timeoutSolicitado.compareTo(configuracao.timeout()) > 0)
+		{
+			return configuracao.timeout();
+		}
+		return timeoutSolicitado;
+	}
+
+	/**
+	 * Deve ser chamado com o monitor adquirido.
+	 */
+	private boolean permitirChamada()
+	{
+		switch (estado)
+		{
+			case FECHADO:
+				return true;
+			case ABERTO:
+				if (System.nanoTime() - abertoAteNanos < 0)
+				{
+					return false;
+				}
+				estado = EstadoCircuito.MEIO_ABERTO;
+				chamadaDeTesteEmAndamento = true;
+				return true;
+			default:
+				if (chamadaDeTesteEmAndamento)
+				{
+					return false;
+				}
+				chamadaDeTesteEmAndamento = true;
+				return true;
+		}
+	}
+
+	private synchronized void liberarChamadaDeTeste()
+	{
+		chamadaDeTesteEmAndamento = false;
+	}
+
+	private synchronized void registrar(boolean sucesso)
+	{
+		if (!sucesso)
+		{
+			falhasTotais.incrementAndGet();
+		}
+
+		if (estado == EstadoCircuito.MEIO_ABERTO)
+		{
+			chamadaDeTesteEmAndamento = false;
+			if (sucesso)
+			{
+				fechar();
+			}
+			else
+			{
+				abrir();
+			}
+			return;
+		}
+		if (estado == EstadoCircuito.ABERTO)
+		{
+			// Chamada iniciada antes da abertura; não altera o circuito
+			return;
+		}
+
+		if (registradas == falhas.length)
+		{
+			if (falhas[posicao])
+			{
+				falhasNaJanela--;
+			}
+		}
+		else
+		{
+			registradas++;
+		}
+		falhas[posicao] = !sucesso;
+		if (!sucesso)
+		{
+			falhasNaJanela++;
+		}
+		posicao = (posicao + 1) % falhas.length;
+
+		if (registradas >= configuracao.minimoChamadas()
+				&& falhasNaJanela * 100 >= configuracao.percentualFalhas() * registradas)
+		{
+			abrir();
+		}
+	}
+
+	private void abrir()
+	{
+		estado = EstadoCircuito.ABERTO;
+		abertoAteNanos = System.nanoTime() + configuracao.tempoAberto().toNanos();
+	}
+
+	private void fechar()
+	{
+		estado = EstadoCircuito.FECHADO;
+		posicao = 0;
+		registradas = 0;
+		falhasNaJanela = 0;
+		Arrays.fill(falhas, false);
+	}
+
+	/**
+	 * Permissão de uma chamada, devolvida ao semáforo quando o future e todas as tarefas
+	 * retidas terminam.
+	 */
+	private final class Permissao
+	{
+		private final AtomicInteger pendentes = new AtomicInteger(1);
+
+		void reter()
+		{
+			pendentes.incrementAndGet();
+		}
+
+		void devolver()
+		{
+			if (pendentes.decrementAndGet() == 0)
+			{
+				permissoes.release();
+			}
+		}
+	}
+}
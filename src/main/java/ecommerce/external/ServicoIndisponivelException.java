@@ -0,0 +1,21 @@
+package ecommerce.external;
+
+/**
+ * Serviço externo degradado: tempo esgotado, circuito aberto ou limite de chamadas
+ * simultâneas atingido. Estende {@link IllegalStateException} para que quem já trata falhas
+ * do checkout continue tratando estas; o controller a traduz em 503.
+ */
+public class ServicoIndisponivelException extends IllegalStateException
+{
+	private static final long serialVersionUID = 1L;
+
+	public ServicoIndisponivelException(String mensagem)
+	{
+		super(mensagem);
+	}
+
+	public ServicoIndisponivelException(String mensagem, Throwable causa)
+	{
+		super(mensagem, causa);
+	}
+}
@@ -1,16 +1,112 @@
 package ecommerce.repository;
 
+import java.util.Collection;
+import java.util.List;
 import java.util.Optional;
 
+import org.hibernate.jpa.AvailableHints;
+import org.springframework.data.domain.Pageable;
+import org.springframework.data.jpa.repository.EntityGraph;
 import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Lock;
+import org.springframework.data.jpa.repository.Modifying;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.jpa.repository.QueryHints;
+import org.springframework.data.repository.query.Param;
 import org.springframework.stereotype.Repository;
 
+import ecommerce.dto.LinhaCheckoutDTO;
 import ecommerce.entity.CarrinhoDeCompras;
 import ecommerce.entity.Cliente;
+import ecommerce.entity.ItemCompra;
+import jakarta.persistence.LockModeType;
+import jakarta.persistence.QueryHint;
 
 @Repository
 public interface CarrinhoDeComprasRepository extends JpaRepository<CarrinhoDeCompras, Long>
 {
 
+	/**
+	 * Carrinho como entidade, com cliente, itens e produtos numa única consulta, sem um SELECT
+	 * por item (o checkout usa {@link #findLinhasCheckout}). Só {@code itens} é coleção, então
+	 * o resultado tem uma linha por item, sem produto cartesiano.
+	 */
+	@EntityGraph(attributePaths = { "cliente", "itens", "itens.produto" })
 	Optional<CarrinhoDeCompras> findByIdAndCliente(Long id, Cliente cliente);
+
+	/**
+	 * Carrinho do cliente para alteração de itens, com a linha bloqueada até o fim da
+	 * transação: lotes de alterações do mesmo carrinho, vindos de instâncias ou threads
+	 * diferentes, são aplicados um de cada vez. Os itens são carregados depois, sem bloqueio
+	 * próprio.
+	 */
+	@Lock(LockModeType.PESSIMISTIC_WRITE)
+	@Query("select c from CarrinhoDeCompras c where c.id = :carrinhoId and c.cliente = :cliente")
+	Optional<CarrinhoDeCompras> findParaAlteracao(@Param("carrinhoId") Long carrinhoId,
+			@Param("cliente") Cliente cliente);
+
+	/**
+	 * Linhas do carrinho do cliente para o checkout: só id, quantidade, preço, peso e
+	 * fragilidade, mais a versão do carrinho, sem entidades no contexto de persistência nem
+	 * verificação de alterações no commit. Vazio se o carrinho não existe, é de outro cliente
+	 * ou não tem itens. A página limita as linhas lidas: uma página cheia indica um carrinho
+	 * grande, sem uma contagem à parte.
+	 */
+	@Query("select new ecommerce.dto.LinhaCheckoutDTO(i.id, p.id, i.quantidade, p.preco, p.pesoFisico, p.fragil, "
+			+ "c.versao) "
+			+ "from CarrinhoDeCompras c join c.itens i join i.produto p "
+			+ "where c.id = :carrinhoId and c.cliente = :cliente order by i.id")
+	@QueryHints({ @QueryHint(name = AvailableHints.HINT_READ_ONLY, value = "true"),
+			@QueryHint(name = AvailableHints.HINT_FLUSH_MODE, value = "MANUAL") })
+	List<LinhaCheckoutDTO> findLinhasCheckout(@Param("carrinhoId") Long carrinhoId, @Param("cliente") Cliente cliente,
+			Pageable pagina);
+
+	/**
+	 * Versão do conteúdo do carrinho do cliente, sem carregar itens.
+	 */
+	@Query("select c.versao from CarrinhoDeCompras c where c.id = :carrinhoId and c.cliente.id = :clienteId")
+	Optional<Long> findVersao(@Param("carrinhoId") Long carrinhoId, @Param("clienteId") Long clienteId);
+
+	/**
+	 * Carrega vários carrinhos com clientes, itens e produtos numa única consulta (checkout em
+	 * lote).
+	 */
+	@EntityGraph(attributePaths = { "cliente", "itens", "itens.produto" })
+	List<CarrinhoDeCompras> findAllByIdIn(Collection<Long> ids);
+
+	/**
+	 * Próxima página de ids em ordem crescente, a partir de {@code aposId} (paginação por
+	 * chave, sem OFFSET: o custo de cada página não cresce com a posição).
+	 */
+	@Query("select c.id from CarrinhoDeCompras c where c.id > :aposId order by c.id")
+	List<Long> findIdsAposId(@Param("aposId") Long aposId, Pageable pagina);
+
+	/**
+	 * Próxima página de itens do carrinho (com produtos) em ordem de id, a partir de
+	 * {@code aposItemId}, para carrinhos grandes demais para carregar de uma vez.
+	 */
+	@Query("select i from CarrinhoDeCompras c join c.itens i join fetch i.produto "
+			+ "where c.id = :carrinhoId and i.id > :aposItemId order by i.id")
+	List<ItemCompra> findItensAposId(@Param("carrinhoId") Long carrinhoId, @Param("aposItemId") Long aposItemId,
+			Pageable pagina);
+
+	/**
+	 * Descarta os totais gravados dos carrinhos que contêm o produto, após alteração de preço,
+	 * peso ou fragilidade. O custo desses carrinhos volta a ser calculado item a item até a
+	 * próxima alteração de itens.
+	 */
+	@Modifying
+	@Query("update CarrinhoDeCompras c set c.totais.subtotalCentavos = null, c.totais.pesoGramas = null, "
+			+ "c.totais.unidadesFrageis = null, c.totais.linhas = null "
+			+ "where c.id in (select c2.id from CarrinhoDeCompras c2 join c2.itens i where i.produto.id = :produtoId)")
+	int invalidarTotaisComProduto(@Param("produtoId") Long produtoId);
+
+	/**
+	 * Descarta os totais gravados de todos os carrinhos após alterar o catálogo inteiro.
+	 */
+	@Modifying
+	@Query("update CarrinhoDeCompras c set c.totais.subtotalCentavos = null, c.totais.pesoGramas = null, "
+			+ "c.totais.unidadesFrageis = null, c.totais.linhas = null "
+			+ "where c.totais.subtotalCentavos is not null")
+	int invalidarTotais();
 }
@@ -1,11 +1,23 @@
 package ecommerce.repository;
 
+import java.util.List;
+
+import org.hibernate.jpa.AvailableHints;
 import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.QueryHints;
 import org.springframework.stereotype.Repository;
 
 import ecommerce.entity.Cliente;
+import jakarta.persistence.QueryHint;
 
 @Repository
 public interface ClienteRepository extends JpaRepository<Cliente, Long>
 {
+	/**
+	 * Consulta em cache: ids de uma consulta repetida vêm do cache de consultas e as entidades,
+	 * do cache de segundo nível. Invalidada pelo Hibernate quando a tabela muda.
+	 */
+	@Override
+	@QueryHints(@QueryHint(name = AvailableHints.HINT_CACHEABLE, value = "true"))
+	List<Cliente> findAllById(Iterable<Long> ids);
 }
\ No newline at end of file
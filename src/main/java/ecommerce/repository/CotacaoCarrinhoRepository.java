@@ -0,0 +1,11 @@
+package ecommerce.repository;
+
+import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.stereotype.Repository;
+
+import ecommerce.entity.CotacaoCarrinho;
+
+@Repository
+public interface CotacaoCarrinhoRepository extends JpaRepository<CotacaoCarrinho, Long>
+{
+}
@@ -0,0 +1,39 @@
+package ecommerce.repository;
+
+import java.time.Instant;
+import java.util.List;
+
+import org.springframework.data.domain.Pageable;
+import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Modifying;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.repository.query.Param;
+import org.springframework.stereotype.Repository;
+import org.springframework.transaction.annotation.Transactional;
+
+import ecommerce.entity.EventoOutbox;
+import ecommerce.entity.StatusEventoOutbox;
+
+@Repository
+public interface EventoOutboxRepository extends JpaRepository<EventoOutbox, Long>
+{
+
+	/**
+	 * Próximo lote de eventos prontos para entrega, do mais antigo para o mais novo.
+	 */
+	List<EventoOutbox> findByStatusAndProximaTentativaEmLessThanEqualOrderByIdAsc(StatusEventoOutbox status,
+			Instant agora, Pageable pagina);
+
+	/**
+	 * Reserva o evento para uma instância do despachante: adia a próxima tentativa até o fim
+	 * da reserva e avança a versão, desde que o evento continue pendente na versão lida.
+	 * Retorna 0 quando outra instância já o reservou; a reserva vence sozinha se a instância
+	 * cair antes de gravar o resultado da entrega.
+	 */
+	@Modifying
+	@Transactional
+	@Query("update EventoOutbox e set e.proximaTentativaEm = :reservadoAte, e.versao = e.versao + 1 "
+			+ "where e.id = :id and e.versao = :versao and e.status = :status")
+	int reservar(@Param("id") Long id, @Param("versao") Long versao, @Param("status") StatusEventoOutbox status,
+			@Param("reservadoAte") Instant reservadoAte);
+}
@@ -0,0 +1,554 @@
+package ecommerce.service;
+
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ScheduledFuture;
+import java.util.concurrent.ScheduledThreadPoolExecutor;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.locks.ReentrantLock;
+import java.util.function.Function;
+import java.util.stream.Collectors;
+
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.support.TransactionOperations;
+
+import ecommerce.dto.AlteracaoItemDTO;
+import ecommerce.dto.CarrinhoAtualizadoDTO;
+import ecommerce.entity.CarrinhoDeCompras;
+import ecommerce.entity.Cliente;
+import ecommerce.entity.ItemCompra;
+import ecommerce.entity.Produto;
+import ecommerce.external.Futuros;
+import ecommerce.external.ServicoIndisponivelException;
+import ecommerce.repository.CarrinhoDeComprasRepository;
+import ecommerce.repository.ProdutoRepository;
+import io.micrometer.core.instrument.FunctionCounter;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.binder.MeterBinder;
+import jakarta.annotation.PreDestroy;
+
+/**
+ * Alteração das linhas de um carrinho em lotes. Cada lote é aplicado numa única transação,
+ * com o carrinho bloqueado e os INSERTs, UPDATEs e DELETEs de itens enviados em lotes JDBC.
+ * <p>
+ * As requisições de um mesmo carrinho são agrupadas (write coalescing): a primeira abre um
+ * lote, que fica aberto pela janela configurada, e as seguintes entram nele até o fim da
+ * janela ou o tamanho máximo, o que vier primeiro. Um lote aberto enquanto outro do mesmo
+ * carrinho é gravado segue ao fim dessa gravação, se ela terminar antes da janela. As
+ * alterações de um mesmo produto são combinadas na ordem de chegada e o lote inteiro custa
+ * uma gravação. Todas as requisições do lote recebem o estado final do carrinho. Se o lote é
+ * rejeitado (produto inexistente, por exemplo), cada requisição é aplicada individualmente,
+ * para que uma alteração inválida não derrube as demais. Janela zero desliga o agrupamento.
+ * <p>
+ * Os lotes fechados por tempo são gravados num pool limitado; com a fila cheia, as requisições
+ * do lote recebem o {@link RejectedExecutionException}. Quem espera a gravação desiste após o
+ * prazo configurado, maior que a janela; as alterações dele continuam no lote e são gravadas.
+ */
+@Service
+public class AlteracaoCarrinhoService implements MeterBinder
+{
+	private final CarrinhoDeComprasRepository carrinhoRepository;
+	private final ProdutoRepository produtoRepository;
+	private final ClienteService clienteService;
+	private final TransactionOperations transacoes;
+
+	private final Duration janela;
+	private final int tamanhoMaximo;
+	private final Duration timeout;
+	private final ScheduledExecutorService agendador;
+	private final ExecutorService despachante;
+
+	private final ReentrantLock lock = new ReentrantLock();
+	private final Map<Chave, Lote> abertos = new HashMap<>();
+	// Lotes em gravação por carrinho
+	private final Map<Chave, Integer> emGravacao = new HashMap<>();
+
+	private final AtomicLong requisicoes = new AtomicLong();
+	private final AtomicLong gravacoes = new AtomicLong();
+
+	@Autowired
+	public AlteracaoCarrinhoService(CarrinhoDeComprasRepository carrinhoRepository,
+			ProdutoRepository produtoRepository, ClienteService clienteService, TransactionOperations transacoes,
+			@Value("${ecommerce.carrinho.alteracoes.janela:300ms}") Duration janela,
+			@Value("${ecommerce.carrinho.alteracoes.tamanho-maximo:50}") int tamanhoMaximo,
+			@Value("${ecommerce.carrinho.alteracoes.timeout:5s}") Duration timeout,
+			@Value("${ecommerce.carrinho.alteracoes.threads:4}") int threads,
+			@Value("${ecommerce.carrinho.alteracoes.fila:1000}") int capacidadeFila)
+	{
+		if (janela.isNegative())
+		{
+			throw new IllegalArgumentException("Janela de agrupamento de alterações não pode ser negativa.");
+		}
+		if (tamanhoMaximo < 1)
+		{
+			throw new IllegalArgumentException("Tamanho máximo do lote de alterações deve ser positivo.");
+		}
+		if (timeout.isNegative() || timeout.isZero())
+		{
+			throw new IllegalArgumentException("Prazo de espera das alterações deve ser positivo.");
+		}
+		if (timeout.compareTo(janela) <= 0)
+		{
+			throw new IllegalArgumentException("Prazo de espera das alterações deve ser maior que a janela.");
+		}
+
+		this.carrinhoRepository = carrinhoRepository;
+		this.produtoRepository = produtoRepository;
+		this.clienteService = clienteService;
+		this.transacoes = transacoes;
+		this.janela = janela;
+		this.tamanhoMaximo = tamanhoMaximo;
+		this.timeout = timeout;
+
+		ScheduledThreadPoolExecutor scheduler = new ScheduledThreadPoolExecutor(1,
+				threadDaemon("alteracao-carrinho-timer"));
+		scheduler.setRemoveOnCancelPolicy(true);
+		this.agendador = scheduler;
+		this.despachante = new ThreadPoolExecutor(threads, threads, 0, TimeUnit.MILLISECONDS,
+				new ArrayBlockingQueue<>(capacidadeFila), threadDaemon("alteracao-carrinho"),
+				new ThreadPoolExecutor.AbortPolicy());
+	}
+
+	/**
+	 * Encerra o agendador e o pool de gravação; requisições ainda em lotes abertos recebem
+	 * {@link IllegalStateException}, e as de lotes que estavam na fila desistem ao fim do prazo.
+	 */
+	@PreDestroy
+	public void encerrar()
+	{
+		agendador.shutdownNow();
+		despachante.shutdownNow();
+
+		List<Lote> pendentes;
+		lock.lock();
+		try
+		{
+			pendentes = new ArrayList<>(abertos.values());
+			abertos.clear();
+		}
+		finally
+		{
+			lock.unlock();
+		}
+
+		IllegalStateException encerrado = new IllegalStateException("Serviço de alterações encerrado.");
+		for (Lote lote : pendentes)
+		{
+			falhar(lote, encerrado);
+		}
+	}
+
+	/**
+	 * Aplica as alterações, agrupadas com as de outras requisições para o mesmo carrinho, e
+	 * aguarda a gravação do lote.
+	 * <p>
+	 * Quem desiste por prazo não retira as alterações do lote: elas ainda são gravadas depois.
+	 * Repetir a requisição com {@code variacao} aplicaria a variação duas vezes; com
+	 * {@code quantidade} final, a repetição é segura.
+	 *
+	 * @throws IllegalArgumentException     se as alterações são inválidas ou o carrinho, o
+	 *                                      cliente ou um produto novo não existem
+	 * @throws ServicoIndisponivelException se o lote não é gravado no prazo
+	 */
+	public CarrinhoAtualizadoDTO alterar(Long carrinhoId, Long clienteId, List<AlteracaoItemDTO> alteracoes)
+	{
+		validar(carrinhoId, clienteId, alteracoes);
+
+		if (janela.isZero())
+		{
+			requisicoes.incrementAndGet();
+			return aplicar(carrinhoId, clienteId, alteracoes);
+		}
+
+		Chave chave = new Chave(carrinhoId, clienteId);
+		Pedido pedido = new Pedido(List.copyOf(alteracoes), new CompletableFuture<>());
+		Lote loteCheio = null;
+
+		lock.lock();
+		try
+		{
+			// A primeira requisição também espera a janela: é ela que dá aos cliques seguintes
+			// um lote onde entrar
+			Lote lote = abertos.computeIfAbsent(chave, Lote::new);
+			lote.pedidos.add(pedido);
+			// Contada já dentro do lote
+			requisicoes.incrementAndGet();
+			if (lote.pedidos.size() >= tamanhoMaximo)
+			{
+				loteCheio = retirar(lote);
+			}
+			else if (lote.pedidos.size() == 1)
+			{
+				lote.disparo = agendador.schedule(() -> dispararPorTempo(lote), janela.toNanos(),
+						TimeUnit.NANOSECONDS);
+			}
+		}
+		finally
+		{
+			lock.unlock();
+		}
+
+		if (loteCheio != null)
+		{
+			// Quem fecha o lote grava na própria thread, que ficaria bloqueada de qualquer forma
+			gravar(loteCheio);
+		}
+
+		return Futuros.aguardar(pedido.resposta(), timeout);
+	}
+
+	/**
+	 * Requisições de alteração recebidas.
+	 */
+	public long requisicoes()
+	{
+		return requisicoes.get();
+	}
+
+	/**
+	 * Transações de alteração executadas; a diferença para {@link #requisicoes()} é o que o
+	 * agrupamento economizou.
+	 */
+	public long gravacoes()
+	{
+		return gravacoes.get();
+	}
+
+	@Override
+	public void bindTo(MeterRegistry registry)
+	{
+		FunctionCounter.builder("ecommerce.carrinho.alteracoes.requisicoes", this, AlteracaoCarrinhoService::requisicoes)
+				.register(registry);
+		FunctionCounter.builder("ecommerce.carrinho.alteracoes.gravacoes", this, AlteracaoCarrinhoService::gravacoes)
+				.register(registry);
+	}
+
+	/**
+	 * Uma transação: bloqueia o carrinho, aplica as alterações combinadas por produto e grava.
+	 */
+	private CarrinhoAtualizadoDTO aplicar(Long carrinhoId, Long clienteId, List<AlteracaoItemDTO> alteracoes)
+	{
+		Map<Long, Variacao> porProduto = combinar(alteracoes);
+		gravacoes.incrementAndGet();
+
+		return transacoes.execute(status -> {
+			Cliente cliente = clienteService.buscarPorId(clienteId);
+			CarrinhoDeCompras carrinho = carrinhoRepository.findParaAlteracao(carrinhoId, cliente)
+					.orElseThrow(() -> new IllegalArgumentException("Carrinho não encontrado."));
+
+			Map<Long, ItemCompra> itens = new HashMap<>();
+			for (ItemCompra item : carrinho.getItens())
+			{
+				itens.putIfAbsent(item.getProduto().getId(), item);
+			}
+
+			List<Long> produtosNovos = porProduto.keySet().stream().filter(id -> !itens.containsKey(id)).toList();
+			Map<Long, Produto> produtos = produtosNovos.isEmpty() ? Map.of()
+					: produtoRepository.findAllById(produtosNovos).stream()
+							.collect(Collectors.toMap(Produto::getId, Function.identity()));
+
+			// Produtos inexistentes são rejeitados antes de qualquer alteração no carrinho
+			for (Long produtoId : produtosNovos)
+			{
+				if (!produtos.containsKey(produtoId) && porProduto.get(produtoId).aplicar(0) > 0)
+				{
+					throw new IllegalArgumentException("Produto não encontrado: " + produtoId);
+				}
+			}
+
+			for (Map.Entry<Long, Variacao> alteracao : porProduto.entrySet())
+			{
+				ItemCompra item = itens.get(alteracao.getKey());
+				long atual = item == null ? 0 : item.getQuantidade();
+				long nova = alteracao.getValue().aplicar(atual);
+
+				if (nova <= 0)
+				{
+					if (item != null)
+					{
+						carrinho.removerItem(item);
+					}
+				}
+				else if (item == null)
+				{
+					carrinho.adicionarItem(new ItemCompra(null, produtos.get(alteracao.getKey()), nova));
+				}
+				else if (nova != atual)
+				{
+					carrinho.alterarQuantidade(item, nova);
+				}
+			}
+
+			return CarrinhoAtualizadoDTO.de(carrinhoRepository.save(carrinho));
+		});
+	}
+
+	private void dispararPorTempo(Lote lote)
+	{
+		boolean retirado;
+
+		lock.lock();
+		try
+		{
+			retirado = abertos.get(lote.chave) == lote;
+			if (retirado)
+			{
+				retirar(lote);
+			}
+		}
+		finally
+		{
+			lock.unlock();
+		}
+
+		if (retirado)
+		{
+			despachar(lote);
+		}
+	}
+
+	/**
+	 * Fim de uma gravação do carrinho: o lote acumulado enquanto ela durava segue sem esperar
+	 * o fim da janela.
+	 */
+	private void concluirGravacao(Chave chave)
+	{
+		Lote acumulado = null;
+
+		lock.lock();
+		try
+		{
+			if (emGravacao.merge(chave, -1, Integer::sum) == 0)
+			{
+				emGravacao.remove(chave);
+				Lote lote = abertos.get(chave);
+				if (lote != null)
+				{
+					acumulado = retirar(lote);
+				}
+			}
+		}
+		finally
+		{
+			lock.unlock();
+		}
+
+		if (acumulado != null)
+		{
+			despachar(acumulado);
+		}
+	}
+
+	private void despachar(Lote lote)
+	{
+		try
+		{
+			despachante.execute(() -> gravar(lote));
+		}
+		catch (RejectedExecutionException e)
+		{
+			falhar(lote, e);
+			concluirGravacao(lote.chave);
+		}
+	}
+
+	/**
+	 * Deve ser chamado com o lock adquirido. O lote retirado conta como gravação em andamento
+	 * até o fim de {@link #gravar}.
+	 */
+	private Lote retirar(Lote lote)
+	{
+		abertos.remove(lote.chave);
+		emGravacao.merge(lote.chave, 1, Integer::sum);
+		if (lote.disparo != null)
+		{
+			lote.disparo.cancel(false);
+			lote.disparo = null;
+		}
+		return lote;
+	}
+
+	private void gravar(Lote lote)
+	{
+		try
+		{
+			gravarPedidos(lote);
+		}
+		finally
+		{
+			concluirGravacao(lote.chave);
+		}
+	}
+
+	private void gravarPedidos(Lote lote)
+	{
+		Long carrinhoId = lote.chave.carrinhoId();
+		Long clienteId = lote.chave.clienteId();
+
+		try
+		{
+			List<AlteracaoItemDTO> todas = lote.pedidos.stream().flatMap(pedido -> pedido.alteracoes().stream())
+					.toList();
+			CarrinhoAtualizadoDTO resultado = aplicar(carrinhoId, clienteId, todas);
+			for (Pedido pedido : lote.pedidos)
+			{
+				pedido.resposta().complete(resultado);
+			}
+		}
+		catch (IllegalArgumentException e)
+		{
+			if (lote.pedidos.size() == 1)
+			{
+				lote.pedidos.get(0).resposta().completeExceptionally(e);
+				return;
+			}
+
+			for (Pedido pedido : lote.pedidos)
+			{
+				try
+				{
+					pedido.resposta().complete(aplicar(carrinhoId, clienteId, pedido.alteracoes()));
+				}
+				catch (RuntimeException individual)
+				{
+					pedido.resposta().completeExceptionally(individual);
+				}
+			}
+		}
+		catch (RuntimeException e)
+		{
+			falhar(lote, e);
+		}
+	}
+
+	private static void falhar(Lote lote, RuntimeException erro)
+	{
+		for (Pedido pedido : lote.pedidos)
+		{
+			pedido.resposta().completeExceptionally(erro);
+		}
+	}
+
+	/**
+	 * Combina as alterações de cada produto na ordem em que foram feitas: uma quantidade final
+	 * descarta as variações anteriores, e variações seguidas se somam.
+	 */
+	static Map<Long, Variacao> combinar(List<AlteracaoItemDTO> alteracoes)
+	{
+		Map<Long, Variacao> porProduto = new LinkedHashMap<>();
+		for (AlteracaoItemDTO alteracao : alteracoes)
+		{
+			porProduto.merge(alteracao.produtoId(), Variacao.de(alteracao), Variacao::seguidaDe);
+		}
+		return porProduto;
+	}
+
+	private static void validar(Long carrinhoId, Long clienteId, List<AlteracaoItemDTO> alteracoes)
+	{
+		if (carrinhoId == null || clienteId == null)
+		{
+			throw new IllegalArgumentException("Carrinho e cliente devem ser informados.");
+		}
+		if (alteracoes == null || alteracoes.isEmpty())
+		{
+			throw new IllegalArgumentException("Nenhuma alteração informada.");
+		}
+
+		for (AlteracaoItemDTO alteracao : alteracoes)
+		{
+			if (alteracao == null || alteracao.produtoId() == null)
+			{
+				throw new IllegalArgumentException("Produto da alteração não informado.");
+			}
+			if ((alteracao.quantidade() == null) == (alteracao.variacao() == null))
+			{
+				throw new IllegalArgumentException(
+						"Informe quantidade ou variação do produto " + alteracao.produtoId() + ", não ambas.");
+			}
+			if (alteracao.quantidade() != null && alteracao.quantidade() < 0)
+			{
+				throw new IllegalArgumentException("Quantidade inválida para o produto " + alteracao.produtoId() + ".");
+			}
+		}
+	}
+
+	private static ThreadFactory threadDaemon(String nome)
+	{
+		return tarefa -> {
+			Thread thread = new Thread(tarefa, nome);
+			thread.setDaemon(true);
+			return thread;
+		};
+	}
+
+	/**
+	 * Efeito combinado sobre a quantidade de um produto: {@code quantidade} final, se alguma
+	 * foi definida, mais a soma das variações posteriores. Somas fora do intervalo de
+	 * {@code long} lançam {@link IllegalArgumentException}.
+	 */
+	record Variacao(Long quantidade, long soma)
+	{
+		static Variacao de(AlteracaoItemDTO alteracao)
+		{
+			return alteracao.quantidade() != null ? new Variacao(alteracao.quantidade(), 0)
+					: new Variacao(null, alteracao.variacao());
+		}
+
+		Variacao seguidaDe(Variacao posterior)
+		{
+			return posterior.quantidade() != null ? posterior
+					: new Variacao(quantidade, somar(soma, posterior.soma()));
+		}
+
+		long aplicar(long atual)
+		{
+			return somar(quantidade != null ? quantidade : atual, soma);
+		}
+
+		private static long somar(long a, long b)
+		{
+			try
+			{
+				return Math.addExact(a, b);
+			}
+			catch (ArithmeticException e)
+			{
+				throw new IllegalArgumentException("Quantidade resultante fora do limite.", e);
+			}
+		}
+	}
+
+	private record Chave(Long carrinhoId, Long clienteId)
+	{
+	}
+
+	private record Pedido(List<AlteracaoItemDTO> alteracoes, CompletableFuture<CarrinhoAtualizadoDTO> resposta)
+	{
+	}
+
+	private static final class Lote
+	{
+		private final Chave chave;
+		private final List<Pedido> pedidos = new ArrayList<>();
+		private ScheduledFuture<?> disparo;
+
+		private Lote(Chave chave)
+		{
+			this.chave = chave;
+		}
+	}
+}
@@ -0,0 +1,145 @@
+package ecommerce.service;
+
+import java.util.List;
+
+import org.hibernate.SessionFactory;
+import org.hibernate.cache.spi.RegionFactory;
+import org.hibernate.stat.CacheRegionStatistics;
+import org.hibernate.stat.Statistics;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.annotation.Transactional;
+
+import ecommerce.entity.Cliente;
+import ecommerce.repository.CarrinhoDeComprasRepository;
+import ecommerce.service.preco.CacheCotacoes;
+import io.micrometer.core.instrument.FunctionCounter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.binder.MeterBinder;
+import jakarta.persistence.EntityManagerFactory;
+
+/**
+ * Pontos de invalidação dos caches para alterações de catálogo e de clientes feitas fora
+ * deste Hibernate (carga em lote, outro serviço, SQL direto). Alterações feitas pelas entidades
+ * já atualizam o cache de segundo nível sozinhas.
+ * <p>
+ * Produtos não ficam no cache de segundo nível: invalidar um produto descarta o que depende do
+ * preço dele, as cotações em cache e os totais gravados dos carrinhos que o contêm; invalidar o
+ * catálogo descarta todas as cotações e todos os totais gravados. Acertos e faltas de cada
+ * região ficam em {@code ecommerce.cache.entidades.*}, registrados só com as estatísticas do
+ * Hibernate ligadas.
+ */
+@Service
+public class CacheEntidades implements MeterBinder
+{
+	private static final Logger log = LoggerFactory.getLogger(CacheEntidades.class);
+
+	static final List<String> REGIOES = List.of(Cliente.REGIAO_CACHE,
+			RegionFactory.DEFAULT_QUERY_RESULTS_REGION_UNQUALIFIED_NAME);
+
+	private final SessionFactory sessionFactory;
+	private final CacheCotacoes cacheCotacoes;
+	private final CarrinhoDeComprasRepository carrinhoRepository;
+
+	public CacheEntidades(EntityManagerFactory entityManagerFactory, CacheCotacoes cacheCotacoes,
+			CarrinhoDeComprasRepository carrinhoRepository)
+	{
+		this.sessionFactory = entityManagerFactory.unwrap(SessionFactory.class);
+		this.cacheCotacoes = cacheCotacoes;
+		this.carrinhoRepository = carrinhoRepository;
+	}
+
+	@Transactional
+	public void invalidarProduto(Long produtoId)
+	{
+		cacheCotacoes.invalidarProduto(produtoId);
+		int carrinhos = carrinhoRepository.invalidarTotaisComProduto(produtoId);
+		log.info("Produto {} invalidado no cache ({} carrinhos com totais descartados).", produtoId, carrinhos);
+	}
+
+	/**
+	 * Catálogo inteiro alterado: descarta todas as cotações e todos os totais gravados.
+	 */
+	@Transactional
+	public void invalidarProdutos()
+	{
+		cacheCotacoes.invalidarTudo();
+		int carrinhos = carrinhoRepository.invalidarTotais();
+		log.info("Catálogo invalidado no cache ({} carrinhos com totais descartados).", carrinhos);
+	}
+
+	public void invalidarCliente(Long clienteId)
+	{
+		sessionFactory.getCache().evictEntityData(Cliente.class, clienteId);
+		sessionFactory.getCache().evictQueryRegions();
+	}
+
+	@Transactional
+	public void invalidarTudo()
+	{
+		sessionFactory.getCache().evictAllRegions();
+		cacheCotacoes.invalidarTudo();
+		int carrinhos = carrinhoRepository.invalidarTotais();
+		log.info("Cache de segundo nível invalidado ({} carrinhos com totais descartados).", carrinhos);
+	}
+
+	public long acertos(String regiao)
+	{
+		CacheRegionStatistics estatisticas = estatisticas(regiao);
+		return estatisticas == null ? 0 : estatisticas.getHitCount();
+	}
+
+	public long faltas(String regiao)
+	{
+		CacheRegionStatistics estatisticas = estatisticas(regiao);
+		return estatisticas == null ? 0 : estatisticas.getMissCount();
+	}
+
+	/**
+	 * Acertos sobre leituras da região, entre 0 e 1; zero sem leituras.
+	 */
+	public double taxaAcerto(String regiao)
+	{
+		long acertos = acertos(regiao);
+		long leituras = acertos + faltas(regiao);
+		return leituras == 0 ? 0 : (double) acertos / leituras;
+	}
+
+	/**
+	 * Sem as estatísticas do Hibernate não registra nada: acertos e faltas seriam sempre zero e
+	 * a taxa de acerto pareceria um cache que nunca acerta.
+	 */
+	@Override
+	public void bindTo(MeterRegistry registry)
+	{
+		if (!sessionFactory.getStatistics().isStatisticsEnabled())
+		{
+			log.info("Estatísticas do Hibernate desligadas; métricas do cache não registradas.");
+			return;
+		}
+		for (String regiao : REGIOES)
+		{
+			FunctionCounter.builder("ecommerce.cache.entidades.requisicoes", this, c -> c.acertos(regiao))
+					.tag("regiao", regiao).tag("resultado", "acerto")
+					.register(registry);
+			FunctionCounter.builder("ecommerce.cache.entidades.requisicoes", this, c -> c.faltas(regiao))
+					.tag("regiao", regiao).tag("resultado", "falta")
+					.register(registry);
+			Gauge.builder("ecommerce.cache.entidades.taxa.acerto", this, c -> c.taxaAcerto(regiao))
+					.tag("regiao", regiao)
+					.register(registry);
+		}
+	}
+
+	/**
+	 * {@code null} com as estatísticas do Hibernate desligadas
+	 * ({@code hibernate.generate_statistics}, ligadas no perfil {@code estatisticas}).
+	 */
+	private CacheRegionStatistics estatisticas(String regiao)
+	{
+		Statistics estatisticas = sessionFactory.getStatistics();
+		return estatisticas.isStatisticsEnabled() ? estatisticas.getCacheRegionStatistics(regiao) : null;
+	}
+}
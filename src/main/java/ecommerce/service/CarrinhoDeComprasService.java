@@ -1,10 +1,22 @@
 package ecommerce.service;
 
+import java.util.Collection;
+import java.util.List;
+import java.util.Map;
+import java.util.function.Function;
+import java.util.stream.Collectors;
+
 import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.data.domain.PageRequest;
+import org.springframework.data.domain.Pageable;
 import org.springframework.stereotype.Service;
+import org.springframework.transaction.annotation.Transactional;
 
+import ecommerce.dto.CarrinhoCheckoutDTO;
+import ecommerce.dto.LinhaCheckoutDTO;
 import ecommerce.entity.CarrinhoDeCompras;
 import ecommerce.entity.Cliente;
+import ecommerce.entity.ItemCompra;
 import ecommerce.repository.CarrinhoDeComprasRepository;
 
 @Service
@@ -18,9 +30,83 @@ public class CarrinhoDeComprasService
 		this.repository = repository;
 	}
 
+	/**
+	 * Carrega o carrinho já com os itens e produtos, numa única consulta, para uso fora da
+	 * transação (o checkout não mantém transação aberta durante as chamadas externas).
+	 */
+	@Transactional(readOnly = true)
 	public CarrinhoDeCompras buscarPorCarrinhoIdEClienteId(Long carrinhoId, Cliente cliente)
 	{
 		return repository.findByIdAndCliente(carrinhoId, cliente)
 				.orElseThrow(() -> new IllegalArgumentException("Carrinho não encontrado."));
 	}
+
+	/**
+	 * Linhas do carrinho para preço e estoque, lidas pela projeção {@link LinhaCheckoutDTO},
+	 * sem entidades. Sem linhas (carrinho inexistente, de outro cliente ou vazio), carrega a
+	 * entidade para manter o mesmo tratamento de {@link #buscarPorCarrinhoIdEClienteId}.
+	 */
+	@Transactional(readOnly = true)
+	public CarrinhoCheckoutDTO buscarParaCheckout(Long carrinhoId, Cliente cliente)
+	{
+		return montarParaCheckout(carrinhoId, cliente,
+				repository.findLinhasCheckout(carrinhoId, cliente, Pageable.unpaged()));
+	}
+
+	/**
+	 * Como {@link #buscarParaCheckout(Long, Cliente)}, lendo no máximo {@code limiteLinhas}
+	 * linhas na mesma consulta.
+	 *
+	 * @return {@code null} se o carrinho tem {@code limiteLinhas} linhas ou mais
+	 */
+	@Transactional(readOnly = true)
+	public CarrinhoCheckoutDTO buscarParaCheckout(Long carrinhoId, Cliente cliente, int limiteLinhas)
+	{
+		List<LinhaCheckoutDTO> linhas = repository.findLinhasCheckout(carrinhoId, cliente,
+				PageRequest.of(0, limiteLinhas));
+		if (linhas != null && linhas.size() >= limiteLinhas)
+		{
+			return null;
+		}
+		return montarParaCheckout(carrinhoId, cliente, linhas);
+	}
+
+	private CarrinhoCheckoutDTO montarParaCheckout(Long carrinhoId, Cliente cliente, List<LinhaCheckoutDTO> linhas)
+	{
+		if (linhas == null || linhas.isEmpty())
+		{
+			return CarrinhoCheckoutDTO.de(buscarPorCarrinhoIdEClienteId(carrinhoId, cliente));
+		}
+		return new CarrinhoCheckoutDTO(carrinhoId, linhas.get(0).versaoCarrinho(), linhas);
+	}
+
+	/**
+	 * Versão do conteúdo do carrinho do cliente (ver {@link CarrinhoDeCompras#getVersao()}), ou
+	 * {@code null} se o carrinho não existe ou é de outro cliente.
+	 */
+	@Transactional(readOnly = true)
+	public Long buscarVersao(Long carrinhoId, Long clienteId)
+	{
+		return repository.findVersao(carrinhoId, clienteId).orElse(null);
+	}
+
+	/**
+	 * Carrega os carrinhos (com itens) indexados por id. Ids inexistentes ficam fora do mapa.
+	 */
+	@Transactional(readOnly = true)
+	public Map<Long, CarrinhoDeCompras> buscarPorIds(Collection<Long> carrinhosIds)
+	{
+		return repository.findAllByIdIn(carrinhosIds).stream()
+				.collect(Collectors.toMap(CarrinhoDeCompras::getId, Function.identity()));
+	}
+
+	/**
+	 * Uma página de itens, com produtos, em transação própria: nada fica retido no contexto de
+	 * persistência entre uma página e a seguinte.
+	 */
+	@Transactional(readOnly = true)
+	public List<ItemCompra> buscarItens(Long carrinhoId, Long aposItemId, int quantidade)
+	{
+		return repository.findItensAposId(carrinhoId, aposItemId, PageRequest.of(0, quantidade));
+	}
 }
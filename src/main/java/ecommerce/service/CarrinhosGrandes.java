@@ -0,0 +1,206 @@
+package ecommerce.service;
+
+import java.util.ArrayList;
+import java.util.Iterator;
+import java.util.List;
+import java.util.NoSuchElementException;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.ForkJoinWorkerThread;
+
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+import ecommerce.dto.Dinheiro;
+import ecommerce.entity.ItemCompra;
+import ecommerce.entity.Regiao;
+import ecommerce.entity.TipoCliente;
+import ecommerce.service.preco.MotorPreco;
+import ecommerce.service.preco.SomaItens;
+import ecommerce.service.preco.TabelaRegrasPreco;
+import jakarta.annotation.PreDestroy;
+
+/**
+ * Checkout de carrinhos com muitos itens (atacado): a partir de {@code limiar} linhas, os
+ * itens são lidos do banco em páginas de {@code tamanhoPagina}, cada página vira um lote para
+ * o estoque e é somada (em paralelo quando tem ao menos {@code paraleloAPartirDe} itens) e
+ * descartada. A memória por checkout fica limitada a uma página, qualquer que seja o carrinho.
+ * <p>
+ * A soma paralela roda num {@link ForkJoinPool} próprio de {@code paralelismo} threads, e não
+ * no pool comum: checkouts grandes simultâneos disputam só essas threads, e a espera por elas
+ * não atrasa quem usa o pool comum.
+ */
+@Component
+public class CarrinhosGrandes
+{
+	private final CarrinhoDeComprasService carrinhoService;
+	private final MotorPreco motorPreco;
+
+	private final int limiar;
+	private final int tamanhoPagina;
+	private final int paraleloAPartirDe;
+	// null sem soma paralela
+	private final ForkJoinPool pool;
+
+	/**
+	 * Páginas sempre somadas na thread do checkout.
+	 */
+	public CarrinhosGrandes(CarrinhoDeComprasService carrinhoService, MotorPreco motorPreco, int limiar,
+			int tamanhoPagina)
+	{
+		this(carrinhoService, motorPreco, limiar, tamanhoPagina, 0, 0);
+	}
+
+	/**
+	 * @param paraleloAPartirDe tamanho de página a partir do qual a soma é paralela; 0 desliga
+	 * @param paralelismo threads do pool da soma paralela
+	 */
+	@Autowired
+	public CarrinhosGrandes(CarrinhoDeComprasService carrinhoService, MotorPreco motorPreco,
+			@Value("${ecommerce.checkout.carrinho-grande.limiar:5000}") int limiar,
+			@Value("${ecommerce.checkout.carrinho-grande.tamanho-pagina:2000}") int tamanhoPagina,
+			@Value("${ecommerce.checkout.carrinho-grande.paralelo-a-partir-de:1000}") int paraleloAPartirDe,
+			@Value("${ecommerce.checkout.carrinho-grande.paralelismo:4}") int paralelismo)
+	{
+		if (limiar > 0 && tamanhoPagina < 1)
+		{
+			throw new IllegalArgumentException("Tamanho da página de itens deve ser positivo.");
+		}
+		if (limiar > 0 && paraleloAPartirDe > 0 && paralelismo < 1)
+		{
+			throw new IllegalArgumentException("Paralelismo da soma de páginas deve ser positivo.");
+		}
+
+		this.carrinhoService = carrinhoService;
+		this.motorPreco = motorPreco;
+		this.limiar = limiar;
+		this.tamanhoPagina = tamanhoPagina;
+		this.paraleloAPartirDe = paraleloAPartirDe;
+		this.pool = limiar > 0 && paraleloAPartirDe > 0 ? new ForkJoinPool(paralelismo, p -> {
+			ForkJoinWorkerThread thread = ForkJoinPool.defaultForkJoinWorkerThreadFactory.newThread(p);
+			thread.setName("carrinho-grande-soma-" + thread.getPoolIndex());
+			thread.setDaemon(true);
+			return thread;
+		}, null, false) : null;
+	}
+
+	/**
+	 * Todos os carrinhos carregados de uma vez.
+	 */
+	public static CarrinhosGrandes desligado()
+	{
+		return new CarrinhosGrandes(null, null, 0, 0);
+	}
+
+	@PreDestroy
+	public void encerrar()
+	{
+		if (pool != null)
+		{
+			pool.shutdownNow();
+		}
+	}
+
+	public boolean habilitado()
+	{
+		return limiar > 0;
+	}
+
+	/**
+	 * Número de linhas a partir do qual o carrinho é lido em páginas.
+	 */
+	public int limiar()
+	{
+		return limiar;
+	}
+
+	/**
+	 * Páginas de itens em ordem de id. Cada página é lida quando a anterior foi consumida.
+	 */
+	public Iterable<List<ItemCompra>> paginas(Long carrinhoId)
+	{
+		return () -> new Iterator<>()
+		{
+			private Long ultimoItemId = 0L;
+			private List<ItemCompra> proxima;
+			private boolean fim;
+
+			@Override
+			public boolean hasNext()
+			{
+				if (proxima == null && !fim)
+				{
+					proxima = carrinhoService.buscarItens(carrinhoId, ultimoItemId, tamanhoPagina);
+					if (proxima.isEmpty())
+					{
+						proxima = null;
+						fim = true;
+					}
+					else
+					{
+						ultimoItemId = proxima.get(proxima.size() - 1).getId();
+						fim = proxima.size() < tamanhoPagina;
+					}
+				}
+				return proxima != null;
+			}
+
+			@Override
+			public List<ItemCompra> next()
+			{
+				if (!hasNext())
+				{
+					throw new NoSuchElementException();
+				}
+				List<ItemCompra> pagina = proxima;
+				proxima = null;
+				return pagina;
+			}
+		};
+	}
+
+	/**
+	 * Soma da página. A partir de {@code paraleloAPartirDe} itens, a página é dividida entre as
+	 * threads do pool próprio e as somas parciais são combinadas ({@link SomaItens#combinar});
+	 * abaixo disso, a soma roda na thread do checkout.
+	 */
+	public SomaItens somar(List<ItemCompra> pagina)
+	{
+		if (pool != null && pagina.size() >= paraleloAPartirDe)
+		{
+			return pool.submit(() -> pagina.parallelStream().collect(SomaItens.coletor())).join();
+		}
+
+		SomaItens soma = new SomaItens();
+		pagina.forEach(soma::adicionar);
+		return soma;
+	}
+
+	public Dinheiro cotar(SomaItens soma, Regiao regiao, TipoCliente tipoCliente)
+	{
+		TabelaRegrasPreco tabela = motorPreco.regrasAtuais();
+		return motorPreco.calcular(soma, tabela, tabela.ajuste(regiao, tipoCliente));
+	}
+
+	/**
+	 * Produtos e quantidades de uma página, como enviados ao estoque, e uma assinatura do
+	 * conteúdo para conferir a página quando ela é lida de novo.
+	 */
+	public record Lote(List<Long> produtosIds, List<Long> produtosQuantidades, long assinatura)
+	{
+		public static Lote de(List<ItemCompra> pagina)
+		{
+			List<Long> ids = new ArrayList<>(pagina.size());
+			List<Long> quantidades = new ArrayList<>(pagina.size());
+			long assinatura = pagina.size();
+			for (ItemCompra item : pagina)
+			{
+				ids.add(item.getProduto().getId());
+				quantidades.add(item.getQuantidade());
+				assinatura = 31 * (31 * (31 * assinatura + item.getId()) + item.getProduto().getId())
+						+ item.getQuantidade();
+			}
+			return new Lote(ids, quantidades, assinatura);
+		}
+	}
+}
@@ -1,7 +1,13 @@
 package ecommerce.service;
 
+import java.util.Collection;
+import java.util.Map;
+import java.util.function.Function;
+import java.util.stream.Collectors;
+
 import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.stereotype.Service;
+import org.springframework.transaction.annotation.Transactional;
 
 import ecommerce.entity.Cliente;
 import ecommerce.repository.ClienteRepository;
@@ -18,9 +24,20 @@ public class ClienteService
 		this.repository = repository;
 	}
 
+	@Transactional(readOnly = true)
 	public Cliente buscarPorId(Long clienteId)
 	{
 		return repository.findById(clienteId).orElseThrow(() -> new IllegalArgumentException("Cliente não encontrado"));
 	}
 
+	/**
+	 * Carrega os clientes indexados por id. Ids inexistentes ficam fora do mapa.
+	 */
+	@Transactional(readOnly = true)
+	public Map<Long, Cliente> buscarPorIds(Collection<Long> clientesIds)
+	{
+		return repository.findAllById(clientesIds).stream()
+				.collect(Collectors.toMap(Cliente::getId, Function.identity()));
+	}
+
 }
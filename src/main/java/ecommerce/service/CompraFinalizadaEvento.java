@@ -0,0 +1,8 @@
+package ecommerce.service;
+
+/**
+ * Publicado pelo despachante do outbox, fora da requisição, para cada compra concluída.
+ */
+public record CompraFinalizadaEvento(Long carrinhoId, Long clienteId, Long transacaoPagamentoId)
+{
+}
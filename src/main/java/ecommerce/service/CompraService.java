@@ -1,145 +1,718 @@
 package ecommerce.service;
 
 import java.math.BigDecimal;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.HashSet;
 import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.CompletableFuture;
 import java.util.stream.Collectors;
 
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
 import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
 import org.springframework.stereotype.Service;
 
+import ecommerce.dto.CarrinhoCheckoutDTO;
 import ecommerce.dto.CompraDTO;
+import ecommerce.dto.Dinheiro;
 import ecommerce.dto.DisponibilidadeDTO;
 import ecommerce.dto.EstoqueBaixaDTO;
 import ecommerce.dto.PagamentoDTO;
+import ecommerce.dto.PedidoCompraDTO;
+import ecommerce.dto.ReservaEstoqueDTO;
 import ecommerce.entity.CarrinhoDeCompras;
 import ecommerce.entity.Cliente;
+import ecommerce.entity.ItemCompra;
 import ecommerce.entity.Regiao;
 import ecommerce.entity.TipoCliente;
-import ecommerce.external.IEstoqueExternal;
-import ecommerce.external.IPagamentoExternal;
-import jakarta.transaction.Transactional;
+import ecommerce.external.ConsultaEstoqueAgregada;
+import ecommerce.external.Futuros;
+import ecommerce.external.IEstoqueExternalAsync;
+import ecommerce.external.IPagamentoExternalAsync;
+import ecommerce.external.IReservaEstoqueAsync;
+import ecommerce.service.preco.AjustePreco;
+import ecommerce.service.preco.CacheCotacoes;
+import ecommerce.service.preco.PrecificacaoSombra;
+import ecommerce.service.preco.SomaItens;
+import ecommerce.service.preco.TabelaRegrasPreco;
 
 @Service
 public class CompraService
 {
+	private static final Logger log = LoggerFactory.getLogger(CompraService.class);
+
+	public static final Duration TIMEOUT_EXTERNO_PADRAO = Duration.ofSeconds(5);
+	public static final Duration VALIDADE_RESERVA_PADRAO = Duration.ofMinutes(2);
 
 	private final CarrinhoDeComprasService carrinhoService;
 	private final ClienteService clienteService;
 
-	private final IEstoqueExternal estoqueExternal;
-	private final IPagamentoExternal pagamentoExternal;
+	private final IEstoqueExternalAsync estoqueExternal;
+	// O próprio estoqueExternal, quando ele oferece reserva; null caso contrário
+	private final IReservaEstoqueAsync reservaEstoque;
+	private final IPagamentoExternalAsync pagamentoExternal;
+
+	private final Duration timeoutExterno;
+	private final Duration validadeReserva;
+
+	private final EventosCheckout eventosCheckout;
+
+	private final CacheCotacoes cotacoes;
+
+	private final CarrinhosGrandes carrinhosGrandes;
+
+	private final PrecificacaoSombra precificacaoSombra;
+
+	private final IdempotenciaService idempotencia;
 
 	@Autowired
 	public CompraService(CarrinhoDeComprasService carrinhoService, ClienteService clienteService,
-			IEstoqueExternal estoqueExternal, IPagamentoExternal pagamentoExternal)
+			IEstoqueExternalAsync estoqueExternal, IPagamentoExternalAsync pagamentoExternal,
+			@Value("${ecommerce.external.timeout:5s}") Duration timeoutExterno,
+			@Value("${ecommerce.estoque.reserva.validade:2m}") Duration validadeReserva,
+			EventosCheckout eventosCheckout, CacheCotacoes cotacoes, CarrinhosGrandes carrinhosGrandes,
+			PrecificacaoSombra precificacaoSombra, IdempotenciaService idempotencia)
 	{
 		this.carrinhoService = carrinhoService;
 		this.clienteService = clienteService;
 
 		this.estoqueExternal = estoqueExternal;
+		this.reservaEstoque = estoqueExternal instanceof IReservaEstoqueAsync reserva ? reserva : null;
 		this.pagamentoExternal = pagamentoExternal;
+
+		this.timeoutExterno = timeoutExterno;
+		this.validadeReserva = validadeReserva;
+
+		this.eventosCheckout = eventosCheckout;
+		this.cotacoes = cotacoes;
+		this.carrinhosGrandes = carrinhosGrandes;
+		this.precificacaoSombra = precificacaoSombra;
+		this.idempotencia = idempotencia;
 	}
 
-	@Transactional
+	/**
+	 * Como {@link #finalizarCompra(Long, Long, String)}, com a chave de idempotência padrão.
+	 */
 	public CompraDTO finalizarCompra(Long carrinhoId, Long clienteId)
+	{
+		return finalizarCompra(carrinhoId, clienteId, null);
+	}
+
+	/**
+	 * Sem transação: cliente e carrinho são lidos em transações curtas e somente leitura, e as
+	 * chamadas ao estoque e ao pagamento acontecem sem conexão do banco retida.
+	 * <p>
+	 * Retentativas com a mesma {@code chaveIdempotencia} recebem o resultado da primeira compra
+	 * concluída (ver {@link IdempotenciaService}). Sem chave, vale a chave padrão, com a versão
+	 * do conteúdo lida junto com as linhas do carrinho, sem consulta à parte; só carrinhos
+	 * grandes, lidos em páginas, consultam a versão separadamente.
+	 */
+	public CompraDTO finalizarCompra(Long carrinhoId, Long clienteId, String chaveIdempotencia)
 	{
 		Cliente cliente = clienteService.buscarPorId(clienteId);
-		CarrinhoDeCompras carrinho = carrinhoService.buscarPorCarrinhoIdEClienteId(carrinhoId, cliente);
+		long geracaoCotacoes = cotacoes.geracao();
+		CarrinhoCheckoutDTO carrinho;
+		if (carrinhosGrandes.habilitado())
+		{
+			// Linhas lidas até o limiar: se ele for atingido, o carrinho segue pelas páginas
+			carrinho = carrinhoService.buscarParaCheckout(carrinhoId, cliente, carrinhosGrandes.limiar());
+		}
+		else
+		{
+			carrinho = carrinhoService.buscarParaCheckout(carrinhoId, cliente);
+		}
 
-		List<Long> produtosIds = carrinho.getItens().stream().map(i -> i.getProduto().getId())
-				.collect(Collectors.toList());
-		List<Long> produtosQtds = carrinho.getItens().stream().map(i -> i.getQuantidade()).collect(Collectors.toList());
+		String chave = chaveIdempotencia;
+		if (idempotencia.habilitada() && (chave == null || chave.isBlank()))
+		{
+			Long versao = carrinho != null ? carrinho.versao() : carrinhoService.buscarVersao(carrinhoId, clienteId);
+			chave = IdempotenciaService.chavePadrao(carrinhoId, clienteId, versao);
+		}
 
-		DisponibilidadeDTO disponibilidade = estoqueExternal.verificarDisponibilidade(produtosIds, produtosQtds);
+		return idempotencia.executar(chave, carrinhoId, clienteId,
+				() -> carrinho == null ? finalizarCarrinhoGrande(cliente, carrinhoId)
+						: processarCompra(cliente, carrinho, false, geracaoCotacoes));
+	}
 
-		if (!disponibilidade.disponivel())
+	/**
+	 * Custo total do carrinho sem finalizar a compra, para exibição. Carrinhos com o mesmo
+	 * conteúdo reaproveitam a cotação em cache.
+	 */
+	public BigDecimal cotar(Long carrinhoId, Long clienteId)
+	{
+		Cliente cliente = clienteService.buscarPorId(clienteId);
+		long geracaoCotacoes = cotacoes.geracao();
+		CarrinhoCheckoutDTO carrinho = carrinhoService.buscarParaCheckout(carrinhoId, cliente);
+
+		return calcularCusto(carrinho, cliente.getRegiao(), cliente.getTipo(), geracaoCotacoes).emReais();
+	}
+
+	/**
+	 * Finaliza vários carrinhos numa única chamada. Clientes e carrinhos são carregados em
+	 * lote e, sem suporte a reserva, a disponibilidade de todos os carrinhos é verificada
+	 * numa consulta agregada. A falha de um carrinho não interrompe os demais: cada pedido
+	 * recebe seu próprio {@link CompraDTO}, na mesma ordem da entrada. Um carrinho é
+	 * finalizado no máximo uma vez: as repetições seguintes falham sem cobrar o cliente.
+	 * <p>
+	 * Cada carrinho passa pelo {@link IdempotenciaService} como um {@code POST /finalizar}
+	 * isolado, com a chave do pedido ou a chave padrão (versão do carrinho já carregado): um
+	 * lote reenviado, ou um carrinho já finalizado individualmente, não é cobrado de novo.
+	 */
+	public List<CompraDTO> finalizarCompras(List<PedidoCompraDTO> pedidos)
+	{
+		if (pedidos == null || pedidos.isEmpty())
 		{
-			throw new IllegalStateException("Itens fora de estoque.");
+			throw new IllegalArgumentException("Nenhum pedido informado.");
+		}
+
+		Map<Long, Cliente> clientes = clienteService
+				.buscarPorIds(pedidos.stream().map(PedidoCompraDTO::clienteId).collect(Collectors.toSet()));
+		long geracaoCotacoes = cotacoes.geracao();
+		Map<Long, CarrinhoDeCompras> carrinhos = carrinhoService
+				.buscarPorIds(pedidos.stream().map(PedidoCompraDTO::carrinhoId).collect(Collectors.toSet()));
+
+		List<CompraDTO> resultados = new ArrayList<>(pedidos.size());
+		List<CarrinhoCheckoutDTO> validos = new ArrayList<>(pedidos.size());
+		Set<Long> aceitos = new HashSet<>();
+		for (PedidoCompraDTO pedido : pedidos)
+		{
+			Cliente cliente = clientes.get(pedido.clienteId());
+			CarrinhoDeCompras carrinho = carrinhos.get(pedido.carrinhoId());
+
+			if (cliente == null)
+			{
+				resultados.add(new CompraDTO(false, null, "Cliente não encontrado"));
+				validos.add(null);
+			}
+			else if (carrinho == null || carrinho.getCliente() == null
+					|| !cliente.getId().equals(carrinho.getCliente().getId()))
+			{
+				resultados.add(new CompraDTO(false, null, "Carrinho não encontrado."));
+				validos.add(null);
+			}
+			else if (!aceitos.add(carrinho.getId()))
+			{
+				resultados.add(new CompraDTO(false, null, "Carrinho repetido no lote."));
+				validos.add(null);
+			}
+			else
+			{
+				resultados.add(null);
+				validos.add(CarrinhoCheckoutDTO.de(carrinho));
+			}
+		}
+
+		List<Long> indisponiveis = verificarDisponibilidadeAgregada(validos);
+
+		for (int i = 0; i < pedidos.size(); i++)
+		{
+			CarrinhoCheckoutDTO carrinho = validos.get(i);
+			if (carrinho == null)
+			{
+				continue;
+			}
+
+			// Carrinhos sem produtos apontados na consulta agregada já têm estoque garantido;
+			// os demais são verificados individualmente.
+			boolean disponibilidadeConfirmada = indisponiveis != null
+					&& !ConsultaEstoqueAgregada.afetado(carrinho.produtosIds(), indisponiveis);
+			PedidoCompraDTO pedido = pedidos.get(i);
+			Cliente cliente = clientes.get(pedido.clienteId());
+			String chave = pedido.chaveIdempotencia() != null && !pedido.chaveIdempotencia().isBlank()
+					? pedido.chaveIdempotencia()
+					: IdempotenciaService.chavePadrao(carrinho.carrinhoId(), cliente.getId(), carrinho.versao());
+			try
+			{
+				resultados.set(i, idempotencia.executar(chave, carrinho.carrinhoId(), cliente.getId(),
+						() -> processarCompra(cliente, carrinho, disponibilidadeConfirmada, geracaoCotacoes)));
+			}
+			catch (IllegalArgumentException | IllegalStateException e)
+			{
+				resultados.set(i, new CompraDTO(false, null, e.getMessage()));
+			}
+			catch (RuntimeException e)
+			{
+				log.warn("Falha ao finalizar carrinho {} no lote.", carrinho.carrinhoId(), e);
+				resultados.set(i, new CompraDTO(false, null, "Erro ao processar compra."));
+			}
+		}
+
+		return resultados;
+	}
+
+	/**
+	 * Consulta numa única chamada a disponibilidade somada de todos os carrinhos. Retorna os
+	 * produtos indisponíveis, ou {@code null} quando a consulta agregada não se aplica (estoque
+	 * com reserva) ou falhou — nesse caso cada carrinho é verificado individualmente.
+	 */
+	private List<Long> verificarDisponibilidadeAgregada(List<CarrinhoCheckoutDTO> carrinhos)
+	{
+		if (reservaEstoque != null)
+		{
+			return null;
+		}
+
+		ConsultaEstoqueAgregada consulta = new ConsultaEstoqueAgregada();
+		for (CarrinhoCheckoutDTO carrinho : carrinhos)
+		{
+			if (carrinho != null)
+			{
+				consulta.adicionar(carrinho.produtosIds(), carrinho.produtosQuantidades());
+			}
 		}
 
-		BigDecimal custoTotal = calcularCustoTotal(carrinho, cliente.getRegiao(), cliente.getTipo());
+		if (consulta.isVazia())
+		{
+			return null;
+		}
+
+		try
+		{
+			DisponibilidadeDTO disponibilidade = Futuros.aguardar(estoqueExternal
+					.verificarDisponibilidade(consulta.produtosIds(), consulta.produtosQuantidades(), timeoutExterno));
+			if (disponibilidade.disponivel())
+			{
+				return List.of();
+			}
+			List<Long> indisponiveis = disponibilidade.idsProdutosIndisponiveis();
+			return indisponiveis == null || indisponiveis.isEmpty() ? null : indisponiveis;
+		}
+		catch (RuntimeException e)
+		{
+			log.warn("Falha na verificação agregada de estoque; verificando carrinhos individualmente.", e);
+			return null;
+		}
+	}
+
+	private CompraDTO processarCompra(Cliente cliente, CarrinhoCheckoutDTO carrinho, boolean disponibilidadeConfirmada,
+			long geracaoCotacoes)
+	{
+		List<Long> produtosIds = carrinho.produtosIds();
+		List<Long> produtosQtds = carrinho.produtosQuantidades();
 
-		PagamentoDTO pagamento = pagamentoExternal.autorizarPagamento(cliente.getId(), custoTotal.doubleValue());
+		if (reservaEstoque != null)
+		{
+			return finalizarComReserva(cliente, carrinho, produtosIds, produtosQtds, geracaoCotacoes);
+		}
+
+		Dinheiro custoTotal;
+		if (disponibilidadeConfirmada)
+		{
+			custoTotal = calcularCusto(carrinho, cliente.getRegiao(), cliente.getTipo(), geracaoCotacoes);
+		}
+		else
+		{
+			// Verificação de estoque (remota) e cálculo do custo (local) são independentes:
+			// o estoque é consultado em paralelo enquanto o custo é calculado nesta thread.
+			CompletableFuture<DisponibilidadeDTO> disponibilidadeFuture = verificarDisponibilidade(produtosIds,
+					produtosQtds);
+			CompletableFuture<Dinheiro> custoFuture = EtapasParalelas
+					.naThreadAtual(() -> calcularCusto(carrinho, cliente.getRegiao(), cliente.getTipo(),
+							geracaoCotacoes));
+
+			EtapasParalelas.aguardarTodas(disponibilidadeFuture, custoFuture);
+
+			custoTotal = custoFuture.join();
+		}
+
+		PagamentoDTO pagamento = Futuros.aguardar(
+				pagamentoExternal.autorizarPagamento(cliente.getId(), custoTotal, timeoutExterno));
 
 		if (!pagamento.autorizado())
 		{
 			throw new IllegalStateException("Pagamento não autorizado.");
 		}
 
-		EstoqueBaixaDTO baixaDTO = estoqueExternal.darBaixa(produtosIds, produtosQtds);
+		EstoqueBaixaDTO baixaDTO;
+		try
+		{
+			baixaDTO = Futuros.aguardar(estoqueExternal.darBaixa(produtosIds, produtosQtds, timeoutExterno));
+		}
+		catch (RuntimeException e)
+		{
+			compensarPagamentoApos(e, cliente.getId(), pagamento.transacaoId());
+			throw e;
+		}
 
 		if (!baixaDTO.sucesso())
 		{
-			pagamentoExternal.cancelarPagamento(cliente.getId(), pagamento.transacaoId());
+			eventosCheckout.compensarPagamento(cliente.getId(), pagamento.transacaoId());
 			throw new IllegalStateException("Erro ao dar baixa no estoque.");
 		}
 
+		eventosCheckout.compraFinalizada(carrinho.carrinhoId(), cliente.getId(), pagamento.transacaoId());
 		CompraDTO compraDTO = new CompraDTO(true, pagamento.transacaoId(), "Compra finalizada com sucesso.");
 
 		return compraDTO;
-	} 
+	}
+
+	/**
+	 * Checkout de carrinho grande sem reserva (ver {@link CarrinhosGrandes}). Primeira
+	 * passada: cada página é somada e verificada no estoque, com uma verificação em andamento
+	 * enquanto a próxima página é lida. Após o pagamento, a segunda passada relê as páginas,
+	 * confere a assinatura de cada uma e dá baixa lote a lote.
+	 * <p>
+	 * A baixa em lotes não é atômica: se um lote falhar, os anteriores já foram baixados; o
+	 * pagamento é compensado e a baixa parcial registrada em log para conciliação. Com estoque
+	 * que suporta reserva, todos os lotes são reservados antes do pagamento.
+	 */
+	private CompraDTO finalizarCarrinhoGrande(Cliente cliente, Long carrinhoId)
+	{
+		if (reservaEstoque != null)
+		{
+			return finalizarCarrinhoGrandeComReserva(cliente, carrinhoId);
+		}
+
+		SomaItens soma = new SomaItens();
+		List<Long> assinaturas = new ArrayList<>();
+		CompletableFuture<DisponibilidadeDTO> verificacao = null;
+		try
+		{
+			for (List<ItemCompra> pagina : carrinhosGrandes.paginas(carrinhoId))
+			{
+				CarrinhosGrandes.Lote lote = CarrinhosGrandes.Lote.de(pagina);
+				if (verificacao != null)
+				{
+					Futuros.aguardar(verificacao);
+				}
+				verificacao = verificarDisponibilidade(lote.produtosIds(), lote.produtosQuantidades());
+
+				soma.combinar(carrinhosGrandes.somar(pagina));
+				assinaturas.add(lote.assinatura());
+			}
+			if (verificacao != null)
+			{
+				Futuros.aguardar(verificacao);
+			}
+		}
+		catch (RuntimeException e)
+		{
+			if (verificacao != null)
+			{
+				verificacao.cancel(true);
+			}
+			throw e;
+		}
+
+		Dinheiro custoTotal = carrinhosGrandes.cotar(soma, cliente.getRegiao(), cliente.getTipo());
+
+		PagamentoDTO pagamento = Futuros.aguardar(
+				pagamentoExternal.autorizarPagamento(cliente.getId(), custoTotal, timeoutExterno));
+
+		if (!pagamento.autorizado())
+		{
+			throw new IllegalStateException("Pagamento não autorizado.");
+		}
+
+		int baixados = 0;
+		try
+		{
+			for (List<ItemCompra> pagina : carrinhosGrandes.paginas(carrinhoId))
+			{
+				CarrinhosGrandes.Lote lote = CarrinhosGrandes.Lote.de(pagina);
+				if (baixados >= assinaturas.size() || assinaturas.get(baixados) != lote.assinatura())
+				{
+					throw new IllegalStateException("Carrinho alterado durante a finalização.");
+				}
+
+				EstoqueBaixaDTO baixa = Futuros.aguardar(
+						estoqueExternal.darBaixa(lote.produtosIds(), lote.produtosQuantidades(), timeoutExterno));
+				if (!baixa.sucesso())
+				{
+					throw new IllegalStateException("Erro ao dar baixa no estoque.");
+				}
+				baixados++;
+			}
+			if (baixados != assinaturas.size())
+			{
+				throw new IllegalStateException("Carrinho alterado durante a finalização.");
+			}
+		}
+		catch (RuntimeException e)
+		{
+			if (baixados > 0)
+			{
+				log.error("Baixa parcial de estoque do carrinho {}: {} de {} lotes baixados antes da falha.",
+						carrinhoId, baixados, assinaturas.size());
+			}
+			compensarPagamentoApos(e, cliente.getId(), pagamento.transacaoId());
+			throw e;
+		}
+
+		eventosCheckout.compraFinalizada(carrinhoId, cliente.getId(), pagamento.transacaoId());
+		return new CompraDTO(true, pagamento.transacaoId(), "Compra finalizada com sucesso.");
+	}
+
+	/**
+	 * Carrinho grande com reserva: uma reserva por página, feitas em sequência enquanto as
+	 * páginas são lidas e somadas. Uma falha antes da confirmação libera todas as reservas.
+	 */
+	private CompraDTO finalizarCarrinhoGrandeComReserva(Cliente cliente, Long carrinhoId)
+	{
+		SomaItens soma = new SomaItens();
+		List<Long> reservas = new ArrayList<>();
+		CompletableFuture<ReservaEstoqueDTO> reservaPendente = null;
+		try
+		{
+			for (List<ItemCompra> pagina : carrinhosGrandes.paginas(carrinhoId))
+			{
+				CarrinhosGrandes.Lote lote = CarrinhosGrandes.Lote.de(pagina);
+				if (reservaPendente != null)
+				{
+					registrarReserva(reservaPendente, reservas);
+				}
+				reservaPendente = reservaEstoque.reservar(lote.produtosIds(), lote.produtosQuantidades(),
+						validadeReserva, timeoutExterno);
+
+				soma.combinar(carrinhosGrandes.somar(pagina));
+			}
+			if (reservaPendente != null)
+			{
+				CompletableFuture<ReservaEstoqueDTO> ultima = reservaPendente;
+				reservaPendente = null;
+				registrarReserva(ultima, reservas);
+			}
+		}
+		catch (RuntimeException e)
+		{
+			if (reservaPendente != null)
+			{
+				reservaPendente.thenAccept(reserva -> {
+					if (Boolean.TRUE.equals(reserva.reservado()))
+					{
+						liberarReserva(reserva.reservaId());
+					}
+				});
+			}
+			reservas.forEach(this::liberarReserva);
+			throw e;
+		}
+
+		PagamentoDTO pagamento;
+		try
+		{
+			Dinheiro custoTotal = carrinhosGrandes.cotar(soma, cliente.getRegiao(), cliente.getTipo());
+			pagamento = Futuros.aguardar(
+					pagamentoExternal.autorizarPagamento(cliente.getId(), custoTotal, timeoutExterno));
+			if (!pagamento.autorizado())
+			{
+				throw new IllegalStateException("Pagamento não autorizado.");
+			}
+		}
+		catch (RuntimeException e)
+		{
+			reservas.forEach(this::liberarReserva);
+			throw e;
+		}
+
+		int confirmadas = 0;
+		try
+		{
+			for (Long reservaId : reservas)
+			{
+				EstoqueBaixaDTO confirmacao = Futuros.aguardar(reservaEstoque.confirmarReserva(reservaId,
+						timeoutExterno));
+				if (!confirmacao.sucesso())
+				{
+					throw new IllegalStateException("Erro ao dar baixa no estoque.");
+				}
+				confirmadas++;
+			}
+		}
+		catch (RuntimeException e)
+		{
+			if (confirmadas > 0)
+			{
+				log.error("Baixa parcial de estoque do carrinho {}: {} de {} reservas confirmadas antes da falha.",
+						carrinhoId, confirmadas, reservas.size());
+			}
+			// A reserva que falhou fica como no checkout comum: expira se não foi confirmada
+			reservas.subList(confirmadas + 1, reservas.size()).forEach(this::liberarReserva);
+			compensarPagamentoApos(e, cliente.getId(), pagamento.transacaoId());
+			throw e;
+		}
+
+		eventosCheckout.compraFinalizada(carrinhoId, cliente.getId(), pagamento.transacaoId());
+		return new CompraDTO(true, pagamento.transacaoId(), "Compra finalizada com sucesso.");
+	}
+
+	private void registrarReserva(CompletableFuture<ReservaEstoqueDTO> reservaFuture, List<Long> reservas)
+	{
+		ReservaEstoqueDTO reserva = Futuros.aguardar(reservaFuture);
+		if (Boolean.TRUE.equals(reserva.reservado()))
+		{
+			reservas.add(reserva.reservaId());
+		}
+		exigirReserva(reserva);
+	}
+
+	/**
+	 * Checkout com reserva de estoque: a reserva substitui o par verificarDisponibilidade +
+	 * darBaixa, segurando o estoque até a confirmação após o pagamento. Não há janela em que
+	 * outro pedido consuma o estoque entre a verificação e a baixa.
+	 */
+	private CompraDTO finalizarComReserva(Cliente cliente, CarrinhoCheckoutDTO carrinho, List<Long> produtosIds,
+			List<Long> produtosQtds, long geracaoCotacoes)
+	{
+		CompletableFuture<ReservaEstoqueDTO> reservaRemota = reservaEstoque.reservar(produtosIds, produtosQtds,
+				validadeReserva, timeoutExterno);
+		// O cancelamento de reservaFuture não chega à reservaRemota: uma reserva concluída
+		// precisa ser conhecida para ser liberada
+		CompletableFuture<ReservaEstoqueDTO> reservaFuture = reservaRemota.thenApply(this::exigirReserva);
+		CompletableFuture<Dinheiro> custoFuture = EtapasParalelas
+				.naThreadAtual(() -> calcularCusto(carrinho, cliente.getRegiao(), cliente.getTipo(),
+						geracaoCotacoes));
+
+		try
+		{
+			EtapasParalelas.aguardarTodas(reservaFuture, custoFuture);
+		}
+		catch (RuntimeException e)
+		{
+			// A reserva pode ter sido concluída mesmo com a falha do cálculo
+			reservaRemota.thenAccept(reserva -> {
+				if (Boolean.TRUE.equals(reserva.reservado()))
+				{
+					liberarReserva(reserva.reservaId());
+				}
+			});
+			throw e;
+		}
+
+		ReservaEstoqueDTO reserva = reservaFuture.join();
+		Dinheiro custoTotal = custoFuture.join();
+
+		PagamentoDTO pagamento;
+		try
+		{
+			pagamento = Futuros.aguardar(
+					pagamentoExternal.autorizarPagamento(cliente.getId(), custoTotal, timeoutExterno));
+		}
+		catch (RuntimeException e)
+		{
+			liberarReserva(reserva.reservaId());
+			throw e;
+		}
+
+		if (!pagamento.autorizado())
+		{
+			liberarReserva(reserva.reservaId());
+			throw new IllegalStateException("Pagamento não autorizado.");
+		}
 
+		EstoqueBaixaDTO confirmacao;
+		try
+		{
+			confirmacao = Futuros.aguardar(reservaEstoque.confirmarReserva(reserva.reservaId(), timeoutExterno));
+		}
+		catch (RuntimeException e)
+		{
+			compensarPagamentoApos(e, cliente.getId(), pagamento.transacaoId());
+			throw e;
+		}
+
+		if (!confirmacao.sucesso())
+		{
+			eventosCheckout.compensarPagamento(cliente.getId(), pagamento.transacaoId());
+			throw new IllegalStateException("Erro ao dar baixa no estoque.");
+		}
+
+		eventosCheckout.compraFinalizada(carrinho.carrinhoId(), cliente.getId(), pagamento.transacaoId());
+		return new CompraDTO(true, pagamento.transacaoId(), "Compra finalizada com sucesso.");
+	}
+
+	/**
+	 * Compensa o pagamento quando a baixa falhou com exceção, sem mascarar a falha original.
+	 */
+	private void compensarPagamentoApos(RuntimeException falha, Long clienteId, Long pagamentoTransacaoId)
+	{
+		try
+		{
+			eventosCheckout.compensarPagamento(clienteId, pagamentoTransacaoId);
+		}
+		catch (RuntimeException e)
+		{
+			falha.addSuppressed(e);
+		}
+	}
+
+	/**
+	 * Libera a reserva sem aguardar a resposta. Se a liberação falhar, a reserva expira
+	 * sozinha ao fim da validade.
+	 */
+	private void liberarReserva(Long reservaId)
+	{
+		reservaEstoque.liberarReserva(reservaId, timeoutExterno).exceptionally(erro -> {
+			log.warn("Falha ao liberar reserva de estoque {}; ela expirará sozinha.", reservaId, erro);
+			return null;
+		});
+	}
+
+	private ReservaEstoqueDTO exigirReserva(ReservaEstoqueDTO reserva)
+	{
+		if (!reserva.reservado())
+		{
+			throw new IllegalStateException("Itens fora de estoque.");
+		}
+
+		return reserva;
+	}
+
+	/**
+	 * Verificação remota de disponibilidade que falha se faltar estoque. Cancelar o future
+	 * devolvido interrompe a chamada ao estoque em andamento.
+	 */
+	private CompletableFuture<DisponibilidadeDTO> verificarDisponibilidade(List<Long> produtosIds,
+			List<Long> produtosQtds)
+	{
+		CompletableFuture<DisponibilidadeDTO> remota = estoqueExternal.verificarDisponibilidade(produtosIds,
+				produtosQtds, timeoutExterno);
+		return Futuros.cancelandoOrigem(remota.thenApply(this::exigirDisponibilidade), remota);
+	}
+
+	private DisponibilidadeDTO exigirDisponibilidade(DisponibilidadeDTO disponibilidade)
+	{
+		if (!disponibilidade.disponivel())
+		{
+			throw new IllegalStateException("Itens fora de estoque.");
+		}
+
+		return disponibilidade;
+	}
+
+	/**
+	 * Custo total do carrinho em reais, com escala 2. A região ajusta o frete e o tipo de
+	 * cliente soma um desconto de fidelidade, conforme {@code ecommerce.preco.regiao.*} e
+	 * {@code ecommerce.preco.fidelidade.*} (neutros por padrão).
+	 */
 	public BigDecimal calcularCustoTotal(CarrinhoDeCompras carrinho, Regiao regiao, TipoCliente tipoCliente)
 	{
-        BigDecimal totalCarrinho = calcularTotalCarrinho(carrinho);
-        BigDecimal totalFrete = calcularFrete(carrinho);
-
-        return totalCarrinho.add(totalFrete).setScale(2, BigDecimal.ROUND_HALF_UP);
-
-	}
-
-    private BigDecimal calcularFrete(CarrinhoDeCompras carrinho) {
-        BigDecimal adicionalProdutosFrageis =
-                carrinho.getItens().stream().map(
-                itemCompra -> {
-                        if(itemCompra.getProduto().isFragil()){
-                            return BigDecimal.valueOf(itemCompra.getQuantidade());
-                        }else{
-                            return BigDecimal.ZERO;
-                        }
-                    }
-                ).reduce(BigDecimal.ZERO,BigDecimal::add).multiply(BigDecimal.valueOf(5));
-
-
-        BigDecimal pesoTotal = carrinho.getItens().stream().map(
-                itemCompra -> itemCompra
-                        .getProduto()
-                        .getPesoFisico()
-                        .multiply(BigDecimal.valueOf(itemCompra.getQuantidade()))).reduce(BigDecimal.ZERO, BigDecimal::add);
-
-        BigDecimal multiplicadorPeso;
-
-        if(pesoTotal.compareTo(BigDecimal.ZERO) <= 0){
-            throw  new RuntimeException();
-        }else if(pesoTotal.compareTo(BigDecimal.valueOf(5))<=0){
-            multiplicadorPeso = BigDecimal.valueOf(0);
-        }else if(pesoTotal.compareTo(BigDecimal.valueOf(10))<=0){
-            multiplicadorPeso = BigDecimal.valueOf(2);
-        }else if(pesoTotal.compareTo(BigDecimal.valueOf(50))<=0){
-            multiplicadorPeso = BigDecimal.valueOf(4);
-        }else{
-            multiplicadorPeso = BigDecimal.valueOf(7);
-        }
-        BigDecimal freteTotal = pesoTotal.multiply(multiplicadorPeso).add(adicionalProdutosFrageis);
-        return freteTotal;
-    }
-
-    private BigDecimal calcularTotalCarrinho(CarrinhoDeCompras carrinho) {
-        BigDecimal totalBruto = carrinho.getItens().stream().map(items ->
-                items.getProduto().getPreco().multiply(BigDecimal.valueOf(items.getQuantidade()))).reduce(BigDecimal.ZERO,BigDecimal::add);
-        BigDecimal descontoBase;
-        if(totalBruto.compareTo(BigDecimal.valueOf(1000))>=0){
-            descontoBase = BigDecimal.valueOf(20);
-        }else if(totalBruto.compareTo(BigDecimal.valueOf(500))>=0){
-            descontoBase = BigDecimal.valueOf(10);
-        }else if(totalBruto.compareTo(BigDecimal.valueOf(0))>=0){
-            descontoBase = BigDecimal.valueOf(0);
-        }else{
-            throw new RuntimeException();
-        }
-
-        BigDecimal descontoTotal = descontoBase.divide(BigDecimal.valueOf(100),2,BigDecimal.ROUND_HALF_UP).multiply(totalBruto);
-        return totalBruto.subtract(descontoTotal);
-
-    }
+		return cotacoes.cotar(carrinho, regiao, tipoCliente).emReais();
+	}
+
+	/**
+	 * Com o modo sombra habilitado, uma amostra das cotações é comparada com a implementação
+	 * candidata fora desta thread.
+	 *
+	 * @param geracaoCotacoes geração do cache de cotações lida antes de ler as linhas
+	 */
+	private Dinheiro calcularCusto(CarrinhoCheckoutDTO carrinho, Regiao regiao, TipoCliente tipoCliente,
+			long geracaoCotacoes)
+	{
+		if (!precificacaoSombra.habilitada())
+		{
+			return cotacoes.cotar(carrinho, regiao, tipoCliente, geracaoCotacoes);
+		}
+
+		// A candidata recebe a mesma tabela e o mesmo ajuste do cálculo principal
+		TabelaRegrasPreco tabela = cotacoes.regrasAtuais();
+		AjustePreco ajuste = tabela.ajuste(regiao, tipoCliente);
+		Dinheiro custo = cotacoes.cotar(carrinho, tabela, ajuste, geracaoCotacoes);
+		precificacaoSombra.comparar(carrinho, tabela, ajuste, custo);
+		return custo;
+	}
 }
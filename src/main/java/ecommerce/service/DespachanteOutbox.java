@@ -0,0 +1,199 @@
+package ecommerce.service;
+
+import java.time.Duration;
+import java.time.Instant;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.context.ApplicationEventPublisher;
+import org.springframework.dao.OptimisticLockingFailureException;
+import org.springframework.data.domain.PageRequest;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Component;
+
+import ecommerce.entity.EventoOutbox;
+import ecommerce.entity.StatusEventoOutbox;
+import ecommerce.external.Futuros;
+import ecommerce.external.IPagamentoExternalAsync;
+import ecommerce.repository.EventoOutboxRepository;
+
+/**
+ * Entrega em lotes os eventos pendentes do outbox. Cada evento é reservado antes da entrega,
+ * para que duas instâncias do despachante não entreguem o mesmo evento; a reserva dura o
+ * timeout externo mais uma margem e, se a instância cair no meio, o evento volta a vencer.
+ * As entregas de um lote seguem em paralelo; as que falham voltam para a fila com espera
+ * exponencial até o limite de tentativas, quando o evento fica como
+ * {@link StatusEventoOutbox#FALHOU} para tratamento manual.
+ */
+@Component
+@ConditionalOnProperty(name = "ecommerce.outbox.despachante.habilitado", havingValue = "true", matchIfMissing = true)
+public class DespachanteOutbox
+{
+	private static final Logger log = LoggerFactory.getLogger(DespachanteOutbox.class);
+
+	private final EventoOutboxRepository repository;
+	private final IPagamentoExternalAsync pagamentoExternal;
+	private final ApplicationEventPublisher eventos;
+
+	private final int tamanhoLote;
+	private final int maximoTentativas;
+	private final Duration esperaInicial;
+	private final Duration esperaMaxima;
+	private final Duration timeoutExterno;
+
+	@Autowired
+	public DespachanteOutbox(EventoOutboxRepository repository, IPagamentoExternalAsync pagamentoExternal,
+			ApplicationEventPublisher eventos,
+			@Value("${ecommerce.outbox.tamanho-lote:100}") int tamanhoLote,
+			@Value("${ecommerce.outbox.maximo-tentativas:10}") int maximoTentativas,
+			@Value("${ecommerce.outbox.espera-inicial:1s}") Duration esperaInicial,
+			@Value("${ecommerce.outbox.espera-maxima:5m}") Duration esperaMaxima,
+			@Value("${ecommerce.external.timeout:5s}") Duration timeoutExterno)
+	{
+		this.repository = repository;
+		this.pagamentoExternal = pagamentoExternal;
+		this.eventos = eventos;
+		this.tamanhoLote = tamanhoLote;
+		this.maximoTentativas = maximoTentativas;
+		this.esperaInicial = esperaInicial;
+		this.esperaMaxima = esperaMaxima;
+		this.timeoutExterno = timeoutExterno;
+	}
+
+	@Scheduled(fixedDelayString = "${ecommerce.outbox.intervalo-ms:1000}")
+	public void despachar()
+	{
+		// Lotes cheios indicam fila acumulada: continua até esvaziar os eventos já vencidos
+		int processados;
+		do
+		{
+			processados = processarLote();
+		}
+		while (processados == tamanhoLote);
+	}
+
+	/**
+	 * Entrega um lote de eventos vencidos e retorna quantos foram lidos, inclusive os que
+	 * outra instância reservou primeiro.
+	 */
+	public int processarLote()
+	{
+		Instant agora = Instant.now();
+		List<EventoOutbox> lote = repository.findByStatusAndProximaTentativaEmLessThanEqualOrderByIdAsc(
+				StatusEventoOutbox.PENDENTE, agora, PageRequest.of(0, tamanhoLote));
+		if (lote.isEmpty())
+		{
+			return 0;
+		}
+
+		List<EventoOutbox> reservados = reservar(lote, agora);
+		List<CompletableFuture<Void>> entregas = reservados.stream().map(this::entregar).toList();
+		for (int i = 0; i < reservados.size(); i++)
+		{
+			EventoOutbox evento = reservados.get(i);
+			try
+			{
+				Futuros.aguardar(entregas.get(i));
+				evento.setStatus(StatusEventoOutbox.CONCLUIDO);
+				evento.setUltimoErro(null);
+			}
+			catch (RuntimeException e)
+			{
+				reagendar(evento, e, agora);
+			}
+			gravar(evento);
+		}
+		return lote.size();
+	}
+
+	private List<EventoOutbox> reservar(List<EventoOutbox> lote, Instant agora)
+	{
+		Instant reservadoAte = agora.plus(timeoutExterno.multipliedBy(2));
+		List<EventoOutbox> reservados = new ArrayList<>(lote.size());
+		for (EventoOutbox evento : lote)
+		{
+			if (repository.reservar(evento.getId(), evento.getVersao(), StatusEventoOutbox.PENDENTE, reservadoAte) == 1)
+			{
+				// Acompanha a versão gravada pela reserva, conferida de novo ao gravar o resultado
+				evento.setVersao(evento.getVersao() + 1);
+				evento.setProximaTentativaEm(reservadoAte);
+				reservados.add(evento);
+			}
+		}
+		return reservados;
+	}
+
+	/**
+	 * Grava um evento por vez: um conflito de versão descarta só o resultado daquele evento,
+	 * que volta a ser entregue quando a reserva vencer.
+	 */
+	private void gravar(EventoOutbox evento)
+	{
+		try
+		{
+			repository.save(evento);
+		}
+		catch (OptimisticLockingFailureException e)
+		{
+			log.warn("Evento {} do outbox atualizado concorrentemente; será reavaliado.", evento.getId(), e);
+		}
+	}
+
+	private CompletableFuture<Void> entregar(EventoOutbox evento)
+	{
+		try
+		{
+			switch (evento.getTipo())
+			{
+				case CANCELAR_PAGAMENTO:
+					return pagamentoExternal.cancelarPagamento(evento.getClienteId(), evento.getTransacaoPagamentoId(),
+							timeoutExterno);
+				case COMPRA_FINALIZADA:
+					eventos.publishEvent(new CompraFinalizadaEvento(evento.getCarrinhoId(), evento.getClienteId(),
+							evento.getTransacaoPagamentoId()));
+					return CompletableFuture.completedFuture(null);
+				default:
+					throw new IllegalStateException("Tipo de evento desconhecido: " + evento.getTipo());
+			}
+		}
+		catch (RuntimeException e)
+		{
+			return CompletableFuture.failedFuture(e);
+		}
+	}
+
+	private void reagendar(EventoOutbox evento, RuntimeException erro, Instant agora)
+	{
+		int tentativas = evento.getTentativas() + 1;
+		evento.setTentativas(tentativas);
+		evento.setUltimoErro(String.valueOf(erro.getMessage()));
+
+		if (tentativas >= maximoTentativas)
+		{
+			evento.setStatus(StatusEventoOutbox.FALHOU);
+			log.error("Evento {} do outbox ({}) falhou após {} tentativas.", evento.getId(), evento.getTipo(),
+					tentativas, erro);
+			return;
+		}
+
+		evento.setProximaTentativaEm(agora.plus(espera(tentativas)));
+		log.warn("Falha ao entregar evento {} do outbox ({}), tentativa {}: {}", evento.getId(), evento.getTipo(),
+				tentativas, erro.getMessage());
+	}
+
+	/**
+	 * Espera exponencial: esperaInicial, 2x, 4x... limitada a esperaMaxima.
+	 */
+	Duration espera(int tentativas)
+	{
+		int expoente = Math.min(tentativas - 1, 30);
+		Duration espera = esperaInicial.multipliedBy(1L << expoente);
+		return espera.compareTo(esperaMaxima) > 0 ? esperaMaxima : espera;
+	}
+}
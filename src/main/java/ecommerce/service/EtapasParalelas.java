@@ -0,0 +1,70 @@
+package ecommerce.service;
+
+import java.util.concurrent.CancellationException;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.function.Supplier;
+
+import ecommerce.external.Futuros;
+
+/**
+ * Coordena etapas independentes do checkout executadas ao mesmo tempo.
+ * Na primeira falha as demais etapas são canceladas e a exceção original é relançada.
+ */
+final class EtapasParalelas
+{
+	private EtapasParalelas()
+	{
+	}
+
+	/**
+	 * Executa a etapa na thread chamadora, devolvendo o resultado (ou a falha) como future.
+	 */
+	static <T> CompletableFuture<T> naThreadAtual(Supplier<T> etapa)
+	{
+		try
+		{
+			return CompletableFuture.completedFuture(etapa.get());
+		}
+		catch (RuntimeException e)
+		{
+			return CompletableFuture.failedFuture(e);
+		}
+	}
+
+	/**
+	 * Aguarda todas as etapas. Se alguma falhar, cancela as restantes sem esperar por
+	 * elas e relança a exceção da etapa que falhou.
+	 * <p>
+	 * {@code cancel(true)} num {@link CompletableFuture} não interrompe a tarefa que o
+	 * completaria: só a chamada remota criada por {@link Futuros#executar} e ligada à etapa
+	 * por {@link Futuros#cancelandoOrigem} é interrompida. Nas demais o resultado é apenas
+	 * descartado.
+	 */
+	static void aguardarTodas(CompletableFuture<?>... etapas)
+	{
+		CompletableFuture<Object> primeiraFalha = new CompletableFuture<>();
+		for (CompletableFuture<?> etapa : etapas)
+		{
+			etapa.whenComplete((resultado, erro) -> {
+				if (erro != null)
+				{
+					primeiraFalha.completeExceptionally(erro);
+				}
+			});
+		}
+
+		try
+		{
+			CompletableFuture.anyOf(CompletableFuture.allOf(etapas), primeiraFalha).join();
+		}
+		catch (CompletionException | CancellationException e)
+		{
+			for (CompletableFuture<?> etapa : etapas)
+			{
+				etapa.cancel(true);
+			}
+			throw Futuros.desembrulhar(e);
+		}
+	}
+}
@@ -0,0 +1,17 @@
+package ecommerce.service;
+
+/**
+ * Efeitos que o checkout dispara depois do pagamento autorizado e que não precisam (nem
+ * devem) atrasar a resposta da requisição.
+ */
+public interface EventosCheckout
+{
+
+	/**
+	 * O pagamento foi autorizado, mas a compra não pôde ser concluída: a transação deve ser
+	 * cancelada no serviço de pagamento.
+	 */
+	void compensarPagamento(Long clienteId, Long pagamentoTransacaoId);
+
+	void compraFinalizada(Long carrinhoId, Long clienteId, Long pagamentoTransacaoId);
+}
@@ -0,0 +1,33 @@
+package ecommerce.service;
+
+import java.time.Duration;
+
+import ecommerce.external.Futuros;
+import ecommerce.external.IPagamentoExternalAsync;
+
+/**
+ * Executa a compensação na própria requisição, aguardando o cancelamento do pagamento. Usado
+ * quando o {@link CompraService} é montado sem outbox (ex.: testes com os clientes síncronos).
+ */
+final class EventosCheckoutImediatos implements EventosCheckout
+{
+	private final IPagamentoExternalAsync pagamentoExternal;
+	private final Duration timeout;
+
+	EventosCheckoutImediatos(IPagamentoExternalAsync pagamentoExternal, Duration timeout)
+	{
+		this.pagamentoExternal = pagamentoExternal;
+		this.timeout = timeout;
+	}
+
+	@Override
+	public void compensarPagamento(Long clienteId, Long pagamentoTransacaoId)
+	{
+		Futuros.aguardar(pagamentoExternal.cancelarPagamento(clienteId, pagamentoTransacaoId, timeout));
+	}
+
+	@Override
+	public void compraFinalizada(Long carrinhoId, Long clienteId, Long pagamentoTransacaoId)
+	{
+	}
+}
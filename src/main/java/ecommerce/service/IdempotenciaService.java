@@ -0,0 +1,320 @@
+package ecommerce.service;
+
+import java.time.Duration;
+import java.time.Instant;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.Optional;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+import java.util.concurrent.locks.ReentrantLock;
+import java.util.function.Supplier;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Service;
+
+import ecommerce.dto.CompraDTO;
+import ecommerce.entity.CompraIdempotente;
+import ecommerce.external.Futuros;
+import ecommerce.repository.CompraIdempotenteRepository;
+
+/**
+ * Garante que retentativas de uma mesma compra (mesma chave de idempotência) não executem o
+ * checkout de novo. Compras concluídas com sucesso ficam num mapa em memória, limitado e com
+ * validade, e opcionalmente numa tabela. Uma requisição duplicada concorrente aguarda o
+ * resultado da primeira em vez de repetir a autorização de pagamento, por no máximo
+ * {@code ecommerce.idempotencia.espera-maxima}. A capacidade limita apenas as compras
+ * concluídas; uma compra em andamento só deixa o mapa ao terminar ou, se quem a executa
+ * morreu sem concluí-la, após {@code ecommerce.idempotencia.prazo-em-andamento}, quando a
+ * próxima requisição com a mesma chave a executa de novo.
+ * <p>
+ * Falhas não são guardadas: a próxima tentativa executa a compra normalmente.
+ */
+@Service
+public class IdempotenciaService
+{
+	private static final Logger log = LoggerFactory.getLogger(IdempotenciaService.class);
+
+	public static final Duration ESPERA_MAXIMA_PADRAO = Duration.ofSeconds(30);
+	public static final Duration PRAZO_EM_ANDAMENTO_PADRAO = Duration.ofMinutes(5);
+
+	private final Optional<CompraIdempotenteRepository> repository;
+	private final Duration validade;
+	private final int capacidade;
+	private final Duration esperaMaxima;
+	private final Duration prazoEmAndamento;
+	private final boolean habilitada;
+	// Em ordem de acesso: as primeiras são as menos usadas; protegido por lock. Uma trava em vez
+	// de synchronized: threads virtuais que disputam a entrada não prendem a thread portadora
+	private final Map<String, Entrada> entradas = new LinkedHashMap<>(16, 0.75f, true);
+	private final ReentrantLock lock = new ReentrantLock();
+
+	/**
+	 * Armazena os resultados apenas em memória.
+	 */
+	public IdempotenciaService(Duration validade, int capacidade)
+	{
+		this(Optional.empty(), validade, capacidade, ESPERA_MAXIMA_PADRAO, PRAZO_EM_ANDAMENTO_PADRAO, true);
+	}
+
+	/**
+	 * Armazena os resultados apenas em memória.
+	 */
+	public IdempotenciaService(Duration validade, int capacidade, Duration esperaMaxima)
+	{
+		this(Optional.empty(), validade, capacidade, esperaMaxima, PRAZO_EM_ANDAMENTO_PADRAO, true);
+	}
+
+	/**
+	 * Armazena os resultados apenas em memória.
+	 */
+	public IdempotenciaService(Duration validade, int capacidade, Duration esperaMaxima, Duration prazoEmAndamento)
+	{
+		this(Optional.empty(), validade, capacidade, esperaMaxima, prazoEmAndamento, true);
+	}
+
+	@Autowired
+	public IdempotenciaService(CompraIdempotenteRepository repository,
+			@Value("${ecommerce.idempotencia.persistente:false}") boolean persistente,
+			@Value("${ecommerce.idempotencia.validade:24h}") Duration validade,
+			@Value("${ecommerce.idempotencia.capacidade:10000}") int capacidade,
+			@Value("${ecommerce.idempotencia.espera-maxima:30s}") Duration esperaMaxima,
+			@Value("${ecommerce.idempotencia.prazo-em-andamento:5m}") Duration prazoEmAndamento)
+	{
+		this(persistente ? Optional.of(repository) : Optional.empty(), validade, capacidade, esperaMaxima,
+				prazoEmAndamento, true);
+	}
+
+	private IdempotenciaService(Optional<CompraIdempotenteRepository> repository, Duration validade, int capacidade,
+			Duration esperaMaxima, Duration prazoEmAndamento, boolean habilitada)
+	{
+		if (capacidade < 1)
+		{
+			throw new IllegalArgumentException("Capacidade do armazenamento de idempotência deve ser positiva.");
+		}
+		if (prazoEmAndamento.compareTo(esperaMaxima) < 0)
+		{
+			throw new IllegalArgumentException(
+					"Prazo de compra em andamento deve ser maior ou igual à espera máxima da duplicada.");
+		}
+
+		this.repository = repository;
+		this.validade = validade;
+		this.capacidade = capacidade;
+		this.esperaMaxima = esperaMaxima;
+		this.prazoEmAndamento = prazoEmAndamento;
+		this.habilitada = habilitada;
+	}
+
+	/**
+	 * Nenhum resultado guardado: toda chamada executa a compra.
+	 */
+	public static IdempotenciaService desligada()
+	{
+		return new IdempotenciaService(Optional.empty(), Duration.ZERO, 1, Duration.ZERO, Duration.ZERO, false);
+	}
+
+	public boolean habilitada()
+	{
+		return habilitada;
+	}
+
+	/**
+	 * Chave usada quando o cliente não envia o cabeçalho {@code Idempotency-Key}. Inclui a
+	 * versão do conteúdo do carrinho: depois de uma compra concluída, o mesmo carrinho com
+	 * itens alterados é uma nova compra, não uma retentativa. A versão é a lida pelo próprio
+	 * checkout junto com o carrinho.
+	 *
+	 * @param versaoCarrinho {@code null} se o carrinho não existe
+	 */
+	public static String chavePadrao(Long carrinhoId, Long clienteId, Long versaoCarrinho)
+	{
+		return "pedido:" + pedido(carrinhoId, clienteId) + ":v" + versaoCarrinho;
+	}
+
+	/**
+	 * Executa a compra uma única vez por chave. Retorna o resultado guardado se a chave já foi
+	 * concluída, ou aguarda a execução em andamento com a mesma chave.
+	 *
+	 * @throws IllegalArgumentException se a chave já foi usada para outro carrinho ou cliente
+	 * @throws IllegalStateException se a execução em andamento não termina dentro da espera
+	 *             máxima
+	 */
+	public CompraDTO executar(String chave, Long carrinhoId, Long clienteId, Supplier<CompraDTO> compra)
+	{
+		if (!habilitada)
+		{
+			return compra.get();
+		}
+
+		String pedido = pedido(carrinhoId, clienteId);
+		long agora = System.nanoTime();
+
+		Entrada entrada;
+		boolean executarAqui = false;
+		lock.lock();
+		try
+		{
+			entrada = entradas.get(chave);
+			if (entrada == null || entrada.expirada(agora))
+			{
+				entrada = new Entrada(pedido, agora + prazoEmAndamento.toNanos(), agora + validade.toNanos(),
+						new CompletableFuture<>());
+				entradas.put(chave, entrada);
+				executarAqui = true;
+				descartarExcedentes();
+			}
+		}
+		finally
+		{
+			lock.unlock();
+		}
+
+		if (!entrada.pedido().equals(pedido))
+		{
+			throw new IllegalArgumentException("Chave de idempotência já usada em outra compra.");
+		}
+
+		if (!executarAqui)
+		{
+			return aguardar(entrada);
+		}
+
+		try
+		{
+			CompraDTO resultado = buscarPersistida(chave, pedido)
+					.orElseGet(() -> executarEGuardar(chave, pedido, compra));
+			entrada.resultado().complete(resultado);
+			if (!Boolean.TRUE.equals(resultado.sucesso()))
+			{
+				descartar(chave, entrada);
+			}
+			return resultado;
+		}
+		catch (RuntimeException | Error e)
+		{
+			entrada.resultado().completeExceptionally(e);
+			descartar(chave, entrada);
+			throw e;
+		}
+	}
+
+	/**
+	 * Aguarda a execução em andamento com a mesma chave, sem alterar o future compartilhado:
+	 * o esgotamento da espera afeta só esta requisição.
+	 */
+	private CompraDTO aguardar(Entrada entrada)
+	{
+		CompletableFuture<CompraDTO> espera = entrada.resultado().copy().orTimeout(esperaMaxima.toMillis(),
+				TimeUnit.MILLISECONDS);
+		try
+		{
+			return espera.join();
+		}
+		catch (CompletionException e)
+		{
+			if (e.getCause() instanceof TimeoutException && !entrada.resultado().isDone())
+			{
+				throw new IllegalStateException("Compra com a mesma chave ainda em andamento.");
+			}
+			throw Futuros.desembrulhar(e);
+		}
+	}
+
+	/**
+	 * Descarta as entradas concluídas menos usadas até respeitar a capacidade. Deve ser
+	 * chamado com o lock adquirido. As em andamento ficam, salvo as abandonadas: descartá-las
+	 * deixaria uma retentativa concorrente executar a compra de novo.
+	 */
+	private void descartarExcedentes()
+	{
+		long agora = System.nanoTime();
+		Iterator<Entrada> iterator = entradas.values().iterator();
+		while (entradas.size() > capacidade && iterator.hasNext())
+		{
+			Entrada entrada = iterator.next();
+			if (entrada.resultado().isDone() || entrada.abandonada(agora))
+			{
+				iterator.remove();
+			}
+		}
+	}
+
+	private CompraDTO executarEGuardar(String chave, String pedido, Supplier<CompraDTO> compra)
+	{
+		CompraDTO resultado = compra.get();
+		if (Boolean.TRUE.equals(resultado.sucesso()))
+		{
+			repository.ifPresent(r -> persistir(r, chave, pedido, resultado));
+		}
+		return resultado;
+	}
+
+	private Optional<CompraDTO> buscarPersistida(String chave, String pedido)
+	{
+		return repository.flatMap(r -> r.findById(chave))
+				.filter(c -> c.getCriadaEm().plus(validade).isAfter(Instant.now()))
+				.map(c -> {
+					if (!c.getPedido().equals(pedido))
+					{
+						throw new IllegalArgumentException("Chave de idempotência já usada em outra compra.");
+					}
+					return new CompraDTO(true, c.getTransacaoPagamentoId(), c.getMensagem());
+				});
+	}
+
+	private void persistir(CompraIdempotenteRepository r, String chave, String pedido, CompraDTO resultado)
+	{
+		try
+		{
+			r.save(new CompraIdempotente(chave, pedido, resultado.transacaoPagamentoId(), resultado.mensagem(),
+					Instant.now()));
+		}
+		catch (RuntimeException e)
+		{
+			// Compra já concluída: sem o registro, só se perde a proteção entre reinícios
+			log.warn("Falha ao persistir resultado idempotente da chave {}.", chave, e);
+		}
+	}
+
+	private void descartar(String chave, Entrada entrada)
+	{
+		lock.lock();
+		try
+		{
+			entradas.remove(chave, entrada);
+		}
+		finally
+		{
+			lock.unlock();
+		}
+	}
+
+	private static String pedido(Long carrinhoId, Long clienteId)
+	{
+		return carrinhoId + ":" + clienteId;
+	}
+
+	private record Entrada(String pedido, long abandonadaEmNanos, long expiraEmNanos,
+			CompletableFuture<CompraDTO> resultado)
+	{
+		/**
+		 * Concluída e vencida, ou em andamento além do prazo: quem a executava não a concluiu.
+		 */
+		boolean expirada(long agora)
+		{
+			return resultado.isDone() ? agora - expiraEmNanos > 0 : abandonada(agora);
+		}
+
+		boolean abandonada(long agora)
+		{
+			return !resultado.isDone() && agora - abandonadaEmNanos > 0;
+		}
+	}
+}
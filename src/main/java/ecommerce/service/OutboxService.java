@@ -0,0 +1,74 @@
+package ecommerce.service;
+
+import java.time.Duration;
+import java.time.Instant;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Service;
+
+import ecommerce.entity.EventoOutbox;
+import ecommerce.entity.TipoEventoOutbox;
+import ecommerce.external.IPagamentoExternalAsync;
+import ecommerce.repository.EventoOutboxRepository;
+
+/**
+ * Registra os eventos do checkout na tabela de outbox; a entrega fica a cargo do
+ * {@link DespachanteOutbox}, fora da requisição, com novas tentativas.
+ */
+@Service
+public class OutboxService implements EventosCheckout
+{
+	private static final Logger log = LoggerFactory.getLogger(OutboxService.class);
+
+	private final EventoOutboxRepository repository;
+	private final IPagamentoExternalAsync pagamentoExternal;
+	private final Duration timeoutExterno;
+
+	@Autowired
+	public OutboxService(EventoOutboxRepository repository, IPagamentoExternalAsync pagamentoExternal,
+			@Value("${ecommerce.external.timeout:5s}") Duration timeoutExterno)
+	{
+		this.repository = repository;
+		this.pagamentoExternal = pagamentoExternal;
+		this.timeoutExterno = timeoutExterno;
+	}
+
+	@Override
+	public void compensarPagamento(Long clienteId, Long pagamentoTransacaoId)
+	{
+		try
+		{
+			repository.save(new EventoOutbox(TipoEventoOutbox.CANCELAR_PAGAMENTO, null, clienteId,
+					pagamentoTransacaoId, Instant.now()));
+		}
+		catch (RuntimeException e)
+		{
+			// Sem o registro, tenta uma vez o cancelamento direto para não perder a compensação
+			log.error("Falha ao registrar cancelamento do pagamento {} no outbox; cancelando diretamente.",
+					pagamentoTransacaoId, e);
+			pagamentoExternal.cancelarPagamento(clienteId, pagamentoTransacaoId, timeoutExterno)
+					.exceptionally(erro -> {
+						log.error("Cancelamento do pagamento {} perdido.", pagamentoTransacaoId, erro);
+						return null;
+					});
+		}
+	}
+
+	@Override
+	public void compraFinalizada(Long carrinhoId, Long clienteId, Long pagamentoTransacaoId)
+	{
+		try
+		{
+			repository.save(new EventoOutbox(TipoEventoOutbox.COMPRA_FINALIZADA, carrinhoId, clienteId,
+					pagamentoTransacaoId, Instant.now()));
+		}
+		catch (RuntimeException e)
+		{
+			// A compra já foi concluída; apenas a notificação posterior se perde
+			log.warn("Falha ao registrar compra finalizada do carrinho {} no outbox.", carrinhoId, e);
+		}
+	}
+}
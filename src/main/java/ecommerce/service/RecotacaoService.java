@@ -0,0 +1,284 @@
+package ecommerce.service;
+
+import java.time.Instant;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.ForkJoinWorkerThread;
+import java.util.function.Function;
+import java.util.stream.Collectors;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.data.domain.PageRequest;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.support.TransactionOperations;
+
+import ecommerce.entity.CarrinhoDeCompras;
+import ecommerce.entity.Cliente;
+import ecommerce.entity.CotacaoCarrinho;
+import ecommerce.entity.ExecucaoRecotacao;
+import ecommerce.entity.StatusExecucaoRecotacao;
+import ecommerce.repository.CarrinhoDeComprasRepository;
+import ecommerce.repository.CotacaoCarrinhoRepository;
+import ecommerce.repository.ExecucaoRecotacaoRepository;
+import ecommerce.service.preco.AjustePreco;
+import ecommerce.service.preco.MotorPreco;
+import ecommerce.service.preco.TabelaRegrasPreco;
+import jakarta.annotation.PreDestroy;
+
+/**
+ * Recotação de todos os carrinhos após mudança de regras de preço. Os carrinhos são lidos em
+ * lotes por ordem de id, cotados em paralelo num {@link ForkJoinPool} próprio e gravados em
+ * {@link CotacaoCarrinho}. As cotações de cada lote e o progresso da
+ * {@link ExecucaoRecotacao} são gravados na mesma transação, o que permite retomar uma
+ * execução interrompida a partir do último lote concluído. As cotações anteriores são lidas
+ * nessa transação e atualizadas no lugar; só as novas são inseridas.
+ * <p>
+ * Um carrinho que não pode ser cotado (sem itens, por exemplo) é contado como falha e mantém
+ * a cotação anterior.
+ */
+@Service
+public class RecotacaoService
+{
+	private static final Logger log = LoggerFactory.getLogger(RecotacaoService.class);
+
+	private final CarrinhoDeComprasRepository carrinhoRepository;
+	private final CotacaoCarrinhoRepository cotacaoRepository;
+	private final ExecucaoRecotacaoRepository execucaoRepository;
+	private final MotorPreco motorPreco;
+	private final TransactionOperations transacoes;
+
+	private final int tamanhoLote;
+	private final ForkJoinPool pool;
+	private final ExecutorService segundoPlano;
+
+	@Autowired
+	public RecotacaoService(CarrinhoDeComprasRepository carrinhoRepository,
+			CotacaoCarrinhoRepository cotacaoRepository, ExecucaoRecotacaoRepository execucaoRepository,
+			MotorPreco motorPreco, TransactionOperations transacoes,
+			@Value("${ecommerce.recotacao.tamanho-lote:500}") int tamanhoLote,
+			@Value("${ecommerce.recotacao.paralelismo:0}") int paralelismo)
+	{
+		if (tamanhoLote < 1)
+		{
+			throw new IllegalArgumentException("Tamanho do lote de recotação deve ser positivo.");
+		}
+
+		this.carrinhoRepository = carrinhoRepository;
+		this.cotacaoRepository = cotacaoRepository;
+		this.execucaoRepository = execucaoRepository;
+		this.motorPreco = motorPreco;
+		this.transacoes = transacoes;
+		this.tamanhoLote = tamanhoLote;
+
+		this.pool = new ForkJoinPool(paralelismo > 0 ? paralelismo : Runtime.getRuntime().availableProcessors(),
+				p -> {
+					ForkJoinWorkerThread thread = ForkJoinPool.defaultForkJoinWorkerThreadFactory.newThread(p);
+					thread.setName("recotacao-" + thread.getPoolIndex());
+					thread.setDaemon(true);
+					return thread;
+				}, null, false);
+		this.segundoPlano = Executors.newSingleThreadExecutor(tarefa -> {
+			Thread thread = new Thread(tarefa, "recotacao-execucao");
+			thread.setDaemon(true);
+			return thread;
+		});
+	}
+
+	/**
+	 * Interrompe a execução em segundo plano, que pode ser retomada do último lote gravado.
+	 */
+	@PreDestroy
+	public void encerrar()
+	{
+		segundoPlano.shutdownNow();
+		pool.shutdownNow();
+	}
+
+	/**
+	 * Cria uma execução e a processa numa thread própria, uma execução por vez.
+	 */
+	public ExecucaoRecotacao iniciarEmSegundoPlano()
+	{
+		ExecucaoRecotacao execucao = iniciar();
+		executarEmSegundoPlano(execucao.getId());
+		return execucao;
+	}
+
+	/**
+	 * Retoma uma execução interrompida numa thread própria.
+	 *
+	 * @throws IllegalArgumentException se a execução não existe ou já foi concluída
+	 */
+	public ExecucaoRecotacao retomarEmSegundoPlano(Long execucaoId)
+	{
+		ExecucaoRecotacao execucao = buscar(execucaoId);
+		if (execucao.getStatus() == StatusExecucaoRecotacao.CONCLUIDA)
+		{
+			throw new IllegalArgumentException("Execução de recotação já concluída.");
+		}
+		executarEmSegundoPlano(execucaoId);
+		return execucao;
+	}
+
+	public ExecucaoRecotacao iniciar()
+	{
+		return execucaoRepository.save(new ExecucaoRecotacao(Instant.now()));
+	}
+
+	public ExecucaoRecotacao buscar(Long execucaoId)
+	{
+		return execucaoRepository.findById(execucaoId)
+				.orElseThrow(() -> new IllegalArgumentException("Execução de recotação não encontrada."));
+	}
+
+	/**
+	 * Processa a execução a partir do último lote concluído até o fim dos carrinhos.
+	 */
+	public ExecucaoRecotacao executar(Long execucaoId)
+	{
+		ExecucaoRecotacao execucao = buscar(execucaoId);
+		execucao.setStatus(StatusExecucaoRecotacao.EM_ANDAMENTO);
+		execucao.setUltimoErro(null);
+		log.info("Recotação {} a partir do carrinho {}.", execucaoId, execucao.getUltimoCarrinhoId());
+
+		try
+		{
+			List<Long> ids;
+			while (!(ids = carrinhoRepository.findIdsAposId(execucao.getUltimoCarrinhoId(),
+					PageRequest.of(0, tamanhoLote))).isEmpty())
+			{
+				execucao = processarLote(execucao, ids);
+			}
+
+			execucao.setStatus(StatusExecucaoRecotacao.CONCLUIDA);
+			execucao.setConcluidaEm(Instant.now());
+			execucao.setAtualizadaEm(execucao.getConcluidaEm());
+			execucao = execucaoRepository.save(execucao);
+			log.info("Recotação {} concluída: {} carrinhos ({} alterados, {} com falha), delta de {} centavos, "
+					+ "{} carrinhos/s.", execucaoId, execucao.getCarrinhosRecotados(), execucao.getCarrinhosAlterados(),
+					execucao.getCarrinhosComFalha(), execucao.getDeltaTotalCentavos(),
+					String.format("%.1f", execucao.carrinhosPorSegundo()));
+			return execucao;
+		}
+		catch (RuntimeException e)
+		{
+			registrarFalha(execucaoId, e);
+			throw e;
+		}
+	}
+
+	private ExecucaoRecotacao processarLote(ExecucaoRecotacao execucao, List<Long> ids)
+	{
+		long inicio = System.nanoTime();
+
+		List<CarrinhoDeCompras> carrinhos = carrinhoRepository.findAllByIdIn(ids);
+
+		// Uma tabela por lote: todos os carrinhos do lote são cotados com as mesmas regras
+		TabelaRegrasPreco tabela = motorPreco.regrasAtuais();
+		List<Cotado> cotados = pool.submit(() -> carrinhos.parallelStream().map(c -> cotar(c, tabela)).toList())
+				.join();
+
+		Instant agora = Instant.now();
+		ExecucaoRecotacao gravada = transacoes.execute(status -> {
+			Map<Long, CotacaoCarrinho> anteriores = cotacaoRepository.findAllById(ids).stream()
+					.collect(Collectors.toMap(CotacaoCarrinho::getCarrinhoId, Function.identity()));
+
+			List<CotacaoCarrinho> gravadas = new ArrayList<>(cotados.size());
+			for (Cotado cotado : cotados)
+			{
+				if (cotado.falhou())
+				{
+					execucao.setCarrinhosComFalha(execucao.getCarrinhosComFalha() + 1);
+					continue;
+				}
+
+				CotacaoCarrinho cotacao = anteriores.get(cotado.carrinhoId());
+				if (cotacao == null)
+				{
+					execucao.setCarrinhosNovos(execucao.getCarrinhosNovos() + 1);
+					cotacao = new CotacaoCarrinho(cotado.carrinhoId(), cotado.centavos(), execucao.getId(), agora);
+				}
+				else
+				{
+					if (cotacao.getCustoCentavos() != cotado.centavos())
+					{
+						execucao.setCarrinhosAlterados(execucao.getCarrinhosAlterados() + 1);
+						execucao.setDeltaTotalCentavos(
+								execucao.getDeltaTotalCentavos() + cotado.centavos() - cotacao.getCustoCentavos());
+					}
+					// Gerenciada nesta transação: o save não relê a linha e vira um UPDATE
+					cotacao.setCustoCentavos(cotado.centavos());
+					cotacao.setExecucaoId(execucao.getId());
+					cotacao.setCalculadaEm(agora);
+				}
+				execucao.setCarrinhosRecotados(execucao.getCarrinhosRecotados() + 1);
+				gravadas.add(cotacao);
+			}
+
+			execucao.setUltimoCarrinhoId(ids.get(ids.size() - 1));
+			execucao.setAtualizadaEm(agora);
+			execucao.setDuracaoMillis(execucao.getDuracaoMillis() + (System.nanoTime() - inicio) / 1_000_000);
+
+			cotacaoRepository.saveAll(gravadas);
+			return execucaoRepository.save(execucao);
+		});
+
+		log.debug("Recotação {}: {} carrinhos até o id {}, {} carrinhos/s.", gravada.getId(),
+				gravada.getCarrinhosRecotados(), gravada.getUltimoCarrinhoId(),
+				String.format("%.1f", gravada.carrinhosPorSegundo()));
+		return gravada;
+	}
+
+	private Cotado cotar(CarrinhoDeCompras carrinho, TabelaRegrasPreco tabela)
+	{
+		try
+		{
+			Cliente cliente = carrinho.getCliente();
+			AjustePreco ajuste = cliente == null ? AjustePreco.NEUTRO
+					: tabela.ajuste(cliente.getRegiao(), cliente.getTipo());
+			return new Cotado(carrinho.getId(), motorPreco.calcular(carrinho, tabela, ajuste).centavos(), false);
+		}
+		catch (RuntimeException e)
+		{
+			log.debug("Carrinho {} não pôde ser recotado.", carrinho.getId(), e);
+			return new Cotado(carrinho.getId(), 0, true);
+		}
+	}
+
+	private void executarEmSegundoPlano(Long execucaoId)
+	{
+		CompletableFuture.runAsync(() -> executar(execucaoId), segundoPlano).exceptionally(e -> {
+			log.error("Recotação {} interrompida; pode ser retomada.", execucaoId, e);
+			return null;
+		});
+	}
+
+	private void registrarFalha(Long execucaoId, RuntimeException erro)
+	{
+		try
+		{
+			// Relida: o progresso gravado é o do último lote concluído
+			ExecucaoRecotacao execucao = buscar(execucaoId);
+			execucao.setStatus(StatusExecucaoRecotacao.FALHOU);
+			execucao.setUltimoErro(String.valueOf(erro.getMessage()));
+			execucao.setAtualizadaEm(Instant.now());
+			execucaoRepository.save(execucao);
+		}
+		catch (RuntimeException e)
+		{
+			erro.addSuppressed(e);
+		}
+	}
+
+	private record Cotado(Long carrinhoId, long centavos, boolean falhou)
+	{
+	}
+}
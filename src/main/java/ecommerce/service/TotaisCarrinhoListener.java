@@ -0,0 +1,60 @@
+package ecommerce.service;
+
+import org.springframework.beans.factory.ObjectProvider;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.TransactionDefinition;
+import org.springframework.transaction.support.TransactionSynchronization;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import ecommerce.entity.Produto;
+import ecommerce.repository.CarrinhoDeComprasRepository;
+
+/**
+ * Mantém os totais gravados dos carrinhos consistentes com o catálogo: quando um produto é
+ * removido ou tem preço, peso ou fragilidade alterados (avisado por
+ * {@code AlteracoesProdutoConfig}), os totais dos carrinhos que o contêm são descartados após o
+ * commit, numa transação própria.
+ * Repositório e gerenciador de transações são obtidos sob demanda porque o listener é criado
+ * junto com o {@code EntityManagerFactory} do qual eles dependem.
+ */
+@Component
+public class TotaisCarrinhoListener
+{
+	private final ObjectProvider<CarrinhoDeComprasRepository> carrinhoRepository;
+	private final ObjectProvider<PlatformTransactionManager> transacoes;
+
+	public TotaisCarrinhoListener(ObjectProvider<CarrinhoDeComprasRepository> carrinhoRepository,
+			ObjectProvider<PlatformTransactionManager> transacoes)
+	{
+		this.carrinhoRepository = carrinhoRepository;
+		this.transacoes = transacoes;
+	}
+
+	public void aoAlterar(Produto produto)
+	{
+		Long produtoId = produto.getId();
+		if (!TransactionSynchronizationManager.isSynchronizationActive())
+		{
+			invalidar(produtoId);
+			return;
+		}
+
+		TransactionSynchronizationManager.registerSynchronization(new TransactionSynchronization()
+		{
+			@Override
+			public void afterCommit()
+			{
+				invalidar(produtoId);
+			}
+		});
+	}
+
+	private void invalidar(Long produtoId)
+	{
+		TransactionTemplate nova = new TransactionTemplate(transacoes.getObject());
+		nova.setPropagationBehavior(TransactionDefinition.PROPAGATION_REQUIRES_NEW);
+		nova.executeWithoutResult(status -> carrinhoRepository.getObject().invalidarTotaisComProduto(produtoId));
+	}
+}
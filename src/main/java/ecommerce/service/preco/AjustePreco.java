@@ -0,0 +1,24 @@
+package ecommerce.service.preco;
+
+/**
+ * Fatores de uma combinação região x tipo de cliente: percentual aplicado ao frete (100 =
+ * sem acréscimo) e pontos percentuais de desconto de fidelidade, somados ao desconto da
+ * faixa do carrinho (limitado a 100%).
+ */
+public record AjustePreco(long percentualFrete, long descontoFidelidade)
+{
+	public static final AjustePreco NEUTRO = new AjustePreco(100, 0);
+
+	public AjustePreco
+	{
+		if (percentualFrete < 0)
+		{
+			throw new IllegalArgumentException("Percentual de frete não pode ser negativo: " + percentualFrete);
+		}
+		if (descontoFidelidade < 0 || descontoFidelidade > 100)
+		{
+			throw new IllegalArgumentException(
+					"Desconto de fidelidade deve estar entre 0 e 100: " + descontoFidelidade);
+		}
+	}
+}
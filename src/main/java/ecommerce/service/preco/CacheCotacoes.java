@@ -0,0 +1,436 @@
+package ecommerce.service.preco;
+
+import java.time.Duration;
+import java.util.Arrays;
+import java.util.Comparator;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.Supplier;
+
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+import com.github.benmanes.caffeine.cache.Cache;
+import com.github.benmanes.caffeine.cache.Caffeine;
+import com.github.benmanes.caffeine.cache.RemovalCause;
+
+import ecommerce.dto.CarrinhoCheckoutDTO;
+import ecommerce.dto.Dinheiro;
+import ecommerce.dto.LinhaCheckoutDTO;
+import ecommerce.entity.CarrinhoDeCompras;
+import ecommerce.entity.ItemCompra;
+import ecommerce.entity.Regiao;
+import ecommerce.entity.TipoCliente;
+import ecommerce.entity.TotaisCarrinho;
+import io.micrometer.core.instrument.FunctionCounter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.binder.MeterBinder;
+
+/**
+ * Cotações recentes por conteúdo do carrinho: a chave é a lista ordenada de (produtoId,
+ * quantidade), a versão da tabela de regras de preço e os fatores de região/tipo de cliente,
+ * de modo que o mesmo conteúdo, em qualquer carrinho e em qualquer ordem, é cotado uma
+ * única vez enquanto as regras não mudam. O cache (Caffeine) é limitado em quantidade e cada
+ * cotação tem validade.
+ * <p>
+ * Como a chave não inclui preço nem peso, uma alteração de {@code Produto} precisa chamar
+ * {@link #invalidarProduto} (feito por {@code ProdutoListener} quando preço, peso ou
+ * fragilidade mudam); um índice de produto para chaves evita percorrer o cache. Quem
+ * carrega o carrinho antes de cotar deve ler {@link #geracao()} antes da leitura: um
+ * carrinho lido antes de uma invalidação pode trazer o preço antigo e sua cotação não é
+ * guardada. Carrinhos com produtos ainda sem id não são guardados, nem os que têm
+ * {@link TotaisCarrinho}, cotados direto dos totais. Com capacidade zero, toda cotação é
+ * calculada.
+ */
+@Component
+public class CacheCotacoes implements MeterBinder
+{
+	private final MotorPreco motor;
+	// null com capacidade zero
+	private final Cache<Chave, Dinheiro> entradas;
+	// Chaves guardadas por produto. Só é alterado dentro do compute da própria chave (ou na
+	// remoção dela pelo Caffeine), de modo que acompanha exatamente as chaves presentes.
+	private final ConcurrentMap<Long, Set<Chave>> chavesPorProduto = new ConcurrentHashMap<>();
+
+	// Incrementada a cada invalidação: cotações de carrinhos lidos antes não são guardadas
+	private final AtomicLong geracao = new AtomicLong();
+
+	private final AtomicLong acertos = new AtomicLong();
+	private final AtomicLong faltas = new AtomicLong();
+	private final AtomicLong despejos = new AtomicLong();
+
+	@Autowired
+	public CacheCotacoes(MotorPreco motor, @Value("${ecommerce.cotacao.cache.capacidade:10000}") int capacidade,
+			@Value("${ecommerce.cotacao.cache.validade:10m}") Duration validade)
+	{
+		if (capacidade < 0)
+		{
+			throw new IllegalArgumentException("Capacidade do cache de cotações não pode ser negativa.");
+		}
+
+		this.motor = motor;
+		this.entradas = capacidade == 0 ? null : Caffeine.newBuilder()
+				.maximumSize(capacidade)
+				.expireAfterWrite(validade)
+				// Manutenção na própria thread: despejos e tamanho ficam visíveis na hora
+				.executor(Runnable::run)
+				.<Chave, Dinheiro>evictionListener((chave, valor, causa) -> {
+					if (causa == RemovalCause.SIZE)
+					{
+						despejos.incrementAndGet();
+					}
+					desindexar(chave);
+				})
+				.build();
+	}
+
+	/**
+	 * Cotações sempre calculadas, sem guardar resultados.
+	 */
+	public static CacheCotacoes semCache(MotorPreco motor)
+	{
+		return new CacheCotacoes(motor, 0, Duration.ZERO);
+	}
+
+	/**
+	 * Cotação sem ajuste de região ou de tipo de cliente.
+	 */
+	public Dinheiro cotar(CarrinhoDeCompras carrinho)
+	{
+		return cotar(carrinho, null, null);
+	}
+
+	/**
+	 * Cotação de um carrinho lido agora, sem invalidação possível entre leitura e cotação.
+	 */
+	public Dinheiro cotar(CarrinhoDeCompras carrinho, Regiao regiao, TipoCliente tipoCliente)
+	{
+		return cotar(carrinho, regiao, tipoCliente, geracao());
+	}
+
+	/**
+	 * @param geracaoLida {@link #geracao()} lida antes de carregar o carrinho
+	 */
+	public Dinheiro cotar(CarrinhoDeCompras carrinho, Regiao regiao, TipoCliente tipoCliente, long geracaoLida)
+	{
+		TabelaRegrasPreco tabela = motor.regrasAtuais();
+		return cotar(carrinho, tabela, tabela.ajuste(regiao, tipoCliente), geracaoLida);
+	}
+
+	/**
+	 * Cotação com a tabela e o ajuste já lidos por quem chama, que pode repassá-los a outro
+	 * cálculo do mesmo carrinho.
+	 *
+	 * @param geracaoLida {@link #geracao()} lida antes de carregar o carrinho
+	 */
+	public Dinheiro cotar(CarrinhoDeCompras carrinho, TabelaRegrasPreco tabela, AjustePreco ajuste, long geracaoLida)
+	{
+		TotaisCarrinho totais = carrinho.getTotais();
+		if (totais != null)
+		{
+			// Cotação direta dos totais conferidos: montar a chave custaria mais que o cálculo
+			return motor.calcular(totais, tabela, ajuste);
+		}
+
+		Chave chave = entradas == null ? null : Chave.deItens(carrinho.getItens(), tabela.versao(), ajuste);
+		return cotar(chave, () -> motor.calcular(carrinho, tabela, ajuste), geracaoLida);
+	}
+
+	/**
+	 * Cotação das linhas do checkout lidas por projeção.
+	 *
+	 * @param geracaoLida {@link #geracao()} lida antes de ler as linhas
+	 */
+	public Dinheiro cotar(CarrinhoCheckoutDTO carrinho, Regiao regiao, TipoCliente tipoCliente, long geracaoLida)
+	{
+		TabelaRegrasPreco tabela = motor.regrasAtuais();
+		return cotar(carrinho, tabela, tabela.ajuste(regiao, tipoCliente), geracaoLida);
+	}
+
+	/**
+	 * Como {@link #cotar(CarrinhoDeCompras, TabelaRegrasPreco, AjustePreco, long)}, para as
+	 * linhas do checkout lidas por projeção.
+	 *
+	 * @param geracaoLida {@link #geracao()} lida antes de ler as linhas
+	 */
+	public Dinheiro cotar(CarrinhoCheckoutDTO carrinho, TabelaRegrasPreco tabela, AjustePreco ajuste,
+			long geracaoLida)
+	{
+		List<LinhaCheckoutDTO> linhas = carrinho.linhas();
+		Chave chave = entradas == null ? null : Chave.deLinhas(linhas, tabela.versao(), ajuste);
+		return cotar(chave, () -> motor.calcular(linhas, tabela, ajuste), geracaoLida);
+	}
+
+	private Dinheiro cotar(Chave chave, Supplier<Dinheiro> calculo, long geracaoLida)
+	{
+		if (chave == null)
+		{
+			return calculo.get();
+		}
+
+		Dinheiro guardado = entradas.getIfPresent(chave);
+		if (guardado != null)
+		{
+			acertos.incrementAndGet();
+			return guardado;
+		}
+
+		faltas.incrementAndGet();
+		Dinheiro valor = calculo.get();
+		if (geracao.get() != geracaoLida)
+		{
+			return valor;
+		}
+
+		entradas.asMap().compute(chave, (k, anterior) -> {
+			indexar(k);
+			return valor;
+		});
+		// Uma invalidação entre a conferência acima e o índice pode não ter visto a chave
+		if (geracao.get() != geracaoLida)
+		{
+			remover(chave);
+		}
+		return valor;
+	}
+
+	public TabelaRegrasPreco regrasAtuais()
+	{
+		return motor.regrasAtuais();
+	}
+
+	/**
+	 * Contador de invalidações, a ser lido antes de carregar o carrinho que será cotado.
+	 */
+	public long geracao()
+	{
+		return geracao.get();
+	}
+
+	/**
+	 * Descarta as cotações que incluem o produto, pelo índice de produto para chaves.
+	 */
+	public void invalidarProduto(Long produtoId)
+	{
+		geracao.incrementAndGet();
+		if (produtoId == null || entradas == null)
+		{
+			return;
+		}
+
+		Set<Chave> chaves = chavesPorProduto.get(produtoId);
+		if (chaves != null)
+		{
+			for (Chave chave : List.copyOf(chaves))
+			{
+				remover(chave);
+			}
+		}
+	}
+
+	public void invalidarTudo()
+	{
+		geracao.incrementAndGet();
+		if (entradas != null)
+		{
+			entradas.asMap().keySet().forEach(this::remover);
+		}
+	}
+
+	public long acertos()
+	{
+		return acertos.get();
+	}
+
+	public long faltas()
+	{
+		return faltas.get();
+	}
+
+	public long despejos()
+	{
+		return despejos.get();
+	}
+
+	public int tamanho()
+	{
+		if (entradas == null)
+		{
+			return 0;
+		}
+		entradas.cleanUp();
+		return (int) entradas.estimatedSize();
+	}
+
+	@Override
+	public void bindTo(MeterRegistry registry)
+	{
+		FunctionCounter.builder("ecommerce.cotacao.cache.requisicoes", this, CacheCotacoes::acertos)
+				.tag("resultado", "acerto")
+				.register(registry);
+		FunctionCounter.builder("ecommerce.cotacao.cache.requisicoes", this, CacheCotacoes::faltas)
+				.tag("resultado", "falta")
+				.register(registry);
+		FunctionCounter.builder("ecommerce.cotacao.cache.despejos", this, CacheCotacoes::despejos)
+				.register(registry);
+		Gauge.builder("ecommerce.cotacao.cache.tamanho", this, CacheCotacoes::tamanho)
+				.register(registry);
+	}
+
+	private void remover(Chave chave)
+	{
+		entradas.asMap().computeIfPresent(chave, (k, valor) -> {
+			desindexar(k);
+			return null;
+		});
+	}
+
+	private void indexar(Chave chave)
+	{
+		for (long produtoId : chave.produtosIds)
+		{
+			chavesPorProduto.compute(produtoId, (id, chaves) -> {
+				Set<Chave> atualizadas = chaves == null ? ConcurrentHashMap.newKeySet() : chaves;
+				atualizadas.add(chave);
+				return atualizadas;
+			});
+		}
+	}
+
+	private void desindexar(Chave chave)
+	{
+		for (long produtoId : chave.produtosIds)
+		{
+			chavesPorProduto.computeIfPresent(produtoId, (id, chaves) -> {
+				chaves.remove(chave);
+				return chaves.isEmpty() ? null : chaves;
+			});
+		}
+	}
+
+	/**
+	 * Impressão digital do conteúdo: ids e quantidades ordenados por produto, a versão das
+	 * regras e os fatores do ajuste (clientes com os mesmos fatores compartilham a cotação).
+	 * O hash é calculado uma vez; a igualdade compara o conteúdo inteiro.
+	 */
+	private static final class Chave
+	{
+		private final long[] produtosIds;
+		private final long[] quantidades;
+		private final long versaoRegras;
+		private final AjustePreco ajuste;
+		private final int hash;
+
+		private Chave(long[] produtosIds, long[] quantidades, long versaoRegras, AjustePreco ajuste)
+		{
+			this.produtosIds = produtosIds;
+			this.quantidades = quantidades;
+			this.versaoRegras = versaoRegras;
+			this.ajuste = ajuste;
+
+			long h = 31 * (31 * versaoRegras + ajuste.percentualFrete()) + ajuste.descontoFidelidade();
+			for (int i = 0; i < produtosIds.length; i++)
+			{
+				h = 31 * (31 * h + produtosIds[i]) + quantidades[i];
+			}
+			this.hash = Long.hashCode(h ^ (h >>> 29));
+		}
+
+		/**
+		 * @return {@code null} se o carrinho está vazio ou tem produto sem id
+		 */
+		static Chave deItens(List<ItemCompra> itens, long versaoRegras, AjustePreco ajuste)
+		{
+			int n = itens.size();
+			long[] ids = new long[n];
+			long[] quantidades = new long[n];
+			for (int i = 0; i < n; i++)
+			{
+				ItemCompra item = itens.get(i);
+				if (item.getProduto() == null || item.getProduto().getId() == null || item.getQuantidade() == null)
+				{
+					return null;
+				}
+				ids[i] = item.getProduto().getId();
+				quantidades[i] = item.getQuantidade();
+			}
+			return de(ids, quantidades, versaoRegras, ajuste);
+		}
+
+		/**
+		 * @return {@code null} se não há linhas ou alguma tem produto sem id
+		 */
+		static Chave deLinhas(List<LinhaCheckoutDTO> linhas, long versaoRegras, AjustePreco ajuste)
+		{
+			int n = linhas.size();
+			long[] ids = new long[n];
+			long[] quantidades = new long[n];
+			for (int i = 0; i < n; i++)
+			{
+				LinhaCheckoutDTO linha = linhas.get(i);
+				if (linha.produtoId() == null || linha.quantidade() == null)
+				{
+					return null;
+				}
+				ids[i] = linha.produtoId();
+				quantidades[i] = linha.quantidade();
+			}
+			return de(ids, quantidades, versaoRegras, ajuste);
+		}
+
+		private static Chave de(long[] ids, long[] quantidades, long versaoRegras, AjustePreco ajuste)
+		{
+			int n = ids.length;
+			if (n == 0)
+			{
+				return null;
+			}
+
+			boolean ordenado = true;
+			for (int i = 1; i < n && ordenado; i++)
+			{
+				ordenado = antes(ids[i - 1], quantidades[i - 1], ids[i], quantidades[i]);
+			}
+
+			if (!ordenado)
+			{
+				Integer[] ordem = new Integer[n];
+				Arrays.setAll(ordem, i -> i);
+				Arrays.sort(ordem, Comparator.<Integer>comparingLong(i -> ids[i]).thenComparingLong(i -> quantidades[i]));
+
+				long[] idsOrdenados = new long[n];
+				long[] quantidadesOrdenadas = new long[n];
+				for (int i = 0; i < n; i++)
+				{
+					idsOrdenados[i] = ids[ordem[i]];
+					quantidadesOrdenadas[i] = quantidades[ordem[i]];
+				}
+				return new Chave(idsOrdenados, quantidadesOrdenadas, versaoRegras, ajuste);
+			}
+			return new Chave(ids, quantidades, versaoRegras, ajuste);
+		}
+
+		private static boolean antes(long idAnterior, long quantidadeAnterior, long id, long quantidade)
+		{
+			return idAnterior < id || (idAnterior == id && quantidadeAnterior <= quantidade);
+		}
+
+		@Override
+		public boolean equals(Object outro)
+		{
+			return outro instanceof Chave chave && hash == chave.hash && versaoRegras == chave.versaoRegras
+					&& ajuste.equals(chave.ajuste) && Arrays.equals(produtosIds, chave.produtosIds) && Arrays.equals(quantidades, chave.quantidades);
+		}
+
+		@Override
+		public int hashCode()
+		{
+			return hash;
+		}
+	}
+}
@@ -0,0 +1,42 @@
+package ecommerce.service.preco;
+
+import java.util.List;
+
+import ecommerce.dto.Dinheiro;
+import ecommerce.dto.LinhaCheckoutDTO;
+
+/**
+ * Implementações do cálculo de custo que podem rodar como candidatas em
+ * {@link PrecificacaoSombra}, comparadas com o cálculo em uso no checkout.
+ */
+public enum EstrategiaPreco
+{
+	/**
+	 * Cálculo original em {@code BigDecimal}.
+	 */
+	REFERENCIA
+	{
+		@Override
+		public Dinheiro calcular(MotorPreco motor, List<LinhaCheckoutDTO> linhas, TabelaRegrasPreco tabela,
+				AjustePreco ajuste)
+		{
+			return motor.calcularReferencia(linhas, tabela, ajuste);
+		}
+	},
+
+	/**
+	 * Cálculo inteiro percorrendo as linhas, sem cache de cotações nem totais gravados.
+	 */
+	ITEM_A_ITEM
+	{
+		@Override
+		public Dinheiro calcular(MotorPreco motor, List<LinhaCheckoutDTO> linhas, TabelaRegrasPreco tabela,
+				AjustePreco ajuste)
+		{
+			return motor.calcular(linhas, tabela, ajuste);
+		}
+	};
+
+	public abstract Dinheiro calcular(MotorPreco motor, List<LinhaCheckoutDTO> linhas, TabelaRegrasPreco tabela,
+			AjustePreco ajuste);
+}
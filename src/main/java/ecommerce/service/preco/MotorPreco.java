@@ -0,0 +1,311 @@
+package ecommerce.service.preco;
+
+import java.math.BigDecimal;
+import java.math.RoundingMode;
+import java.util.List;
+
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.stereotype.Component;
+
+import ecommerce.dto.Dinheiro;
+import ecommerce.dto.LinhaCheckoutDTO;
+import ecommerce.entity.CarrinhoDeCompras;
+import ecommerce.entity.ItemCompra;
+import ecommerce.entity.Produto;
+import ecommerce.entity.Regiao;
+import ecommerce.entity.TipoCliente;
+import ecommerce.entity.TotaisCarrinho;
+
+/**
+ * Cálculo do custo total do carrinho (itens com desconto por faixa + frete por peso e
+ * adicional de frágeis) em aritmética inteira: preços em centavos e pesos em gramas,
+ * acumulados em {@code long} numa única passada pelos itens, sem alocar {@link BigDecimal}.
+ * As faixas vêm de {@link RegrasPreco}; cada cálculo lê a tabela em vigor uma única vez e
+ * resolve o {@link AjustePreco} da região e do tipo de cliente antes da passada pelos itens.
+ * <p>
+ * O resultado é idêntico ao de {@link #calcularReferencia} (arredondamento HALF_UP em 2
+ * casas). Quando algum preço tem mais de 2 casas, algum peso mais de 3, ou os acumuladores
+ * estourariam, o cálculo recorre a {@link #calcularReferencia}.
+ * <p>
+ * Carrinhos com {@link TotaisCarrinho} que conferem com os itens são cotados direto dos
+ * agregados. As linhas do checkout ({@link LinhaCheckoutDTO}) são cotadas sem entidades.
+ */
+@Component
+public final class MotorPreco
+{
+	private final RegrasPreco regras;
+
+	public MotorPreco()
+	{
+		this(RegrasPreco.fixas(TabelaRegrasPreco.PADRAO));
+	}
+
+	@Autowired
+	public MotorPreco(RegrasPreco regras)
+	{
+		this.regras = regras;
+	}
+
+	/**
+	 * Custo sem ajuste de região ou de tipo de cliente.
+	 */
+	public Dinheiro calcular(CarrinhoDeCompras carrinho)
+	{
+		return calcular(carrinho, regras.atual(), AjustePreco.NEUTRO);
+	}
+
+	public Dinheiro calcular(CarrinhoDeCompras carrinho, Regiao regiao, TipoCliente tipoCliente)
+	{
+		TabelaRegrasPreco tabela = regras.atual();
+		return calcular(carrinho, tabela, tabela.ajuste(regiao, tipoCliente));
+	}
+
+	/**
+	 * Calcula com uma tabela e um ajuste já resolvidos, para quem precisa saber com qual
+	 * versão das regras o valor foi obtido. O ajuste só entra depois da passada pelos itens.
+	 */
+	public Dinheiro calcular(CarrinhoDeCompras carrinho, TabelaRegrasPreco tabela, AjustePreco ajuste)
+	{
+		TotaisCarrinho totais = carrinho.getTotais();
+		if (totais != null)
+		{
+			return calcular(totais, tabela, ajuste);
+		}
+		return calcularItemAItem(carrinho, tabela, ajuste);
+	}
+
+	/**
+	 * Custo a partir de totais já conferidos com os itens (ver
+	 * {@link CarrinhoDeCompras#getTotais()}).
+	 */
+	public Dinheiro calcular(TotaisCarrinho totais, TabelaRegrasPreco tabela, AjustePreco ajuste)
+	{
+		return calcular(totais.subtotalCentavos(), totais.pesoGramas(), totais.unidadesFrageis(), tabela, ajuste);
+	}
+
+	/**
+	 * Cálculo inteiro numa passada pelos itens, ignorando os totais gravados no carrinho.
+	 */
+	public Dinheiro calcularItemAItem(CarrinhoDeCompras carrinho, TabelaRegrasPreco tabela, AjustePreco ajuste)
+	{
+		List<ItemCompra> itens = carrinho.getItens();
+
+		long totalCentavos = 0;
+		long pesoGramas = 0;
+		long unidadesFrageis = 0;
+		try
+		{
+			for (int i = 0, n = itens.size(); i < n; i++)
+			{
+				ItemCompra item = itens.get(i);
+				Produto produto = item.getProduto();
+				long quantidade = item.getQuantidade();
+
+				long precoCentavos = produto.getPrecoEmCentavos();
+				long gramas = produto.getPesoEmGramas();
+				if (precoCentavos == Produto.NAO_REPRESENTAVEL || gramas == Produto.NAO_REPRESENTAVEL)
+				{
+					return calcularReferencia(carrinho, tabela, ajuste);
+				}
+
+				totalCentavos = Math.addExact(totalCentavos, Math.multiplyExact(precoCentavos, quantidade));
+				pesoGramas = Math.addExact(pesoGramas, Math.multiplyExact(gramas, quantidade));
+				if (produto.isFragil())
+				{
+					unidadesFrageis = Math.addExact(unidadesFrageis, quantidade);
+				}
+			}
+		}
+		catch (ArithmeticException e)
+		{
+			return calcularReferencia(carrinho, tabela, ajuste);
+		}
+
+		return calcular(totalCentavos, pesoGramas, unidadesFrageis, tabela, ajuste);
+	}
+
+	/**
+	 * Custo de um carrinho percorrido em partes (ver {@link SomaItens}), com o mesmo resultado
+	 * do cálculo sobre a lista inteira.
+	 */
+	public Dinheiro calcular(SomaItens soma, TabelaRegrasPreco tabela, AjustePreco ajuste)
+	{
+		if (soma.inteira())
+		{
+			return calcular(soma.centavos(), soma.gramas(), soma.frageis(), tabela, ajuste);
+		}
+		return calcularReferencia(soma.totalBruto(), soma.pesoTotal(), soma.unidadesFrageis(), tabela, ajuste);
+	}
+
+	/**
+	 * Custo das linhas do checkout lidas por projeção, na mesma passada inteira do cálculo
+	 * sobre os itens.
+	 */
+	public Dinheiro calcular(List<LinhaCheckoutDTO> linhas, TabelaRegrasPreco tabela, AjustePreco ajuste)
+	{
+		SomaItens soma = new SomaItens();
+		for (int i = 0, n = linhas.size(); i < n; i++)
+		{
+			soma.adicionar(linhas.get(i));
+		}
+		return calcular(soma, tabela, ajuste);
+	}
+
+	/**
+	 * Custo a partir dos agregados dos itens, sem percorrê-los.
+	 */
+	private static Dinheiro calcular(long totalCentavos, long pesoGramas, long unidadesFrageis,
+			TabelaRegrasPreco tabela, AjustePreco ajuste)
+	{
+		try
+		{
+			long percentualPago = 100 - descontoTotal(percentualDesconto(tabela, totalCentavos), ajuste);
+			long multiplicador = multiplicadorPeso(tabela, pesoGramas);
+
+			// Itens e frete em décimos de milésimo de real (10^-4):
+			// centavos x percentual, gramas x 10
+			long itens10000 = Math.multiplyExact(totalCentavos, percentualPago);
+			long frete10000 = Math.addExact(Math.multiplyExact(pesoGramas, Math.multiplyExact(multiplicador, 10)),
+					Math.multiplyExact(unidadesFrageis, Math.multiplyExact(tabela.adicionalFragilCentavos(), 100)));
+
+			// Total em milionésimos de real (10^-6): frete x percentual da região
+			long total = Math.addExact(Math.multiplyExact(itens10000, 100),
+					Math.multiplyExact(frete10000, ajuste.percentualFrete()));
+
+			return new Dinheiro(arredondarParaCentavos(total));
+		}
+		catch (ArithmeticException e)
+		{
+			return calcularReferencia(BigDecimal.valueOf(totalCentavos, 2), BigDecimal.valueOf(pesoGramas, 3),
+					BigDecimal.valueOf(unidadesFrageis), tabela, ajuste);
+		}
+	}
+
+	public TabelaRegrasPreco regrasAtuais()
+	{
+		return regras.atual();
+	}
+
+	/**
+	 * Cálculo original em {@link BigDecimal}, mantido como referência de paridade e para os
+	 * valores sem representação em centavos/gramas.
+	 */
+	public Dinheiro calcularReferencia(CarrinhoDeCompras carrinho)
+	{
+		return calcularReferencia(carrinho, regras.atual(), AjustePreco.NEUTRO);
+	}
+
+	public Dinheiro calcularReferencia(CarrinhoDeCompras carrinho, Regiao regiao, TipoCliente tipoCliente)
+	{
+		TabelaRegrasPreco tabela = regras.atual();
+		return calcularReferencia(carrinho, tabela, tabela.ajuste(regiao, tipoCliente));
+	}
+
+	public Dinheiro calcularReferencia(CarrinhoDeCompras carrinho, TabelaRegrasPreco tabela, AjustePreco ajuste)
+	{
+		BigDecimal totalBruto = carrinho.getItens().stream()
+				.map(item -> item.getProduto().getPreco().multiply(BigDecimal.valueOf(item.getQuantidade())))
+				.reduce(BigDecimal.ZERO, BigDecimal::add);
+		BigDecimal pesoTotal = carrinho.getItens().stream()
+				.map(item -> item.getProduto().getPesoFisico().multiply(BigDecimal.valueOf(item.getQuantidade())))
+				.reduce(BigDecimal.ZERO, BigDecimal::add);
+		BigDecimal unidadesFrageis = carrinho.getItens().stream()
+				.map(item -> item.getProduto().isFragil() ? BigDecimal.valueOf(item.getQuantidade()) : BigDecimal.ZERO)
+				.reduce(BigDecimal.ZERO, BigDecimal::add);
+
+		return calcularReferencia(totalBruto, pesoTotal, unidadesFrageis, tabela, ajuste);
+	}
+
+	public Dinheiro calcularReferencia(List<LinhaCheckoutDTO> linhas, TabelaRegrasPreco tabela, AjustePreco ajuste)
+	{
+		BigDecimal totalBruto = BigDecimal.ZERO;
+		BigDecimal pesoTotal = BigDecimal.ZERO;
+		BigDecimal unidadesFrageis = BigDecimal.ZERO;
+		for (LinhaCheckoutDTO linha : linhas)
+		{
+			BigDecimal quantidade = BigDecimal.valueOf(linha.quantidade());
+			totalBruto = totalBruto.add(linha.preco().multiply(quantidade));
+			pesoTotal = pesoTotal.add(linha.pesoFisico().multiply(quantidade));
+			if (linha.fragil())
+			{
+				unidadesFrageis = unidadesFrageis.add(quantidade);
+			}
+		}
+
+		return calcularReferencia(totalBruto, pesoTotal, unidadesFrageis, tabela, ajuste);
+	}
+
+	/**
+	 * O cálculo original depende dos itens apenas pelas somas de preço, peso e unidades frágeis.
+	 */
+	private static Dinheiro calcularReferencia(BigDecimal totalBruto, BigDecimal pesoTotal,
+			BigDecimal unidadesFrageis, TabelaRegrasPreco tabela, AjustePreco ajuste)
+	{
+		BigDecimal totalCarrinho = calcularTotalCarrinho(totalBruto, tabela, ajuste);
+		BigDecimal totalFrete = calcularFrete(pesoTotal, unidadesFrageis, tabela)
+				.multiply(BigDecimal.valueOf(ajuste.percentualFrete()).movePointLeft(2));
+
+		return Dinheiro.deReais(totalCarrinho.add(totalFrete).setScale(2, RoundingMode.HALF_UP));
+	}
+
+	private static long percentualDesconto(TabelaRegrasPreco tabela, long totalCentavos)
+	{
+		if (totalCentavos < 0)
+		{
+			throw new RuntimeException();
+		}
+		return tabela.percentualDesconto(totalCentavos);
+	}
+
+	/**
+	 * Desconto da faixa mais o de fidelidade, limitado a 100%.
+	 */
+	private static long descontoTotal(long percentualFaixa, AjustePreco ajuste)
+	{
+		return Math.min(100, percentualFaixa + ajuste.descontoFidelidade());
+	}
+
+	private static long multiplicadorPeso(TabelaRegrasPreco tabela, long pesoGramas)
+	{
+		if (pesoGramas <= 0)
+		{
+			throw new RuntimeException();
+		}
+		return tabela.multiplicadorFrete(pesoGramas);
+	}
+
+	/**
+	 * HALF_UP de milionésimos de real para centavos (metade se afasta do zero).
+	 */
+	private static long arredondarParaCentavos(long milionesimos)
+	{
+		return milionesimos >= 0 ? (milionesimos + 5_000) / 10_000 : -((-milionesimos + 5_000) / 10_000);
+	}
+
+	private static BigDecimal calcularFrete(BigDecimal pesoTotal, BigDecimal unidadesFrageis,
+			TabelaRegrasPreco tabela)
+	{
+		BigDecimal adicionalProdutosFrageis = unidadesFrageis.multiply(tabela.adicionalFragil());
+
+		if (pesoTotal.compareTo(BigDecimal.ZERO) <= 0)
+		{
+			throw new RuntimeException();
+		}
+		BigDecimal multiplicadorPeso = BigDecimal.valueOf(tabela.multiplicadorFrete(pesoTotal));
+		return pesoTotal.multiply(multiplicadorPeso).add(adicionalProdutosFrageis);
+	}
+
+	private static BigDecimal calcularTotalCarrinho(BigDecimal totalBruto, TabelaRegrasPreco tabela,
+			AjustePreco ajuste)
+	{
+		if (totalBruto.compareTo(BigDecimal.ZERO) < 0)
+		{
+			throw new RuntimeException();
+		}
+		BigDecimal descontoBase = BigDecimal.valueOf(descontoTotal(tabela.percentualDesconto(totalBruto), ajuste));
+
+		BigDecimal descontoTotal = descontoBase.divide(BigDecimal.valueOf(100), 2, RoundingMode.HALF_UP)
+				.multiply(totalBruto);
+		return totalBruto.subtract(descontoTotal);
+	}
+}
@@ -0,0 +1,339 @@
+package ecommerce.service.preco;
+
+import java.math.BigDecimal;
+import java.time.Instant;
+import java.util.ArrayDeque;
+import java.util.Arrays;
+import java.util.Deque;
+import java.util.List;
+import java.util.Locale;
+import java.util.Objects;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.Executor;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+import ecommerce.dto.CarrinhoCheckoutDTO;
+import ecommerce.dto.Dinheiro;
+import ecommerce.dto.LinhaCheckoutDTO;
+import io.micrometer.core.instrument.FunctionCounter;
+import io.micrometer.core.instrument.FunctionTimer;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.binder.MeterBinder;
+import jakarta.annotation.PreDestroy;
+
+/**
+ * Modo sombra do cálculo de custo: uma amostra das cotações do checkout é recalculada por uma
+ * {@link EstrategiaPreco} candidata e comparada com o valor cobrado. A requisição só sorteia a
+ * amostra e entrega as linhas já lidas do carrinho, imutáveis, a um executor próprio,
+ * limitado; com a fila cheia a amostra é descartada, nunca esperada.
+ * <p>
+ * A candidata recebe a tabela de regras e o ajuste usados no cálculo principal. Divergências
+ * vão para o log com a impressão digital do carrinho e as mais recentes ficam em
+ * {@link #divergencias()}. Comparações e latência média das duas implementações são
+ * exportadas em {@code ecommerce.preco.sombra.*}. Amostragem zero desliga.
+ * <p>
+ * A latência do cálculo principal não vem da requisição, onde a cotação pode ter saído do
+ * cache: o motor principal é cronometrado aqui, com as mesmas linhas e sem cache, logo antes
+ * da candidata.
+ */
+@Component
+public class PrecificacaoSombra implements MeterBinder
+{
+	private static final Logger log = LoggerFactory.getLogger(PrecificacaoSombra.class);
+
+	private final MotorPreco motor;
+	private final EstrategiaPreco candidata;
+	private final double amostragem;
+	private final Executor executor;
+	// O executor criado aqui, encerrado com o contexto; null se veio de fora ou sem amostragem
+	private final ExecutorService executorProprio;
+	private final int divergenciasGuardadas;
+
+	private final Deque<Divergencia> divergencias = new ArrayDeque<>();
+
+	private final AtomicLong iguais = new AtomicLong();
+	private final AtomicLong divergentes = new AtomicLong();
+	private final AtomicLong erros = new AtomicLong();
+	private final AtomicLong descartadas = new AtomicLong();
+
+	private final Latencia latenciaPrincipal = new Latencia();
+	private final Latencia latenciaCandidata = new Latencia();
+
+	@Autowired
+	public PrecificacaoSombra(MotorPreco motor,
+			@Value("${ecommerce.preco.sombra.candidata:REFERENCIA}") EstrategiaPreco candidata,
+			@Value("${ecommerce.preco.sombra.amostragem:0}") double amostragem,
+			@Value("${ecommerce.preco.sombra.threads:1}") int threads,
+			@Value("${ecommerce.preco.sombra.fila:100}") int capacidadeFila,
+			@Value("${ecommerce.preco.sombra.divergencias-guardadas:100}") int divergenciasGuardadas)
+	{
+		this(motor, candidata, amostragem, amostragem > 0 ? novoExecutor(threads, capacidadeFila) : null, true,
+				divergenciasGuardadas);
+	}
+
+	public PrecificacaoSombra(MotorPreco motor, EstrategiaPreco candidata, double amostragem, Executor executor,
+			int divergenciasGuardadas)
+	{
+		this(motor, candidata, amostragem, executor, false, divergenciasGuardadas);
+	}
+
+	private PrecificacaoSombra(MotorPreco motor, EstrategiaPreco candidata, double amostragem, Executor executor,
+			boolean executorProprio, int divergenciasGuardadas)
+	{
+		if (amostragem < 0 || amostragem > 1)
+		{
+			throw new IllegalArgumentException("Amostragem do modo sombra deve estar entre 0 e 1: " + amostragem);
+		}
+		if (amostragem > 0 && executor == null)
+		{
+			throw new IllegalArgumentException("Modo sombra habilitado sem executor.");
+		}
+
+		this.motor = motor;
+		this.candidata = candidata;
+		this.amostragem = amostragem;
+		this.executor = executor;
+		this.executorProprio = executorProprio && executor instanceof ExecutorService proprio ? proprio : null;
+		this.divergenciasGuardadas = Math.max(0, divergenciasGuardadas);
+	}
+
+	/**
+	 * Nenhuma cotação comparada.
+	 */
+	public static PrecificacaoSombra desligada()
+	{
+		return new PrecificacaoSombra(null, EstrategiaPreco.REFERENCIA, 0, null, 0);
+	}
+
+	/**
+	 * Descarta as comparações pendentes.
+	 */
+	@PreDestroy
+	public void encerrar()
+	{
+		if (executorProprio != null)
+		{
+			executorProprio.shutdownNow();
+		}
+	}
+
+	public boolean habilitada()
+	{
+		return amostragem > 0;
+	}
+
+	/**
+	 * Chamado na thread da requisição com o valor já calculado; retorna sem esperar a
+	 * comparação.
+	 *
+	 * @param tabela tabela de regras usada no cálculo principal
+	 * @param ajuste ajuste usado no cálculo principal
+	 * @param principal valor cobrado, comparado com o da candidata
+	 */
+	public void comparar(CarrinhoCheckoutDTO carrinho, TabelaRegrasPreco tabela, AjustePreco ajuste,
+			Dinheiro principal)
+	{
+		if (!habilitada() || ThreadLocalRandom.current().nextDouble() >= amostragem)
+		{
+			return;
+		}
+
+		Amostra amostra = new Amostra(carrinho.carrinhoId(), carrinho.linhas(), tabela, ajuste, principal);
+		try
+		{
+			executor.execute(() -> avaliar(amostra));
+		}
+		catch (RejectedExecutionException e)
+		{
+			descartadas.incrementAndGet();
+		}
+	}
+
+	private void avaliar(Amostra amostra)
+	{
+		Dinheiro valor;
+		try
+		{
+			// As duas implementações com a mesma entrada, sem cache, uma logo após a outra
+			long inicio = System.nanoTime();
+			motor.calcular(amostra.linhas(), amostra.tabela(), amostra.ajuste());
+			long inicioCandidata = System.nanoTime();
+			valor = candidata.calcular(motor, amostra.linhas(), amostra.tabela(), amostra.ajuste());
+			long fim = System.nanoTime();
+
+			latenciaPrincipal.registrar(inicioCandidata - inicio);
+			latenciaCandidata.registrar(fim - inicioCandidata);
+		}
+		catch (RuntimeException e)
+		{
+			erros.incrementAndGet();
+			log.warn("Preço sombra ({}) falhou no carrinho {} [{}]: {}", candidata, amostra.carrinhoId(),
+					impressaoDigital(amostra.linhas()), e.toString());
+			return;
+		}
+
+		if (valor.equals(amostra.principal()))
+		{
+			iguais.incrementAndGet();
+			return;
+		}
+
+		divergentes.incrementAndGet();
+		Divergencia divergencia = new Divergencia(amostra.carrinhoId(), impressaoDigital(amostra.linhas()),
+				amostra.tabela().versao(), amostra.ajuste(), amostra.principal(), valor, Instant.now());
+		log.warn("Preço sombra ({}) divergente: {}", candidata, divergencia);
+		synchronized (divergencias)
+		{
+			divergencias.addLast(divergencia);
+			while (divergencias.size() > divergenciasGuardadas)
+			{
+				divergencias.removeFirst();
+			}
+		}
+	}
+
+	/**
+	 * Divergências mais recentes, da mais antiga para a mais nova.
+	 */
+	public List<Divergencia> divergencias()
+	{
+		synchronized (divergencias)
+		{
+			return List.copyOf(divergencias);
+		}
+	}
+
+	public long iguais()
+	{
+		return iguais.get();
+	}
+
+	public long divergentes()
+	{
+		return divergentes.get();
+	}
+
+	public long erros()
+	{
+		return erros.get();
+	}
+
+	public long descartadas()
+	{
+		return descartadas.get();
+	}
+
+	@Override
+	public void bindTo(MeterRegistry registry)
+	{
+		FunctionCounter.builder("ecommerce.preco.sombra.comparacoes", this, PrecificacaoSombra::iguais)
+				.tag("resultado", "igual")
+				.register(registry);
+		FunctionCounter.builder("ecommerce.preco.sombra.comparacoes", this, PrecificacaoSombra::divergentes)
+				.tag("resultado", "divergente")
+				.register(registry);
+		FunctionCounter.builder("ecommerce.preco.sombra.comparacoes", this, PrecificacaoSombra::erros)
+				.tag("resultado", "erro")
+				.register(registry);
+		FunctionCounter.builder("ecommerce.preco.sombra.descartadas", this, PrecificacaoSombra::descartadas)
+				.register(registry);
+		FunctionTimer.builder("ecommerce.preco.sombra.latencia", latenciaPrincipal, Latencia::contagem,
+				Latencia::totalNanos, TimeUnit.NANOSECONDS)
+				.tag("motor", "principal")
+				.register(registry);
+		FunctionTimer.builder("ecommerce.preco.sombra.latencia", latenciaCandidata, Latencia::contagem,
+				Latencia::totalNanos, TimeUnit.NANOSECONDS)
+				.tag("motor", candidata.name().toLowerCase(Locale.ROOT))
+				.register(registry);
+	}
+
+	/**
+	 * Hash do conteúdo que determina o custo (produto, quantidade, preço, peso e fragilidade),
+	 * independente da ordem das linhas, em 16 dígitos hexadecimais.
+	 */
+	static String impressaoDigital(List<LinhaCheckoutDTO> linhas)
+	{
+		long[] hashes = new long[linhas.size()];
+		for (int i = 0; i < hashes.length; i++)
+		{
+			LinhaCheckoutDTO linha = linhas.get(i);
+			long h = Objects.hashCode(linha.quantidade());
+			h = 31 * (31 * h + Objects.hashCode(linha.produtoId())) + Objects.hashCode(linha.fragil());
+			h = 31 * (31 * h + hashNumerico(linha.preco())) + hashNumerico(linha.pesoFisico());
+			hashes[i] = h;
+		}
+
+		Arrays.sort(hashes);
+		long h = hashes.length;
+		for (long hashItem : hashes)
+		{
+			h = (h ^ hashItem) * 0x100000001B3L;
+		}
+		return String.format("%016x", h);
+	}
+
+	private static int hashNumerico(BigDecimal valor)
+	{
+		// 1.50 e 1.5 custam o mesmo
+		return valor == null ? 0 : valor.stripTrailingZeros().hashCode();
+	}
+
+	private static ExecutorService novoExecutor(int threads, int capacidadeFila)
+	{
+		AtomicInteger contador = new AtomicInteger();
+		return new ThreadPoolExecutor(threads, threads, 0, TimeUnit.MILLISECONDS,
+				new ArrayBlockingQueue<>(capacidadeFila), tarefa -> {
+					Thread thread = new Thread(tarefa, "preco-sombra-" + contador.incrementAndGet());
+					thread.setDaemon(true);
+					thread.setPriority(Thread.MIN_PRIORITY);
+					return thread;
+				}, new ThreadPoolExecutor.AbortPolicy());
+	}
+
+	/**
+	 * Cotação do checkout cujo valor não coincidiu com o da candidata.
+	 */
+	public record Divergencia(Long carrinhoId, String impressaoDigital, long versaoRegras, AjustePreco ajuste,
+			Dinheiro principal, Dinheiro candidata, Instant registradaEm)
+	{
+	}
+
+	private record Amostra(Long carrinhoId, List<LinhaCheckoutDTO> linhas, TabelaRegrasPreco tabela,
+			AjustePreco ajuste, Dinheiro principal)
+	{
+	}
+
+	private static final class Latencia
+	{
+		private final AtomicLong contagem = new AtomicLong();
+		private final AtomicLong totalNanos = new AtomicLong();
+
+		void registrar(long nanos)
+		{
+			contagem.incrementAndGet();
+			totalNanos.addAndGet(nanos);
+		}
+
+		long contagem()
+		{
+			return contagem.get();
+		}
+
+		double totalNanos()
+		{
+			return totalNanos.get();
+		}
+	}
+}
@@ -0,0 +1,42 @@
+package ecommerce.service.preco;
+
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.support.TransactionSynchronization;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+
+import ecommerce.entity.Produto;
+
+/**
+ * Descarta as cotações em cache de um produto removido ou com preço, peso ou fragilidade
+ * alterados (avisado por {@code AlteracoesProdutoConfig}). A invalidação acontece no flush e de
+ * novo após o commit, para que uma cotação calculada com o valor antigo entre o flush e o
+ * commit também seja descartada.
+ */
+@Component
+public class ProdutoListener
+{
+	private final CacheCotacoes cacheCotacoes;
+
+	public ProdutoListener(CacheCotacoes cacheCotacoes)
+	{
+		this.cacheCotacoes = cacheCotacoes;
+	}
+
+	public void aoAlterar(Produto produto)
+	{
+		Long produtoId = produto.getId();
+		cacheCotacoes.invalidarProduto(produtoId);
+
+		if (TransactionSynchronizationManager.isSynchronizationActive())
+		{
+			TransactionSynchronizationManager.registerSynchronization(new TransactionSynchronization()
+			{
+				@Override
+				public void afterCompletion(int status)
+				{
+					cacheCotacoes.invalidarProduto(produtoId);
+				}
+			});
+		}
+	}
+}
@@ -0,0 +1,151 @@
+package ecommerce.service.preco;
+
+import java.math.BigDecimal;
+import java.util.EnumMap;
+import java.util.Locale;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.atomic.AtomicReference;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.cloud.context.environment.EnvironmentChangeEvent;
+import org.springframework.context.event.EventListener;
+import org.springframework.core.env.Environment;
+import org.springframework.stereotype.Component;
+
+import ecommerce.entity.Regiao;
+import ecommerce.entity.TipoCliente;
+
+/**
+ * Tabela de regras de preço em vigor, lida de {@code ecommerce.preco.*} (faixas, fatores de
+ * frete por região e descontos de fidelidade por tipo de cliente). A recarga compila
+ * uma tabela nova e a publica numa única troca atômica: cálculos em andamento seguem com a
+ * tabela que leram, sem lock e sem enxergar faixas pela metade. Uma configuração inválida é
+ * rejeitada e a tabela anterior continua valendo.
+ * <p>
+ * Recarrega sozinha quando alguma propriedade {@code ecommerce.preco.*} muda
+ * ({@code POST /actuator/refresh}).
+ */
+@Component
+public class RegrasPreco
+{
+	private static final Logger log = LoggerFactory.getLogger(RegrasPreco.class);
+
+	private static final String PREFIXO = "ecommerce.preco.";
+
+	private final Environment environment;
+	private final AtomicReference<TabelaRegrasPreco> atual;
+
+	@Autowired
+	public RegrasPreco(Environment environment)
+	{
+		this(environment, ler(environment));
+	}
+
+	private RegrasPreco(Environment environment, TabelaRegrasPreco tabela)
+	{
+		this.environment = environment;
+		this.atual = new AtomicReference<>(tabela);
+	}
+
+	/**
+	 * Regras que só mudam por {@link #substituir}, sem configuração associada.
+	 */
+	public static RegrasPreco fixas(TabelaRegrasPreco tabela)
+	{
+		return new RegrasPreco(null, tabela);
+	}
+
+	public TabelaRegrasPreco atual()
+	{
+		return atual.get();
+	}
+
+	/**
+	 * Publica {@code tabela} como a tabela em vigor.
+	 */
+	public void substituir(TabelaRegrasPreco tabela)
+	{
+		if (tabela == null)
+		{
+			throw new IllegalArgumentException("Tabela de regras de preço não informada.");
+		}
+		atual.set(tabela);
+	}
+
+	/**
+	 * Relê a configuração e publica a nova tabela.
+	 *
+	 * @throws IllegalArgumentException se a configuração é inválida; a tabela anterior é
+	 *                                  mantida
+	 */
+	public TabelaRegrasPreco recarregar()
+	{
+		if (environment == null)
+		{
+			throw new IllegalStateException("Regras de preço fixas, sem configuração para recarregar.");
+		}
+
+		TabelaRegrasPreco tabela = ler(environment);
+		atual.set(tabela);
+		log.info("Regras de preço recarregadas.");
+		return tabela;
+	}
+
+	@EventListener
+	public void aoMudarConfiguracao(EnvironmentChangeEvent evento)
+	{
+		Set<String> chaves = evento.getKeys();
+		if (environment == null || chaves.stream().noneMatch(chave -> chave.startsWith(PREFIXO)))
+		{
+			return;
+		}
+
+		try
+		{
+			recarregar();
+		}
+		catch (IllegalArgumentException e)
+		{
+			log.error("Configuração de regras de preço inválida; mantendo as regras anteriores.", e);
+		}
+	}
+
+	private static TabelaRegrasPreco ler(Environment environment)
+	{
+		Map<Regiao, Long> percentualFretePorRegiao = new EnumMap<>(Regiao.class);
+		for (Regiao regiao : Regiao.values())
+		{
+			percentualFretePorRegiao.put(regiao, environment.getProperty(
+					PREFIXO + "regiao." + nomePropriedade(regiao) + ".frete-percentual", Long.class,
+					AjustePreco.NEUTRO.percentualFrete()));
+		}
+
+		Map<TipoCliente, Long> descontoPorTipoCliente = new EnumMap<>(TipoCliente.class);
+		for (TipoCliente tipo : TipoCliente.values())
+		{
+			descontoPorTipoCliente.put(tipo, environment.getProperty(
+					PREFIXO + "fidelidade." + nomePropriedade(tipo) + ".desconto-percentual", Long.class,
+					AjustePreco.NEUTRO.descontoFidelidade()));
+		}
+
+		return TabelaRegrasPreco.deConfiguracao(
+				environment.getProperty(PREFIXO + "desconto.faixas", TabelaRegrasPreco.DESCONTOS_PADRAO),
+				environment.getProperty(PREFIXO + "frete.faixas", TabelaRegrasPreco.FRETE_PADRAO),
+				environment.getProperty(PREFIXO + "frete.multiplicador-acima", Long.class,
+						TabelaRegrasPreco.MULTIPLICADOR_ACIMA_PADRAO),
+				environment.getProperty(PREFIXO + "frete.adicional-fragil", BigDecimal.class,
+						TabelaRegrasPreco.ADICIONAL_FRAGIL_PADRAO))
+				.comAjustes(percentualFretePorRegiao, descontoPorTipoCliente);
+	}
+
+	/**
+	 * {@code CENTRO_OESTE} -> {@code centro-oeste}.
+	 */
+	private static String nomePropriedade(Enum<?> valor)
+	{
+		return valor.name().toLowerCase(Locale.ROOT).replace('_', '-');
+	}
+}
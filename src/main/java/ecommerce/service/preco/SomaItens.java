@@ -0,0 +1,168 @@
+package ecommerce.service.preco;
+
+import java.math.BigDecimal;
+import java.util.stream.Collector;
+
+import ecommerce.dto.LinhaCheckoutDTO;
+import ecommerce.entity.ItemCompra;
+import ecommerce.entity.Produto;
+
+/**
+ * Acumulador de subtotal, peso e unidades frágeis para carrinhos percorridos em partes: páginas
+ * lidas do banco ou fatias somadas separadamente e combinadas com {@link #combinar}. O
+ * resultado independe da ordem e da divisão das partes. Também soma as linhas do checkout
+ * lidas por projeção ({@link LinhaCheckoutDTO}).
+ * <p>
+ * Acumula em centavos e gramas enquanto possível; um valor sem representação inteira ou um
+ * estouro passa a soma para {@link BigDecimal}, sem perda do que já foi somado. O custo é
+ * obtido com {@link MotorPreco#calcular(SomaItens, TabelaRegrasPreco, AjustePreco)}.
+ * Não é thread-safe: cada fatia usa a sua instância.
+ */
+public final class SomaItens
+{
+	private long centavos;
+	private long gramas;
+	private long frageis;
+	private long linhas;
+
+	// Não nulos depois da passagem para BigDecimal
+	private BigDecimal totalBruto;
+	private BigDecimal pesoTotal;
+	private BigDecimal unidadesFrageis;
+
+	public static Collector<ItemCompra, SomaItens, SomaItens> coletor()
+	{
+		return Collector.of(SomaItens::new, SomaItens::adicionar, SomaItens::combinar,
+				Collector.Characteristics.UNORDERED, Collector.Characteristics.IDENTITY_FINISH);
+	}
+
+	public void adicionar(ItemCompra item)
+	{
+		Produto produto = item.getProduto();
+		adicionar(produto.getPrecoEmCentavos(), produto.getPesoEmGramas(), produto.getPreco(), produto.getPesoFisico(),
+				produto.isFragil(), item.getQuantidade());
+	}
+
+	/**
+	 * Linha lida por projeção, sem a entidade: o preço e o peso são convertidos aqui.
+	 */
+	public void adicionar(LinhaCheckoutDTO linha)
+	{
+		adicionar(Produto.emCentavos(linha.preco()), Produto.emGramas(linha.pesoFisico()), linha.preco(),
+				linha.pesoFisico(), linha.fragil(), linha.quantidade());
+	}
+
+	private void adicionar(long precoCentavos, long pesoGramas, BigDecimal preco, BigDecimal pesoFisico, boolean fragil,
+			long quantidade)
+	{
+		linhas++;
+
+		if (totalBruto == null)
+		{
+			if (precoCentavos != Produto.NAO_REPRESENTAVEL && pesoGramas != Produto.NAO_REPRESENTAVEL)
+			{
+				try
+				{
+					long novoCentavos = Math.addExact(centavos, Math.multiplyExact(precoCentavos, quantidade));
+					long novoGramas = Math.addExact(gramas, Math.multiplyExact(pesoGramas, quantidade));
+					long novoFrageis = fragil ? Math.addExact(frageis, quantidade) : frageis;
+					centavos = novoCentavos;
+					gramas = novoGramas;
+					frageis = novoFrageis;
+					return;
+				}
+				catch (ArithmeticException e)
+				{
+					// Segue em BigDecimal
+				}
+			}
+			passarParaBigDecimal();
+		}
+
+		BigDecimal qtd = BigDecimal.valueOf(quantidade);
+		totalBruto = totalBruto.add(preco.multiply(qtd));
+		pesoTotal = pesoTotal.add(pesoFisico.multiply(qtd));
+		if (fragil)
+		{
+			unidadesFrageis = unidadesFrageis.add(qtd);
+		}
+	}
+
+	public SomaItens combinar(SomaItens outra)
+	{
+		linhas += outra.linhas;
+		if (totalBruto == null && outra.totalBruto == null)
+		{
+			try
+			{
+				long novoCentavos = Math.addExact(centavos, outra.centavos);
+				long novoGramas = Math.addExact(gramas, outra.gramas);
+				long novoFrageis = Math.addExact(frageis, outra.frageis);
+				centavos = novoCentavos;
+				gramas = novoGramas;
+				frageis = novoFrageis;
+				return this;
+			}
+			catch (ArithmeticException e)
+			{
+				// Segue em BigDecimal
+			}
+		}
+
+		passarParaBigDecimal();
+		totalBruto = totalBruto.add(outra.totalBruto());
+		pesoTotal = pesoTotal.add(outra.pesoTotal());
+		unidadesFrageis = unidadesFrageis.add(outra.unidadesFrageis());
+		return this;
+	}
+
+	public long linhas()
+	{
+		return linhas;
+	}
+
+	boolean inteira()
+	{
+		return totalBruto == null;
+	}
+
+	long centavos()
+	{
+		return centavos;
+	}
+
+	long gramas()
+	{
+		return gramas;
+	}
+
+	long frageis()
+	{
+		return frageis;
+	}
+
+	BigDecimal totalBruto()
+	{
+		return totalBruto != null ? totalBruto : BigDecimal.valueOf(centavos, 2);
+	}
+
+	BigDecimal pesoTotal()
+	{
+		return pesoTotal != null ? pesoTotal : BigDecimal.valueOf(gramas, 3);
+	}
+
+	BigDecimal unidadesFrageis()
+	{
+		return unidadesFrageis != null ? unidadesFrageis : BigDecimal.valueOf(frageis);
+	}
+
+	private void passarParaBigDecimal()
+	{
+		if (totalBruto == null)
+		{
+			totalBruto = BigDecimal.valueOf(centavos, 2);
+			pesoTotal = BigDecimal.valueOf(gramas, 3);
+			unidadesFrageis = BigDecimal.valueOf(frageis);
+		}
+	}
+}
@@ -0,0 +1,297 @@
+package ecommerce.service.preco;
+
+import java.math.BigDecimal;
+import java.util.Arrays;
+import java.util.EnumMap;
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.concurrent.atomic.AtomicLong;
+
+import ecommerce.entity.Regiao;
+import ecommerce.entity.TipoCliente;
+
+/**
+ * Faixas de desconto e de frete já compiladas para consulta: limites ordenados em arrays
+ * (em centavos/gramas para o cálculo inteiro e em reais/kg para o cálculo em
+ * {@link BigDecimal}) pesquisados por busca binária. Imutável; uma nova configuração gera
+ * uma nova tabela, trocada por inteiro em {@link RegrasPreco}, com uma {@link #versao()}
+ * própria.
+ * <p>
+ * Formato das faixas, em qualquer ordem:
+ * <ul>
+ * <li>desconto: {@code "1000:20,500:10"} - a partir de R$ 1000,00, 20%; a partir de R$
+ * 500,00, 10%; abaixo da menor faixa, sem desconto;</li>
+ * <li>frete: {@code "5:0,10:2,50:4"} - até 5 kg, R$ 0/kg; até 10 kg, R$ 2/kg; até 50 kg,
+ * R$ 4/kg; acima da maior faixa, o multiplicador de "acima".</li>
+ * </ul>
+ * Cada combinação de região e tipo de cliente tem seu {@link AjustePreco} já montado numa
+ * matriz de {@link EnumMap}, resolvido uma vez por cálculo com {@link #ajuste}.
+ */
+public final class TabelaRegrasPreco
+{
+	public static final String DESCONTOS_PADRAO = "1000:20,500:10";
+	public static final String FRETE_PADRAO = "5:0,10:2,50:4";
+	public static final long MULTIPLICADOR_ACIMA_PADRAO = 7;
+	public static final BigDecimal ADICIONAL_FRAGIL_PADRAO = BigDecimal.valueOf(5);
+
+	private static final AtomicLong VERSOES = new AtomicLong();
+
+	/** Regras em vigor antes das faixas serem configuráveis. */
+	public static final TabelaRegrasPreco PADRAO = deConfiguracao(DESCONTOS_PADRAO, FRETE_PADRAO,
+			MULTIPLICADOR_ACIMA_PADRAO, ADICIONAL_FRAGIL_PADRAO);
+
+	private final long[] descontoAPartirDeCentavos;
+	private final BigDecimal[] descontoAPartirDeReais;
+	private final long[] percentuaisDesconto;
+
+	private final long[] freteAteGramas;
+	private final BigDecimal[] freteAteKg;
+	private final long[] multiplicadoresFrete;
+	private final long multiplicadorAcima;
+
+	private final long adicionalFragilCentavos;
+
+	private final EnumMap<Regiao, EnumMap<TipoCliente, AjustePreco>> ajustes;
+
+	private final long versao = VERSOES.incrementAndGet();
+
+	private TabelaRegrasPreco(TreeMap<BigDecimal, Long> descontos, TreeMap<BigDecimal, Long> frete,
+			long multiplicadorAcima, long adicionalFragilCentavos)
+	{
+		int n = descontos.size();
+		descontoAPartirDeCentavos = new long[n];
+		descontoAPartirDeReais = new BigDecimal[n];
+		percentuaisDesconto = new long[n];
+		int i = 0;
+		for (Map.Entry<BigDecimal, Long> faixa : descontos.entrySet())
+		{
+			descontoAPartirDeReais[i] = faixa.getKey();
+			descontoAPartirDeCentavos[i] = faixa.getKey().movePointRight(2).longValueExact();
+			percentuaisDesconto[i] = faixa.getValue();
+			i++;
+		}
+
+		n = frete.size();
+		freteAteGramas = new long[n];
+		freteAteKg = new BigDecimal[n];
+		multiplicadoresFrete = new long[n];
+		i = 0;
+		for (Map.Entry<BigDecimal, Long> faixa : frete.entrySet())
+		{
+			freteAteKg[i] = faixa.getKey();
+			freteAteGramas[i] = faixa.getKey().movePointRight(3).longValueExact();
+			multiplicadoresFrete[i] = faixa.getValue();
+			i++;
+		}
+
+		this.multiplicadorAcima = multiplicadorAcima;
+		this.adicionalFragilCentavos = adicionalFragilCentavos;
+		this.ajustes = matriz(Map.of(), Map.of());
+	}
+
+	private TabelaRegrasPreco(TabelaRegrasPreco faixas, EnumMap<Regiao, EnumMap<TipoCliente, AjustePreco>> ajustes)
+	{
+		descontoAPartirDeCentavos = faixas.descontoAPartirDeCentavos;
+		descontoAPartirDeReais = faixas.descontoAPartirDeReais;
+		percentuaisDesconto = faixas.percentuaisDesconto;
+		freteAteGramas = faixas.freteAteGramas;
+		freteAteKg = faixas.freteAteKg;
+		multiplicadoresFrete = faixas.multiplicadoresFrete;
+		multiplicadorAcima = faixas.multiplicadorAcima;
+		adicionalFragilCentavos = faixas.adicionalFragilCentavos;
+		this.ajustes = ajustes;
+	}
+
+	/**
+	 * Compila a tabela a partir das propriedades de configuração.
+	 *
+	 * @throws IllegalArgumentException se alguma faixa está malformada, repetida, com limite
+	 *                                  sem representação em centavos/gramas ou valor fora do
+	 *                                  intervalo permitido
+	 */
+	public static TabelaRegrasPreco deConfiguracao(String descontos, String frete, long multiplicadorAcima,
+			BigDecimal adicionalFragil)
+	{
+		TreeMap<BigDecimal, Long> faixasDesconto = lerFaixas(descontos, "desconto", 2);
+		for (long percentual : faixasDesconto.values())
+		{
+			if (percentual < 0 || percentual > 100)
+			{
+				throw new IllegalArgumentException("Percentual de desconto deve estar entre 0 e 100: " + percentual);
+			}
+		}
+
+		TreeMap<BigDecimal, Long> faixasFrete = lerFaixas(frete, "frete", 3);
+		if (faixasFrete.firstKey().signum() <= 0)
+		{
+			throw new IllegalArgumentException("Limites de peso do frete devem ser positivos.");
+		}
+		for (long multiplicador : faixasFrete.values())
+		{
+			exigirNaoNegativo(multiplicador, "Multiplicador de frete");
+		}
+		exigirNaoNegativo(multiplicadorAcima, "Multiplicador de frete");
+
+		if (adicionalFragil == null || adicionalFragil.signum() < 0
+				|| adicionalFragil.stripTrailingZeros().scale() > 2)
+		{
+			throw new IllegalArgumentException("Adicional de frágeis deve ser um valor não negativo em centavos.");
+		}
+
+		return new TabelaRegrasPreco(faixasDesconto, faixasFrete, multiplicadorAcima,
+				adicionalFragil.movePointRight(2).longValueExact());
+	}
+
+	/**
+	 * Nova tabela com as mesmas faixas e os fatores por região e por tipo de cliente.
+	 * Região ou tipo ausentes nos mapas ficam neutros.
+	 *
+	 * @param percentualFretePorRegiao percentual aplicado ao frete (100 = sem acréscimo)
+	 * @param descontoPorTipoCliente   pontos percentuais somados ao desconto da faixa
+	 * @throws IllegalArgumentException se algum fator está fora do intervalo permitido
+	 */
+	public TabelaRegrasPreco comAjustes(Map<Regiao, Long> percentualFretePorRegiao,
+			Map<TipoCliente, Long> descontoPorTipoCliente)
+	{
+		return new TabelaRegrasPreco(this, matriz(percentualFretePorRegiao, descontoPorTipoCliente));
+	}
+
+	/**
+	 * Fatores da combinação; {@link AjustePreco#NEUTRO} se a região ou o tipo não é informado.
+	 */
+	public AjustePreco ajuste(Regiao regiao, TipoCliente tipoCliente)
+	{
+		if (regiao == null || tipoCliente == null)
+		{
+			return AjustePreco.NEUTRO;
+		}
+		return ajustes.get(regiao).get(tipoCliente);
+	}
+
+	/**
+	 * Percentual de desconto da maior faixa cujo limite não passa de {@code totalCentavos}.
+	 */
+	public long percentualDesconto(long totalCentavos)
+	{
+		int faixa = ultimaFaixaAte(Arrays.binarySearch(descontoAPartirDeCentavos, totalCentavos));
+		return faixa < 0 ? 0 : percentuaisDesconto[faixa];
+	}
+
+	public long percentualDesconto(BigDecimal totalReais)
+	{
+		int faixa = ultimaFaixaAte(Arrays.binarySearch(descontoAPartirDeReais, totalReais));
+		return faixa < 0 ? 0 : percentuaisDesconto[faixa];
+	}
+
+	/**
+	 * Multiplicador (R$/kg) da menor faixa cujo limite alcança {@code pesoGramas}.
+	 */
+	public long multiplicadorFrete(long pesoGramas)
+	{
+		int faixa = primeiraFaixaDesde(Arrays.binarySearch(freteAteGramas, pesoGramas));
+		return faixa < multiplicadoresFrete.length ? multiplicadoresFrete[faixa] : multiplicadorAcima;
+	}
+
+	public long multiplicadorFrete(BigDecimal pesoKg)
+	{
+		int faixa = primeiraFaixaDesde(Arrays.binarySearch(freteAteKg, pesoKg));
+		return faixa < multiplicadoresFrete.length ? multiplicadoresFrete[faixa] : multiplicadorAcima;
+	}
+
+	/**
+	 * Identifica esta tabela: cada tabela compilada recebe uma versão diferente e crescente.
+	 */
+	public long versao()
+	{
+		return versao;
+	}
+
+	public long adicionalFragilCentavos()
+	{
+		return adicionalFragilCentavos;
+	}
+
+	public BigDecimal adicionalFragil()
+	{
+		return BigDecimal.valueOf(adicionalFragilCentavos, 2);
+	}
+
+	private static int ultimaFaixaAte(int resultadoBusca)
+	{
+		return resultadoBusca >= 0 ? resultadoBusca : -resultadoBusca - 2;
+	}
+
+	private static int primeiraFaixaDesde(int resultadoBusca)
+	{
+		return resultadoBusca >= 0 ? resultadoBusca : -resultadoBusca - 1;
+	}
+
+	private static EnumMap<Regiao, EnumMap<TipoCliente, AjustePreco>> matriz(Map<Regiao, Long> percentualFretePorRegiao,
+			Map<TipoCliente, Long> descontoPorTipoCliente)
+	{
+		EnumMap<Regiao, EnumMap<TipoCliente, AjustePreco>> matriz = new EnumMap<>(Regiao.class);
+		for (Regiao regiao : Regiao.values())
+		{
+			long percentualFrete = percentualFretePorRegiao.getOrDefault(regiao, AjustePreco.NEUTRO.percentualFrete());
+			EnumMap<TipoCliente, AjustePreco> linha = new EnumMap<>(TipoCliente.class);
+			for (TipoCliente tipo : TipoCliente.values())
+			{
+				long desconto = descontoPorTipoCliente.getOrDefault(tipo, AjustePreco.NEUTRO.descontoFidelidade());
+				linha.put(tipo, percentualFrete == AjustePreco.NEUTRO.percentualFrete()
+						&& desconto == AjustePreco.NEUTRO.descontoFidelidade() ? AjustePreco.NEUTRO
+								: new AjustePreco(percentualFrete, desconto));
+			}
+			matriz.put(regiao, linha);
+		}
+		return matriz;
+	}
+
+	private static TreeMap<BigDecimal, Long> lerFaixas(String faixas, String nome, int casasDecimais)
+	{
+		if (faixas == null || faixas.isBlank())
+		{
+			throw new IllegalArgumentException("Nenhuma faixa de " + nome + " configurada.");
+		}
+
+		TreeMap<BigDecimal, Long> lidas = new TreeMap<>();
+		for (String faixa : faixas.split(","))
+		{
+			String[] partes = faixa.trim().split(":");
+			if (partes.length != 2)
+			{
+				throw new IllegalArgumentException("Faixa de " + nome + " malformada: '" + faixa.trim() + "'.");
+			}
+
+			BigDecimal limite;
+			long valor;
+			try
+			{
+				limite = new BigDecimal(partes[0].trim());
+				valor = Long.parseLong(partes[1].trim());
+			}
+			catch (NumberFormatException e)
+			{
+				throw new IllegalArgumentException("Faixa de " + nome + " malformada: '" + faixa.trim() + "'.", e);
+			}
+
+			if (limite.signum() < 0 || limite.stripTrailingZeros().scale() > casasDecimais)
+			{
+				throw new IllegalArgumentException("Limite da faixa de " + nome + " inválido: " + limite);
+			}
+			// compareTo ignora a escala: "500" e "500.00" são a mesma faixa
+			if (lidas.put(limite, valor) != null)
+			{
+				throw new IllegalArgumentException("Faixa de " + nome + " repetida: " + limite);
+			}
+		}
+		return lidas;
+	}
+
+	private static void exigirNaoNegativo(long valor, String nome)
+	{
+		if (valor < 0)
+		{
+			throw new IllegalArgumentException(nome + " não pode ser negativo: " + valor);
+		}
+	}
+}
@@ -0,0 +1,116 @@
+-- Esquema inicial, equivalente ao que o Hibernate gerava com ddl-auto, mais os índices das
+-- consultas do checkout. O Hibernate apenas valida o mapeamento contra este esquema
+-- (spring.jpa.hibernate.ddl-auto=validate); alterações seguintes entram em novas versões.
+
+-- Sequências com incremento igual ao allocationSize das entidades (otimizador pooled)
+create sequence produto_seq start with 1 increment by 50;
+create sequence cliente_seq start with 1 increment by 50;
+create sequence carrinho_de_compras_seq start with 1 increment by 50;
+create sequence item_compra_seq start with 1 increment by 50;
+
+create table produto (
+	id bigint not null,
+	nome varchar(255),
+	descricao varchar(255),
+	preco numeric(38,2),
+	peso_fisico numeric(38,2),
+	comprimento numeric(38,2),
+	largura numeric(38,2),
+	altura numeric(38,2),
+	fragil boolean,
+	tipo varchar(255),
+	primary key (id)
+);
+
+create table cliente (
+	id bigint not null,
+	nome varchar(255),
+	regiao tinyint,
+	tipo varchar(255),
+	primary key (id)
+);
+
+create table carrinho_de_compras (
+	id bigint not null,
+	cliente_id bigint,
+	data date,
+	subtotal_centavos bigint,
+	peso_gramas bigint,
+	unidades_frageis bigint,
+	linhas integer,
+	versao bigint default 0 not null,
+	primary key (id)
+);
+
+create table item_compra (
+	id bigint not null,
+	carrinho_id bigint not null,
+	produto_id bigint,
+	quantidade bigint,
+	primary key (id)
+);
+
+create table compra_idempotente (
+	chave varchar(255) not null,
+	pedido varchar(255),
+	transacao_pagamento_id bigint,
+	mensagem varchar(255),
+	criada_em timestamp(6) with time zone,
+	primary key (chave)
+);
+
+create table cotacao_carrinho (
+	carrinho_id bigint not null,
+	custo_centavos bigint not null,
+	execucao_id bigint,
+	calculada_em timestamp(6) with time zone,
+	primary key (carrinho_id)
+);
+
+create table evento_outbox (
+	id bigint generated by default as identity,
+	tipo varchar(255),
+	status varchar(255),
+	carrinho_id bigint,
+	cliente_id bigint,
+	transacao_pagamento_id bigint,
+	tentativas integer not null,
+	criado_em timestamp(6) with time zone,
+	proxima_tentativa_em timestamp(6) with time zone,
+	ultimo_erro varchar(255),
+	versao bigint,
+	primary key (id)
+);
+
+create table execucao_recotacao (
+	id bigint generated by default as identity,
+	status varchar(255),
+	ultimo_carrinho_id bigint not null,
+	carrinhos_recotados bigint not null,
+	carrinhos_alterados bigint not null,
+	carrinhos_novos bigint not null,
+	carrinhos_com_falha bigint not null,
+	delta_total_centavos bigint not null,
+	duracao_millis bigint not null,
+	iniciada_em timestamp(6) with time zone,
+	atualizada_em timestamp(6) with time zone,
+	concluida_em timestamp(6) with time zone,
+	ultimo_erro varchar(255),
+	versao bigint,
+	primary key (id)
+);
+
+-- Índices criados antes das chaves estrangeiras, que passam a usá-los em vez de criar os seus.
+-- Carrinhos do cliente (findByIdAndCliente e findLinhasCheckout filtram por cliente)
+create index idx_carrinho_cliente on carrinho_de_compras (cliente_id, id);
+-- Itens do carrinho em ordem de id: carga do carrinho e paginação de carrinhos grandes
+-- (carrinho_id = ? and id > ? order by id)
+create index idx_item_compra_carrinho on item_compra (carrinho_id, id);
+-- Carrinhos que contêm um produto (invalidação dos totais após alteração de catálogo)
+create index idx_item_compra_produto on item_compra (produto_id, carrinho_id);
+-- Eventos pendentes do outbox com tentativa vencida
+create index idx_evento_outbox_pendentes on evento_outbox (status, proxima_tentativa_em, id);
+
+alter table carrinho_de_compras add constraint fk_carrinho_cliente foreign key (cliente_id) references cliente;
+alter table item_compra add constraint fk_item_compra_carrinho foreign key (carrinho_id) references carrinho_de_compras;
+alter table item_compra add constraint fk_item_compra_produto foreign key (produto_id) references produto;
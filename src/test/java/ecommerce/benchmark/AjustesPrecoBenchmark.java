@@ -0,0 +1,81 @@
+package ecommerce.benchmark;
+
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import ecommerce.benchmark.Carrinhos.FaixaDesconto;
+import ecommerce.benchmark.Carrinhos.FaixaFrete;
+import ecommerce.dto.Dinheiro;
+import ecommerce.entity.CarrinhoDeCompras;
+import ecommerce.entity.Regiao;
+import ecommerce.entity.TipoCliente;
+import ecommerce.service.preco.MotorPreco;
+import ecommerce.service.preco.RegrasPreco;
+import ecommerce.service.preco.TabelaRegrasPreco;
+
+/**
+ * Custo dos ajustes de região e fidelidade: {@code semAjuste} é o cálculo com a matriz
+ * neutra (o motor de antes dos ajustes) e {@code comAjuste} resolve uma combinação com
+ * acréscimo de frete e desconto de fidelidade. Os dois devem empatar em tempo e alocação.
+ * <p>
+ * {@code mvn -Pjmh test-compile exec:exec -Djmh.args="AjustesPreco -prof gc"}.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode({ Mode.Throughput, Mode.AverageTime })
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class AjustesPrecoBenchmark
+{
+	@Param({ "1", "100", "10000" })
+	private int tamanho;
+
+	@Param({ "SEM_DESCONTO", "DESCONTO_20" })
+	private FaixaDesconto desconto;
+
+	@Param({ "ISENTO", "ACIMA_50_KG" })
+	private FaixaFrete frete;
+
+	private MotorPreco motorPreco;
+	private CarrinhoDeCompras carrinho;
+
+	@Setup(Level.Trial)
+	public void setUp()
+	{
+		motorPreco = new MotorPreco(RegrasPreco.fixas(TabelaRegrasPreco.PADRAO.comAjustes(
+				Map.of(Regiao.NORTE, 135L, Regiao.NORDESTE, 120L), Map.of(TipoCliente.OURO, 5L, TipoCliente.PRATA, 2L))));
+		carrinho = Carrinhos.criar(1L, null, tamanho, desconto, frete, 50);
+	}
+
+	@Benchmark
+	public Dinheiro semAjuste()
+	{
+		return motorPreco.calcular(carrinho);
+	}
+
+	@Benchmark
+	public Dinheiro comAjuste()
+	{
+		return motorPreco.calcular(carrinho, Regiao.NORTE, TipoCliente.OURO);
+	}
+
+	@Benchmark
+	public Dinheiro referenciaComAjuste()
+	{
+		return motorPreco.calcularReferencia(carrinho, Regiao.NORTE, TipoCliente.OURO);
+	}
+}
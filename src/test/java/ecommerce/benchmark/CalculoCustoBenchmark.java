@@ -0,0 +1,106 @@
+package ecommerce.benchmark;
+
+import java.math.BigDecimal;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import ecommerce.benchmark.Carrinhos.FaixaDesconto;
+import ecommerce.benchmark.Carrinhos.FaixaFrete;
+import ecommerce.dto.Dinheiro;
+import ecommerce.entity.CarrinhoDeCompras;
+import ecommerce.entity.Regiao;
+import ecommerce.entity.TipoCliente;
+import ecommerce.external.fake.EstoqueSimulado;
+import ecommerce.external.fake.PagamentoSimulado;
+import ecommerce.repository.fake.CarrinhoDeComprasRepositoryFake;
+import ecommerce.repository.fake.ClienteRepositoryFake;
+import ecommerce.service.CarrinhoDeComprasService;
+import ecommerce.service.ClienteService;
+import ecommerce.service.CompraService;
+import ecommerce.service.CompraServiceBuilder;
+import ecommerce.service.preco.MotorPreco;
+
+/**
+ * {@link CompraService#calcularCustoTotal} por tamanho de carrinho, faixa de desconto, faixa
+ * de frete e proporção de frágeis. {@code referenciaBigDecimal} mede o cálculo original para
+ * comparação; {@code motorComTotais}, o custo a partir dos totais mantidos no carrinho.
+ * <p>
+ * Todas as combinações: {@code mvn -Pjmh test-compile exec:exec}. Um recorte:
+ * {@code -Djmh.args="CalculoCusto -p tamanho=100 -p desconto=DESCONTO_20 -prof gc"}.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode({ Mode.Throughput, Mode.AverageTime })
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class CalculoCustoBenchmark
+{
+	@Param({ "1", "10", "100", "1000", "10000", "100000" })
+	private int tamanho;
+
+	@Param({ "SEM_DESCONTO", "DESCONTO_10", "DESCONTO_20" })
+	private FaixaDesconto desconto;
+
+	@Param({ "ISENTO", "ATE_10_KG", "ATE_50_KG", "ACIMA_50_KG" })
+	private FaixaFrete frete;
+
+	@Param({ "0", "50", "100" })
+	private int percentualFrageis;
+
+	private CompraService compraService;
+	private MotorPreco motorPreco;
+	private CarrinhoDeCompras carrinho;
+	private CarrinhoDeCompras carrinhoComTotais;
+
+	@Setup(Level.Trial)
+	public void setUp()
+	{
+		compraService = CompraServiceBuilder.compraService(
+				new CarrinhoDeComprasService(new CarrinhoDeComprasRepositoryFake()),
+				new ClienteService(new ClienteRepositoryFake()))
+				.estoque(new EstoqueSimulado())
+				.pagamento(new PagamentoSimulado())
+				.criar();
+		motorPreco = new MotorPreco();
+		carrinho = Carrinhos.criar(1L, null, tamanho, desconto, frete, percentualFrageis);
+		carrinhoComTotais = Carrinhos.criar(2L, null, tamanho, desconto, frete, percentualFrageis);
+		carrinhoComTotais.recalcularTotais();
+	}
+
+	@Benchmark
+	public BigDecimal calcularCustoTotal()
+	{
+		return compraService.calcularCustoTotal(carrinho, Regiao.SUDESTE, TipoCliente.BRONZE);
+	}
+
+	@Benchmark
+	public Dinheiro motorInteiro()
+	{
+		return motorPreco.calcular(carrinho);
+	}
+
+	@Benchmark
+	public Dinheiro motorComTotais()
+	{
+		return motorPreco.calcular(carrinhoComTotais);
+	}
+
+	@Benchmark
+	public Dinheiro referenciaBigDecimal()
+	{
+		return motorPreco.calcularReferencia(carrinho);
+	}
+}
@@ -0,0 +1,78 @@
+package ecommerce.benchmark;
+
+import java.math.BigDecimal;
+import java.time.LocalDate;
+import java.util.ArrayList;
+import java.util.List;
+
+import ecommerce.entity.CarrinhoDeCompras;
+import ecommerce.entity.Cliente;
+import ecommerce.entity.ItemCompra;
+import ecommerce.entity.Produto;
+import ecommerce.entity.TipoProduto;
+
+/**
+ * Monta carrinhos para os benchmarks com o total bruto e o peso total fixados pela faixa,
+ * qualquer que seja a quantidade de itens: o valor é distribuído em centavos e gramas
+ * inteiros entre as linhas.
+ */
+final class Carrinhos
+{
+	/** Faixas de desconto: total bruto do carrinho em centavos. */
+	enum FaixaDesconto
+	{
+		SEM_DESCONTO(10_000), DESCONTO_10(70_000), DESCONTO_20(500_000);
+
+		final long totalCentavos;
+
+		FaixaDesconto(long totalCentavos)
+		{
+			this.totalCentavos = totalCentavos;
+		}
+	}
+
+	/** Faixas de frete: peso total do carrinho em gramas. */
+	enum FaixaFrete
+	{
+		ISENTO(2_000), ATE_10_KG(8_000), ATE_50_KG(30_000), ACIMA_50_KG(100_000);
+
+		final long pesoGramas;
+
+		FaixaFrete(long pesoGramas)
+		{
+			this.pesoGramas = pesoGramas;
+		}
+	}
+
+	private Carrinhos()
+	{
+	}
+
+	/**
+	 * @param percentualFrageis percentual (0-100) das linhas com produto frágil
+	 */
+	static CarrinhoDeCompras criar(Long id, Cliente cliente, int linhas, FaixaDesconto desconto, FaixaFrete frete,
+			int percentualFrageis)
+	{
+		List<ItemCompra> itens = new ArrayList<>(linhas);
+		for (int i = 0; i < linhas; i++)
+		{
+			long centavos = parcela(desconto.totalCentavos, linhas, i);
+			long gramas = parcela(frete.pesoGramas, linhas, i);
+			boolean fragil = (i * 100L / linhas) < percentualFrageis;
+
+			Produto produto = new Produto((long) i + 1, "Produto " + i, null, BigDecimal.valueOf(centavos, 2),
+					BigDecimal.valueOf(gramas, 3), null, null, null, fragil, TipoProduto.ALIMENTO);
+			itens.add(new ItemCompra((long) i + 1, produto, 1L));
+		}
+		return new CarrinhoDeCompras(id, cliente, itens, LocalDate.now());
+	}
+
+	/**
+	 * Parte inteira do total que cabe à linha {@code i}, com o resto distribuído nas primeiras.
+	 */
+	private static long parcela(long total, int linhas, int i)
+	{
+		return total / linhas + (i < total % linhas ? 1 : 0);
+	}
+}
@@ -0,0 +1,92 @@
+package ecommerce.benchmark;
+
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import ecommerce.benchmark.Carrinhos.FaixaDesconto;
+import ecommerce.benchmark.Carrinhos.FaixaFrete;
+import ecommerce.dto.CompraDTO;
+import ecommerce.entity.CarrinhoDeCompras;
+import ecommerce.entity.Cliente;
+import ecommerce.entity.ItemCompra;
+import ecommerce.entity.Regiao;
+import ecommerce.entity.TipoCliente;
+import ecommerce.external.fake.EstoqueSimulado;
+import ecommerce.external.fake.PagamentoSimulado;
+import ecommerce.repository.fake.CarrinhoDeComprasRepositoryFake;
+import ecommerce.repository.fake.ClienteRepositoryFake;
+import ecommerce.service.CarrinhoDeComprasService;
+import ecommerce.service.ClienteService;
+import ecommerce.service.CompraService;
+import ecommerce.service.CompraServiceBuilder;
+
+/**
+ * {@link CompraService#finalizarCompra} de ponta a ponta com os fakes de repositório,
+ * estoque e pagamento. As chamadas externas rodam na própria thread (executor direto), então
+ * o resultado mede o custo de CPU e alocação do checkout, sem latência de rede.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode({ Mode.Throughput, Mode.AverageTime })
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class FinalizarCompraBenchmark
+{
+	private static final Long CLIENTE_ID = 99L;
+	private static final Long CARRINHO_ID = 1L;
+
+	@Param({ "1", "10", "100", "1000" })
+	private int tamanho;
+
+	@Param({ "0", "50" })
+	private int percentualFrageis;
+
+	private CompraService compraService;
+
+	@Setup(Level.Trial)
+	public void setUp()
+	{
+		ClienteRepositoryFake clienteRepository = new ClienteRepositoryFake();
+		CarrinhoDeComprasRepositoryFake carrinhoRepository = new CarrinhoDeComprasRepositoryFake();
+		EstoqueSimulado estoque = new EstoqueSimulado();
+
+		Cliente cliente = new Cliente(CLIENTE_ID, "Cliente", Regiao.SUDESTE, TipoCliente.OURO);
+		clienteRepository.adicionarCliente(cliente);
+
+		CarrinhoDeCompras carrinho = Carrinhos.criar(CARRINHO_ID, cliente, tamanho, FaixaDesconto.DESCONTO_10,
+				FaixaFrete.ATE_10_KG, percentualFrageis);
+		carrinhoRepository.adicionarCarrinho(carrinho);
+
+		// Estoque suficiente para todas as baixas da medição
+		for (ItemCompra item : carrinho.getItens())
+		{
+			estoque.definirEstoque(item.getProduto().getId(), Long.MAX_VALUE / 2);
+		}
+
+		compraService = CompraServiceBuilder.compraService(new CarrinhoDeComprasService(carrinhoRepository),
+				new ClienteService(clienteRepository))
+				.estoque(estoque)
+				.pagamento(new PagamentoSimulado())
+				.executorExterno(Runnable::run)
+				.criar();
+	}
+
+	@Benchmark
+	public CompraDTO finalizarCompra()
+	{
+		return compraService.finalizarCompra(CARRINHO_ID, CLIENTE_ID);
+	}
+}
@@ -0,0 +1,114 @@
+package ecommerce.benchmark;
+
+import java.math.BigDecimal;
+import java.time.LocalDate;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+import org.springframework.boot.WebApplicationType;
+import org.springframework.boot.builder.SpringApplicationBuilder;
+import org.springframework.context.ConfigurableApplicationContext;
+import org.springframework.jdbc.core.JdbcTemplate;
+
+import ecommerce.CompraApplication;
+import ecommerce.entity.CarrinhoDeCompras;
+import ecommerce.entity.Cliente;
+import ecommerce.entity.ItemCompra;
+import ecommerce.entity.Produto;
+import ecommerce.entity.Regiao;
+import ecommerce.entity.TipoCliente;
+import ecommerce.entity.TipoProduto;
+import ecommerce.repository.CarrinhoDeComprasRepository;
+import ecommerce.repository.ClienteRepository;
+import ecommerce.repository.ProdutoRepository;
+
+/**
+ * Gravação de um carrinho novo com seus itens pelo repositório JPA, sobre o H2 em memória.
+ * {@code tamanhoLote=1} desliga os lotes JDBC (um INSERT por item); {@code 50} é o valor de
+ * {@code hibernate.jdbc.batch_size} da aplicação. Os carrinhos gravados são apagados ao fim de
+ * cada iteração para que o tamanho das tabelas não influencie a medição.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode({ Mode.Throughput, Mode.AverageTime })
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class PersistenciaCarrinhoBenchmark
+{
+	@Param({ "10", "300" })
+	private int itens;
+
+	@Param({ "1", "50" })
+	private int tamanhoLote;
+
+	private ConfigurableApplicationContext contexto;
+	private CarrinhoDeComprasRepository carrinhoRepository;
+	private JdbcTemplate jdbcTemplate;
+
+	private Cliente cliente;
+	private List<Produto> produtos;
+
+	@Setup(Level.Trial)
+	public void setUp()
+	{
+		contexto = new SpringApplicationBuilder(CompraApplication.class)
+				.web(WebApplicationType.NONE)
+				.properties("spring.jpa.properties.hibernate.jdbc.batch_size=" + tamanhoLote,
+						"spring.jpa.properties.hibernate.generate_statistics=false",
+						"ecommerce.outbox.despachante.habilitado=false",
+						"logging.level.root=WARN")
+				.run();
+		carrinhoRepository = contexto.getBean(CarrinhoDeComprasRepository.class);
+		jdbcTemplate = contexto.getBean(JdbcTemplate.class);
+
+		cliente = contexto.getBean(ClienteRepository.class)
+				.save(new Cliente(null, "Cliente", Regiao.SUDESTE, TipoCliente.BRONZE));
+
+		List<Produto> novos = new ArrayList<>();
+		for (int i = 0; i < itens; i++)
+		{
+			novos.add(new Produto(null, "Produto " + i, null, new BigDecimal("9.90"), new BigDecimal("0.10"), null,
+					null, null, i % 2 == 0, TipoProduto.LIVRO));
+		}
+		produtos = contexto.getBean(ProdutoRepository.class).saveAll(novos);
+	}
+
+	@TearDown(Level.Iteration)
+	public void apagarCarrinhos()
+	{
+		jdbcTemplate.update("delete from item_compra");
+		jdbcTemplate.update("delete from carrinho_de_compras");
+	}
+
+	@TearDown(Level.Trial)
+	public void tearDown()
+	{
+		contexto.close();
+	}
+
+	@Benchmark
+	public CarrinhoDeCompras gravarCarrinho()
+	{
+		List<ItemCompra> novos = new ArrayList<>(produtos.size());
+		for (Produto produto : produtos)
+		{
+			novos.add(new ItemCompra(null, produto, 1L));
+		}
+		return carrinhoRepository.save(new CarrinhoDeCompras(null, cliente, novos, LocalDate.now()));
+	}
+}
@@ -0,0 +1,90 @@
+package ecommerce.config;
+
+import java.sql.Connection;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Future;
+
+import javax.sql.DataSource;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assumptions.assumeTrue;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+@DisplayName("GuardaPinningConfig - conexões JDBC obtidas em threads virtuais")
+public class GuardaPinningConfigTest
+{
+	@Test
+	@DisplayName("Conexão obtida em thread virtual é contada e entregue")
+	void deveContarConexaoEmThreadVirtual() throws Exception
+	{
+		// Arrange
+		assumeTrue(ThreadsVirtuais.disponiveis(), "JVM sem threads virtuais");
+		DataSource alvo = mock(DataSource.class);
+		Connection conexao = mock(Connection.class);
+		when(alvo.getConnection()).thenReturn(conexao);
+		DataSource dataSource = new GuardaPinningConfig.DataSourceComGuarda(alvo, false);
+		long antes = ThreadsVirtuais.entradasComPinning();
+
+		// Act
+		Connection obtida = emThreadVirtual(dataSource);
+
+		// Assert
+		assertThat(obtida).isSameAs(conexao);
+		assertThat(ThreadsVirtuais.entradasComPinning()).isEqualTo(antes + 1);
+	}
+
+	@Test
+	@DisplayName("Modo estrito: conexão em thread virtual é recusada sem chegar ao pool")
+	void deveRecusarConexaoEmThreadVirtualNoModoEstrito() throws Exception
+	{
+		// Arrange
+		assumeTrue(ThreadsVirtuais.disponiveis(), "JVM sem threads virtuais");
+		DataSource alvo = mock(DataSource.class);
+		DataSource dataSource = new GuardaPinningConfig.DataSourceComGuarda(alvo, true);
+
+		// Act & Assert
+		ExecutionException erro = assertThrows(ExecutionException.class, () -> emThreadVirtual(dataSource));
+		assertThat(erro.getCause()).isInstanceOf(IllegalStateException.class).hasMessageContaining("pinning");
+		verify(alvo, never()).getConnection();
+	}
+
+	@Test
+	@DisplayName("Conexão obtida em thread de plataforma passa sem contagem")
+	void devePermitirConexaoEmThreadDePlataforma() throws Exception
+	{
+		// Arrange
+		DataSource alvo = mock(DataSource.class);
+		Connection conexao = mock(Connection.class);
+		when(alvo.getConnection()).thenReturn(conexao);
+		DataSource dataSource = new GuardaPinningConfig.DataSourceComGuarda(alvo, true);
+		long antes = ThreadsVirtuais.entradasComPinning();
+
+		// Act
+		Connection obtida = dataSource.getConnection();
+
+		// Assert
+		assertThat(obtida).isSameAs(conexao);
+		assertThat(ThreadsVirtuais.entradasComPinning()).isEqualTo(antes);
+	}
+
+	private static Connection emThreadVirtual(DataSource dataSource) throws Exception
+	{
+		ExecutorService executor = ThreadsVirtuais.novoExecutorPorTarefa("teste-pinning-");
+		try
+		{
+			Future<Connection> conexao = executor.submit(() -> dataSource.getConnection());
+			return conexao.get();
+		}
+		finally
+		{
+			executor.shutdownNow();
+		}
+	}
+}
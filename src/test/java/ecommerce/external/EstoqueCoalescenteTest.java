@@ -0,0 +1,167 @@
+package ecommerce.external;
+
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+
+import ecommerce.dto.DisponibilidadeDTO;
+import ecommerce.dto.EstoqueBaixaDTO;
+
+@DisplayName("EstoqueCoalescente - agrupamento de verificações de disponibilidade")
+public class EstoqueCoalescenteTest
+{
+	private EstoqueContador estoque;
+	private ExecutorService chamadores;
+
+	@BeforeEach
+	void setUp()
+	{
+		estoque = new EstoqueContador();
+		chamadores = Executors.newCachedThreadPool();
+	}
+
+	@AfterEach
+	void tearDown()
+	{
+		chamadores.shutdownNow();
+	}
+
+	@Test
+	@DisplayName("Deve enviar chamadas concorrentes como uma única consulta ao estoque")
+	void deveAgruparChamadasConcorrentes() throws Exception
+	{
+		// Arrange
+		estoque.definir(1L, 1000L);
+		int chamadas = 40;
+		EstoqueCoalescente coalescente = EstoqueCoalescente.de(estoque, Duration.ofSeconds(5), chamadas);
+
+		// Act
+		List<CompletableFuture<DisponibilidadeDTO>> respostas = disparar(coalescente, chamadas,
+				i -> new long[] { 1L, 2L });
+
+		// Assert
+		assertThat(respostas).allSatisfy(r -> assertThat(r.get(5, TimeUnit.SECONDS).disponivel()).isTrue());
+		assertThat(coalescente.chamadasRecebidas()).isEqualTo(chamadas);
+		assertThat(coalescente.chamadasEnviadas()).isEqualTo(1);
+		assertThat(estoque.chamadas.get()).isEqualTo(1);
+		assertThat(estoque.ultimaQuantidade.get()).isEqualTo(80);
+	}
+
+	@Test
+	@DisplayName("Deve enviar o lote incompleto ao fim da janela")
+	void deveEnviarLoteAoFimDaJanela() throws Exception
+	{
+		// Arrange
+		estoque.definir(1L, 10L);
+		EstoqueCoalescente coalescente = EstoqueCoalescente.de(estoque, Duration.ofMillis(20), 100);
+
+		// Act
+		DisponibilidadeDTO resposta = coalescente.verificarDisponibilidade(List.of(1L), List.of(3L));
+
+		// Assert
+		assertThat(resposta.disponivel()).isTrue();
+		assertThat(coalescente.chamadasEnviadas()).isEqualTo(1);
+	}
+
+	@Test
+	@DisplayName("Deve devolver a cada chamador os próprios produtos indisponíveis quando a soma não é atendida")
+	void deveSepararIndisponiveisPorChamador() throws Exception
+	{
+		// Arrange: produto 1 com 5 unidades, produto 2 com 10
+		estoque.definir(1L, 5L);
+		estoque.definir(2L, 10L);
+		EstoqueCoalescente coalescente = EstoqueCoalescente.de(estoque, Duration.ofSeconds(5), 4);
+
+		long[][] pedidos = { { 1L, 3L }, { 1L, 3L }, { 2L, 1L }, { 1L, 10L } };
+
+		// Act
+		List<CompletableFuture<DisponibilidadeDTO>> respostas = disparar(coalescente, pedidos.length, i -> pedidos[i]);
+
+		// Assert: a soma do produto 1 (16) não é atendida, mas 3 unidades isoladas são
+		assertThat(respostas.get(0).get(5, TimeUnit.SECONDS).disponivel()).isTrue();
+		assertThat(respostas.get(1).get(5, TimeUnit.SECONDS).disponivel()).isTrue();
+		assertThat(respostas.get(2).get(5, TimeUnit.SECONDS).disponivel()).isTrue();
+		assertThat(respostas.get(3).get(5, TimeUnit.SECONDS).disponivel()).isFalse();
+		assertThat(respostas.get(3).get(5, TimeUnit.SECONDS).idsProdutosIndisponiveis()).containsExactly(1L);
+
+		// Uma consulta agregada e três individuais (apenas os pedidos com o produto 1)
+		assertThat(coalescente.chamadasEnviadas()).isEqualTo(4);
+	}
+
+	private List<CompletableFuture<DisponibilidadeDTO>> disparar(EstoqueCoalescente coalescente, int quantidade,
+			java.util.function.IntFunction<long[]> pedido) throws InterruptedException
+	{
+		CountDownLatch largada = new CountDownLatch(1);
+		List<CompletableFuture<DisponibilidadeDTO>> respostas = new ArrayList<>();
+		for (int i = 0; i < quantidade; i++)
+		{
+			long[] produtoEQuantidade = pedido.apply(i);
+			respostas.add(CompletableFuture.supplyAsync(() -> {
+				try
+				{
+					largada.await();
+				}
+				catch (InterruptedException e)
+				{
+					Thread.currentThread().interrupt();
+				}
+				return coalescente.verificarDisponibilidade(List.of(produtoEQuantidade[0]),
+						List.of(produtoEQuantidade[1]));
+			}, chamadores));
+		}
+		largada.countDown();
+		return respostas;
+	}
+
+	/**
+	 * Estoque em memória, seguro para chamadas concorrentes, que conta as consultas recebidas.
+	 */
+	private static class EstoqueContador implements IEstoqueExternal
+	{
+		private final Map<Long, Long> estoque = new ConcurrentHashMap<>();
+		private final AtomicInteger chamadas = new AtomicInteger();
+		private final AtomicInteger ultimaQuantidade = new AtomicInteger();
+
+		void definir(Long produtoId, Long quantidade)
+		{
+			estoque.put(produtoId, quantidade);
+		}
+
+		@Override
+		public DisponibilidadeDTO verificarDisponibilidade(List<Long> produtosIds, List<Long> produtosQuantidades)
+		{
+			chamadas.incrementAndGet();
+			ultimaQuantidade.set(produtosQuantidades.stream().mapToInt(Long::intValue).sum());
+
+			List<Long> indisponiveis = new ArrayList<>();
+			for (int i = 0; i < produtosIds.size(); i++)
+			{
+				if (estoque.getOrDefault(produtosIds.get(i), 0L) < produtosQuantidades.get(i))
+				{
+					indisponiveis.add(produtosIds.get(i));
+				}
+			}
+			return new DisponibilidadeDTO(indisponiveis.isEmpty(), indisponiveis);
+		}
+
+		@Override
+		public EstoqueBaixaDTO darBaixa(List<Long> produtosIds, List<Long> produtosQuantidades)
+		{
+			throw new UnsupportedOperationException();
+		}
+	}
+}
@@ -0,0 +1,98 @@
+package ecommerce.external;
+
+import java.time.Duration;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+
+@DisplayName("Futuros - chamadas bloqueantes com prazo e cancelamento")
+public class FuturosTest
+{
+	private final ExecutorService executor = Executors.newCachedThreadPool();
+
+	@AfterEach
+	void tearDown()
+	{
+		executor.shutdownNow();
+	}
+
+	@Test
+	@DisplayName("Timeout deve interromper a chamada em andamento")
+	void timeoutDeveInterromperChamada() throws Exception
+	{
+		// Arrange
+		CountDownLatch interrompida = new CountDownLatch(1);
+
+		// Act
+		CompletableFuture<String> resultado = Futuros.executar(() -> bloquear(interrompida), executor,
+				Duration.ofMillis(50));
+
+		// Assert
+		assertThrows(ServicoIndisponivelException.class, () -> Futuros.aguardar(resultado));
+		assertThat(interrompida.await(5, TimeUnit.SECONDS)).isTrue();
+	}
+
+	@Test
+	@DisplayName("Cancelar um estágio derivado deve interromper a chamada de origem")
+	void cancelamentoDerivadoDeveInterromperOrigem() throws Exception
+	{
+		// Arrange
+		CountDownLatch interrompida = new CountDownLatch(1);
+		CompletableFuture<String> origem = Futuros.executar(() -> bloquear(interrompida), executor,
+				Duration.ofMinutes(1));
+		CompletableFuture<Integer> derivado = Futuros.cancelandoOrigem(origem.thenApply(String::length), origem);
+
+		// Act
+		derivado.cancel(true);
+
+		// Assert
+		assertThat(interrompida.await(5, TimeUnit.SECONDS)).isTrue();
+		assertThat(origem.isCancelled()).isTrue();
+	}
+
+	@Test
+	@DisplayName("Chamada concluída no prazo deve devolver o resultado")
+	void deveDevolverResultado()
+	{
+		// Act
+		CompletableFuture<String> resultado = Futuros.executar(() -> "ok", executor, Duration.ofSeconds(5));
+
+		// Assert
+		assertThat(Futuros.aguardar(resultado)).isEqualTo("ok");
+	}
+
+	@Test
+	@DisplayName("Espera com prazo esgotado deve lançar ServicoIndisponivelException sem cancelar o future")
+	void esperaComPrazoDeveDesistir()
+	{
+		// Arrange
+		CompletableFuture<String> pendente = new CompletableFuture<>();
+
+		// Act & Assert
+		assertThrows(ServicoIndisponivelException.class, () -> Futuros.aguardar(pendente, Duration.ofMillis(50)));
+		assertThat(pendente.isDone()).isFalse();
+	}
+
+	private static String bloquear(CountDownLatch interrompida)
+	{
+		try
+		{
+			Thread.sleep(Duration.ofMinutes(1).toMillis());
+			return "tarde demais";
+		}
+		catch (InterruptedException e)
+		{
+			interrompida.countDown();
+			Thread.currentThread().interrupt();
+			return "interrompida";
+		}
+	}
+}
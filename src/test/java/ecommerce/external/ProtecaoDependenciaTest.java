@@ -0,0 +1,212 @@
+package ecommerce.external;
+
+import java.time.Duration;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicReference;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+
+import ecommerce.external.ProtecaoDependencia.Configuracao;
+import ecommerce.external.ProtecaoDependencia.EstadoCircuito;
+
+@DisplayName("ProtecaoDependencia - timeout, bulkhead e circuit breaker")
+public class ProtecaoDependenciaTest
+{
+	private final AtomicInteger chamadas = new AtomicInteger();
+
+	@Test
+	@DisplayName("Deve abrir o circuito após falhas e rejeitar sem chamar a dependência")
+	void deveAbrirCircuitoAposFalhas()
+	{
+		// Arrange
+		ProtecaoDependencia protecao = new ProtecaoDependencia("pagamento",
+				new Configuracao(Duration.ofSeconds(1), 10, 4, 4, 50, Duration.ofMinutes(1)));
+
+		// Act
+		for (int i = 0; i < 4; i++)
+		{
+			protecao.executar(null, t -> falha());
+		}
+		CompletableFuture<String> rejeitada = protecao.executar(null, t -> sucesso());
+
+		// Assert
+		assertThat(protecao.getEstado()).isEqualTo(EstadoCircuito.ABERTO);
+		ServicoIndisponivelException exception = assertThrows(ServicoIndisponivelException.class,
+				() -> Futuros.aguardar(rejeitada));
+		assertThat(exception.getMessage()).isEqualTo("Serviço de pagamento indisponível no momento.");
+		assertThat(chamadas.get()).isEqualTo(4);
+		assertThat(protecao.getRejeitadasCircuito()).isEqualTo(1);
+	}
+
+	@Test
+	@DisplayName("Não deve abrir o circuito antes do mínimo de chamadas")
+	void naoDeveAbrirAntesDoMinimoDeChamadas()
+	{
+		ProtecaoDependencia protecao = new ProtecaoDependencia("estoque",
+				new Configuracao(Duration.ofSeconds(1), 10, 10, 5, 50, Duration.ofMinutes(1)));
+
+		for (int i = 0; i < 4; i++)
+		{
+			protecao.executar(null, t -> falha());
+		}
+
+		assertThat(protecao.getEstado()).isEqualTo(EstadoCircuito.FECHADO);
+		assertThat(protecao.getTaxaFalhas()).isEqualTo(1.0);
+	}
+
+	@Test
+	@DisplayName("Após o tempo aberto, uma chamada de teste com sucesso fecha o circuito")
+	void deveFecharCircuitoAposChamadaDeTesteComSucesso() throws Exception
+	{
+		// Arrange
+		ProtecaoDependencia protecao = new ProtecaoDependencia("estoque",
+				new Configuracao(Duration.ofSeconds(1), 10, 2, 2, 50, Duration.ofMillis(20)));
+		protecao.executar(null, t -> falha());
+		protecao.executar(null, t -> falha());
+		assertThat(protecao.getEstado()).isEqualTo(EstadoCircuito.ABERTO);
+
+		// Act
+		Thread.sleep(40);
+		String resultado = Futuros.aguardar(protecao.executar(null, t -> sucesso()));
+
+		// Assert
+		assertThat(resultado).isEqualTo("ok");
+		assertThat(protecao.getEstado()).isEqualTo(EstadoCircuito.FECHADO);
+	}
+
+	@Test
+	@DisplayName("Deve rejeitar chamadas acima do limite de concorrência")
+	void deveRejeitarAcimaDoLimiteDeConcorrencia()
+	{
+		// Arrange
+		ProtecaoDependencia protecao = new ProtecaoDependencia("estoque",
+				new Configuracao(Duration.ofSeconds(1), 2, 10, 10, 50, Duration.ofMinutes(1)));
+		CompletableFuture<String> lenta1 = new CompletableFuture<>();
+		CompletableFuture<String> lenta2 = new CompletableFuture<>();
+		protecao.executar(null, t -> lenta1);
+		protecao.executar(null, t -> lenta2);
+
+		// Act
+		CompletableFuture<String> rejeitada = protecao.executar(null, t -> sucesso());
+
+		// Assert
+		assertThat(protecao.getChamadasEmAndamento()).isEqualTo(2);
+		assertThrows(ServicoIndisponivelException.class, () -> Futuros.aguardar(rejeitada));
+		assertThat(protecao.getRejeitadasConcorrencia()).isEqualTo(1);
+
+		lenta1.complete("ok");
+		assertThat(protecao.getChamadasEmAndamento()).isEqualTo(1);
+	}
+
+	@Test
+	@DisplayName("Chamada bloqueante que passou do timeout continua ocupando o limite até terminar")
+	void deveReterPermissaoAteChamadaBloqueanteTerminar() throws Exception
+	{
+		// Arrange
+		ProtecaoDependencia protecao = new ProtecaoDependencia("estoque",
+				new Configuracao(Duration.ofMillis(50), 1, 10, 10, 100, Duration.ofMinutes(1)));
+		ExecutorService threads = Executors.newCachedThreadPool();
+		CountDownLatch liberar = new CountDownLatch(1);
+		try
+		{
+			CompletableFuture<String> lenta = protecao.executar(null,
+					t -> Futuros.executar(() -> ignorarInterrupcao(liberar), protecao.executor(threads), t));
+
+			// Act
+			assertThrows(ServicoIndisponivelException.class, () -> Futuros.aguardar(lenta));
+			CompletableFuture<String> rejeitada = protecao.executar(null, t -> sucesso());
+
+			// Assert: o timeout completou o future, mas a thread continua presa na dependência
+			assertThat(protecao.getChamadasEmAndamento()).isEqualTo(1);
+			assertThrows(ServicoIndisponivelException.class, () -> Futuros.aguardar(rejeitada));
+			assertThat(protecao.getRejeitadasConcorrencia()).isEqualTo(1);
+
+			liberar.countDown();
+			long limite = System.nanoTime() + TimeUnit.SECONDS.toNanos(5);
+			while (protecao.getChamadasEmAndamento() > 0 && System.nanoTime() < limite)
+			{
+				Thread.sleep(5);
+			}
+			assertThat(protecao.getChamadasEmAndamento()).isZero();
+		}
+		finally
+		{
+			liberar.countDown();
+			threads.shutdownNow();
+		}
+	}
+
+	@Test
+	@DisplayName("Deve limitar o timeout ao configurado para a dependência")
+	void deveLimitarTimeout()
+	{
+		ProtecaoDependencia protecao = new ProtecaoDependencia("pagamento",
+				new Configuracao(Duration.ofSeconds(2), 10, 10, 10, 50, Duration.ofMinutes(1)));
+		AtomicReference<Duration> recebido = new AtomicReference<>();
+
+		protecao.executar(Duration.ofSeconds(5), t -> {
+			recebido.set(t);
+			return sucesso();
+		});
+		assertThat(recebido.get()).isEqualTo(Duration.ofSeconds(2));
+
+		protecao.executar(Duration.ofMillis(500), t -> {
+			recebido.set(t);
+			return sucesso();
+		});
+		assertThat(recebido.get()).isEqualTo(Duration.ofMillis(500));
+	}
+
+	@Test
+	@DisplayName("Timeout da chamada deve virar ServicoIndisponivelException")
+	void timeoutDeveVirarServicoIndisponivel()
+	{
+		ProtecaoDependencia protecao = new ProtecaoDependencia("pagamento",
+				new Configuracao(Duration.ofSeconds(1), 10, 10, 10, 50, Duration.ofMinutes(1)));
+
+		CompletableFuture<String> resultado = protecao.executar(null,
+				t -> CompletableFuture.failedFuture(new TimeoutException()));
+
+		ServicoIndisponivelException exception = assertThrows(ServicoIndisponivelException.class,
+				() -> Futuros.aguardar(resultado));
+		assertThat(exception.getMessage()).isEqualTo("Tempo esgotado aguardando serviço externo.");
+		assertThat(protecao.getFalhasTotais()).isEqualTo(1);
+	}
+
+	private static String ignorarInterrupcao(CountDownLatch liberar)
+	{
+		while (true)
+		{
+			try
+			{
+				liberar.await();
+				return "tarde demais";
+			}
+			catch (InterruptedException e)
+			{
+				// Não responde à interrupção: só termina quando a dependência responder
+			}
+		}
+	}
+
+	private CompletableFuture<String> sucesso()
+	{
+		chamadas.incrementAndGet();
+		return CompletableFuture.completedFuture("ok");
+	}
+
+	private CompletableFuture<String> falha()
+	{
+		chamadas.incrementAndGet();
+		return CompletableFuture.failedFuture(new RuntimeException("falha remota"));
+	}
+}
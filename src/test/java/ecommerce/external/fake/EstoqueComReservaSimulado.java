@@ -0,0 +1,152 @@
+package ecommerce.external.fake;
+
+import java.time.Duration;
+import java.time.Instant;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicLong;
+
+import ecommerce.dto.DisponibilidadeDTO;
+import ecommerce.dto.EstoqueBaixaDTO;
+import ecommerce.dto.ReservaEstoqueDTO;
+import ecommerce.external.IReservaEstoque;
+
+/**
+ * Estoque simulado com protocolo de reserva. As quantidades presas em reservas válidas
+ * não contam como disponíveis. As operações que leem e alteram o estoque são sincronizadas,
+ * para uso em testes com finalizações concorrentes.
+ */
+public class EstoqueComReservaSimulado implements IReservaEstoque
+{
+	private final Map<Long, Long> estoque = new ConcurrentHashMap<>();
+	private final Map<Long, Reserva> reservas = new ConcurrentHashMap<>();
+	private final AtomicLong contadorReservas = new AtomicLong();
+
+	public void definirEstoque(Long produtoId, Long quantidade)
+	{
+		estoque.put(produtoId, quantidade);
+	}
+
+	public Long consultarEstoque(Long produtoId)
+	{
+		return estoque.getOrDefault(produtoId, 0L);
+	}
+
+	public boolean existeReserva(Long reservaId)
+	{
+		removerReservasExpiradas();
+		return reservas.containsKey(reservaId);
+	}
+
+	@Override
+	public synchronized EstoqueBaixaDTO darBaixa(List<Long> produtosIds, List<Long> produtosQuantidades)
+	{
+		if (!verificarDisponibilidade(produtosIds, produtosQuantidades).disponivel())
+		{
+			return new EstoqueBaixaDTO(false);
+		}
+
+		for (int i = 0; i < produtosIds.size(); i++)
+		{
+			estoque.merge(produtosIds.get(i), -produtosQuantidades.get(i), Long::sum);
+		}
+
+		return new EstoqueBaixaDTO(true);
+	}
+
+	@Override
+	public synchronized DisponibilidadeDTO verificarDisponibilidade(List<Long> produtosIds,
+			List<Long> produtosQuantidades)
+	{
+		if (produtosIds == null || produtosQuantidades == null || produtosIds.size() != produtosQuantidades.size())
+		{
+			return new DisponibilidadeDTO(false, new ArrayList<>());
+		}
+
+		List<Long> produtosIndisponiveis = new ArrayList<>();
+		for (int i = 0; i < produtosIds.size(); i++)
+		{
+			if (consultarEstoqueDisponivel(produtosIds.get(i)) < produtosQuantidades.get(i))
+			{
+				produtosIndisponiveis.add(produtosIds.get(i));
+			}
+		}
+
+		return new DisponibilidadeDTO(produtosIndisponiveis.isEmpty(), produtosIndisponiveis);
+	}
+
+	@Override
+	public synchronized ReservaEstoqueDTO reservar(List<Long> produtosIds, List<Long> produtosQuantidades,
+			Duration validade)
+	{
+		DisponibilidadeDTO disponibilidade = verificarDisponibilidade(produtosIds, produtosQuantidades);
+		if (!disponibilidade.disponivel())
+		{
+			return new ReservaEstoqueDTO(false, null, disponibilidade.idsProdutosIndisponiveis(), null);
+		}
+
+		Long reservaId = contadorReservas.incrementAndGet();
+		Instant expiraEm = Instant.now().plus(validade);
+		reservas.put(reservaId, new Reserva(List.copyOf(produtosIds), List.copyOf(produtosQuantidades), expiraEm));
+
+		return new ReservaEstoqueDTO(true, reservaId, new ArrayList<>(), expiraEm);
+	}
+
+	@Override
+	public synchronized EstoqueBaixaDTO confirmarReserva(Long reservaId)
+	{
+		removerReservasExpiradas();
+		Reserva reserva = reservas.remove(reservaId);
+		if (reserva == null)
+		{
+			return new EstoqueBaixaDTO(false);
+		}
+
+		for (int i = 0; i < reserva.produtosIds().size(); i++)
+		{
+			estoque.merge(reserva.produtosIds().get(i), -reserva.quantidades().get(i), Long::sum);
+		}
+
+		return new EstoqueBaixaDTO(true);
+	}
+
+	@Override
+	public void liberarReserva(Long reservaId)
+	{
+		reservas.remove(reservaId);
+	}
+
+	/**
+	 * Estoque físico menos as quantidades presas em reservas ainda válidas.
+	 */
+	private long consultarEstoqueDisponivel(Long produtoId)
+	{
+		removerReservasExpiradas();
+
+		long reservado = 0;
+		for (Reserva reserva : reservas.values())
+		{
+			for (int i = 0; i < reserva.produtosIds().size(); i++)
+			{
+				if (reserva.produtosIds().get(i).equals(produtoId))
+				{
+					reservado += reserva.quantidades().get(i);
+				}
+			}
+		}
+
+		return estoque.getOrDefault(produtoId, 0L) - reservado;
+	}
+
+	private void removerReservasExpiradas()
+	{
+		Instant agora = Instant.now();
+		reservas.values().removeIf(reserva -> reserva.expiraEm().isBefore(agora));
+	}
+
+	private record Reserva(List<Long> produtosIds, List<Long> quantidades, Instant expiraEm)
+	{
+	}
+}
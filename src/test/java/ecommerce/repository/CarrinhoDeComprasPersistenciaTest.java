@@ -0,0 +1,183 @@
+package ecommerce.repository;
+
+import java.math.BigDecimal;
+import java.time.LocalDate;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Locale;
+import java.util.concurrent.CopyOnWriteArrayList;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import org.hibernate.resource.jdbc.spi.StatementInspector;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.autoconfigure.orm.jpa.HibernatePropertiesCustomizer;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.boot.test.context.TestConfiguration;
+import org.springframework.context.annotation.Bean;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import ecommerce.entity.CarrinhoDeCompras;
+import ecommerce.entity.Cliente;
+import ecommerce.entity.ItemCompra;
+import ecommerce.entity.Produto;
+import ecommerce.entity.Regiao;
+import ecommerce.entity.TipoCliente;
+import ecommerce.entity.TipoProduto;
+
+/**
+ * Comandos SQL emitidos ao gravar carrinhos, capturados por um {@link StatementInspector}: os
+ * itens são inseridos em lotes JDBC, com a chave do carrinho já no INSERT, sem UPDATE
+ * posterior em {@code item_compra}.
+ */
+@SpringBootTest(webEnvironment = SpringBootTest.WebEnvironment.NONE, properties = {
+		"ecommerce.outbox.despachante.habilitado=false" })
+@DisplayName("CarrinhoDeComprasRepository - gravação em lotes")
+public class CarrinhoDeComprasPersistenciaTest
+{
+	private static final int ITENS = 300;
+	private static final int TAMANHO_LOTE = 50;
+
+	@Autowired
+	private CarrinhoDeComprasRepository carrinhoRepository;
+
+	@Autowired
+	private ClienteRepository clienteRepository;
+
+	@Autowired
+	private ProdutoRepository produtoRepository;
+
+	@Autowired
+	private TransactionTemplate transactionTemplate;
+
+	@Autowired
+	private ComandosSql comandos;
+
+	private Cliente cliente;
+	private List<Produto> produtos;
+
+	@BeforeEach
+	void setUp()
+	{
+		cliente = clienteRepository.save(new Cliente(null, "Cliente", Regiao.SUDESTE, TipoCliente.BRONZE));
+
+		List<Produto> novos = new ArrayList<>();
+		for (int i = 0; i < ITENS; i++)
+		{
+			novos.add(new Produto(null, "Produto " + i, null, new BigDecimal("9.90"), new BigDecimal("0.10"), null,
+					null, null, false, TipoProduto.LIVRO));
+		}
+		produtos = produtoRepository.saveAll(novos);
+		comandos.limpar();
+	}
+
+	@Test
+	@DisplayName("Carrinho de 300 itens: INSERTs de itens em lotes de 50 e nenhum UPDATE")
+	void deveInserirItensEmLotes()
+	{
+		// Act
+		CarrinhoDeCompras carrinho = carrinhoRepository.save(novoCarrinho());
+
+		// Assert
+		assertThat(carrinho.getItens()).allSatisfy(item -> assertThat(item.getId()).isNotNull());
+		assertThat(comandos.contar("insert into carrinho_de_compras")).isEqualTo(1);
+		assertThat(comandos.contar("insert into item_compra")).isBetween(1L, (long) ITENS / TAMANHO_LOTE + 1);
+		assertThat(comandos.contar("update item_compra")).isZero();
+		// Sequências com alocação de 50: poucas chamadas para 300 ids
+		assertThat(comandos.todos()).hasSizeLessThan(ITENS / 10);
+	}
+
+	@Test
+	@DisplayName("Item adicionado a carrinho existente: INSERT com a chave do carrinho, sem UPDATE")
+	void deveAdicionarItemSemUpdate()
+	{
+		// Arrange
+		Long carrinhoId = carrinhoRepository.save(novoCarrinho()).getId();
+		comandos.limpar();
+
+		// Act
+		transactionTemplate.executeWithoutResult(status -> carrinhoRepository.findByIdAndCliente(carrinhoId, cliente)
+				.orElseThrow().adicionarItem(new ItemCompra(null, produtos.get(0), 2L)));
+
+		// Assert
+		assertThat(comandos.contar("insert into item_compra")).isEqualTo(1);
+		assertThat(comandos.contar("update item_compra")).isZero();
+	}
+
+	@Test
+	@DisplayName("Item removido: DELETE da linha, sem anular a chave do carrinho antes")
+	void deveRemoverItemSemUpdate()
+	{
+		// Arrange
+		Long carrinhoId = carrinhoRepository.save(novoCarrinho()).getId();
+		comandos.limpar();
+
+		// Act
+		transactionTemplate.executeWithoutResult(status -> {
+			CarrinhoDeCompras carrinho = carrinhoRepository.findByIdAndCliente(carrinhoId, cliente).orElseThrow();
+			carrinho.removerItem(carrinho.getItens().get(0));
+		});
+
+		// Assert
+		assertThat(comandos.contar("delete from item_compra")).isEqualTo(1);
+		assertThat(comandos.contar("update item_compra")).isZero();
+	}
+
+	private CarrinhoDeCompras novoCarrinho()
+	{
+		List<ItemCompra> itens = new ArrayList<>();
+		for (Produto produto : produtos)
+		{
+			itens.add(new ItemCompra(null, produto, 1L));
+		}
+		return new CarrinhoDeCompras(null, cliente, itens, LocalDate.now());
+	}
+
+	/**
+	 * Registra cada comando preparado pelo Hibernate, em minúsculas.
+	 */
+	static class ComandosSql implements StatementInspector
+	{
+		private final List<String> comandos = new CopyOnWriteArrayList<>();
+
+		@Override
+		public String inspect(String sql)
+		{
+			comandos.add(sql.toLowerCase(Locale.ROOT));
+			return sql;
+		}
+
+		long contar(String prefixo)
+		{
+			return comandos.stream().filter(sql -> sql.startsWith(prefixo)).count();
+		}
+
+		List<String> todos()
+		{
+			return List.copyOf(comandos);
+		}
+
+		void limpar()
+		{
+			comandos.clear();
+		}
+	}
+
+	@TestConfiguration
+	static class Inspecao
+	{
+		@Bean
+		ComandosSql comandosSql()
+		{
+			return new ComandosSql();
+		}
+
+		@Bean
+		HibernatePropertiesCustomizer inspetorComandos(ComandosSql comandosSql)
+		{
+			return propriedades -> propriedades.put("hibernate.session_factory.statement_inspector", comandosSql);
+		}
+	}
+}
@@ -0,0 +1,123 @@
+package ecommerce.repository;
+
+import java.util.Locale;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import org.junit.jupiter.api.BeforeAll;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.TestInstance;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.jdbc.core.JdbcTemplate;
+
+/**
+ * Planos de execução das consultas do checkout sobre o esquema das migrações, numa base H2
+ * própria com 20 mil clientes, 100 mil carrinhos e 400 mil itens. As consultas reproduzem o
+ * SQL gerado para {@code findByIdAndCliente}, {@code findLinhasCheckout}, {@code findItensAposId} e
+ * {@code invalidarTotaisComProduto}; nenhuma pode percorrer a tabela inteira.
+ */
+@SpringBootTest(webEnvironment = SpringBootTest.WebEnvironment.NONE, properties = {
+		"spring.datasource.url=jdbc:h2:mem:esquema-indices;DB_CLOSE_DELAY=-1",
+		"ecommerce.outbox.despachante.habilitado=false" })
+@TestInstance(TestInstance.Lifecycle.PER_CLASS)
+@DisplayName("Esquema - índices das consultas do checkout")
+public class EsquemaIndicesTest
+{
+	private static final int CLIENTES = 20_000;
+	private static final int PRODUTOS = 5_000;
+	private static final int CARRINHOS = 100_000;
+	private static final int ITENS = 400_000;
+
+	private static final long CARRINHO_ID = 4_242;
+	private static final long CLIENTE_ID = CARRINHO_ID % CLIENTES + 1;
+
+	@Autowired
+	private JdbcTemplate jdbcTemplate;
+
+	@BeforeAll
+	void semear()
+	{
+		jdbcTemplate.update("insert into cliente (id, nome, regiao, tipo) "
+				+ "select x, 'Cliente ' || x, mod(x, 5), 'BRONZE' from system_range(1, ?)", CLIENTES);
+		jdbcTemplate.update("insert into produto (id, nome, preco, peso_fisico, fragil, tipo) "
+				+ "select x, 'Produto ' || x, 10.00, 1.00, false, 'LIVRO' from system_range(1, ?)", PRODUTOS);
+		jdbcTemplate.update("insert into carrinho_de_compras (id, cliente_id, data) "
+				+ "select x, mod(x, ?) + 1, current_date from system_range(1, ?)", CLIENTES, CARRINHOS);
+		jdbcTemplate.update("insert into item_compra (id, carrinho_id, produto_id, quantidade) "
+				+ "select x, mod(x, ?) + 1, mod(x * 7, ?) + 1, 1 from system_range(1, ?)", CARRINHOS, PRODUTOS,
+				ITENS);
+		// Seletividade das colunas para o otimizador, como numa base em produção
+		jdbcTemplate.execute("analyze");
+	}
+
+	@Test
+	@DisplayName("Carrinho do cliente com itens e produtos: itens pelo índice de carrinho")
+	void deveCarregarCarrinhoPorIndice()
+	{
+		// Act
+		String plano = plano("select c.id, i.id, p.id from carrinho_de_compras c "
+				+ "join cliente cl on cl.id = c.cliente_id "
+				+ "left join item_compra i on i.carrinho_id = c.id "
+				+ "left join produto p on p.id = i.produto_id "
+				+ "where c.id = " + CARRINHO_ID + " and c.cliente_id = " + CLIENTE_ID);
+
+		// Assert
+		assertThat(plano).contains("IDX_ITEM_COMPRA_CARRINHO").doesNotContain("TABLESCAN");
+	}
+
+	@Test
+	@DisplayName("Carrinhos de um cliente: índice de cliente")
+	void deveBuscarCarrinhosDoClientePorIndice()
+	{
+		// Act
+		String plano = plano("select c.id from carrinho_de_compras c where c.cliente_id = " + CLIENTE_ID);
+
+		// Assert
+		assertThat(plano).contains("IDX_CARRINHO_CLIENTE").doesNotContain("TABLESCAN");
+	}
+
+	@Test
+	@DisplayName("Linhas do checkout até o limiar de carrinhos grandes: índice de carrinho")
+	void deveLerLinhasCheckoutPorIndice()
+	{
+		// Act
+		String plano = plano("select i.id, p.id, i.quantidade, p.preco from carrinho_de_compras c "
+				+ "join item_compra i on i.carrinho_id = c.id "
+				+ "join produto p on p.id = i.produto_id "
+				+ "where c.id = " + CARRINHO_ID + " and c.cliente_id = " + CLIENTE_ID
+				+ " order by i.id fetch first 5000 rows only");
+
+		// Assert
+		assertThat(plano).contains("IDX_ITEM_COMPRA_CARRINHO").doesNotContain("TABLESCAN");
+	}
+
+	@Test
+	@DisplayName("Página de itens após um id: índice de carrinho, já na ordem de id")
+	void devePaginarItensPorIndice()
+	{
+		// Act
+		String plano = plano("select i.id, p.id from item_compra i join produto p on p.id = i.produto_id "
+				+ "where i.carrinho_id = " + CARRINHO_ID + " and i.id > 0 order by i.id fetch first 2000 rows only");
+
+		// Assert
+		assertThat(plano).contains("IDX_ITEM_COMPRA_CARRINHO").doesNotContain("TABLESCAN");
+	}
+
+	@Test
+	@DisplayName("Carrinhos que contêm um produto: índice de produto")
+	void deveBuscarCarrinhosComProdutoPorIndice()
+	{
+		// Act
+		String plano = plano("select c.id from carrinho_de_compras c where c.id in "
+				+ "(select i.carrinho_id from item_compra i where i.produto_id = 77)");
+
+		// Assert
+		assertThat(plano).contains("IDX_ITEM_COMPRA_PRODUTO").doesNotContain("TABLESCAN");
+	}
+
+	private String plano(String sql)
+	{
+		return jdbcTemplate.queryForObject("explain " + sql, String.class).toUpperCase(Locale.ROOT);
+	}
+}
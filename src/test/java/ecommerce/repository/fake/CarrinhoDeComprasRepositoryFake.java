@@ -1,13 +1,16 @@
 package ecommerce.repository.fake;
 
 import java.util.ArrayList;
+import java.util.Collection;
 import java.util.HashMap;
 import java.util.List;
 import java.util.Map;
 import java.util.Optional;
 
+import ecommerce.dto.LinhaCheckoutDTO;
 import ecommerce.entity.CarrinhoDeCompras;
 import ecommerce.entity.Cliente;
+import ecommerce.entity.ItemCompra;
 import ecommerce.repository.CarrinhoDeComprasRepository;
 
 /**
@@ -49,6 +52,97 @@ public class CarrinhoDeComprasRepositoryFake implements CarrinhoDeComprasReposit
 		return Optional.empty();
 	}
 
+	@Override
+	public Optional<CarrinhoDeCompras> findParaAlteracao(Long carrinhoId, Cliente cliente)
+	{
+		return findByIdAndCliente(carrinhoId, cliente);
+	}
+
+	@Override
+	public List<LinhaCheckoutDTO> findLinhasCheckout(Long carrinhoId, Cliente cliente,
+			org.springframework.data.domain.Pageable pagina)
+	{
+		long limite = pagina.isPaged() ? pagina.getPageSize() : Long.MAX_VALUE;
+		return findByIdAndCliente(carrinhoId, cliente)
+				.map(c -> c.getItens().stream().limit(limite).map(i -> LinhaCheckoutDTO.de(i, c.getVersao())).toList())
+				.orElse(List.of());
+	}
+
+	@Override
+	public Optional<Long> findVersao(Long carrinhoId, Long clienteId)
+	{
+		CarrinhoDeCompras carrinho = carrinhos.get(carrinhoId);
+		if (carrinho != null && carrinho.getCliente().getId().equals(clienteId))
+		{
+			return Optional.of(carrinho.getVersao());
+		}
+		return Optional.empty();
+	}
+
+	@Override
+	public List<CarrinhoDeCompras> findAllByIdIn(Collection<Long> ids)
+	{
+		List<CarrinhoDeCompras> encontrados = new ArrayList<>();
+		for (Long id : ids)
+		{
+			CarrinhoDeCompras carrinho = carrinhos.get(id);
+			if (carrinho != null)
+			{
+				encontrados.add(carrinho);
+			}
+		}
+		return encontrados;
+	}
+
+	@Override
+	public List<Long> findIdsAposId(Long aposId, org.springframework.data.domain.Pageable pagina)
+	{
+		return carrinhos.keySet().stream().filter(id -> id > aposId).sorted().limit(pagina.getPageSize()).toList();
+	}
+
+	@Override
+	public List<ItemCompra> findItensAposId(Long carrinhoId, Long aposItemId,
+			org.springframework.data.domain.Pageable pagina)
+	{
+		CarrinhoDeCompras carrinho = carrinhos.get(carrinhoId);
+		if (carrinho == null)
+		{
+			return List.of();
+		}
+		return carrinho.getItens().stream().filter(i -> i.getId() > aposItemId)
+				.sorted(java.util.Comparator.comparing(ItemCompra::getId)).limit(pagina.getPageSize()).toList();
+	}
+
+	@Override
+	public int invalidarTotaisComProduto(Long produtoId)
+	{
+		int invalidados = 0;
+		for (CarrinhoDeCompras carrinho : carrinhos.values())
+		{
+			if (carrinho.getItens().stream().anyMatch(i -> produtoId.equals(i.getProduto().getId())))
+			{
+				carrinho.invalidarTotais();
+				invalidados++;
+			}
+		}
+		return invalidados;
+	}
+
+	@Override
+	public int invalidarTotais()
+	{
+		int invalidados = 0;
+		for (CarrinhoDeCompras carrinho : carrinhos.values())
+		{
+			if (carrinho.getTotais() != null)
+			{
+				carrinho.invalidarTotais();
+				invalidados++;
+			}
+		}
+		return invalidados;
+	}
+
 	@Override
 	public Optional<CarrinhoDeCompras> findById(Long id)
 	{
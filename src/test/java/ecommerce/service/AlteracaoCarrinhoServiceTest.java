@@ -0,0 +1,384 @@
+package ecommerce.service;
+
+import java.math.BigDecimal;
+import java.time.Duration;
+import java.time.LocalDate;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTimeoutPreemptively;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+import static org.mockito.ArgumentMatchers.anyIterable;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.when;
+
+import org.springframework.transaction.support.SimpleTransactionStatus;
+import org.springframework.transaction.support.TransactionCallback;
+import org.springframework.transaction.support.TransactionOperations;
+
+import ecommerce.dto.AlteracaoItemDTO;
+import ecommerce.dto.CarrinhoAtualizadoDTO;
+import ecommerce.dto.ItemCarrinhoDTO;
+import ecommerce.entity.CarrinhoDeCompras;
+import ecommerce.entity.Cliente;
+import ecommerce.entity.ItemCompra;
+import ecommerce.entity.Produto;
+import ecommerce.entity.Regiao;
+import ecommerce.entity.TipoCliente;
+import ecommerce.entity.TipoProduto;
+import ecommerce.external.ServicoIndisponivelException;
+import ecommerce.repository.ProdutoRepository;
+import ecommerce.repository.fake.CarrinhoDeComprasRepositoryFake;
+import ecommerce.repository.fake.ClienteRepositoryFake;
+
+@DisplayName("AlteracaoCarrinhoService - alterações de itens em lote, com agrupamento por carrinho")
+public class AlteracaoCarrinhoServiceTest
+{
+	private static final Long CARRINHO_ID = 1L;
+	private static final Long CLIENTE_ID = 10L;
+
+	private CarrinhoDeComprasRepositoryFake carrinhoRepository;
+	private ClienteRepositoryFake clienteRepository;
+	private ProdutoRepository produtoRepository;
+	private ExecutorService threads;
+	private final List<AlteracaoCarrinhoService> servicos = new ArrayList<>();
+
+	private Produto livro;
+	private Produto vaso;
+	private Produto caneta;
+
+	@BeforeEach
+	void setUp()
+	{
+		carrinhoRepository = new CarrinhoDeComprasRepositoryFake();
+		clienteRepository = new ClienteRepositoryFake();
+		produtoRepository = mock(ProdutoRepository.class);
+		threads = Executors.newCachedThreadPool();
+
+		livro = produto(1L, "100.00");
+		vaso = produto(2L, "50.00");
+		caneta = produto(3L, "5.00");
+		Map<Long, Produto> catalogo = Map.of(1L, livro, 2L, vaso, 3L, caneta);
+		when(produtoRepository.findAllById(anyIterable())).thenAnswer(invocacao -> {
+			List<Produto> encontrados = new ArrayList<>();
+			for (Long id : invocacao.<Iterable<Long>>getArgument(0))
+			{
+				if (catalogo.containsKey(id))
+				{
+					encontrados.add(catalogo.get(id));
+				}
+			}
+			return encontrados;
+		});
+
+		Cliente cliente = new Cliente(CLIENTE_ID, "Cliente", Regiao.SUDESTE, TipoCliente.BRONZE);
+		clienteRepository.adicionarCliente(cliente);
+		carrinhoRepository.adicionarCarrinho(new CarrinhoDeCompras(CARRINHO_ID, cliente,
+				new ArrayList<>(List.of(new ItemCompra(1L, livro, 2L), new ItemCompra(2L, vaso, 1L))),
+				LocalDate.now()));
+	}
+
+	@AfterEach
+	void tearDown()
+	{
+		threads.shutdownNow();
+		servicos.forEach(AlteracaoCarrinhoService::encerrar);
+	}
+
+	@Test
+	@DisplayName("Inclusão, alteração e remoção no mesmo lote: uma única gravação")
+	void deveAplicarLoteNumaGravacao()
+	{
+		// Arrange
+		AlteracaoCarrinhoService service = service(Duration.ZERO, 50);
+
+		// Act
+		CarrinhoAtualizadoDTO resultado = service.alterar(CARRINHO_ID, CLIENTE_ID,
+				List.of(quantidade(1L, 5), quantidade(2L, 0), variacao(3L, 3)));
+
+		// Assert
+		assertThat(resultado.itens()).containsExactly(new ItemCarrinhoDTO(1L, 5L), new ItemCarrinhoDTO(3L, 3L));
+		assertThat(service.gravacoes()).isEqualTo(1);
+		assertThat(carrinhoRepository.findById(CARRINHO_ID).orElseThrow().getTotais()).isNotNull();
+	}
+
+	@Test
+	@DisplayName("Dez cliques em \"+\" espaçados dentro da janela: uma única gravação")
+	void deveAgruparCliquesEspacados() throws Exception
+	{
+		// Arrange
+		AlteracaoCarrinhoService service = service(Duration.ofSeconds(3), 50);
+
+		// Act: um clique a cada 150 ms, o primeiro inclusive esperando a janela
+		List<Future<CarrinhoAtualizadoDTO>> respostas = new ArrayList<>();
+		for (int i = 0; i < 10; i++)
+		{
+			if (i > 0)
+			{
+				Thread.sleep(150);
+			}
+			respostas.add(threads.submit(() -> service.alterar(CARRINHO_ID, CLIENTE_ID, List.of(variacao(1L, 1)))));
+		}
+
+		// Assert
+		for (Future<CarrinhoAtualizadoDTO> resposta : respostas)
+		{
+			assertThat(resposta.get(10, TimeUnit.SECONDS).itens()).contains(new ItemCarrinhoDTO(1L, 12L));
+		}
+		assertThat(service.requisicoes()).isEqualTo(10);
+		assertThat(service.gravacoes()).isEqualTo(1);
+	}
+
+	@Test
+	@DisplayName("Lote que atinge o tamanho máximo é gravado sem esperar a janela")
+	void deveGravarLoteCheioSemEsperarJanela()
+	{
+		// Arrange
+		AlteracaoCarrinhoService service = service(Duration.ofSeconds(30), 3);
+
+		// Act
+		List<CompletableFuture<CarrinhoAtualizadoDTO>> respostas = new ArrayList<>();
+		for (int i = 0; i < 3; i++)
+		{
+			respostas.add(CompletableFuture.supplyAsync(
+					() -> service.alterar(CARRINHO_ID, CLIENTE_ID, List.of(variacao(2L, 1))), threads));
+		}
+
+		// Assert
+		assertTimeoutPreemptively(Duration.ofSeconds(5), () -> {
+			for (CompletableFuture<CarrinhoAtualizadoDTO> resposta : respostas)
+			{
+				assertThat(resposta.get().itens()).contains(new ItemCarrinhoDTO(2L, 4L));
+			}
+		});
+		assertThat(service.gravacoes()).isEqualTo(1);
+	}
+
+	@Test
+	@DisplayName("Lote acumulado durante uma gravação segue ao fim dela, sem esperar a janela")
+	void deveGravarLoteAoFimDaGravacaoEmAndamento() throws Exception
+	{
+		// Arrange: o primeiro lote fecha ao atingir duas requisições e fica retido na gravação
+		PrimeiraTransacaoRetida transacoes = new PrimeiraTransacaoRetida();
+		AlteracaoCarrinhoService service = service(Duration.ofSeconds(30), 2, transacoes);
+		List<Future<CarrinhoAtualizadoDTO>> primeiros = new ArrayList<>();
+		for (int i = 0; i < 2; i++)
+		{
+			primeiros.add(threads.submit(() -> service.alterar(CARRINHO_ID, CLIENTE_ID, List.of(variacao(1L, 1)))));
+		}
+		transacoes.aguardarRetencao();
+		Future<CarrinhoAtualizadoDTO> seguinte = threads.submit(
+				() -> service.alterar(CARRINHO_ID, CLIENTE_ID, List.of(variacao(2L, 1))));
+		while (service.requisicoes() < 3)
+		{
+			Thread.onSpinWait();
+		}
+
+		// Act
+		transacoes.liberar();
+
+		// Assert
+		for (Future<CarrinhoAtualizadoDTO> primeiro : primeiros)
+		{
+			assertThat(primeiro.get(5, TimeUnit.SECONDS).itens()).contains(new ItemCarrinhoDTO(1L, 4L));
+		}
+		assertThat(seguinte.get(5, TimeUnit.SECONDS).itens()).contains(new ItemCarrinhoDTO(2L, 2L));
+		assertThat(service.gravacoes()).isEqualTo(2);
+	}
+
+	@Test
+	@DisplayName("Produto inexistente num lote agrupado: só a requisição inválida recebe o erro")
+	void deveIsolarAlteracaoInvalida() throws Exception
+	{
+		// Arrange: o lote fecha ao atingir as duas requisições
+		AlteracaoCarrinhoService service = service(Duration.ofSeconds(30), 2);
+
+		// Act
+		CompletableFuture<CarrinhoAtualizadoDTO> invalida = CompletableFuture.supplyAsync(
+				() -> service.alterar(CARRINHO_ID, CLIENTE_ID, List.of(variacao(999L, 1))), threads);
+		CompletableFuture<CarrinhoAtualizadoDTO> valida = CompletableFuture.supplyAsync(
+				() -> service.alterar(CARRINHO_ID, CLIENTE_ID, List.of(variacao(1L, 1))), threads);
+
+		// Assert: o lote agrupado e as duas requisições isoladas
+		assertThat(valida.get(5, TimeUnit.SECONDS).itens()).contains(new ItemCarrinhoDTO(1L, 3L));
+		ExecutionException erro = assertThrows(ExecutionException.class, () -> invalida.get(5, TimeUnit.SECONDS));
+		assertThat(erro.getCause()).isInstanceOf(IllegalArgumentException.class)
+				.hasMessageContaining("Produto não encontrado: 999");
+		assertThat(service.gravacoes()).isEqualTo(3);
+	}
+
+	@Test
+	@DisplayName("Lote não gravado no prazo: a requisição desiste com 503, mas a alteração é gravada depois")
+	void deveDesistirAposPrazo() throws Exception
+	{
+		// Arrange: uma única thread de gravação, retida pelo lote anterior
+		PrimeiraTransacaoRetida transacoes = new PrimeiraTransacaoRetida();
+		AlteracaoCarrinhoService service = new AlteracaoCarrinhoService(carrinhoRepository, produtoRepository,
+				new ClienteService(clienteRepository), transacoes, Duration.ofMillis(20), 50,
+				Duration.ofMillis(200), 1, 10);
+		servicos.add(service);
+		Future<CarrinhoAtualizadoDTO> anterior = threads.submit(
+				() -> service.alterar(CARRINHO_ID, CLIENTE_ID, List.of(variacao(1L, 1))));
+		transacoes.aguardarRetencao();
+
+		// Act & Assert
+		assertThrows(ServicoIndisponivelException.class,
+				() -> service.alterar(CARRINHO_ID, CLIENTE_ID, List.of(variacao(2L, 1))));
+		transacoes.liberar();
+		anterior.get(5, TimeUnit.SECONDS);
+
+		// O lote da requisição que desistiu segue na fila, antes do próximo
+		CarrinhoAtualizadoDTO depois = service.alterar(CARRINHO_ID, CLIENTE_ID, List.of(quantidade(3L, 1)));
+		assertThat(depois.itens()).contains(new ItemCarrinhoDTO(2L, 2L));
+	}
+
+	@Test
+	@DisplayName("Prazo de espera que não cobre a janela deve lançar IllegalArgumentException")
+	void deveRejeitarPrazoMenorQueJanela()
+	{
+		// Act & Assert
+		assertThrows(IllegalArgumentException.class, () -> new AlteracaoCarrinhoService(carrinhoRepository,
+				produtoRepository, new ClienteService(clienteRepository), TransactionOperations.withoutTransaction(),
+				Duration.ofSeconds(5), 50, Duration.ofSeconds(5), 1, 10));
+	}
+
+	@Test
+	@DisplayName("Quantidade final descarta variações anteriores; variações seguintes se somam")
+	void deveCombinarAlteracoesNaOrdem()
+	{
+		// Act
+		Map<Long, AlteracaoCarrinhoService.Variacao> combinadas = AlteracaoCarrinhoService.combinar(
+				List.of(variacao(1L, 2), quantidade(1L, 5), variacao(1L, 1), variacao(1L, 1), variacao(2L, -3)));
+
+		// Assert
+		assertThat(combinadas.get(1L).aplicar(10)).isEqualTo(7);
+		assertThat(combinadas.get(2L).aplicar(10)).isEqualTo(7);
+	}
+
+	@Test
+	@DisplayName("Variações além do limite de long devem lançar IllegalArgumentException")
+	void deveRejeitarVariacaoForaDoLimite()
+	{
+		// Arrange
+		Map<Long, AlteracaoCarrinhoService.Variacao> combinadas = AlteracaoCarrinhoService.combinar(
+				List.of(variacao(1L, Long.MAX_VALUE)));
+
+		// Act & Assert
+		assertThrows(IllegalArgumentException.class, () -> combinadas.get(1L).aplicar(10));
+		assertThrows(IllegalArgumentException.class, () -> AlteracaoCarrinhoService.combinar(
+				List.of(variacao(1L, Long.MAX_VALUE), variacao(1L, 1))));
+	}
+
+	@Test
+	@DisplayName("Carrinho de outro cliente deve lançar IllegalArgumentException")
+	void deveRejeitarCarrinhoDeOutroCliente()
+	{
+		// Arrange
+		clienteRepository.adicionarCliente(new Cliente(20L, "Outro", Regiao.SUL, TipoCliente.OURO));
+		AlteracaoCarrinhoService service = service(Duration.ZERO, 50);
+
+		// Act & Assert
+		assertThrows(IllegalArgumentException.class,
+				() -> service.alterar(CARRINHO_ID, 20L, List.of(variacao(1L, 1))));
+	}
+
+	@Test
+	@DisplayName("Alteração sem quantidade nem variação, ou com as duas, deve lançar IllegalArgumentException")
+	void deveRejeitarAlteracaoAmbigua()
+	{
+		// Arrange
+		AlteracaoCarrinhoService service = service(Duration.ZERO, 50);
+
+		// Act & Assert
+		assertThrows(IllegalArgumentException.class,
+				() -> service.alterar(CARRINHO_ID, CLIENTE_ID, List.of(new AlteracaoItemDTO(1L, 2L, 1L))));
+		assertThrows(IllegalArgumentException.class,
+				() -> service.alterar(CARRINHO_ID, CLIENTE_ID, List.of(new AlteracaoItemDTO(1L, null, null))));
+		assertThrows(IllegalArgumentException.class, () -> service.alterar(CARRINHO_ID, CLIENTE_ID, List.of()));
+		assertThat(service.gravacoes()).isZero();
+	}
+
+	private AlteracaoCarrinhoService service(Duration janela, int tamanhoMaximo)
+	{
+		return service(janela, tamanhoMaximo, TransactionOperations.withoutTransaction());
+	}
+
+	private AlteracaoCarrinhoService service(Duration janela, int tamanhoMaximo, TransactionOperations transacoes)
+	{
+		AlteracaoCarrinhoService service = new AlteracaoCarrinhoService(carrinhoRepository, produtoRepository,
+				new ClienteService(clienteRepository), transacoes, janela, tamanhoMaximo, Duration.ofSeconds(10), 2,
+				100);
+		servicos.add(service);
+		return service;
+	}
+
+	private static Produto produto(Long id, String preco)
+	{
+		return new Produto(id, "Produto " + id, null, new BigDecimal(preco), BigDecimal.ONE, null, null, null, false,
+				TipoProduto.LIVRO);
+	}
+
+	private static AlteracaoItemDTO quantidade(Long produtoId, long quantidade)
+	{
+		return new AlteracaoItemDTO(produtoId, quantidade, null);
+	}
+
+	private static AlteracaoItemDTO variacao(Long produtoId, long variacao)
+	{
+		return new AlteracaoItemDTO(produtoId, null, variacao);
+	}
+
+	/**
+	 * Executa as transações sem transação de verdade; a primeira, depois de aplicar as
+	 * alterações, fica retida até {@link #liberar()}, simulando uma gravação em andamento.
+	 */
+	private static final class PrimeiraTransacaoRetida implements TransactionOperations
+	{
+		private final AtomicBoolean primeira = new AtomicBoolean(true);
+		private final CountDownLatch retida = new CountDownLatch(1);
+		private final CountDownLatch liberada = new CountDownLatch(1);
+
+		@Override
+		public <T> T execute(TransactionCallback<T> acao)
+		{
+			T resultado = acao.doInTransaction(new SimpleTransactionStatus(false));
+			if (primeira.compareAndSet(true, false))
+			{
+				retida.countDown();
+				try
+				{
+					liberada.await(10, TimeUnit.SECONDS);
+				}
+				catch (InterruptedException e)
+				{
+					Thread.currentThread().interrupt();
+				}
+			}
+			return resultado;
+		}
+
+		void aguardarRetencao() throws InterruptedException
+		{
+			assertThat(retida.await(5, TimeUnit.SECONDS)).isTrue();
+		}
+
+		void liberar()
+		{
+			liberada.countDown();
+		}
+	}
+}
@@ -0,0 +1,65 @@
+package ecommerce.service;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import org.hibernate.SessionFactory;
+import org.hibernate.stat.Statistics;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.when;
+
+import ecommerce.entity.Cliente;
+import ecommerce.repository.CarrinhoDeComprasRepository;
+import ecommerce.service.preco.CacheCotacoes;
+import ecommerce.service.preco.MotorPreco;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import jakarta.persistence.EntityManagerFactory;
+
+@DisplayName("CacheEntidades - métricas do cache de segundo nível")
+public class CacheEntidadesTest
+{
+	@Test
+	@DisplayName("Sem as estatísticas do Hibernate, nenhuma métrica é registrada")
+	void naoDeveRegistrarMetricasSemEstatisticas()
+	{
+		// Arrange
+		SimpleMeterRegistry registry = new SimpleMeterRegistry();
+		CacheEntidades cacheEntidades = cacheEntidades(false);
+
+		// Act
+		cacheEntidades.bindTo(registry);
+
+		// Assert
+		assertThat(registry.getMeters()).isEmpty();
+	}
+
+	@Test
+	@DisplayName("Com as estatísticas ligadas, registra acertos, faltas e taxa por região")
+	void deveRegistrarMetricasComEstatisticas()
+	{
+		// Arrange
+		SimpleMeterRegistry registry = new SimpleMeterRegistry();
+		CacheEntidades cacheEntidades = cacheEntidades(true);
+
+		// Act
+		cacheEntidades.bindTo(registry);
+
+		// Assert
+		assertThat(registry.get("ecommerce.cache.entidades.requisicoes").tag("regiao", Cliente.REGIAO_CACHE)
+				.functionCounters()).hasSize(2);
+		assertThat(registry.get("ecommerce.cache.entidades.taxa.acerto").gauges())
+				.hasSize(CacheEntidades.REGIOES.size());
+	}
+
+	private static CacheEntidades cacheEntidades(boolean estatisticasLigadas)
+	{
+		Statistics estatisticas = mock(Statistics.class);
+		when(estatisticas.isStatisticsEnabled()).thenReturn(estatisticasLigadas);
+		SessionFactory sessionFactory = mock(SessionFactory.class);
+		when(sessionFactory.getStatistics()).thenReturn(estatisticas);
+		EntityManagerFactory entityManagerFactory = mock(EntityManagerFactory.class);
+		when(entityManagerFactory.unwrap(SessionFactory.class)).thenReturn(sessionFactory);
+		return new CacheEntidades(entityManagerFactory, CacheCotacoes.semCache(new MotorPreco()),
+				mock(CarrinhoDeComprasRepository.class));
+	}
+}
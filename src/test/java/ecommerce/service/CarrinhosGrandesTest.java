@@ -0,0 +1,125 @@
+package ecommerce.service;
+
+import java.math.BigDecimal;
+import java.time.LocalDate;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+
+import ecommerce.entity.CarrinhoDeCompras;
+import ecommerce.entity.ItemCompra;
+import ecommerce.entity.Produto;
+import ecommerce.entity.Regiao;
+import ecommerce.entity.TipoCliente;
+import ecommerce.entity.TipoProduto;
+import ecommerce.service.preco.MotorPreco;
+import ecommerce.service.preco.SomaItens;
+
+@DisplayName("CarrinhosGrandes - soma das páginas")
+public class CarrinhosGrandesTest
+{
+	private static final int PARALELO_A_PARTIR_DE = 100;
+
+	private MotorPreco motor;
+	private CarrinhosGrandes carrinhosGrandes;
+	private Set<String> threads;
+
+	@BeforeEach
+	void setUp()
+	{
+		motor = new MotorPreco();
+		carrinhosGrandes = new CarrinhosGrandes(null, motor, 10, 2000, PARALELO_A_PARTIR_DE, 4);
+		threads = ConcurrentHashMap.newKeySet();
+	}
+
+	@AfterEach
+	void tearDown()
+	{
+		carrinhosGrandes.encerrar();
+	}
+
+	@Test
+	@DisplayName("Página grande: somada no pool próprio, com o custo do cálculo sequencial")
+	void deveSomarEmParaleloNoPoolProprio()
+	{
+		// Arrange: preços de três casas em parte das linhas levam as fatias para BigDecimal
+		List<ItemCompra> pagina = pagina(20_000);
+
+		// Act
+		SomaItens soma = carrinhosGrandes.somar(pagina);
+
+		// Assert
+		assertThat(soma.linhas()).isEqualTo(pagina.size());
+		assertThat(carrinhosGrandes.cotar(soma, Regiao.NORTE, TipoCliente.OURO))
+				.isEqualTo(motor.calcularReferencia(carrinho(pagina), Regiao.NORTE, TipoCliente.OURO));
+		assertThat(threads).anyMatch(nome -> nome.startsWith("carrinho-grande-soma-"))
+				.noneMatch(nome -> nome.startsWith("ForkJoinPool.commonPool"));
+	}
+
+	@Test
+	@DisplayName("Página abaixo do limite da soma paralela: somada na thread do checkout")
+	void deveSomarPaginaPequenaNaThreadAtual()
+	{
+		// Arrange
+		List<ItemCompra> pagina = pagina(PARALELO_A_PARTIR_DE - 1);
+
+		// Act
+		SomaItens soma = carrinhosGrandes.somar(pagina);
+
+		// Assert
+		assertThat(carrinhosGrandes.cotar(soma, Regiao.SUDESTE, TipoCliente.BRONZE))
+				.isEqualTo(motor.calcularReferencia(carrinho(pagina), Regiao.SUDESTE, TipoCliente.BRONZE));
+		assertThat(threads).containsExactly(Thread.currentThread().getName());
+	}
+
+	@Test
+	@DisplayName("Soma paralela sem threads deve lançar IllegalArgumentException")
+	void deveRejeitarParalelismoInvalido()
+	{
+		assertThrows(IllegalArgumentException.class,
+				() -> new CarrinhosGrandes(null, motor, 10, 2000, PARALELO_A_PARTIR_DE, 0));
+	}
+
+	private List<ItemCompra> pagina(int linhas)
+	{
+		List<ItemCompra> pagina = new ArrayList<>(linhas);
+		for (long i = 1; i <= linhas; i++)
+		{
+			BigDecimal preco = BigDecimal.valueOf(990 + i % 1000, i % 97 == 0 ? 3 : 2);
+			pagina.add(new ItemCompra(i, new ProdutoObservado(i, preco, i % 3 == 0), 1 + i % 5));
+		}
+		return pagina;
+	}
+
+	private static CarrinhoDeCompras carrinho(List<ItemCompra> pagina)
+	{
+		return new CarrinhoDeCompras(1L, null, pagina, LocalDate.now());
+	}
+
+	/**
+	 * Produto que registra as threads que leem o preço durante a soma.
+	 */
+	private class ProdutoObservado extends Produto
+	{
+		ProdutoObservado(Long id, BigDecimal preco, boolean fragil)
+		{
+			super(id, "Produto " + id, null, preco, new BigDecimal("0.250"), null, null, null, fragil,
+					TipoProduto.ALIMENTO);
+		}
+
+		@Override
+		public long getPrecoEmCentavos()
+		{
+			threads.add(Thread.currentThread().getName());
+			return super.getPrecoEmCentavos();
+		}
+	}
+}
@@ -0,0 +1,148 @@
+package ecommerce.service;
+
+import java.time.Duration;
+import java.util.concurrent.Executor;
+import java.util.concurrent.ForkJoinPool;
+
+import ecommerce.external.EstoqueAsyncAdapter;
+import ecommerce.external.IEstoqueExternal;
+import ecommerce.external.IEstoqueExternalAsync;
+import ecommerce.external.IPagamentoExternal;
+import ecommerce.external.IPagamentoExternalAsync;
+import ecommerce.external.PagamentoAsyncAdapter;
+import ecommerce.service.preco.CacheCotacoes;
+import ecommerce.service.preco.MotorPreco;
+import ecommerce.service.preco.PrecificacaoSombra;
+
+/**
+ * {@link CompraService} montado fora do Spring. Sem configuração, usa os prazos padrão,
+ * compensação do pagamento na própria requisição (sem outbox), cotações sem cache, carrinhos
+ * grandes, modo sombra e idempotência desligados. Estoque e pagamento síncronos são
+ * adaptados com {@link #executorExterno(Executor)}, por padrão o pool comum.
+ */
+public final class CompraServiceBuilder
+{
+	private final CarrinhoDeComprasService carrinhoService;
+	private final ClienteService clienteService;
+
+	private IEstoqueExternal estoque;
+	private IEstoqueExternalAsync estoqueAsync;
+	private IPagamentoExternal pagamento;
+	private IPagamentoExternalAsync pagamentoAsync;
+	private Executor executorExterno = ForkJoinPool.commonPool();
+
+	private Duration timeoutExterno = CompraService.TIMEOUT_EXTERNO_PADRAO;
+	private Duration validadeReserva = CompraService.VALIDADE_RESERVA_PADRAO;
+
+	private EventosCheckout eventosCheckout;
+	private CacheCotacoes cotacoes;
+	private CarrinhosGrandes carrinhosGrandes = CarrinhosGrandes.desligado();
+	private PrecificacaoSombra precificacaoSombra = PrecificacaoSombra.desligada();
+	private IdempotenciaService idempotencia = IdempotenciaService.desligada();
+
+	private CompraServiceBuilder(CarrinhoDeComprasService carrinhoService, ClienteService clienteService)
+	{
+		this.carrinhoService = carrinhoService;
+		this.clienteService = clienteService;
+	}
+
+	public static CompraServiceBuilder compraService(CarrinhoDeComprasService carrinhoService,
+			ClienteService clienteService)
+	{
+		return new CompraServiceBuilder(carrinhoService, clienteService);
+	}
+
+	public CompraServiceBuilder estoque(IEstoqueExternal estoque)
+	{
+		this.estoque = estoque;
+		this.estoqueAsync = null;
+		return this;
+	}
+
+	public CompraServiceBuilder estoque(IEstoqueExternalAsync estoque)
+	{
+		this.estoqueAsync = estoque;
+		this.estoque = null;
+		return this;
+	}
+
+	public CompraServiceBuilder pagamento(IPagamentoExternal pagamento)
+	{
+		this.pagamento = pagamento;
+		this.pagamentoAsync = null;
+		return this;
+	}
+
+	public CompraServiceBuilder pagamento(IPagamentoExternalAsync pagamento)
+	{
+		this.pagamentoAsync = pagamento;
+		this.pagamento = null;
+		return this;
+	}
+
+	/**
+	 * Executor das chamadas ao estoque e ao pagamento síncronos.
+	 */
+	public CompraServiceBuilder executorExterno(Executor executorExterno)
+	{
+		this.executorExterno = executorExterno;
+		return this;
+	}
+
+	public CompraServiceBuilder timeoutExterno(Duration timeoutExterno)
+	{
+		this.timeoutExterno = timeoutExterno;
+		return this;
+	}
+
+	public CompraServiceBuilder validadeReserva(Duration validadeReserva)
+	{
+		this.validadeReserva = validadeReserva;
+		return this;
+	}
+
+	public CompraServiceBuilder eventosCheckout(EventosCheckout eventosCheckout)
+	{
+		this.eventosCheckout = eventosCheckout;
+		return this;
+	}
+
+	public CompraServiceBuilder cotacoes(CacheCotacoes cotacoes)
+	{
+		this.cotacoes = cotacoes;
+		return this;
+	}
+
+	public CompraServiceBuilder carrinhosGrandes(CarrinhosGrandes carrinhosGrandes)
+	{
+		this.carrinhosGrandes = carrinhosGrandes;
+		return this;
+	}
+
+	public CompraServiceBuilder precificacaoSombra(PrecificacaoSombra precificacaoSombra)
+	{
+		this.precificacaoSombra = precificacaoSombra;
+		return this;
+	}
+
+	public CompraServiceBuilder idempotencia(IdempotenciaService idempotencia)
+	{
+		this.idempotencia = idempotencia;
+		return this;
+	}
+
+	public CompraService criar()
+	{
+		IEstoqueExternalAsync estoqueExterno = estoque != null ? EstoqueAsyncAdapter.de(estoque, executorExterno)
+				: estoqueAsync;
+		IPagamentoExternalAsync pagamentoExterno = pagamento != null
+				? new PagamentoAsyncAdapter(pagamento, executorExterno)
+				: pagamentoAsync;
+		EventosCheckout eventos = eventosCheckout != null ? eventosCheckout
+				: new EventosCheckoutImediatos(pagamentoExterno, timeoutExterno);
+		CacheCotacoes cache = cotacoes != null ? cotacoes : CacheCotacoes.semCache(new MotorPreco());
+
+		return new CompraService(carrinhoService, clienteService, estoqueExterno, pagamentoExterno, timeoutExterno,
+				validadeReserva, eventos, cache, carrinhosGrandes, precificacaoSombra, idempotencia);
+	}
+}
@@ -0,0 +1,179 @@
+package ecommerce.service;
+
+import java.math.BigDecimal;
+import java.time.LocalDate;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.junit.jupiter.api.Assumptions.assumeTrue;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+
+import ecommerce.config.ThreadsVirtuais;
+import ecommerce.dto.CompraDTO;
+import ecommerce.dto.DisponibilidadeDTO;
+import ecommerce.dto.EstoqueBaixaDTO;
+import ecommerce.dto.PagamentoDTO;
+import ecommerce.entity.CarrinhoDeCompras;
+import ecommerce.entity.Cliente;
+import ecommerce.entity.ItemCompra;
+import ecommerce.entity.Produto;
+import ecommerce.entity.Regiao;
+import ecommerce.entity.TipoCliente;
+import ecommerce.entity.TipoProduto;
+import ecommerce.external.fake.EstoqueSimulado;
+import ecommerce.external.fake.PagamentoSimulado;
+import ecommerce.repository.fake.CarrinhoDeComprasRepositoryFake;
+import ecommerce.repository.fake.ClienteRepositoryFake;
+
+/**
+ * Teste de carga: quantas compras ficam em andamento ao mesmo tempo quando os serviços
+ * externos são lentos, com threads de plataforma (pool limitado, como o do Tomcat) e com
+ * threads virtuais.
+ */
+@DisplayName("Carga - compras simultâneas com threads de plataforma e virtuais")
+public class CompraServiceCargaTest
+{
+	private static final int COMPRAS = 400;
+	private static final int THREADS_PLATAFORMA = 20;
+	private static final long LATENCIA_EXTERNA_MS = 20;
+
+	private final AtomicInteger emAndamento = new AtomicInteger();
+	private final AtomicInteger picoEmAndamento = new AtomicInteger();
+
+	private ClienteRepositoryFake clienteRepository;
+	private CarrinhoDeComprasRepositoryFake carrinhoRepository;
+
+	@BeforeEach
+	void setUp()
+	{
+		clienteRepository = new ClienteRepositoryFake();
+		carrinhoRepository = new CarrinhoDeComprasRepositoryFake();
+
+		Produto produto = new Produto(1L, "Livro", "Livro", BigDecimal.valueOf(50.00), BigDecimal.valueOf(1.0),
+				null, null, null, false, TipoProduto.LIVRO);
+
+		for (long id = 1; id <= COMPRAS; id++)
+		{
+			Cliente cliente = new Cliente(id, "Cliente " + id, Regiao.NORDESTE, TipoCliente.BRONZE);
+			clienteRepository.adicionarCliente(cliente);
+
+			List<ItemCompra> itens = new ArrayList<>();
+			itens.add(new ItemCompra(id, produto, 1L));
+			carrinhoRepository.adicionarCarrinho(new CarrinhoDeCompras(id, cliente, itens, LocalDate.now()));
+		}
+	}
+
+	@Test
+	@DisplayName("Threads de plataforma: compras em andamento limitadas ao tamanho do pool")
+	void deveLimitarComprasEmAndamentoComThreadsDePlataforma() throws Exception
+	{
+		ExecutorService requisicoes = Executors.newFixedThreadPool(THREADS_PLATAFORMA);
+		ExecutorService checkout = Executors.newFixedThreadPool(THREADS_PLATAFORMA);
+
+		long duracaoMs = executarCarga(requisicoes, checkout);
+
+		System.out.printf("[plataforma] %d compras em %d ms, pico de %d em andamento%n", COMPRAS, duracaoMs,
+				picoEmAndamento.get());
+		assertThat(picoEmAndamento.get()).isLessThanOrEqualTo(THREADS_PLATAFORMA);
+	}
+
+	@Test
+	@DisplayName("Threads virtuais: compras em andamento crescem além do pool de plataforma")
+	void deveEscalarComprasEmAndamentoComThreadsVirtuais() throws Exception
+	{
+		assumeTrue(ThreadsVirtuais.disponiveis(), "JVM sem suporte a threads virtuais");
+
+		ExecutorService requisicoes = ThreadsVirtuais.novoExecutorPorTarefa("req-v-");
+		ExecutorService checkout = ThreadsVirtuais.novoExecutorPorTarefa("checkout-v-");
+
+		long duracaoMs = executarCarga(requisicoes, checkout);
+
+		System.out.printf("[virtual] %d compras em %d ms, pico de %d em andamento%n", COMPRAS, duracaoMs,
+				picoEmAndamento.get());
+		assertThat(picoEmAndamento.get()).isGreaterThan(THREADS_PLATAFORMA * 5);
+	}
+
+	private long executarCarga(ExecutorService requisicoes, ExecutorService checkout) throws Exception
+	{
+		CompraService compraService = CompraServiceBuilder.compraService(
+				new CarrinhoDeComprasService(carrinhoRepository), new ClienteService(clienteRepository))
+				.estoque(new EstoqueLento())
+				.pagamento(new PagamentoLento())
+				.executorExterno(checkout)
+				.criar();
+
+		long inicio = System.nanoTime();
+		List<CompletableFuture<CompraDTO>> compras = new ArrayList<>();
+		for (long id = 1; id <= COMPRAS; id++)
+		{
+			Long carrinhoEClienteId = id;
+			compras.add(CompletableFuture.supplyAsync(
+					() -> compraService.finalizarCompra(carrinhoEClienteId, carrinhoEClienteId), requisicoes));
+		}
+		CompletableFuture.allOf(compras.toArray(CompletableFuture[]::new)).get(2, TimeUnit.MINUTES);
+		long duracaoMs = TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - inicio);
+
+		requisicoes.shutdown();
+		checkout.shutdown();
+
+		assertThat(compras).allSatisfy(compra -> assertThat(compra.join().sucesso()).isTrue());
+		return duracaoMs;
+	}
+
+	private void simularLatencia()
+	{
+		int atual = emAndamento.incrementAndGet();
+		picoEmAndamento.accumulateAndGet(atual, Math::max);
+		try
+		{
+			Thread.sleep(LATENCIA_EXTERNA_MS);
+		}
+		catch (InterruptedException e)
+		{
+			Thread.currentThread().interrupt();
+		}
+		finally
+		{
+			emAndamento.decrementAndGet();
+		}
+	}
+
+	private class EstoqueLento extends EstoqueSimulado
+	{
+		@Override
+		public DisponibilidadeDTO verificarDisponibilidade(List<Long> produtosIds, List<Long> produtosQuantidades)
+		{
+			simularLatencia();
+			return new DisponibilidadeDTO(true, new ArrayList<>());
+		}
+
+		@Override
+		public EstoqueBaixaDTO darBaixa(List<Long> produtosIds, List<Long> produtosQuantidades)
+		{
+			simularLatencia();
+			return new EstoqueBaixaDTO(true);
+		}
+
+	}
+
+	private class PagamentoLento extends PagamentoSimulado
+	{
+		private final AtomicLong transacoes = new AtomicLong(5000);
+
+		@Override
+		public PagamentoDTO autorizarPagamento(Long clienteId, Double custoTotal)
+		{
+			simularLatencia();
+			return new PagamentoDTO(true, transacoes.incrementAndGet());
+		}
+	}
+}
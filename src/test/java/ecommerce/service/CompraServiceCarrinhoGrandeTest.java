@@ -0,0 +1,260 @@
+package ecommerce.service;
+
+import java.math.BigDecimal;
+import java.time.Duration;
+import java.time.LocalDate;
+import java.util.ArrayList;
+import java.util.List;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+
+import ecommerce.dto.CompraDTO;
+import ecommerce.dto.DisponibilidadeDTO;
+import ecommerce.dto.EstoqueBaixaDTO;
+import ecommerce.dto.PagamentoDTO;
+import ecommerce.dto.ReservaEstoqueDTO;
+import ecommerce.entity.CarrinhoDeCompras;
+import ecommerce.entity.Cliente;
+import ecommerce.entity.ItemCompra;
+import ecommerce.entity.Produto;
+import ecommerce.entity.Regiao;
+import ecommerce.entity.TipoCliente;
+import ecommerce.entity.TipoProduto;
+import ecommerce.external.IEstoqueExternal;
+import ecommerce.external.fake.EstoqueComReservaSimulado;
+import ecommerce.external.fake.PagamentoSimulado;
+import ecommerce.repository.fake.CarrinhoDeComprasRepositoryFake;
+import ecommerce.repository.fake.ClienteRepositoryFake;
+import ecommerce.service.preco.CacheCotacoes;
+import ecommerce.service.preco.MotorPreco;
+
+@DisplayName("CompraService - carrinhos grandes lidos em páginas, com estoque em lotes")
+public class CompraServiceCarrinhoGrandeTest
+{
+	private static final int LINHAS = 25;
+	private static final int TAMANHO_PAGINA = 4;
+	private static final int PAGINAS = 7;
+
+	private CarrinhoDeComprasRepositoryFake carrinhoRepository;
+	private EstoqueEmLotes estoque;
+	private PagamentoRegistrado pagamento;
+	private MotorPreco motor;
+	private ClienteService clienteService;
+	private CompraService compraService;
+
+	private Cliente cliente;
+	private CarrinhoDeCompras carrinho;
+
+	@BeforeEach
+	void setUp()
+	{
+		carrinhoRepository = new CarrinhoDeComprasRepositoryFake();
+		ClienteRepositoryFake clienteRepository = new ClienteRepositoryFake();
+		estoque = new EstoqueEmLotes();
+		pagamento = new PagamentoRegistrado();
+		motor = new MotorPreco();
+
+		cliente = new Cliente(9L, "Atacadista", Regiao.NORTE, TipoCliente.OURO);
+		clienteRepository.adicionarCliente(cliente);
+
+		List<ItemCompra> itens = new ArrayList<>();
+		for (long i = 1; i <= LINHAS; i++)
+		{
+			Produto produto = new Produto(100 + i, "Produto " + i, null, new BigDecimal("19.90"), new BigDecimal("0.35"),
+					null, null, null, i % 3 == 0, TipoProduto.ALIMENTO);
+			estoque.definirEstoque(produto.getId(), 1000L);
+			itens.add(new ItemCompra(i, produto, i));
+		}
+		carrinho = new CarrinhoDeCompras(1L, cliente, itens, LocalDate.now());
+		carrinhoRepository.adicionarCarrinho(carrinho);
+
+		clienteService = new ClienteService(clienteRepository);
+		compraService = compraService(estoque);
+	}
+
+	/**
+	 * O mesmo estoque visto sem o protocolo de reserva.
+	 */
+	private void semReserva()
+	{
+		compraService = compraService(new IEstoqueExternal()
+		{
+			@Override
+			public EstoqueBaixaDTO darBaixa(List<Long> produtosIds, List<Long> produtosQuantidades)
+			{
+				return estoque.darBaixa(produtosIds, produtosQuantidades);
+			}
+
+			@Override
+			public DisponibilidadeDTO verificarDisponibilidade(List<Long> produtosIds, List<Long> produtosQuantidades)
+			{
+				return estoque.verificarDisponibilidade(produtosIds, produtosQuantidades);
+			}
+		});
+	}
+
+	private CompraService compraService(IEstoqueExternal estoqueExternal)
+	{
+		CarrinhoDeComprasService carrinhoService = new CarrinhoDeComprasService(carrinhoRepository);
+		// Chamadas externas na própria thread: liberações e compensações já concluídas
+		return CompraServiceBuilder.compraService(carrinhoService, clienteService)
+				.estoque(estoqueExternal)
+				.pagamento(pagamento)
+				.executorExterno(Runnable::run)
+				.cotacoes(CacheCotacoes.semCache(motor))
+				.carrinhosGrandes(new CarrinhosGrandes(carrinhoService, motor, 10, TAMANHO_PAGINA))
+				.criar();
+	}
+
+	@Test
+	@DisplayName("Sem reserva: verifica e dá baixa em lotes do tamanho da página, com o custo do carrinho inteiro")
+	void deveFinalizarEmLotesSemReserva()
+	{
+		// Arrange
+		semReserva();
+
+		// Act
+		CompraDTO resultado = compraService.finalizarCompra(1L, 9L);
+
+		// Assert
+		assertThat(resultado.sucesso()).isTrue();
+		assertThat(estoque.verificacoes).hasSize(PAGINAS).allMatch(tamanho -> tamanho <= TAMANHO_PAGINA);
+		assertThat(estoque.baixas).hasSize(PAGINAS).allMatch(tamanho -> tamanho <= TAMANHO_PAGINA);
+		assertThat(estoque.verificacoes.stream().mapToInt(Integer::intValue).sum()).isEqualTo(LINHAS);
+		assertThat(estoque.consultarEstoque(125L)).isEqualTo(1000L - 25);
+		assertThat(pagamento.verificarPagamentoAutorizado(resultado.transacaoPagamentoId())).isTrue();
+		assertThat(pagamento.ultimoValor).isEqualTo(
+				motor.calcular(carrinho, cliente.getRegiao(), cliente.getTipo()).emReaisDouble());
+	}
+
+	@Test
+	@DisplayName("Com reserva: uma reserva por página, todas confirmadas após o pagamento")
+	void deveFinalizarComUmaReservaPorPagina()
+	{
+		// Act
+		CompraDTO resultado = compraService.finalizarCompra(1L, 9L);
+
+		// Assert
+		assertThat(resultado.sucesso()).isTrue();
+		assertThat(estoque.reservas).hasSize(PAGINAS).allMatch(tamanho -> tamanho <= TAMANHO_PAGINA);
+		assertThat(estoque.baixas).isEmpty();
+		for (long reservaId = 1; reservaId <= PAGINAS; reservaId++)
+		{
+			assertThat(estoque.existeReserva(reservaId)).isFalse();
+		}
+		assertThat(estoque.consultarEstoque(101L)).isEqualTo(999L);
+		assertThat(estoque.consultarEstoque(125L)).isEqualTo(975L);
+	}
+
+	@Test
+	@DisplayName("Página sem estoque: libera as reservas já feitas e não cobra o cliente")
+	void deveLiberarReservasQuandoUmaPaginaFalha()
+	{
+		// Arrange: produto da quinta página sem estoque
+		estoque.definirEstoque(118L, 0L);
+
+		// Act
+		IllegalStateException erro = assertThrows(IllegalStateException.class,
+				() -> compraService.finalizarCompra(1L, 9L));
+
+		// Assert
+		assertThat(erro.getMessage()).isEqualTo("Itens fora de estoque.");
+		assertThat(estoque.reservas).hasSize(5);
+		for (long reservaId = 1; reservaId <= 4; reservaId++)
+		{
+			assertThat(estoque.existeReserva(reservaId)).isFalse();
+		}
+		assertThat(estoque.consultarEstoque(101L)).isEqualTo(1000L);
+		assertThat(pagamento.ultimoValor).isNull();
+	}
+
+	@Test
+	@DisplayName("Carrinho alterado entre a cotação e a baixa: compensa o pagamento")
+	void deveCompensarQuandoCarrinhoMudaDuranteABaixa()
+	{
+		// Arrange: o carrinho muda depois da primeira passada, no pagamento
+		semReserva();
+		pagamento.aoAutorizar = () -> carrinho.getItens().get(LINHAS - 1).setQuantidade(99L);
+
+		// Act
+		IllegalStateException erro = assertThrows(IllegalStateException.class,
+				() -> compraService.finalizarCompra(1L, 9L));
+
+		// Assert
+		assertThat(erro.getMessage()).isEqualTo("Carrinho alterado durante a finalização.");
+		assertThat(estoque.baixas).hasSize(PAGINAS - 1);
+		assertThat(pagamento.verificarPagamentoAutorizado(1001L)).isFalse();
+	}
+
+	@Test
+	@DisplayName("Abaixo do limiar, o carrinho é carregado inteiro e verificado numa chamada")
+	void deveUsarCaminhoComumAbaixoDoLimiar()
+	{
+		// Arrange
+		semReserva();
+		carrinho.getItens().subList(9, LINHAS).clear();
+
+		// Act
+		CompraDTO resultado = compraService.finalizarCompra(1L, 9L);
+
+		// Assert
+		assertThat(resultado.sucesso()).isTrue();
+		assertThat(estoque.verificacoes).containsExactly(9);
+		assertThat(estoque.baixas).containsExactly(9);
+	}
+
+	/**
+	 * Pagamento simulado que guarda o último valor cobrado e pode agir durante a autorização.
+	 */
+	private static class PagamentoRegistrado extends PagamentoSimulado
+	{
+		volatile Double ultimoValor;
+		volatile Runnable aoAutorizar = () -> {
+		};
+
+		@Override
+		public PagamentoDTO autorizarPagamento(Long clienteId, Double custoTotal)
+		{
+			ultimoValor = custoTotal;
+			aoAutorizar.run();
+			return super.autorizarPagamento(clienteId, custoTotal);
+		}
+	}
+
+	/**
+	 * Estoque simulado que registra o tamanho de cada lote recebido.
+	 */
+	private static class EstoqueEmLotes extends EstoqueComReservaSimulado
+	{
+		final List<Integer> verificacoes = new ArrayList<>();
+		final List<Integer> baixas = new ArrayList<>();
+		final List<Integer> reservas = new ArrayList<>();
+
+		@Override
+		public synchronized DisponibilidadeDTO verificarDisponibilidade(List<Long> produtosIds,
+				List<Long> produtosQuantidades)
+		{
+			verificacoes.add(produtosIds.size());
+			return super.verificarDisponibilidade(produtosIds, produtosQuantidades);
+		}
+
+		@Override
+		public synchronized EstoqueBaixaDTO darBaixa(List<Long> produtosIds, List<Long> produtosQuantidades)
+		{
+			baixas.add(produtosIds.size());
+			return super.darBaixa(produtosIds, produtosQuantidades);
+		}
+
+		@Override
+		public synchronized ReservaEstoqueDTO reservar(List<Long> produtosIds, List<Long> produtosQuantidades,
+				Duration validade)
+		{
+			reservas.add(produtosIds.size());
+			return super.reservar(produtosIds, produtosQuantidades, validade);
+		}
+	}
+}
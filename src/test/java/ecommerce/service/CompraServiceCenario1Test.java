@@ -64,7 +64,10 @@ public class CompraServiceCenario1Test
 		// Cria os serviços com as dependências
 		carrinhoService = new CarrinhoDeComprasService(carrinhoRepository);
 		clienteService = new ClienteService(clienteRepository);
-		compraService = new CompraService(carrinhoService, clienteService, estoqueExternal, pagamentoExternal);
+		compraService = CompraServiceBuilder.compraService(carrinhoService, clienteService)
+				.estoque(estoqueExternal)
+				.pagamento(pagamentoExternal)
+				.criar();
 	}
 
 	@Test
@@ -239,7 +242,10 @@ public class CompraServiceCenario1Test
 		// Recria o serviço com o estoque customizado
 		carrinhoService = new CarrinhoDeComprasService(carrinhoRepository);
 		clienteService = new ClienteService(clienteRepository);
-		compraService = new CompraService(carrinhoService, clienteService, estoqueComRaceCondition, pagamentoExternal);
+		compraService = CompraServiceBuilder.compraService(carrinhoService, clienteService)
+				.estoque(estoqueComRaceCondition)
+				.pagamento(pagamentoExternal)
+				.criar();
 		
 		// Mock dos repositories
 		when(clienteRepository.findById(clienteId)).thenReturn(Optional.of(cliente));
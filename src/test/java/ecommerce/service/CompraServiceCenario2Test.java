@@ -1,6 +1,8 @@
 package ecommerce.service;
 
 import java.math.BigDecimal;
+import java.time.Duration;
+import java.time.Instant;
 import java.time.LocalDate;
 import java.util.ArrayList;
 import java.util.List;
@@ -13,6 +15,7 @@ import org.junit.jupiter.api.Test;
 import static org.mockito.ArgumentMatchers.any;
 import static org.mockito.ArgumentMatchers.anyList;
 import static org.mockito.ArgumentMatchers.eq;
+import static org.mockito.Mockito.CALLS_REAL_METHODS;
 import static org.mockito.Mockito.mock;
 import static org.mockito.Mockito.never;
 import static org.mockito.Mockito.times;
@@ -23,6 +26,8 @@ import ecommerce.dto.CompraDTO;
 import ecommerce.dto.DisponibilidadeDTO;
 import ecommerce.dto.EstoqueBaixaDTO;
 import ecommerce.dto.PagamentoDTO;
+import ecommerce.dto.PedidoCompraDTO;
+import ecommerce.dto.ReservaEstoqueDTO;
 import ecommerce.entity.CarrinhoDeCompras;
 import ecommerce.entity.Cliente;
 import ecommerce.entity.ItemCompra;
@@ -32,6 +37,7 @@ import ecommerce.entity.TipoCliente;
 import ecommerce.entity.TipoProduto;
 import ecommerce.external.IEstoqueExternal;
 import ecommerce.external.IPagamentoExternal;
+import ecommerce.external.IReservaEstoque;
 import ecommerce.repository.fake.CarrinhoDeComprasRepositoryFake;
 import ecommerce.repository.fake.ClienteRepositoryFake;
 
@@ -59,7 +65,8 @@ public class CompraServiceCenario2Test
 	{
 		// Cria os mocks para serviços externos
 		estoqueExternal = mock(IEstoqueExternal.class);
-		pagamentoExternal = mock(IPagamentoExternal.class);
+		// O checkout chama a sobrecarga em Dinheiro, cujo método padrão repassa ao de Double
+		pagamentoExternal = mock(IPagamentoExternal.class, CALLS_REAL_METHODS);
 		
 		// Cria os fakes para repositories
 		carrinhoRepository = new CarrinhoDeComprasRepositoryFake();
@@ -72,7 +79,10 @@ public class CompraServiceCenario2Test
 		// Cria os serviços com as dependências
 		carrinhoService = new CarrinhoDeComprasService(carrinhoRepository);
 		clienteService = new ClienteService(clienteRepository);
-		compraService = new CompraService(carrinhoService, clienteService, estoqueExternal, pagamentoExternal);
+		compraService = CompraServiceBuilder.compraService(carrinhoService, clienteService)
+				.estoque(estoqueExternal)
+				.pagamento(pagamentoExternal)
+				.criar();
 	}
 
 	@Test
@@ -123,6 +133,56 @@ public class CompraServiceCenario2Test
 		verify(pagamentoExternal, never()).cancelarPagamento(any(), any());
 	}
 
+	@Test
+	@DisplayName("Deve usar reserva de estoque em vez de verificar disponibilidade e dar baixa")
+	void deveFinalizarCompraComReservaDeEstoque()
+	{
+		// Arrange
+		Long carrinhoId = 1L;
+		Long clienteId = 1L;
+		
+		Cliente cliente = new Cliente(clienteId, "João Silva", Regiao.NORDESTE, TipoCliente.OURO);
+		clienteRepository.adicionarCliente(cliente);
+		
+		Produto produto1 = new Produto(1L, "Notebook", "Notebook Dell", 
+				BigDecimal.valueOf(2000.00), BigDecimal.valueOf(2.5), 
+				null, null, null, false, TipoProduto.ELETRONICO);
+		
+		List<ItemCompra> itens = new ArrayList<>();
+		itens.add(new ItemCompra(1L, produto1, 2L));
+		
+		CarrinhoDeCompras carrinho = new CarrinhoDeCompras(carrinhoId, cliente, itens, LocalDate.now());
+		carrinhoRepository.adicionarCarrinho(carrinho);
+		
+		// Configura mocks: estoque com suporte a reserva
+		IReservaEstoque estoqueComReserva = mock(IReservaEstoque.class);
+		compraService = CompraServiceBuilder.compraService(carrinhoService, clienteService)
+				.estoque(estoqueComReserva)
+				.pagamento(pagamentoExternal)
+				.criar();
+		when(estoqueComReserva.reservar(anyList(), anyList(), any(Duration.class)))
+			.thenReturn(new ReservaEstoqueDTO(true, 10L, new ArrayList<>(), Instant.now().plusSeconds(60)));
+		when(estoqueComReserva.confirmarReserva(10L)).thenReturn(new EstoqueBaixaDTO(true));
+		
+		when(pagamentoExternal.autorizarPagamento(eq(clienteId), any(Double.class)))
+			.thenReturn(new PagamentoDTO(true, 1001L));
+		
+		// Act
+		CompraDTO resultado = compraService.finalizarCompra(carrinhoId, clienteId);
+		
+		// Assert
+		assertThat(resultado.sucesso()).isTrue();
+		assertThat(resultado.transacaoPagamentoId()).isEqualTo(1001L);
+		
+		// Uma chamada de reserva e uma de confirmação substituem a verificação e a baixa
+		verify(estoqueComReserva, times(1)).reservar(anyList(), anyList(), any(Duration.class));
+		verify(estoqueComReserva, times(1)).confirmarReserva(10L);
+		verify(estoqueComReserva, never()).verificarDisponibilidade(anyList(), anyList());
+		verify(estoqueComReserva, never()).darBaixa(anyList(), anyList());
+		verify(estoqueComReserva, never()).liberarReserva(any());
+		verify(pagamentoExternal, never()).cancelarPagamento(any(), any());
+	}
+
 	@Test
 	@DisplayName("Deve lançar exceção quando itens estão fora de estoque")
 	void deveLancarExcecaoQuandoItensForaDeEstoque()
@@ -256,6 +316,50 @@ public class CompraServiceCenario2Test
 		verify(pagamentoExternal, times(1)).cancelarPagamento(clienteId, 2001L);
 	}
 
+	@Test
+	@DisplayName("Com outbox, deve registrar a compensação em vez de cancelar o pagamento na requisição")
+	void deveRegistrarCompensacaoNoOutboxQuandoBaixaFalha()
+	{
+		// Arrange
+		Long carrinhoId = 1L;
+		Long clienteId = 1L;
+		
+		Cliente cliente = new Cliente(clienteId, "Ana Oliveira", Regiao.SUDESTE, TipoCliente.OURO);
+		clienteRepository.adicionarCliente(cliente);
+		
+		Produto produto1 = new Produto(1L, "Produto", "Descrição", 
+				BigDecimal.valueOf(100.00), BigDecimal.valueOf(1.0), 
+				null, null, null, false, TipoProduto.ALIMENTO);
+		
+		List<ItemCompra> itens = new ArrayList<>();
+		itens.add(new ItemCompra(1L, produto1, 10L));
+		carrinhoRepository.adicionarCarrinho(new CarrinhoDeCompras(carrinhoId, cliente, itens, LocalDate.now()));
+		
+		EventosCheckout eventosCheckout = mock(EventosCheckout.class);
+		compraService = CompraServiceBuilder.compraService(carrinhoService, clienteService)
+				.estoque(estoqueExternal)
+				.pagamento(pagamentoExternal)
+				.eventosCheckout(eventosCheckout)
+				.criar();
+		
+		when(estoqueExternal.verificarDisponibilidade(anyList(), anyList()))
+			.thenReturn(new DisponibilidadeDTO(true, new ArrayList<>()));
+		when(pagamentoExternal.autorizarPagamento(eq(clienteId), any(Double.class)))
+			.thenReturn(new PagamentoDTO(true, 2001L));
+		when(estoqueExternal.darBaixa(anyList(), anyList()))
+			.thenReturn(new EstoqueBaixaDTO(false));
+		
+		// Act & Assert
+		IllegalStateException exception = assertThrows(IllegalStateException.class, () -> {
+			compraService.finalizarCompra(carrinhoId, clienteId);
+		});
+		
+		assertThat(exception.getMessage()).isEqualTo("Erro ao dar baixa no estoque.");
+		verify(eventosCheckout, times(1)).compensarPagamento(clienteId, 2001L);
+		verify(eventosCheckout, never()).compraFinalizada(any(), any(), any());
+		verify(pagamentoExternal, never()).cancelarPagamento(any(), any());
+	}
+
 	@Test
 	@DisplayName("Deve calcular custo total corretamente com múltiplos itens")
 	void deveCalcularCustoTotalComMultiplosItens()
@@ -357,6 +461,147 @@ public class CompraServiceCenario2Test
 		verify(estoqueExternal, times(1)).darBaixa(anyList(), anyList());
 	}
 
+	@Test
+	@DisplayName("Deve finalizar lote com uma verificação agregada de estoque sem abortar por carrinho inválido")
+	void deveFinalizarLoteComVerificacaoAgregadaDeEstoque()
+	{
+		// Arrange
+		Cliente cliente1 = new Cliente(1L, "Ana", Regiao.SUL, TipoCliente.OURO);
+		Cliente cliente2 = new Cliente(2L, "Bruno", Regiao.NORTE, TipoCliente.PRATA);
+		clienteRepository.adicionarCliente(cliente1);
+		clienteRepository.adicionarCliente(cliente2);
+		
+		Produto produto = new Produto(1L, "Livro", "Livro", 
+				BigDecimal.valueOf(40.00), BigDecimal.valueOf(1.0), 
+				null, null, null, false, TipoProduto.LIVRO);
+		
+		List<ItemCompra> itens1 = new ArrayList<>();
+		itens1.add(new ItemCompra(1L, produto, 2L));
+		List<ItemCompra> itens2 = new ArrayList<>();
+		itens2.add(new ItemCompra(2L, produto, 3L));
+		
+		carrinhoRepository.adicionarCarrinho(new CarrinhoDeCompras(1L, cliente1, itens1, LocalDate.now()));
+		carrinhoRepository.adicionarCarrinho(new CarrinhoDeCompras(2L, cliente2, itens2, LocalDate.now()));
+		
+		when(estoqueExternal.verificarDisponibilidade(anyList(), anyList()))
+			.thenReturn(new DisponibilidadeDTO(true, new ArrayList<>()));
+		when(pagamentoExternal.autorizarPagamento(any(), any(Double.class)))
+			.thenReturn(new PagamentoDTO(true, 4001L));
+		when(estoqueExternal.darBaixa(anyList(), anyList()))
+			.thenReturn(new EstoqueBaixaDTO(true));
+		
+		List<PedidoCompraDTO> pedidos = List.of(
+				new PedidoCompraDTO(1L, 1L),
+				new PedidoCompraDTO(2L, 2L),
+				new PedidoCompraDTO(2L, 1L)); // carrinho de outro cliente
+		
+		// Act
+		List<CompraDTO> resultados = compraService.finalizarCompras(pedidos);
+		
+		// Assert
+		assertThat(resultados).hasSize(3);
+		assertThat(resultados.get(0).sucesso()).isTrue();
+		assertThat(resultados.get(1).sucesso()).isTrue();
+		assertThat(resultados.get(2).sucesso()).isFalse();
+		assertThat(resultados.get(2).mensagem()).isEqualTo("Carrinho não encontrado.");
+		
+		// Uma única consulta agregada (produto 1: 2 + 3 unidades) para o lote inteiro
+		verify(estoqueExternal, times(1)).verificarDisponibilidade(List.of(1L), List.of(5L));
+		verify(pagamentoExternal, times(2)).autorizarPagamento(any(), any(Double.class));
+		verify(estoqueExternal, times(2)).darBaixa(anyList(), anyList());
+	}
+
+	@Test
+	@DisplayName("Carrinho repetido no lote deve ser finalizado uma única vez")
+	void deveFinalizarCarrinhoRepetidoUmaVez()
+	{
+		// Arrange
+		Cliente cliente = new Cliente(1L, "Ana", Regiao.SUL, TipoCliente.OURO);
+		clienteRepository.adicionarCliente(cliente);
+		
+		Produto produto = new Produto(1L, "Livro", "Livro", 
+				BigDecimal.valueOf(40.00), BigDecimal.valueOf(1.0), 
+				null, null, null, false, TipoProduto.LIVRO);
+		
+		List<ItemCompra> itens = new ArrayList<>();
+		itens.add(new ItemCompra(1L, produto, 2L));
+		carrinhoRepository.adicionarCarrinho(new CarrinhoDeCompras(1L, cliente, itens, LocalDate.now()));
+		
+		when(estoqueExternal.verificarDisponibilidade(anyList(), anyList()))
+			.thenReturn(new DisponibilidadeDTO(true, new ArrayList<>()));
+		when(pagamentoExternal.autorizarPagamento(any(), any(Double.class)))
+			.thenReturn(new PagamentoDTO(true, 4001L));
+		when(estoqueExternal.darBaixa(anyList(), anyList()))
+			.thenReturn(new EstoqueBaixaDTO(true));
+		
+		List<PedidoCompraDTO> pedidos = List.of(
+				new PedidoCompraDTO(1L, 1L),
+				new PedidoCompraDTO(1L, 1L));
+		
+		// Act
+		List<CompraDTO> resultados = compraService.finalizarCompras(pedidos);
+		
+		// Assert
+		assertThat(resultados).hasSize(2);
+		assertThat(resultados.get(0).sucesso()).isTrue();
+		assertThat(resultados.get(1).sucesso()).isFalse();
+		assertThat(resultados.get(1).mensagem()).isEqualTo("Carrinho repetido no lote.");
+		
+		// A consulta agregada conta as unidades do carrinho uma vez só
+		verify(estoqueExternal, times(1)).verificarDisponibilidade(List.of(1L), List.of(2L));
+		verify(pagamentoExternal, times(1)).autorizarPagamento(any(), any(Double.class));
+		verify(estoqueExternal, times(1)).darBaixa(anyList(), anyList());
+	}
+
+	@Test
+	@DisplayName("Lote reenviado deve devolver o resultado guardado sem cobrar de novo")
+	void deveAplicarIdempotenciaPorCarrinhoDoLote()
+	{
+		// Arrange
+		compraService = CompraServiceBuilder.compraService(carrinhoService, clienteService)
+				.estoque(estoqueExternal)
+				.pagamento(pagamentoExternal)
+				.idempotencia(new IdempotenciaService(Duration.ofHours(1), 100))
+				.criar();
+		
+		Cliente cliente = new Cliente(1L, "Ana", Regiao.SUL, TipoCliente.OURO);
+		clienteRepository.adicionarCliente(cliente);
+		
+		Produto produto = new Produto(1L, "Livro", "Livro", 
+				BigDecimal.valueOf(40.00), BigDecimal.valueOf(1.0), 
+				null, null, null, false, TipoProduto.LIVRO);
+		
+		List<ItemCompra> itens1 = new ArrayList<>();
+		itens1.add(new ItemCompra(1L, produto, 2L));
+		List<ItemCompra> itens2 = new ArrayList<>();
+		itens2.add(new ItemCompra(2L, produto, 1L));
+		carrinhoRepository.adicionarCarrinho(new CarrinhoDeCompras(1L, cliente, itens1, LocalDate.now()));
+		carrinhoRepository.adicionarCarrinho(new CarrinhoDeCompras(2L, cliente, itens2, LocalDate.now()));
+		
+		when(estoqueExternal.verificarDisponibilidade(anyList(), anyList()))
+			.thenReturn(new DisponibilidadeDTO(true, new ArrayList<>()));
+		when(pagamentoExternal.autorizarPagamento(any(), any(Double.class)))
+			.thenReturn(new PagamentoDTO(true, 4001L), new PagamentoDTO(true, 4002L));
+		when(estoqueExternal.darBaixa(anyList(), anyList()))
+			.thenReturn(new EstoqueBaixaDTO(true));
+		
+		// Carrinho 1 já finalizado individualmente, sem cabeçalho de idempotência
+		CompraDTO individual = compraService.finalizarCompra(1L, 1L);
+		
+		// Act
+		List<CompraDTO> primeiroEnvio = compraService.finalizarCompras(
+				List.of(new PedidoCompraDTO(1L, 1L), new PedidoCompraDTO(2L, 1L, "lote-7:2")));
+		List<CompraDTO> reenvio = compraService.finalizarCompras(
+				List.of(new PedidoCompraDTO(1L, 1L), new PedidoCompraDTO(2L, 1L, "lote-7:2")));
+		
+		// Assert
+		assertThat(primeiroEnvio.get(0)).isEqualTo(individual);
+		assertThat(primeiroEnvio.get(1).transacaoPagamentoId()).isEqualTo(4002L);
+		assertThat(reenvio).isEqualTo(primeiroEnvio);
+		verify(pagamentoExternal, times(2)).autorizarPagamento(any(), any(Double.class));
+		verify(estoqueExternal, times(2)).darBaixa(anyList(), anyList());
+	}
+
 	@Test
 	@DisplayName("Deve lançar exceção quando cliente não existe")
 	void deveLancarExcecaoQuandoClienteNaoExiste()
@@ -0,0 +1,266 @@
+package ecommerce.service;
+
+import java.math.BigDecimal;
+import java.time.LocalDate;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.atomic.AtomicLong;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import org.hibernate.SessionFactory;
+import org.hibernate.stat.Statistics;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.boot.test.context.TestConfiguration;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Primary;
+import org.springframework.jdbc.core.JdbcTemplate;
+
+import ecommerce.dto.CarrinhoCheckoutDTO;
+import ecommerce.dto.CompraDTO;
+import ecommerce.dto.DisponibilidadeDTO;
+import ecommerce.dto.EstoqueBaixaDTO;
+import ecommerce.dto.PagamentoDTO;
+import ecommerce.entity.CarrinhoDeCompras;
+import ecommerce.entity.Cliente;
+import ecommerce.entity.ItemCompra;
+import ecommerce.entity.Produto;
+import ecommerce.entity.Regiao;
+import ecommerce.entity.TipoCliente;
+import ecommerce.entity.TipoProduto;
+import ecommerce.external.IEstoqueExternal;
+import ecommerce.external.IPagamentoExternal;
+import ecommerce.repository.CarrinhoDeComprasRepository;
+import ecommerce.repository.ClienteRepository;
+import ecommerce.repository.ProdutoRepository;
+import jakarta.persistence.EntityManagerFactory;
+
+/**
+ * Número exato de comandos SQL por checkout, contados pelas estatísticas do Hibernate: as
+ * linhas do carrinho vêm numa única consulta, qualquer que seja o número de itens,
+ * e o cliente, do cache de segundo nível depois da primeira leitura.
+ */
+@SpringBootTest(webEnvironment = SpringBootTest.WebEnvironment.NONE, properties = {
+		"spring.jpa.properties.hibernate.generate_statistics=true",
+		"ecommerce.outbox.despachante.habilitado=false" })
+@DisplayName("CompraService - comandos SQL por checkout")
+public class CompraServiceConsultasTest
+{
+	private static final int LINHAS = 200;
+
+	@Autowired
+	private CompraService compraService;
+
+	@Autowired
+	private ClienteRepository clienteRepository;
+
+	@Autowired
+	private ProdutoRepository produtoRepository;
+
+	@Autowired
+	private CarrinhoDeComprasRepository carrinhoRepository;
+
+	@Autowired
+	private EntityManagerFactory entityManagerFactory;
+
+	@Autowired
+	private CacheEntidades cacheEntidades;
+
+	@Autowired
+	private CarrinhoDeComprasService carrinhoService;
+
+	@Autowired
+	private JdbcTemplate jdbcTemplate;
+
+	private Statistics estatisticas;
+
+	private Cliente cliente;
+	private CarrinhoDeCompras carrinho;
+
+	@BeforeEach
+	void setUp()
+	{
+		cliente = clienteRepository.save(new Cliente(null, "Cliente", Regiao.SUDESTE, TipoCliente.BRONZE));
+
+		List<ItemCompra> itens = new ArrayList<>();
+		for (int i = 0; i < LINHAS; i++)
+		{
+			Produto produto = produtoRepository.save(new Produto(null, "Produto " + i, null, new BigDecimal("9.90"),
+					new BigDecimal("0.10"), null, null, null, i % 2 == 0, TipoProduto.LIVRO));
+			itens.add(new ItemCompra(null, produto, 1L));
+		}
+		carrinho = carrinhoRepository.save(new CarrinhoDeCompras(null, cliente, itens, LocalDate.now()));
+
+		// Cache de segundo nível vazio: cada teste parte das mesmas faltas
+		entityManagerFactory.getCache().evictAll();
+		estatisticas = entityManagerFactory.unwrap(SessionFactory.class).getStatistics();
+		estatisticas.clear();
+	}
+
+	@Test
+	@DisplayName("Checkout de 200 itens: cliente, linhas do carrinho e o outbox")
+	void deveFinalizarComTresComandos()
+	{
+		// Act
+		CompraDTO resultado = compraService.finalizarCompra(carrinho.getId(), cliente.getId());
+
+		// Assert: SELECT cliente (cache vazio); SELECT linhas (itens + produtos, por projeção,
+		// limitadas ao limiar de carrinhos grandes); INSERT evento de compra finalizada
+		assertThat(resultado.sucesso()).isTrue();
+		assertThat(estatisticas.getPrepareStatementCount()).isEqualTo(3);
+		assertThat(estatisticas.getEntityFetchCount()).isZero();
+		assertThat(estatisticas.getCollectionFetchCount()).isZero();
+		assertThat(estatisticas.getEntityInsertCount()).isEqualTo(1);
+	}
+
+	@Test
+	@DisplayName("Linhas do checkout por projeção: uma consulta e nenhuma entidade carregada")
+	void deveLerLinhasSemCarregarEntidades()
+	{
+		// Act
+		CarrinhoCheckoutDTO paraCheckout = carrinhoService.buscarParaCheckout(carrinho.getId(), cliente);
+
+		// Assert
+		assertThat(paraCheckout.linhas()).hasSize(LINHAS);
+		assertThat(paraCheckout.linhas().get(0).preco()).isEqualByComparingTo("9.90");
+		assertThat(paraCheckout.versao()).isEqualTo(carrinho.getVersao());
+		assertThat(estatisticas.getPrepareStatementCount()).isEqualTo(1);
+		assertThat(estatisticas.getEntityLoadCount()).isZero();
+	}
+
+	@Test
+	@DisplayName("Cotação pelo preço atual das linhas, não pelos totais gravados")
+	void deveCotarPeloPrecoAtualComTotaisGravados()
+	{
+		// Arrange
+		Produto produto = produtoRepository.save(new Produto(null, "Avulso", null, new BigDecimal("10.00"),
+				new BigDecimal("1.00"), null, null, null, false, TipoProduto.LIVRO));
+		CarrinhoDeCompras comTotais = new CarrinhoDeCompras(null, cliente,
+				new ArrayList<>(List.of(new ItemCompra(null, produto, 3L))), LocalDate.now());
+		comTotais.recalcularTotais();
+		comTotais = carrinhoRepository.save(comTotais);
+		// Preço alterado direto no banco, sem os listeners: os totais gravados ficam
+		// com o preço antigo
+		jdbcTemplate.update("update produto set preco = 99.00 where id = ?", produto.getId());
+
+		// Act
+		BigDecimal custo = compraService.cotar(comTotais.getId(), cliente.getId());
+
+		// Assert: 3 x R$ 99, sem desconto abaixo de R$ 500, 3 kg com frete isento
+		assertThat(comTotais.getTotais()).isNotNull();
+		assertThat(custo).isEqualByComparingTo("297.00");
+	}
+
+	@Test
+	@DisplayName("Segundo checkout do cliente: cliente lido do cache de segundo nível")
+	void deveLerClienteDoCacheNoSegundoCheckout()
+	{
+		// Arrange
+		compraService.finalizarCompra(carrinho.getId(), cliente.getId());
+		estatisticas.clear();
+
+		// Act
+		CompraDTO resultado = compraService.finalizarCompra(carrinho.getId(), cliente.getId());
+
+		// Assert: carrinho e outbox
+		assertThat(resultado.sucesso()).isTrue();
+		assertThat(estatisticas.getPrepareStatementCount()).isEqualTo(2);
+		assertThat(estatisticas.getDomainDataRegionStatistics(Cliente.REGIAO_CACHE).getHitCount()).isPositive();
+		assertThat(cacheEntidades.taxaAcerto(Cliente.REGIAO_CACHE)).isPositive();
+	}
+
+	@Test
+	@DisplayName("Cliente invalidado: volta a ser lido do banco")
+	void deveRelerClienteInvalidado()
+	{
+		// Arrange
+		compraService.finalizarCompra(carrinho.getId(), cliente.getId());
+		cacheEntidades.invalidarCliente(cliente.getId());
+		estatisticas.clear();
+
+		// Act
+		compraService.finalizarCompra(carrinho.getId(), cliente.getId());
+
+		// Assert
+		assertThat(estatisticas.getPrepareStatementCount()).isEqualTo(3);
+	}
+
+	@Test
+	@DisplayName("Consulta de clientes repetida: ids do cache de consultas e entidades do segundo nível")
+	void deveRepetirConsultaSemComandos()
+	{
+		// Arrange
+		clienteRepository.findAllById(List.of(cliente.getId()));
+		estatisticas.clear();
+
+		// Act
+		List<Cliente> clientes = clienteRepository.findAllById(List.of(cliente.getId()));
+
+		// Assert
+		assertThat(clientes).extracting(Cliente::getId).containsExactly(cliente.getId());
+		assertThat(estatisticas.getPrepareStatementCount()).isZero();
+		assertThat(estatisticas.getQueryCacheHitCount()).isEqualTo(1);
+	}
+
+	@Test
+	@DisplayName("Cotação de 200 itens: cliente e linhas do carrinho")
+	void deveCotarComDoisComandos()
+	{
+		// Act
+		BigDecimal custo = compraService.cotar(carrinho.getId(), cliente.getId());
+
+		// Assert
+		assertThat(custo).isPositive();
+		assertThat(estatisticas.getPrepareStatementCount()).isEqualTo(2);
+		assertThat(estatisticas.getEntityFetchCount()).isZero();
+		assertThat(estatisticas.getCollectionFetchCount()).isZero();
+	}
+
+	@TestConfiguration
+	static class ServicosExternos
+	{
+		@Bean
+		@Primary
+		IEstoqueExternal estoqueDisponivel()
+		{
+			return new IEstoqueExternal()
+			{
+				@Override
+				public DisponibilidadeDTO verificarDisponibilidade(List<Long> produtosIds,
+						List<Long> produtosQuantidades)
+				{
+					return new DisponibilidadeDTO(true, new ArrayList<>());
+				}
+
+				@Override
+				public EstoqueBaixaDTO darBaixa(List<Long> produtosIds, List<Long> produtosQuantidades)
+				{
+					return new EstoqueBaixaDTO(true);
+				}
+			};
+		}
+
+		@Bean
+		@Primary
+		IPagamentoExternal pagamentoAutorizado()
+		{
+			AtomicLong transacoes = new AtomicLong(5000);
+			return new IPagamentoExternal()
+			{
+				@Override
+				public PagamentoDTO autorizarPagamento(Long clienteId, Double custoTotal)
+				{
+					return new PagamentoDTO(true, transacoes.incrementAndGet());
+				}
+
+				@Override
+				public void cancelarPagamento(Long clienteId, Long pagamentoTransacaoId)
+				{
+				}
+			};
+		}
+	}
+}
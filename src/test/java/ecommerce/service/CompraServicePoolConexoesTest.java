@@ -0,0 +1,213 @@
+package ecommerce.service;
+
+import java.math.BigDecimal;
+import java.time.LocalDate;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.boot.test.context.TestConfiguration;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Primary;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import ecommerce.dto.CompraDTO;
+import ecommerce.dto.DisponibilidadeDTO;
+import ecommerce.dto.EstoqueBaixaDTO;
+import ecommerce.dto.PagamentoDTO;
+import ecommerce.entity.CarrinhoDeCompras;
+import ecommerce.entity.Cliente;
+import ecommerce.entity.ItemCompra;
+import ecommerce.entity.Produto;
+import ecommerce.entity.Regiao;
+import ecommerce.entity.TipoCliente;
+import ecommerce.entity.TipoProduto;
+import ecommerce.external.IEstoqueExternal;
+import ecommerce.external.IPagamentoExternal;
+import ecommerce.repository.CarrinhoDeComprasRepository;
+import ecommerce.repository.ClienteRepository;
+import ecommerce.repository.ProdutoRepository;
+
+/**
+ * Benchmark: quantas compras simultâneas um pool de conexões pequeno sustenta quando a
+ * transação envolve as chamadas externas (como antes) e quando o checkout só usa o banco nas
+ * leituras (como agora).
+ */
+@SpringBootTest(webEnvironment = SpringBootTest.WebEnvironment.NONE, properties = {
+		"spring.datasource.hikari.maximum-pool-size=" + CompraServicePoolConexoesTest.CONEXOES,
+		"spring.datasource.hikari.connection-timeout=60000",
+		"ecommerce.dependencias.estoque.concorrencia-maxima=200",
+		"ecommerce.dependencias.pagamento.concorrencia-maxima=200" })
+@DisplayName("Pool de conexões - compras simultâneas com e sem transação durante chamadas externas")
+public class CompraServicePoolConexoesTest
+{
+	static final int CONEXOES = 4;
+	private static final int COMPRAS = 40;
+	private static final long LATENCIA_EXTERNA_MS = 50;
+
+	private static final AtomicInteger emAndamento = new AtomicInteger();
+	private static final AtomicInteger picoEmAndamento = new AtomicInteger();
+
+	@Autowired
+	private CompraService compraService;
+
+	@Autowired
+	private TransactionTemplate transactionTemplate;
+
+	@Autowired
+	private ClienteRepository clienteRepository;
+
+	@Autowired
+	private ProdutoRepository produtoRepository;
+
+	@Autowired
+	private CarrinhoDeComprasRepository carrinhoRepository;
+
+	private List<CarrinhoDeCompras> carrinhos;
+
+	@BeforeEach
+	void setUp()
+	{
+		emAndamento.set(0);
+		picoEmAndamento.set(0);
+
+		Produto produto = produtoRepository.save(new Produto(null, "Livro", "Livro", BigDecimal.valueOf(50.00),
+				BigDecimal.valueOf(1.0), null, null, null, false, TipoProduto.LIVRO));
+
+		carrinhos = new ArrayList<>();
+		for (int i = 0; i < COMPRAS; i++)
+		{
+			Cliente cliente = clienteRepository.save(new Cliente(null, "Cliente " + i, Regiao.SUDESTE,
+					TipoCliente.BRONZE));
+			List<ItemCompra> itens = new ArrayList<>();
+			itens.add(new ItemCompra(null, produto, 1L));
+			carrinhos.add(carrinhoRepository.save(new CarrinhoDeCompras(null, cliente, itens, LocalDate.now())));
+		}
+	}
+
+	@Test
+	@DisplayName("Antes: transação aberta durante as chamadas externas limita as compras ao pool")
+	void transacaoDuranteChamadasExternasLimitaAoPool() throws Exception
+	{
+		long duracaoMs = executarCarga(true);
+
+		System.out.printf("[com transação] pool de %d conexões: %d compras em %d ms, pico de %d em andamento%n",
+				CONEXOES, COMPRAS, duracaoMs, picoEmAndamento.get());
+		assertThat(picoEmAndamento.get()).isLessThanOrEqualTo(CONEXOES);
+	}
+
+	@Test
+	@DisplayName("Depois: sem transação nas chamadas externas, as compras simultâneas excedem o pool")
+	void semTransacaoComprasExcedemPool() throws Exception
+	{
+		long duracaoMs = executarCarga(false);
+
+		System.out.printf("[sem transação] pool de %d conexões: %d compras em %d ms, pico de %d em andamento%n",
+				CONEXOES, COMPRAS, duracaoMs, picoEmAndamento.get());
+		assertThat(picoEmAndamento.get()).isGreaterThan(CONEXOES * 2);
+	}
+
+	private long executarCarga(boolean transacaoEnvolvente) throws Exception
+	{
+		ExecutorService requisicoes = Executors.newFixedThreadPool(COMPRAS);
+		try
+		{
+			long inicio = System.nanoTime();
+			List<CompletableFuture<CompraDTO>> compras = new ArrayList<>();
+			for (CarrinhoDeCompras carrinho : carrinhos)
+			{
+				Long carrinhoId = carrinho.getId();
+				Long clienteId = carrinho.getCliente().getId();
+				compras.add(CompletableFuture.supplyAsync(() -> transacaoEnvolvente
+						? transactionTemplate.execute(status -> compraService.finalizarCompra(carrinhoId, clienteId))
+						: compraService.finalizarCompra(carrinhoId, clienteId), requisicoes));
+			}
+			CompletableFuture.allOf(compras.toArray(CompletableFuture[]::new)).get(2, TimeUnit.MINUTES);
+			long duracaoMs = TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - inicio);
+
+			assertThat(compras).allSatisfy(compra -> assertThat(compra.join().sucesso()).isTrue());
+			return duracaoMs;
+		}
+		finally
+		{
+			requisicoes.shutdown();
+		}
+	}
+
+	private static void simularLatencia()
+	{
+		int atual = emAndamento.incrementAndGet();
+		picoEmAndamento.accumulateAndGet(atual, Math::max);
+		try
+		{
+			Thread.sleep(LATENCIA_EXTERNA_MS);
+		}
+		catch (InterruptedException e)
+		{
+			Thread.currentThread().interrupt();
+		}
+		finally
+		{
+			emAndamento.decrementAndGet();
+		}
+	}
+
+	@TestConfiguration
+	static class ServicosExternosLentos
+	{
+		@Bean
+		@Primary
+		IEstoqueExternal estoqueLento()
+		{
+			return new IEstoqueExternal()
+			{
+				@Override
+				public DisponibilidadeDTO verificarDisponibilidade(List<Long> produtosIds,
+						List<Long> produtosQuantidades)
+				{
+					simularLatencia();
+					return new DisponibilidadeDTO(true, new ArrayList<>());
+				}
+
+				@Override
+				public EstoqueBaixaDTO darBaixa(List<Long> produtosIds, List<Long> produtosQuantidades)
+				{
+					simularLatencia();
+					return new EstoqueBaixaDTO(true);
+				}
+			};
+		}
+
+		@Bean
+		@Primary
+		IPagamentoExternal pagamentoLento()
+		{
+			AtomicLong transacoes = new AtomicLong(9000);
+			return new IPagamentoExternal()
+			{
+				@Override
+				public PagamentoDTO autorizarPagamento(Long clienteId, Double custoTotal)
+				{
+					simularLatencia();
+					return new PagamentoDTO(true, transacoes.incrementAndGet());
+				}
+
+				@Override
+				public void cancelarPagamento(Long clienteId, Long pagamentoTransacaoId)
+				{
+				}
+			};
+		}
+	}
+}
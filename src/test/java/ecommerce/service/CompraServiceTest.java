@@ -35,7 +35,7 @@ public class CompraServiceTest
     @BeforeEach
     void setUp() {
         // Assume que CompraService requer injeção de dependência para outros serviços/repos
-        compraService = new CompraService(null, null, null, null);
+        compraService = CompraServiceBuilder.compraService(null, null).criar();
 
         produtoPadrao = new Produto(
                 1L,"Laranja","Fruta boa",PRECO_PADRAO_10,PESO_PADRAO_1,null,null,null,false,TipoProduto.ALIMENTO
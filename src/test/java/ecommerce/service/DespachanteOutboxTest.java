@@ -0,0 +1,197 @@
+package ecommerce.service;
+
+import java.time.Duration;
+import java.time.Instant;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.eq;
+import static org.mockito.Mockito.doThrow;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.times;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+import org.springframework.context.ApplicationEventPublisher;
+import org.springframework.dao.OptimisticLockingFailureException;
+
+import ecommerce.entity.EventoOutbox;
+import ecommerce.entity.StatusEventoOutbox;
+import ecommerce.entity.TipoEventoOutbox;
+import ecommerce.external.IPagamentoExternalAsync;
+import ecommerce.repository.EventoOutboxRepository;
+
+@DisplayName("DespachanteOutbox - entrega de compensações e eventos do checkout")
+public class DespachanteOutboxTest
+{
+	private EventoOutboxRepository repository;
+	private IPagamentoExternalAsync pagamentoExternal;
+	private ApplicationEventPublisher eventos;
+	private DespachanteOutbox despachante;
+
+	@BeforeEach
+	void setUp()
+	{
+		repository = mock(EventoOutboxRepository.class);
+		pagamentoExternal = mock(IPagamentoExternalAsync.class);
+		eventos = mock(ApplicationEventPublisher.class);
+		despachante = new DespachanteOutbox(repository, pagamentoExternal, eventos, 10, 3, Duration.ofSeconds(1),
+				Duration.ofSeconds(3), Duration.ofSeconds(5));
+	}
+
+	@Test
+	@DisplayName("Deve cancelar o pagamento e concluir o evento")
+	void deveEntregarCancelamento()
+	{
+		// Arrange
+		EventoOutbox evento = cancelamento(2001L);
+		pendentes(List.of(evento));
+		when(pagamentoExternal.cancelarPagamento(eq(1L), eq(2001L), any()))
+				.thenReturn(CompletableFuture.completedFuture(null));
+
+		// Act
+		int processados = despachante.processarLote();
+
+		// Assert
+		assertThat(processados).isEqualTo(1);
+		assertThat(evento.getStatus()).isEqualTo(StatusEventoOutbox.CONCLUIDO);
+		assertThat(evento.getVersao()).isEqualTo(1L);
+		verify(repository, times(1)).save(evento);
+	}
+
+	@Test
+	@DisplayName("Deve reagendar com espera exponencial quando a entrega falha")
+	void deveReagendarQuandoEntregaFalha()
+	{
+		// Arrange
+		EventoOutbox evento = cancelamento(2001L);
+		evento.setTentativas(1);
+		pendentes(List.of(evento));
+		when(pagamentoExternal.cancelarPagamento(any(), any(), any()))
+				.thenReturn(CompletableFuture.failedFuture(new IllegalStateException("Pagamento indisponível")));
+		Instant antes = Instant.now();
+
+		// Act
+		despachante.processarLote();
+
+		// Assert: segunda tentativa espera 2x a inicial
+		assertThat(evento.getStatus()).isEqualTo(StatusEventoOutbox.PENDENTE);
+		assertThat(evento.getTentativas()).isEqualTo(2);
+		assertThat(evento.getUltimoErro()).isEqualTo("Pagamento indisponível");
+		assertThat(evento.getProximaTentativaEm()).isAfterOrEqualTo(antes.plusSeconds(2));
+	}
+
+	@Test
+	@DisplayName("Deve marcar como falho após o limite de tentativas sem afetar os demais do lote")
+	void deveMarcarFalhoAposLimiteDeTentativas()
+	{
+		// Arrange
+		EventoOutbox falho = cancelamento(2001L);
+		falho.setTentativas(2);
+		EventoOutbox entregue = cancelamento(2002L);
+		pendentes(List.of(falho, entregue));
+		when(pagamentoExternal.cancelarPagamento(eq(1L), eq(2001L), any()))
+				.thenReturn(CompletableFuture.failedFuture(new IllegalStateException("Transação inválida")));
+		when(pagamentoExternal.cancelarPagamento(eq(1L), eq(2002L), any()))
+				.thenReturn(CompletableFuture.completedFuture(null));
+
+		// Act
+		despachante.processarLote();
+
+		// Assert
+		assertThat(falho.getStatus()).isEqualTo(StatusEventoOutbox.FALHOU);
+		assertThat(entregue.getStatus()).isEqualTo(StatusEventoOutbox.CONCLUIDO);
+	}
+
+	@Test
+	@DisplayName("Evento reservado por outra instância não deve ser entregue")
+	void naoDeveEntregarEventoReservadoPorOutraInstancia()
+	{
+		// Arrange
+		EventoOutbox reservado = cancelamento(2001L);
+		EventoOutbox livre = cancelamento(2002L);
+		reservado.setId(1L);
+		livre.setId(2L);
+		pendentes(List.of(reservado, livre));
+		when(repository.reservar(eq(1L), any(), any(), any())).thenReturn(0);
+		when(pagamentoExternal.cancelarPagamento(eq(1L), eq(2002L), any()))
+				.thenReturn(CompletableFuture.completedFuture(null));
+
+		// Act
+		despachante.processarLote();
+
+		// Assert
+		verify(pagamentoExternal, never()).cancelarPagamento(eq(1L), eq(2001L), any());
+		verify(repository, never()).save(reservado);
+		assertThat(reservado.getStatus()).isEqualTo(StatusEventoOutbox.PENDENTE);
+		assertThat(livre.getStatus()).isEqualTo(StatusEventoOutbox.CONCLUIDO);
+	}
+
+	@Test
+	@DisplayName("Conflito de versão num evento não deve descartar a gravação dos demais")
+	void conflitoDeVersaoNaoDeveDescartarDemais()
+	{
+		// Arrange
+		EventoOutbox conflito = cancelamento(2001L);
+		EventoOutbox entregue = cancelamento(2002L);
+		pendentes(List.of(conflito, entregue));
+		when(pagamentoExternal.cancelarPagamento(any(), any(), any()))
+				.thenReturn(CompletableFuture.completedFuture(null));
+		doThrow(new OptimisticLockingFailureException("versão alterada")).when(repository).save(conflito);
+
+		// Act
+		int processados = despachante.processarLote();
+
+		// Assert
+		assertThat(processados).isEqualTo(2);
+		verify(repository, times(1)).save(entregue);
+	}
+
+	@Test
+	@DisplayName("Deve publicar o evento de compra finalizada")
+	void devePublicarCompraFinalizada()
+	{
+		// Arrange
+		EventoOutbox evento = new EventoOutbox(TipoEventoOutbox.COMPRA_FINALIZADA, 7L, 1L, 3001L, Instant.now());
+		evento.setVersao(0L);
+		pendentes(List.of(evento));
+
+		// Act
+		despachante.processarLote();
+
+		// Assert
+		verify(eventos, times(1)).publishEvent(new CompraFinalizadaEvento(7L, 1L, 3001L));
+		assertThat(evento.getStatus()).isEqualTo(StatusEventoOutbox.CONCLUIDO);
+	}
+
+	@Test
+	@DisplayName("Espera entre tentativas deve dobrar até o máximo")
+	void esperaDeveDobrarAteOMaximo()
+	{
+		assertThat(despachante.espera(1)).isEqualTo(Duration.ofSeconds(1));
+		assertThat(despachante.espera(2)).isEqualTo(Duration.ofSeconds(2));
+		assertThat(despachante.espera(3)).isEqualTo(Duration.ofSeconds(3));
+		assertThat(despachante.espera(40)).isEqualTo(Duration.ofSeconds(3));
+	}
+
+	private void pendentes(List<EventoOutbox> lote)
+	{
+		when(repository.findByStatusAndProximaTentativaEmLessThanEqualOrderByIdAsc(eq(StatusEventoOutbox.PENDENTE),
+				any(), any())).thenReturn(lote);
+		when(repository.reservar(any(), any(), any(), any())).thenReturn(1);
+	}
+
+	private static EventoOutbox cancelamento(Long transacaoId)
+	{
+		EventoOutbox evento = new EventoOutbox(TipoEventoOutbox.CANCELAR_PAGAMENTO, null, 1L, transacaoId,
+				Instant.now());
+		evento.setVersao(0L);
+		return evento;
+	}
+}
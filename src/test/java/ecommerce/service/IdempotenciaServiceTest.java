@@ -0,0 +1,301 @@
+package ecommerce.service;
+
+import java.math.BigDecimal;
+import java.time.Duration;
+import java.time.Instant;
+import java.time.LocalDate;
+import java.util.ArrayList;
+import java.util.Optional;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+import ecommerce.dto.CompraDTO;
+import ecommerce.entity.CarrinhoDeCompras;
+import ecommerce.entity.CompraIdempotente;
+import ecommerce.entity.ItemCompra;
+import ecommerce.entity.Produto;
+import ecommerce.entity.TipoProduto;
+import ecommerce.repository.CompraIdempotenteRepository;
+
+@DisplayName("IdempotenciaService - retentativas de finalizarCompra")
+public class IdempotenciaServiceTest
+{
+	private IdempotenciaService idempotencia;
+	private AtomicInteger execucoes;
+
+	@BeforeEach
+	void setUp()
+	{
+		idempotencia = new IdempotenciaService(Duration.ofHours(1), 100);
+		execucoes = new AtomicInteger();
+	}
+
+	@Test
+	@DisplayName("Deve retornar o resultado guardado sem executar a compra de novo")
+	void deveRetornarResultadoGuardado()
+	{
+		// Act
+		CompraDTO primeira = idempotencia.executar("chave-1", 1L, 1L, this::compraComSucesso);
+		CompraDTO retentativa = idempotencia.executar("chave-1", 1L, 1L, this::compraComSucesso);
+
+		// Assert
+		assertThat(retentativa).isEqualTo(primeira);
+		assertThat(execucoes.get()).isEqualTo(1);
+	}
+
+	@Test
+	@DisplayName("Requisição duplicada concorrente deve aguardar a primeira em vez de repetir a compra")
+	void deveAguardarExecucaoEmAndamento() throws Exception
+	{
+		// Arrange
+		CountDownLatch iniciou = new CountDownLatch(1);
+		CountDownLatch liberar = new CountDownLatch(1);
+
+		CompletableFuture<CompraDTO> primeira = CompletableFuture.supplyAsync(
+				() -> idempotencia.executar("chave-1", 1L, 1L, () -> {
+					iniciou.countDown();
+					aguardar(liberar);
+					return compraComSucesso();
+				}));
+		assertThat(iniciou.await(5, TimeUnit.SECONDS)).isTrue();
+
+		// Act
+		CompletableFuture<CompraDTO> duplicada = CompletableFuture.supplyAsync(
+				() -> idempotencia.executar("chave-1", 1L, 1L, this::compraComSucesso));
+		Thread.sleep(50);
+		assertThat(duplicada).isNotDone();
+		liberar.countDown();
+
+		// Assert
+		assertThat(duplicada.get(5, TimeUnit.SECONDS)).isEqualTo(primeira.get(5, TimeUnit.SECONDS));
+		assertThat(execucoes.get()).isEqualTo(1);
+	}
+
+	@Test
+	@DisplayName("Falha não deve ser guardada: a retentativa executa a compra")
+	void naoDeveGuardarFalha()
+	{
+		// Act
+		assertThrows(IllegalStateException.class, () -> idempotencia.executar("chave-1", 1L, 1L, () -> {
+			execucoes.incrementAndGet();
+			throw new IllegalStateException("Pagamento não autorizado.");
+		}));
+		CompraDTO retentativa = idempotencia.executar("chave-1", 1L, 1L, this::compraComSucesso);
+
+		// Assert
+		assertThat(retentativa.sucesso()).isTrue();
+		assertThat(execucoes.get()).isEqualTo(2);
+	}
+
+	@Test
+	@DisplayName("Deve rejeitar chave reutilizada para outro carrinho")
+	void deveRejeitarChaveDeOutraCompra()
+	{
+		// Arrange
+		idempotencia.executar("chave-1", 1L, 1L, this::compraComSucesso);
+
+		// Act & Assert
+		IllegalArgumentException exception = assertThrows(IllegalArgumentException.class,
+				() -> idempotencia.executar("chave-1", 2L, 1L, this::compraComSucesso));
+		assertThat(exception.getMessage()).isEqualTo("Chave de idempotência já usada em outra compra.");
+		assertThat(execucoes.get()).isEqualTo(1);
+	}
+
+	@Test
+	@DisplayName("Deve descartar as chaves menos usadas ao exceder a capacidade")
+	void deveRespeitarCapacidade()
+	{
+		// Arrange
+		idempotencia = new IdempotenciaService(Duration.ofHours(1), 2);
+
+		// Act
+		idempotencia.executar("a", 1L, 1L, this::compraComSucesso);
+		idempotencia.executar("b", 2L, 2L, this::compraComSucesso);
+		idempotencia.executar("c", 3L, 3L, this::compraComSucesso);
+		idempotencia.executar("a", 1L, 1L, this::compraComSucesso);
+
+		// Assert: "a" foi descartada ao entrar "c" e teve de ser executada de novo
+		assertThat(execucoes.get()).isEqualTo(4);
+	}
+
+	@Test
+	@DisplayName("Compra em andamento não deve ser descartada ao exceder a capacidade")
+	void naoDeveDescartarCompraEmAndamento() throws Exception
+	{
+		// Arrange
+		idempotencia = new IdempotenciaService(Duration.ofHours(1), 1);
+		CountDownLatch iniciou = new CountDownLatch(1);
+		CountDownLatch liberar = new CountDownLatch(1);
+		CompletableFuture<CompraDTO> emAndamento = CompletableFuture.supplyAsync(
+				() -> idempotencia.executar("lenta", 1L, 1L, () -> {
+					iniciou.countDown();
+					aguardar(liberar);
+					return compraComSucesso();
+				}));
+		assertThat(iniciou.await(5, TimeUnit.SECONDS)).isTrue();
+
+		// Act: outras chaves excedem a capacidade enquanto "lenta" executa
+		idempotencia.executar("b", 2L, 2L, this::compraComSucesso);
+		idempotencia.executar("c", 3L, 3L, this::compraComSucesso);
+		CompletableFuture<CompraDTO> retentativa = CompletableFuture.supplyAsync(
+				() -> idempotencia.executar("lenta", 1L, 1L, this::compraComSucesso));
+		liberar.countDown();
+
+		// Assert: a retentativa aguardou a execução em andamento
+		assertThat(retentativa.get(5, TimeUnit.SECONDS)).isEqualTo(emAndamento.get(5, TimeUnit.SECONDS));
+		assertThat(execucoes.get()).isEqualTo(3);
+	}
+
+	@Test
+	@DisplayName("Duplicada deve desistir após a espera máxima sem afetar a compra em andamento")
+	void deveLimitarEsperaDaDuplicada() throws Exception
+	{
+		// Arrange
+		idempotencia = new IdempotenciaService(Duration.ofHours(1), 100, Duration.ofMillis(50));
+		CountDownLatch iniciou = new CountDownLatch(1);
+		CountDownLatch liberar = new CountDownLatch(1);
+		CompletableFuture<CompraDTO> primeira = CompletableFuture.supplyAsync(
+				() -> idempotencia.executar("chave-1", 1L, 1L, () -> {
+					iniciou.countDown();
+					aguardar(liberar);
+					return compraComSucesso();
+				}));
+		assertThat(iniciou.await(5, TimeUnit.SECONDS)).isTrue();
+
+		// Act
+		IllegalStateException exception = assertThrows(IllegalStateException.class,
+				() -> idempotencia.executar("chave-1", 1L, 1L, this::compraComSucesso));
+		liberar.countDown();
+
+		// Assert
+		assertThat(exception.getMessage()).isEqualTo("Compra com a mesma chave ainda em andamento.");
+		assertThat(primeira.get(5, TimeUnit.SECONDS).sucesso()).isTrue();
+		assertThat(execucoes.get()).isEqualTo(1);
+	}
+
+	@Test
+	@DisplayName("Compra em andamento além do prazo é considerada abandonada e executada de novo")
+	void deveAssumirCompraAbandonada() throws Exception
+	{
+		// Arrange: a primeira execução nunca conclui, como se o dono tivesse morrido
+		idempotencia = new IdempotenciaService(Duration.ofHours(1), 100, Duration.ofMillis(20), Duration.ofMillis(50));
+		CountDownLatch iniciou = new CountDownLatch(1);
+		CountDownLatch liberar = new CountDownLatch(1);
+		CompletableFuture.runAsync(() -> idempotencia.executar("chave-1", 1L, 1L, () -> {
+			iniciou.countDown();
+			aguardar(liberar);
+			return compraComSucesso();
+		}));
+		assertThat(iniciou.await(5, TimeUnit.SECONDS)).isTrue();
+
+		// Act
+		Thread.sleep(80);
+		CompraDTO retentativa = idempotencia.executar("chave-1", 1L, 1L, this::compraComSucesso);
+
+		// Assert
+		assertThat(retentativa.sucesso()).isTrue();
+		assertThat(execucoes.get()).isEqualTo(1);
+		liberar.countDown();
+	}
+
+	@Test
+	@DisplayName("Desligada deve executar a compra a cada chamada")
+	void desligadaDeveSempreExecutar()
+	{
+		// Arrange
+		idempotencia = IdempotenciaService.desligada();
+
+		// Act
+		idempotencia.executar("chave-1", 1L, 1L, this::compraComSucesso);
+		idempotencia.executar("chave-1", 1L, 1L, this::compraComSucesso);
+
+		// Assert
+		assertThat(execucoes.get()).isEqualTo(2);
+	}
+
+	@Test
+	@DisplayName("Chave padrão muda quando os itens do carrinho mudam")
+	void chavePadraoDeveMudarComConteudoDoCarrinho()
+	{
+		// Arrange
+		Produto produto = new Produto(1L, "Livro", null, BigDecimal.TEN, BigDecimal.ONE, null, null, null, false,
+				TipoProduto.LIVRO);
+		CarrinhoDeCompras carrinho = new CarrinhoDeCompras(1L, null, new ArrayList<>(), LocalDate.now());
+		carrinho.adicionarItem(new ItemCompra(1L, produto, 1L));
+		String antes = IdempotenciaService.chavePadrao(1L, 1L, carrinho.getVersao());
+
+		// Act
+		carrinho.adicionarItem(new ItemCompra(2L, produto, 1L));
+		String depois = IdempotenciaService.chavePadrao(1L, 1L, carrinho.getVersao());
+
+		// Assert
+		assertThat(depois).isNotEqualTo(antes);
+		assertThat(IdempotenciaService.chavePadrao(1L, 1L, carrinho.getVersao())).isEqualTo(depois);
+	}
+
+	@Test
+	@DisplayName("Deve executar de novo após a validade expirar")
+	void deveExpirarResultado() throws Exception
+	{
+		// Arrange
+		idempotencia = new IdempotenciaService(Duration.ofMillis(10), 100);
+		idempotencia.executar("chave-1", 1L, 1L, this::compraComSucesso);
+
+		// Act
+		Thread.sleep(30);
+		idempotencia.executar("chave-1", 1L, 1L, this::compraComSucesso);
+
+		// Assert
+		assertThat(execucoes.get()).isEqualTo(2);
+	}
+
+	@Test
+	@DisplayName("Deve usar o resultado persistido quando a chave não está em memória")
+	void deveUsarResultadoPersistido()
+	{
+		// Arrange
+		CompraIdempotenteRepository repository = mock(CompraIdempotenteRepository.class);
+		when(repository.findById("chave-1")).thenReturn(Optional.of(
+				new CompraIdempotente("chave-1", "1:1", 77L, "Compra finalizada com sucesso.", Instant.now())));
+		idempotencia = new IdempotenciaService(repository, true, Duration.ofHours(1), 100,
+				IdempotenciaService.ESPERA_MAXIMA_PADRAO, IdempotenciaService.PRAZO_EM_ANDAMENTO_PADRAO);
+
+		// Act
+		CompraDTO resultado = idempotencia.executar("chave-1", 1L, 1L, this::compraComSucesso);
+
+		// Assert
+		assertThat(resultado).isEqualTo(new CompraDTO(true, 77L, "Compra finalizada com sucesso."));
+		assertThat(execucoes.get()).isZero();
+		verify(repository, never()).save(any());
+	}
+
+	private CompraDTO compraComSucesso()
+	{
+		return new CompraDTO(true, 1000L + execucoes.incrementAndGet(), "Compra finalizada com sucesso.");
+	}
+
+	private static void aguardar(CountDownLatch latch)
+	{
+		try
+		{
+			latch.await(5, TimeUnit.SECONDS);
+		}
+		catch (InterruptedException e)
+		{
+			Thread.currentThread().interrupt();
+		}
+	}
+}
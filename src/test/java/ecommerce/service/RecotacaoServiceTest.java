@@ -0,0 +1,239 @@
+package ecommerce.service;
+
+import java.math.BigDecimal;
+import java.time.LocalDate;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyIterable;
+import static org.mockito.ArgumentMatchers.anyLong;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.when;
+
+import org.springframework.transaction.support.TransactionOperations;
+
+import ecommerce.entity.CarrinhoDeCompras;
+import ecommerce.entity.Cliente;
+import ecommerce.entity.CotacaoCarrinho;
+import ecommerce.entity.ExecucaoRecotacao;
+import ecommerce.entity.ItemCompra;
+import ecommerce.entity.Produto;
+import ecommerce.entity.Regiao;
+import ecommerce.entity.StatusExecucaoRecotacao;
+import ecommerce.entity.TipoCliente;
+import ecommerce.entity.TipoProduto;
+import ecommerce.repository.CotacaoCarrinhoRepository;
+import ecommerce.repository.ExecucaoRecotacaoRepository;
+import ecommerce.repository.fake.CarrinhoDeComprasRepositoryFake;
+import ecommerce.service.preco.MotorPreco;
+import ecommerce.service.preco.RegrasPreco;
+import ecommerce.service.preco.TabelaRegrasPreco;
+
+@DisplayName("RecotacaoService - recotação em lotes, paralela e retomável")
+public class RecotacaoServiceTest
+{
+	private CarrinhoDeComprasRepositoryFake carrinhoRepository;
+	private CotacaoCarrinhoRepository cotacaoRepository;
+	private ExecucaoRecotacaoRepository execucaoRepository;
+	private RegrasPreco regras;
+
+	private final Map<Long, CotacaoCarrinho> cotacoes = new HashMap<>();
+	private final Map<Long, ExecucaoRecotacao> execucoes = new HashMap<>();
+	private final AtomicInteger gravacoesDeLote = new AtomicInteger();
+	private int falharNaGravacao; // Número da gravação de lote que lança erro; 0 para nenhuma
+
+	private Produto livro;
+
+	@BeforeEach
+	void setUp()
+	{
+		carrinhoRepository = new CarrinhoDeComprasRepositoryFake();
+		cotacaoRepository = mock(CotacaoCarrinhoRepository.class);
+		execucaoRepository = mock(ExecucaoRecotacaoRepository.class);
+		regras = RegrasPreco.fixas(TabelaRegrasPreco.PADRAO);
+
+		when(cotacaoRepository.findAllById(anyIterable())).thenAnswer(invocacao -> {
+			List<CotacaoCarrinho> encontradas = new ArrayList<>();
+			for (Long id : invocacao.<Iterable<Long>>getArgument(0))
+			{
+				if (cotacoes.containsKey(id))
+				{
+					encontradas.add(cotacoes.get(id));
+				}
+			}
+			return encontradas;
+		});
+		when(cotacaoRepository.saveAll(anyIterable())).thenAnswer(invocacao -> {
+			if (gravacoesDeLote.incrementAndGet() == falharNaGravacao)
+			{
+				throw new IllegalStateException("Conexão perdida");
+			}
+			List<CotacaoCarrinho> gravadas = new ArrayList<>();
+			invocacao.<Iterable<CotacaoCarrinho>>getArgument(0).forEach(gravadas::add);
+			gravadas.forEach(cotacao -> cotacoes.put(cotacao.getCarrinhoId(), cotacao));
+			return gravadas;
+		});
+		when(execucaoRepository.save(any())).thenAnswer(invocacao -> {
+			ExecucaoRecotacao execucao = invocacao.getArgument(0);
+			if (execucao.getId() == null)
+			{
+				execucao.setId((long) execucoes.size() + 1);
+			}
+			execucoes.put(execucao.getId(), copia(execucao));
+			return execucao;
+		});
+		when(execucaoRepository.findById(anyLong()))
+				.thenAnswer(invocacao -> Optional.ofNullable(execucoes.get(invocacao.<Long>getArgument(0))).map(
+						RecotacaoServiceTest::copia));
+
+		livro = new Produto(1L, "Livro", null, new BigDecimal("100.00"), new BigDecimal("1"), null, null, null, false,
+				TipoProduto.LIVRO);
+		for (long id = 1; id <= 10; id++)
+		{
+			// Carrinho n com n livros de R$ 100 e 1 kg
+			carrinhoRepository.adicionarCarrinho(carrinho(id, id));
+		}
+	}
+
+	@Test
+	@DisplayName("Deve cotar todos os carrinhos em lotes e somar o delta em relação às cotações anteriores")
+	void deveRecotarTodosEmLotes()
+	{
+		// Arrange
+		RecotacaoService service = service(3);
+		service.executar(service.iniciar().getId());
+		CotacaoCarrinho anterior = cotacoes.get(10L);
+		regras.substituir(TabelaRegrasPreco.deConfiguracao("500:50", TabelaRegrasPreco.FRETE_PADRAO, 7,
+				BigDecimal.valueOf(5)));
+
+		// Act
+		ExecucaoRecotacao execucao = service.executar(service.iniciar().getId());
+
+		// Assert: 5 a 9 livros passam de 10% para 50% de desconto e 10 livros, de 20% para 50%
+		assertThat(execucao.getStatus()).isEqualTo(StatusExecucaoRecotacao.CONCLUIDA);
+		assertThat(execucao.getCarrinhosRecotados()).isEqualTo(10);
+		assertThat(execucao.getCarrinhosNovos()).isZero();
+		assertThat(execucao.getCarrinhosAlterados()).isEqualTo(6);
+		assertThat(execucao.getDeltaTotalCentavos()).isEqualTo(-(5 + 6 + 7 + 8 + 9) * 4000L - 30000L);
+		assertThat(execucao.getUltimoCarrinhoId()).isEqualTo(10);
+		assertThat(cotacoes.get(10L).getCustoCentavos()).isEqualTo(52000);
+		assertThat(cotacoes.get(10L).getExecucaoId()).isEqualTo(execucao.getId());
+		// Cotação lida na transação do lote é atualizada no lugar, não substituída
+		assertThat(cotacoes.get(10L)).isSameAs(anterior);
+		assertThat(execucoes.get(execucao.getId()).getStatus()).isEqualTo(StatusExecucaoRecotacao.CONCLUIDA);
+	}
+
+	@Test
+	@DisplayName("Carrinho que não pode ser cotado conta como falha sem interromper o lote")
+	void deveContarFalhaSemInterromper()
+	{
+		// Arrange: carrinho vazio não tem frete calculável
+		carrinhoRepository.adicionarCarrinho(new CarrinhoDeCompras(11L, null, new ArrayList<>(), LocalDate.now()));
+		RecotacaoService service = service(4);
+
+		// Act
+		ExecucaoRecotacao execucao = service.executar(service.iniciar().getId());
+
+		// Assert
+		assertThat(execucao.getStatus()).isEqualTo(StatusExecucaoRecotacao.CONCLUIDA);
+		assertThat(execucao.getCarrinhosRecotados()).isEqualTo(10);
+		assertThat(execucao.getCarrinhosNovos()).isEqualTo(10);
+		assertThat(execucao.getCarrinhosComFalha()).isEqualTo(1);
+		assertThat(cotacoes).doesNotContainKey(11L);
+	}
+
+	@Test
+	@DisplayName("Deve aplicar os fatores de região e tipo do cliente do carrinho")
+	void deveAplicarAjusteDoCliente()
+	{
+		// Arrange
+		regras.substituir(TabelaRegrasPreco.PADRAO.comAjustes(Map.of(Regiao.NORTE, 200L), Map.of(TipoCliente.OURO,
+				10L)));
+		Cliente cliente = new Cliente(1L, "Cliente", Regiao.NORTE, TipoCliente.OURO);
+		CarrinhoDeCompras carrinho = carrinho(12L, 6);
+		carrinho.setCliente(cliente);
+		carrinhoRepository.adicionarCarrinho(carrinho);
+		RecotacaoService service = service(5);
+
+		// Act
+		service.executar(service.iniciar().getId());
+
+		// Assert: 600 x 80% + 6 kg x R$ 2 x 200%
+		assertThat(cotacoes.get(12L).getCustoCentavos()).isEqualTo(50400);
+	}
+
+	@Test
+	@DisplayName("Execução interrompida deve ser retomada do último lote gravado, com o mesmo resultado")
+	void deveRetomarAposFalha()
+	{
+		// Arrange
+		RecotacaoService service = service(3);
+		Long execucaoId = service.iniciar().getId();
+		falharNaGravacao = 2;
+
+		// Act
+		assertThrows(IllegalStateException.class, () -> service.executar(execucaoId));
+		ExecucaoRecotacao interrompida = service.buscar(execucaoId);
+		ExecucaoRecotacao retomada = service.executar(execucaoId);
+
+		// Assert: o primeiro lote não é repetido
+		assertThat(interrompida.getStatus()).isEqualTo(StatusExecucaoRecotacao.FALHOU);
+		assertThat(interrompida.getUltimoErro()).isEqualTo("Conexão perdida");
+		assertThat(interrompida.getUltimoCarrinhoId()).isEqualTo(3);
+		assertThat(interrompida.getCarrinhosRecotados()).isEqualTo(3);
+
+		assertThat(retomada.getStatus()).isEqualTo(StatusExecucaoRecotacao.CONCLUIDA);
+		assertThat(retomada.getUltimoErro()).isNull();
+		assertThat(retomada.getCarrinhosRecotados()).isEqualTo(10);
+		assertThat(retomada.getCarrinhosNovos()).isEqualTo(10);
+		assertThat(cotacoes).hasSize(10);
+		assertThat(gravacoesDeLote.get()).isEqualTo(5);
+	}
+
+	@Test
+	@DisplayName("Deve rejeitar lote vazio e execução inexistente")
+	void deveRejeitarParametrosInvalidos()
+	{
+		assertThrows(IllegalArgumentException.class, () -> service(0));
+		assertThrows(IllegalArgumentException.class, () -> service(3).executar(99L));
+	}
+
+	private RecotacaoService service(int tamanhoLote)
+	{
+		return new RecotacaoService(carrinhoRepository, cotacaoRepository, execucaoRepository, new MotorPreco(regras),
+				TransactionOperations.withoutTransaction(), tamanhoLote, 2);
+	}
+
+	private CarrinhoDeCompras carrinho(long id, long livros)
+	{
+		return new CarrinhoDeCompras(id, null, new ArrayList<>(List.of(new ItemCompra(id, livro, livros))),
+				LocalDate.now());
+	}
+
+	private static ExecucaoRecotacao copia(ExecucaoRecotacao origem)
+	{
+		ExecucaoRecotacao copia = new ExecucaoRecotacao(origem.getIniciadaEm());
+		copia.setId(origem.getId());
+		copia.setStatus(origem.getStatus());
+		copia.setUltimoCarrinhoId(origem.getUltimoCarrinhoId());
+		copia.setCarrinhosRecotados(origem.getCarrinhosRecotados());
+		copia.setCarrinhosAlterados(origem.getCarrinhosAlterados());
+		copia.setCarrinhosNovos(origem.getCarrinhosNovos());
+		copia.setCarrinhosComFalha(origem.getCarrinhosComFalha());
+		copia.setDeltaTotalCentavos(origem.getDeltaTotalCentavos());
+		copia.setDuracaoMillis(origem.getDuracaoMillis());
+		copia.setUltimoErro(origem.getUltimoErro());
+		copia.setConcluidaEm(origem.getConcluidaEm());
+		return copia;
+	}
+}
@@ -0,0 +1,105 @@
+package ecommerce.service;
+
+import java.math.BigDecimal;
+import java.time.LocalDate;
+import java.util.ArrayList;
+import java.util.List;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.jdbc.core.JdbcTemplate;
+
+import ecommerce.entity.CarrinhoDeCompras;
+import ecommerce.entity.Cliente;
+import ecommerce.entity.ItemCompra;
+import ecommerce.entity.Produto;
+import ecommerce.entity.Regiao;
+import ecommerce.entity.TipoCliente;
+import ecommerce.entity.TipoProduto;
+import ecommerce.repository.CarrinhoDeComprasRepository;
+import ecommerce.repository.ClienteRepository;
+import ecommerce.repository.ProdutoRepository;
+
+/**
+ * Totais gravados dos carrinhos diante de alterações do catálogo feitas pelo Hibernate.
+ */
+@SpringBootTest(webEnvironment = SpringBootTest.WebEnvironment.NONE, properties = {
+		"ecommerce.outbox.despachante.habilitado=false" })
+@DisplayName("TotaisCarrinhoListener - totais gravados após alterações de produto")
+public class TotaisCarrinhoListenerTest
+{
+	@Autowired
+	private ClienteRepository clienteRepository;
+
+	@Autowired
+	private ProdutoRepository produtoRepository;
+
+	@Autowired
+	private CarrinhoDeComprasRepository carrinhoRepository;
+
+	@Autowired
+	private JdbcTemplate jdbcTemplate;
+
+	@Autowired
+	private CacheEntidades cacheEntidades;
+
+	private Produto produto;
+	private CarrinhoDeCompras carrinho;
+
+	@BeforeEach
+	void setUp()
+	{
+		Cliente cliente = clienteRepository.save(new Cliente(null, "Cliente", Regiao.SUDESTE, TipoCliente.BRONZE));
+		produto = produtoRepository.save(new Produto(null, "Livro", null, new BigDecimal("10.00"),
+				new BigDecimal("1.00"), null, null, null, false, TipoProduto.LIVRO));
+		CarrinhoDeCompras novo = new CarrinhoDeCompras(null, cliente,
+				new ArrayList<>(List.of(new ItemCompra(null, produto, 2L))), LocalDate.now());
+		novo.recalcularTotais();
+		carrinho = carrinhoRepository.save(novo);
+	}
+
+	@Test
+	@DisplayName("Alteração só do nome mantém os totais gravados")
+	void deveManterTotaisQuandoSoNomeMuda()
+	{
+		// Act
+		produto.setNome("Livro (2ª edição)");
+		produtoRepository.save(produto);
+
+		// Assert
+		assertThat(subtotalGravado()).isEqualTo(2000L);
+	}
+
+	@Test
+	@DisplayName("Alteração de preço descarta os totais gravados")
+	void deveDescartarTotaisQuandoPrecoMuda()
+	{
+		// Act
+		produto.setPreco(new BigDecimal("12.00"));
+		produtoRepository.save(produto);
+
+		// Assert
+		assertThat(subtotalGravado()).isNull();
+	}
+
+	@Test
+	@DisplayName("Catálogo invalidado fora do Hibernate descarta os totais gravados")
+	void deveDescartarTotaisQuandoCatalogoInvalidado()
+	{
+		// Act
+		cacheEntidades.invalidarProdutos();
+
+		// Assert
+		assertThat(subtotalGravado()).isNull();
+	}
+
+	private Long subtotalGravado()
+	{
+		return jdbcTemplate.queryForObject("select subtotal_centavos from carrinho_de_compras where id = ?",
+				Long.class, carrinho.getId());
+	}
+}
@@ -0,0 +1,253 @@
+package ecommerce.service.preco;
+
+import java.math.BigDecimal;
+import java.time.Duration;
+import java.time.LocalDate;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+
+import ecommerce.dto.Dinheiro;
+import ecommerce.entity.CarrinhoDeCompras;
+import ecommerce.entity.ItemCompra;
+import ecommerce.entity.Produto;
+import ecommerce.entity.Regiao;
+import ecommerce.entity.TipoCliente;
+import ecommerce.entity.TipoProduto;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+
+@DisplayName("CacheCotacoes - cotações por conteúdo do carrinho")
+public class CacheCotacoesTest
+{
+	private RegrasPreco regras;
+	private CacheCotacoes cache;
+
+	private Produto livro;
+	private Produto vaso;
+
+	@BeforeEach
+	void setUp()
+	{
+		regras = RegrasPreco.fixas(TabelaRegrasPreco.PADRAO);
+		cache = new CacheCotacoes(new MotorPreco(regras), 100, Duration.ofMinutes(10));
+
+		livro = produto(1L, "100.00", "1", false);
+		vaso = produto(2L, "50.00", "2", true);
+	}
+
+	@Test
+	@DisplayName("Mesmo conteúdo, em qualquer carrinho e ordem, deve ser cotado uma única vez")
+	void deveReaproveitarCotacaoDoMesmoConteudo()
+	{
+		Dinheiro primeira = cache.cotar(carrinho(item(livro, 2), item(vaso, 1)));
+		Dinheiro segunda = cache.cotar(carrinho(item(vaso, 1), item(livro, 2)));
+
+		// 250 + frágil R$ 5; 4 kg, frete isento
+		assertThat(primeira).isEqualTo(Dinheiro.deReais(new BigDecimal("255.00")));
+		assertThat(segunda).isEqualTo(primeira);
+		assertThat(cache.faltas()).isEqualTo(1);
+		assertThat(cache.acertos()).isEqualTo(1);
+	}
+
+	@Test
+	@DisplayName("Quantidade diferente é outro conteúdo")
+	void deveDiferenciarQuantidades()
+	{
+		cache.cotar(carrinho(item(livro, 2)));
+		Dinheiro outra = cache.cotar(carrinho(item(livro, 3)));
+
+		assertThat(outra).isEqualTo(Dinheiro.deReais(new BigDecimal("300.00")));
+		assertThat(cache.faltas()).isEqualTo(2);
+	}
+
+	@Test
+	@DisplayName("Deve recalcular após a invalidação do produto alterado")
+	void deveRecalcularAposInvalidarProduto()
+	{
+		CarrinhoDeCompras carrinho = carrinho(item(livro, 1), item(vaso, 1));
+		cache.cotar(carrinho);
+		CarrinhoDeCompras soLivro = carrinho(item(livro, 1));
+		cache.cotar(soLivro);
+		CarrinhoDeCompras soVaso = carrinho(item(vaso, 1));
+		cache.cotar(soVaso);
+
+		vaso.setPreco(new BigDecimal("60.00"));
+		cache.invalidarProduto(vaso.getId());
+
+		assertThat(cache.tamanho()).isEqualTo(1);
+		assertThat(cache.cotar(carrinho)).isEqualTo(Dinheiro.deReais(new BigDecimal("165.00")));
+		assertThat(cache.cotar(soLivro)).isEqualTo(Dinheiro.deReais(new BigDecimal("100.00")));
+		assertThat(cache.acertos()).isEqualTo(1);
+	}
+
+	@Test
+	@DisplayName("Nova versão das regras de preço não deve reaproveitar cotações antigas")
+	void deveRecalcularQuandoRegrasMudam()
+	{
+		CarrinhoDeCompras carrinho = carrinho(item(livro, 6));
+		// 600 x 90% + 6 kg x R$ 2
+		assertThat(cache.cotar(carrinho)).isEqualTo(Dinheiro.deReais(new BigDecimal("552.00")));
+
+		regras.substituir(TabelaRegrasPreco.deConfiguracao("500:50", TabelaRegrasPreco.FRETE_PADRAO, 7,
+				BigDecimal.valueOf(5)));
+
+		// 600 x 50% + 6 kg x R$ 2
+		assertThat(cache.cotar(carrinho)).isEqualTo(Dinheiro.deReais(new BigDecimal("312.00")));
+		assertThat(cache.faltas()).isEqualTo(2);
+	}
+
+	@Test
+	@DisplayName("Região e tipo de cliente com fatores diferentes são cotados à parte; fatores iguais compartilham")
+	void deveSepararCotacoesPorAjuste()
+	{
+		regras.substituir(TabelaRegrasPreco.PADRAO.comAjustes(Map.of(Regiao.NORTE, 200L), Map.of()));
+		CarrinhoDeCompras carrinho = carrinho(item(livro, 6));
+
+		Dinheiro sudeste = cache.cotar(carrinho, Regiao.SUDESTE, TipoCliente.BRONZE);
+		Dinheiro sul = cache.cotar(carrinho, Regiao.SUL, TipoCliente.OURO);
+		Dinheiro norte = cache.cotar(carrinho, Regiao.NORTE, TipoCliente.BRONZE);
+
+		assertThat(sudeste).isEqualTo(Dinheiro.deReais(new BigDecimal("552.00")));
+		assertThat(sul).isEqualTo(sudeste);
+		assertThat(norte).isEqualTo(Dinheiro.deReais(new BigDecimal("564.00")));
+		assertThat(cache.acertos()).isEqualTo(1);
+		assertThat(cache.faltas()).isEqualTo(2);
+	}
+
+	@Test
+	@DisplayName("Deve despejar cotações ao atingir a capacidade")
+	void deveDespejarAoAtingirCapacidade()
+	{
+		cache = new CacheCotacoes(new MotorPreco(regras), 2, Duration.ofMinutes(10));
+
+		cache.cotar(carrinho(item(livro, 1)));
+		cache.cotar(carrinho(item(livro, 2)));
+		cache.cotar(carrinho(item(livro, 3)));
+
+		assertThat(cache.tamanho()).isEqualTo(2);
+		assertThat(cache.despejos()).isEqualTo(1);
+		assertThat(cache.faltas()).isEqualTo(3);
+	}
+
+	@Test
+	@DisplayName("Cotação despejada não deve ser removida de novo pela invalidação do produto")
+	void deveManterIndiceAposDespejo()
+	{
+		cache = new CacheCotacoes(new MotorPreco(regras), 1, Duration.ofMinutes(10));
+		cache.cotar(carrinho(item(livro, 1)));
+		cache.cotar(carrinho(item(vaso, 1)));
+
+		cache.invalidarProduto(livro.getId());
+		cache.invalidarProduto(vaso.getId());
+
+		assertThat(cache.tamanho()).isZero();
+		assertThat(cache.despejos()).isEqualTo(1);
+	}
+
+	@Test
+	@DisplayName("Carrinho lido antes de uma invalidação não deve ter a cotação guardada")
+	void naoDeveGuardarCarrinhoLidoAntesDaInvalidacao()
+	{
+		// Arrange: geração lida antes de carregar o carrinho, ainda com o preço antigo
+		long geracao = cache.geracao();
+		CarrinhoDeCompras lidoAntes = carrinho(item(produto(2L, "50.00", "2", true), 1));
+		vaso.setPreco(new BigDecimal("60.00"));
+		cache.invalidarProduto(vaso.getId());
+
+		// Act
+		Dinheiro antiga = cache.cotar(lidoAntes, (Regiao) null, (TipoCliente) null, geracao);
+		Dinheiro atual = cache.cotar(carrinho(item(vaso, 1)));
+
+		// Assert
+		assertThat(antiga).isEqualTo(Dinheiro.deReais(new BigDecimal("55.00")));
+		assertThat(atual).isEqualTo(Dinheiro.deReais(new BigDecimal("65.00")));
+		assertThat(cache.faltas()).isEqualTo(2);
+	}
+
+	@Test
+	@DisplayName("Cotação vencida deve ser recalculada")
+	void deveRecalcularCotacaoVencida()
+	{
+		cache = new CacheCotacoes(new MotorPreco(regras), 10, Duration.ZERO);
+		CarrinhoDeCompras carrinho = carrinho(item(livro, 1));
+
+		cache.cotar(carrinho);
+		cache.cotar(carrinho);
+
+		assertThat(cache.acertos()).isZero();
+		assertThat(cache.faltas()).isEqualTo(2);
+	}
+
+	@Test
+	@DisplayName("Produtos sem id e cache desligado: sempre calcula, sem guardar")
+	void naoDeveGuardarSemIdOuSemCapacidade()
+	{
+		CarrinhoDeCompras semId = carrinho(item(produto(null, "10.00", "1", false), 1));
+		cache.cotar(semId);
+		cache.cotar(semId);
+
+		CacheCotacoes desligado = CacheCotacoes.semCache(new MotorPreco(regras));
+		desligado.cotar(carrinho(item(livro, 1)));
+
+		assertThat(cache.tamanho()).isZero();
+		assertThat(cache.acertos() + cache.faltas()).isZero();
+		assertThat(desligado.tamanho()).isZero();
+		assertThrows(IllegalArgumentException.class,
+				() -> new CacheCotacoes(new MotorPreco(regras), -1, Duration.ZERO));
+	}
+
+	@Test
+	@DisplayName("Carrinho com totais conferidos: cotado dos totais, sem passar pelo cache")
+	void deveCotarPelosTotaisSemCache()
+	{
+		CarrinhoDeCompras comTotais = carrinho(item(livro, 2), item(vaso, 1));
+		comTotais.recalcularTotais();
+
+		Dinheiro valor = cache.cotar(comTotais);
+
+		assertThat(valor).isEqualTo(Dinheiro.deReais(new BigDecimal("255.00")));
+		assertThat(cache.tamanho()).isZero();
+		assertThat(cache.acertos() + cache.faltas()).isZero();
+	}
+
+	@Test
+	@DisplayName("Deve exportar acertos, faltas, despejos e tamanho como métricas")
+	void deveExportarMetricas()
+	{
+		SimpleMeterRegistry registry = new SimpleMeterRegistry();
+		cache.bindTo(registry);
+		CarrinhoDeCompras carrinho = carrinho(item(livro, 1));
+
+		cache.cotar(carrinho);
+		cache.cotar(carrinho);
+		cache.cotar(carrinho);
+
+		assertThat(registry.get("ecommerce.cotacao.cache.requisicoes").tag("resultado", "acerto").functionCounter()
+				.count()).isEqualTo(2);
+		assertThat(registry.get("ecommerce.cotacao.cache.requisicoes").tag("resultado", "falta").functionCounter()
+				.count()).isEqualTo(1);
+		assertThat(registry.get("ecommerce.cotacao.cache.tamanho").gauge().value()).isEqualTo(1);
+	}
+
+	private static Produto produto(Long id, String preco, String peso, boolean fragil)
+	{
+		return new Produto(id, "Produto " + id, null, new BigDecimal(preco), new BigDecimal(peso), null, null, null,
+				fragil, TipoProduto.ELETRONICO);
+	}
+
+	private static ItemCompra item(Produto produto, long quantidade)
+	{
+		return new ItemCompra(null, produto, quantidade);
+	}
+
+	private static CarrinhoDeCompras carrinho(ItemCompra... itens)
+	{
+		return new CarrinhoDeCompras(1L, null, new ArrayList<>(List.of(itens)), LocalDate.now());
+	}
+}
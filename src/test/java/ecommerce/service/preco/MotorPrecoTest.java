@@ -0,0 +1,417 @@
+package ecommerce.service.preco;
+
+import java.lang.management.ManagementFactory;
+import java.math.BigDecimal;
+import java.time.LocalDate;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.Random;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assumptions.assumeTrue;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.params.ParameterizedTest;
+import org.junit.jupiter.params.provider.CsvSource;
+
+import ecommerce.dto.CarrinhoCheckoutDTO;
+import ecommerce.dto.Dinheiro;
+import ecommerce.dto.LinhaCheckoutDTO;
+import ecommerce.entity.CarrinhoDeCompras;
+import ecommerce.entity.ItemCompra;
+import ecommerce.entity.Produto;
+import ecommerce.entity.Regiao;
+import ecommerce.entity.TipoCliente;
+import ecommerce.entity.TipoProduto;
+import ecommerce.entity.TotaisCarrinho;
+import ecommerce.repository.fake.CarrinhoDeComprasRepositoryFake;
+
+@DisplayName("MotorPreco - paridade com o cálculo em BigDecimal e alocação")
+public class MotorPrecoTest
+{
+	private final MotorPreco motor = new MotorPreco();
+
+	@ParameterizedTest(name = "preço {0} x {1}, peso {2}, frágil {3} = {4}")
+	@DisplayName("Deve manter o resultado do cálculo original nas fronteiras das faixas")
+	@CsvSource({
+			// preço, quantidade, peso, frágil, esperado
+			"10.00, 1, 1, false, 10.00",
+			"499.99, 1, 1, false, 499.99",
+			"500.00, 1, 1, false, 450.00",
+			"999.99, 1, 1, false, 899.99",
+			"1000.00, 1, 1, false, 800.00",
+			"1000.01, 1, 1, false, 800.01",
+			"100, 1, 5, false, 100.00",
+			"100, 1, 5.001, false, 110.00",
+			"100, 1, 10, false, 120.00",
+			"100, 1, 10.01, false, 140.04",
+			"100, 1, 50, false, 300.00",
+			"100, 1, 50.01, false, 450.07",
+			"0.01, 3, 0.001, true, 15.03",
+			"333.33, 3, 1.5, true, 914.99",
+			"0, 1, 0.001, false, 0.00" })
+	void deveManterResultadoNasFronteiras(String preco, long quantidade, String peso, boolean fragil, String esperado)
+	{
+		CarrinhoDeCompras carrinho = carrinho(item(new BigDecimal(preco), new BigDecimal(peso), fragil, quantidade));
+
+		assertThat(motor.calcular(carrinho)).isEqualTo(motor.calcularReferencia(carrinho));
+		assertThat(motor.calcular(carrinho).emReais()).isEqualTo(new BigDecimal(esperado));
+	}
+
+	@Test
+	@DisplayName("Corpus aleatório: resultado idêntico ao cálculo em BigDecimal")
+	void deveTerParidadeComCorpusAleatorio()
+	{
+		Random random = new Random(20240611L);
+
+		for (int caso = 0; caso < 20_000; caso++)
+		{
+			int linhas = 1 + random.nextInt(12);
+			List<ItemCompra> itens = new ArrayList<>();
+			for (int i = 0; i < linhas; i++)
+			{
+				// Preços até R$ 2.000,00 em centavos; pesos até 30 kg em gramas
+				BigDecimal preco = BigDecimal.valueOf(random.nextInt(200_001), 2);
+				BigDecimal peso = BigDecimal.valueOf(1 + random.nextInt(30_000), 3);
+				itens.add(item(preco, peso, random.nextInt(4) == 0, 1 + random.nextInt(5)));
+			}
+			CarrinhoDeCompras carrinho = new CarrinhoDeCompras(1L, null, itens, LocalDate.now());
+
+			assertThat(motor.calcular(carrinho)).as("caso %d", caso).isEqualTo(motor.calcularReferencia(carrinho));
+		}
+	}
+
+	@Test
+	@DisplayName("Linhas do checkout por projeção: mesmo custo do cálculo sobre os itens")
+	void deveCalcularLinhasComParidade()
+	{
+		Random random = new Random(20241017L);
+		TabelaRegrasPreco tabela = motor.regrasAtuais();
+
+		for (int caso = 0; caso < 5_000; caso++)
+		{
+			List<ItemCompra> itens = new ArrayList<>();
+			for (int i = 0, linhas = 1 + random.nextInt(12); i < linhas; i++)
+			{
+				// Um preço em cada vinte com três casas decimais, que passa para BigDecimal
+				BigDecimal preco = BigDecimal.valueOf(random.nextInt(200_001), random.nextInt(20) == 0 ? 3 : 2);
+				BigDecimal peso = BigDecimal.valueOf(1 + random.nextInt(30_000), 3);
+				itens.add(item(preco, peso, random.nextInt(4) == 0, 1 + random.nextInt(5)));
+			}
+			CarrinhoDeCompras carrinho = new CarrinhoDeCompras(1L, null, itens, LocalDate.now());
+			List<LinhaCheckoutDTO> linhas = CarrinhoCheckoutDTO.de(carrinho).linhas();
+
+			assertThat(motor.calcular(linhas, tabela, AjustePreco.NEUTRO)).as("caso %d", caso)
+					.isEqualTo(motor.calcularReferencia(carrinho))
+					.isEqualTo(motor.calcularReferencia(linhas, tabela, AjustePreco.NEUTRO));
+		}
+	}
+
+	@Test
+	@DisplayName("Corpus aleatório com ajustes de região e fidelidade: resultado idêntico ao BigDecimal")
+	void deveTerParidadeComAjustes()
+	{
+		Random random = new Random(20240702L);
+		RegrasPreco regras = RegrasPreco.fixas(TabelaRegrasPreco.PADRAO.comAjustes(
+				Map.of(Regiao.NORTE, 137L, Regiao.NORDESTE, 115L, Regiao.SUL, 85L, Regiao.CENTRO_OESTE, 0L),
+				Map.of(TipoCliente.PRATA, 3L, TipoCliente.OURO, 95L)));
+		MotorPreco ajustado = new MotorPreco(regras);
+
+		for (int caso = 0; caso < 20_000; caso++)
+		{
+			List<ItemCompra> itens = new ArrayList<>();
+			for (int i = 0, linhas = 1 + random.nextInt(8); i < linhas; i++)
+			{
+				BigDecimal preco = BigDecimal.valueOf(random.nextInt(200_001), 2);
+				BigDecimal peso = BigDecimal.valueOf(1 + random.nextInt(30_000), 3);
+				itens.add(item(preco, peso, random.nextInt(4) == 0, 1 + random.nextInt(5)));
+			}
+			CarrinhoDeCompras carrinho = new CarrinhoDeCompras(1L, null, itens, LocalDate.now());
+			Regiao regiao = Regiao.values()[random.nextInt(Regiao.values().length)];
+			TipoCliente tipo = TipoCliente.values()[random.nextInt(TipoCliente.values().length)];
+
+			assertThat(ajustado.calcular(carrinho, regiao, tipo)).as("caso %d (%s, %s)", caso, regiao, tipo)
+					.isEqualTo(ajustado.calcularReferencia(carrinho, regiao, tipo));
+		}
+	}
+
+	@Test
+	@DisplayName("Deve aplicar o frete da região e o desconto de fidelidade, limitado a 100%")
+	void deveAplicarAjustes()
+	{
+		MotorPreco ajustado = new MotorPreco(RegrasPreco.fixas(TabelaRegrasPreco.PADRAO
+				.comAjustes(Map.of(Regiao.NORTE, 150L), Map.of(TipoCliente.OURO, 90L))));
+		// R$ 1000,00 (20%), 6 kg (R$ 2/kg) e um frágil
+		CarrinhoDeCompras carrinho = carrinho(item(new BigDecimal("1000.00"), new BigDecimal("6"), true, 1));
+
+		assertThat(ajustado.calcular(carrinho, Regiao.SUDESTE, TipoCliente.BRONZE).emReais())
+				.isEqualTo(new BigDecimal("817.00"));
+		// frete (12 + 5) x 150%
+		assertThat(ajustado.calcular(carrinho, Regiao.NORTE, TipoCliente.BRONZE).emReais())
+				.isEqualTo(new BigDecimal("825.50"));
+		// 20% + 90%: itens de graça, só o frete
+		assertThat(ajustado.calcular(carrinho, Regiao.SUDESTE, TipoCliente.OURO).emReais())
+				.isEqualTo(new BigDecimal("17.00"));
+		assertThat(ajustado.calcular(carrinho, (Regiao) null, (TipoCliente) null)).isEqualTo(ajustado.calcular(carrinho));
+	}
+
+	@Test
+	@DisplayName("Deve recorrer ao cálculo em BigDecimal para preços fora de centavos")
+	void deveRecorrerAoBigDecimalParaPrecoFracionado()
+	{
+		// R$ 0,005 x 3 = 0,015 -> 0,02 (HALF_UP)
+		CarrinhoDeCompras carrinho = carrinho(item(new BigDecimal("0.005"), BigDecimal.ONE, false, 3));
+
+		assertThat(motor.calcular(carrinho)).isEqualTo(new Dinheiro(2));
+		assertThat(motor.calcular(carrinho)).isEqualTo(motor.calcularReferencia(carrinho));
+	}
+
+	@Test
+	@DisplayName("Deve recorrer ao cálculo em BigDecimal quando os acumuladores estourariam")
+	void deveRecorrerAoBigDecimalEmEstouro()
+	{
+		CarrinhoDeCompras carrinho = carrinho(item(new BigDecimal("90000000000000.00"), BigDecimal.ONE, false, 1000));
+
+		assertThat(motor.calcular(carrinho)).isEqualTo(motor.calcularReferencia(carrinho));
+	}
+
+	@Test
+	@DisplayName("Deve lançar as mesmas exceções do cálculo original")
+	void deveLancarAsMesmasExcecoes()
+	{
+		CarrinhoDeCompras vazio = new CarrinhoDeCompras(1L, null, new ArrayList<>(), LocalDate.now());
+		CarrinhoDeCompras precoNegativo = carrinho(item(BigDecimal.ONE.negate(), BigDecimal.ONE, false, 1));
+
+		assertThrows(RuntimeException.class, () -> motor.calcular(vazio));
+		assertThrows(RuntimeException.class, () -> motor.calcularReferencia(vazio));
+		assertThrows(RuntimeException.class, () -> motor.calcular(precoNegativo));
+		assertThrows(RuntimeException.class, () -> motor.calcularReferencia(precoNegativo));
+	}
+
+	@Test
+	@DisplayName("Deve atualizar o valor em centavos quando o preço do produto muda")
+	void deveAtualizarCacheQuandoPrecoMuda()
+	{
+		Produto produto = new Produto(1L, "P", null, new BigDecimal("10.00"), BigDecimal.ONE, null, null, null, false,
+				TipoProduto.LIVRO);
+		assertThat(produto.getPrecoEmCentavos()).isEqualTo(1000);
+
+		produto.setPreco(new BigDecimal("12.34"));
+
+		assertThat(produto.getPrecoEmCentavos()).isEqualTo(1234);
+	}
+
+	@Test
+	@DisplayName("Totais incrementais: adições, remoções e alterações mantêm agregados e custo do recálculo completo")
+	void deveManterTotaisIncrementais()
+	{
+		Random random = new Random(20240815L);
+		CarrinhoDeCompras carrinho = new CarrinhoDeCompras(1L, null, new ArrayList<>(), LocalDate.now());
+
+		for (int operacao = 0; operacao < 5_000; operacao++)
+		{
+			List<ItemCompra> itens = carrinho.getItens();
+			int escolha = random.nextInt(3);
+			if (itens.isEmpty() || escolha == 0)
+			{
+				BigDecimal preco = BigDecimal.valueOf(random.nextInt(200_001), 2);
+				BigDecimal peso = BigDecimal.valueOf(1 + random.nextInt(30_000), 3);
+				carrinho.adicionarItem(item(preco, peso, random.nextInt(4) == 0, 1 + random.nextInt(5)));
+			}
+			else if (escolha == 1)
+			{
+				assertThat(carrinho.removerItem(itens.get(random.nextInt(itens.size())))).isTrue();
+			}
+			else
+			{
+				carrinho.alterarQuantidade(itens.get(random.nextInt(itens.size())), 1L + random.nextInt(5));
+			}
+
+			assertThat(carrinho.getTotais()).as("operação %d", operacao).isEqualTo(TotaisCarrinho.de(itens));
+			if (!itens.isEmpty())
+			{
+				assertThat(motor.calcular(carrinho)).as("operação %d", operacao)
+						.isEqualTo(motor.calcularReferencia(carrinho));
+			}
+		}
+	}
+
+	@Test
+	@DisplayName("Totais descartados quando não conferem com os itens ou quando um produto do carrinho muda")
+	void deveDescartarTotaisInconsistentes()
+	{
+		ItemCompra livro = new ItemCompra(null, new Produto(1L, "Livro", null, new BigDecimal("100.00"), BigDecimal.ONE,
+				null, null, null, false, TipoProduto.LIVRO), 6L);
+		CarrinhoDeCompras carrinho = new CarrinhoDeCompras(1L, null, new ArrayList<>(), LocalDate.now());
+		carrinho.adicionarItem(livro);
+		assertThat(carrinho.getTotais()).isNotNull();
+
+		// Alteração direta da lista: o número de linhas não confere
+		carrinho.getItens().add(item(new BigDecimal("1.00"), BigDecimal.ONE, false, 1));
+		assertThat(carrinho.getTotais()).isNull();
+		assertThat(motor.calcular(carrinho)).isEqualTo(motor.calcularReferencia(carrinho));
+
+		// Alteração de produto: os carrinhos que o contêm perdem os totais gravados
+		carrinho.recalcularTotais();
+		CarrinhoDeComprasRepositoryFake repository = new CarrinhoDeComprasRepositoryFake();
+		repository.adicionarCarrinho(carrinho);
+		livro.getProduto().setPreco(new BigDecimal("50.00"));
+		assertThat(repository.invalidarTotaisComProduto(1L)).isEqualTo(1);
+
+		assertThat(carrinho.getTotais()).isNull();
+		// 301 + 7 kg x R$ 2
+		assertThat(motor.calcular(carrinho)).isEqualTo(Dinheiro.deReais(new BigDecimal("315.00")));
+	}
+
+	@Test
+	@DisplayName("Sem representação inteira, não há totais e o custo vem do cálculo em BigDecimal")
+	void naoDeveManterTotaisSemRepresentacaoInteira()
+	{
+		CarrinhoDeCompras carrinho = new CarrinhoDeCompras(1L, null, new ArrayList<>(), LocalDate.now());
+		carrinho.adicionarItem(item(new BigDecimal("0.005"), BigDecimal.ONE, false, 3));
+
+		assertThat(carrinho.getTotais()).isNull();
+		assertThat(motor.calcular(carrinho)).isEqualTo(new Dinheiro(2));
+	}
+
+	@Test
+	@DisplayName("Soma em partes, sequencial ou paralela: mesmo custo que o carrinho inteiro, inclusive fora de centavos")
+	void deveTerParidadeComSomaEmPartes()
+	{
+		Random random = new Random(20240901L);
+		TabelaRegrasPreco tabela = TabelaRegrasPreco.PADRAO;
+
+		for (int caso = 0; caso < 2_000; caso++)
+		{
+			List<ItemCompra> itens = new ArrayList<>();
+			for (int i = 0, linhas = 1 + random.nextInt(60); i < linhas; i++)
+			{
+				// Um preço em dez com três casas força a soma em BigDecimal
+				BigDecimal preco = BigDecimal.valueOf(random.nextInt(200_001), random.nextInt(10) == 0 ? 3 : 2);
+				BigDecimal peso = BigDecimal.valueOf(1 + random.nextInt(30_000), 3);
+				itens.add(item(preco, peso, random.nextInt(4) == 0, 1 + random.nextInt(5)));
+			}
+			CarrinhoDeCompras carrinho = new CarrinhoDeCompras(1L, null, itens, LocalDate.now());
+
+			SomaItens emPaginas = new SomaItens();
+			for (int inicio = 0, pagina = 1 + random.nextInt(7); inicio < itens.size(); inicio += pagina)
+			{
+				emPaginas.combinar(itens.subList(inicio, Math.min(itens.size(), inicio + pagina)).parallelStream()
+						.collect(SomaItens.coletor()));
+			}
+
+			assertThat(emPaginas.linhas()).isEqualTo(itens.size());
+			assertThat(motor.calcular(emPaginas, tabela, AjustePreco.NEUTRO)).as("caso %d", caso)
+					.isEqualTo(motor.calcularReferencia(carrinho));
+		}
+	}
+
+	@Test
+	@DisplayName("Alocação: o cálculo inteiro aloca uma fração do cálculo em BigDecimal")
+	void deveAlocarMenosQueOCalculoEmBigDecimal()
+	{
+		assumeTrue(ManagementFactory.getThreadMXBean() instanceof com.sun.management.ThreadMXBean,
+				"JVM sem medição de alocação por thread");
+		com.sun.management.ThreadMXBean threads = (com.sun.management.ThreadMXBean) ManagementFactory
+				.getThreadMXBean();
+		assumeTrue(threads.isThreadAllocatedMemorySupported() && threads.isThreadAllocatedMemoryEnabled());
+
+		List<ItemCompra> itens = new ArrayList<>();
+		for (int i = 0; i < 50; i++)
+		{
+			itens.add(item(BigDecimal.valueOf(1999 + i, 2), BigDecimal.valueOf(250 + i, 3), i % 5 == 0, 1 + i % 3));
+		}
+		CarrinhoDeCompras carrinho = new CarrinhoDeCompras(1L, null, itens, LocalDate.now());
+		int iteracoes = 20_000;
+
+		// Aquecimento (JIT e caches de centavos/gramas nos produtos)
+		long acumulado = 0;
+		for (int i = 0; i < iteracoes; i++)
+		{
+			acumulado += motor.calcular(carrinho).centavos() + motor.calcularReferencia(carrinho).centavos();
+		}
+
+		long tid = Thread.currentThread().getId();
+		long inicio = threads.getThreadAllocatedBytes(tid);
+		for (int i = 0; i < iteracoes; i++)
+		{
+			acumulado += motor.calcular(carrinho).centavos();
+		}
+		long bytesMotor = threads.getThreadAllocatedBytes(tid) - inicio;
+
+		inicio = threads.getThreadAllocatedBytes(tid);
+		for (int i = 0; i < iteracoes; i++)
+		{
+			acumulado += motor.calcularReferencia(carrinho).centavos();
+		}
+		long bytesReferencia = threads.getThreadAllocatedBytes(tid) - inicio;
+
+		System.out.printf("[alocação] carrinho de 50 linhas: inteiro %d B/cálculo, BigDecimal %d B/cálculo (%d)%n",
+				bytesMotor / iteracoes, bytesReferencia / iteracoes, acumulado);
+		assertThat(bytesMotor * 20).isLessThan(bytesReferencia);
+	}
+
+	@Test
+	@DisplayName("Alocação: ajustes de região e fidelidade não alocam a mais que o cálculo neutro")
+	void naoDeveAlocarAMaisComAjustes()
+	{
+		assumeTrue(ManagementFactory.getThreadMXBean() instanceof com.sun.management.ThreadMXBean,
+				"JVM sem medição de alocação por thread");
+		com.sun.management.ThreadMXBean threads = (com.sun.management.ThreadMXBean) ManagementFactory
+				.getThreadMXBean();
+		assumeTrue(threads.isThreadAllocatedMemorySupported() && threads.isThreadAllocatedMemoryEnabled());
+
+		MotorPreco ajustado = new MotorPreco(RegrasPreco.fixas(TabelaRegrasPreco.PADRAO
+				.comAjustes(Map.of(Regiao.NORTE, 120L), Map.of(TipoCliente.OURO, 5L))));
+		List<ItemCompra> itens = new ArrayList<>();
+		for (int i = 0; i < 50; i++)
+		{
+			itens.add(item(BigDecimal.valueOf(1999 + i, 2), BigDecimal.valueOf(250 + i, 3), i % 5 == 0, 1 + i % 3));
+		}
+		CarrinhoDeCompras carrinho = new CarrinhoDeCompras(1L, null, itens, LocalDate.now());
+		int iteracoes = 20_000;
+
+		long acumulado = 0;
+		for (int i = 0; i < iteracoes; i++)
+		{
+			acumulado += ajustado.calcular(carrinho).centavos()
+					+ ajustado.calcular(carrinho, Regiao.NORTE, TipoCliente.OURO).centavos();
+		}
+
+		long tid = Thread.currentThread().getId();
+		long inicio = threads.getThreadAllocatedBytes(tid);
+		for (int i = 0; i < iteracoes; i++)
+		{
+			acumulado += ajustado.calcular(carrinho).centavos();
+		}
+		long bytesNeutro = threads.getThreadAllocatedBytes(tid) - inicio;
+
+		inicio = threads.getThreadAllocatedBytes(tid);
+		for (int i = 0; i < iteracoes; i++)
+		{
+			acumulado += ajustado.calcular(carrinho, Regiao.NORTE, TipoCliente.OURO).centavos();
+		}
+		long bytesAjustado = threads.getThreadAllocatedBytes(tid) - inicio;
+
+		System.out.printf("[alocação] neutro %d B/cálculo, com ajustes %d B/cálculo (%d)%n", bytesNeutro / iteracoes,
+				bytesAjustado / iteracoes, acumulado);
+		// Folga para alocações da própria medição
+		assertThat(bytesAjustado).isLessThanOrEqualTo(bytesNeutro + bytesNeutro / 10 + 64 * 1024);
+	}
+
+	private static CarrinhoDeCompras carrinho(ItemCompra item)
+	{
+		List<ItemCompra> itens = new ArrayList<>();
+		itens.add(item);
+		return new CarrinhoDeCompras(1L, null, itens, LocalDate.now());
+	}
+
+	private static ItemCompra item(BigDecimal preco, BigDecimal peso, boolean fragil, long quantidade)
+	{
+		Produto produto = new Produto(null, "Produto", null, preco, peso, null, null, null, fragil,
+				TipoProduto.ALIMENTO);
+		return new ItemCompra(null, produto, quantidade);
+	}
+}
@@ -0,0 +1,237 @@
+package ecommerce.service.preco;
+
+import java.math.BigDecimal;
+import java.time.LocalDate;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.RejectedExecutionException;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+
+import ecommerce.dto.CarrinhoCheckoutDTO;
+import ecommerce.dto.Dinheiro;
+import ecommerce.dto.LinhaCheckoutDTO;
+import ecommerce.entity.CarrinhoDeCompras;
+import ecommerce.entity.ItemCompra;
+import ecommerce.entity.Produto;
+import ecommerce.entity.Regiao;
+import ecommerce.entity.TipoCliente;
+import ecommerce.entity.TipoProduto;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+
+@DisplayName("PrecificacaoSombra - comparação amostrada com a implementação candidata")
+public class PrecificacaoSombraTest
+{
+	private MotorPreco motor;
+	private List<Runnable> pendentes;
+
+	private Produto livro;
+	private Produto vaso;
+
+	@BeforeEach
+	void setUp()
+	{
+		motor = new MotorPreco();
+		pendentes = new ArrayList<>();
+
+		livro = produto(1L, "100.00", "1", false);
+		vaso = produto(2L, "50.00", "2", true);
+	}
+
+	@Test
+	@DisplayName("Valor igual ao da candidata: conta a comparação e a latência dos dois cálculos")
+	void deveRegistrarComparacaoIgual()
+	{
+		// Arrange
+		PrecificacaoSombra sombra = new PrecificacaoSombra(motor, EstrategiaPreco.REFERENCIA, 1.0, Runnable::run, 10);
+		CarrinhoDeCompras carrinho = carrinho(item(livro, 2), item(vaso, 1));
+		SimpleMeterRegistry registry = new SimpleMeterRegistry();
+		sombra.bindTo(registry);
+
+		// Act
+		TabelaRegrasPreco tabela = motor.regrasAtuais();
+		AjustePreco ajuste = tabela.ajuste(Regiao.SUL, TipoCliente.PRATA);
+		sombra.comparar(CarrinhoCheckoutDTO.de(carrinho), tabela, ajuste,
+				motor.calcular(carrinho, tabela, ajuste));
+
+		// Assert
+		assertThat(sombra.iguais()).isEqualTo(1);
+		assertThat(sombra.divergentes()).isZero();
+		assertThat(sombra.divergencias()).isEmpty();
+		assertThat(registry.get("ecommerce.preco.sombra.comparacoes").tag("resultado", "igual").functionCounter()
+				.count()).isEqualTo(1);
+		assertThat(registry.get("ecommerce.preco.sombra.latencia").tag("motor", "principal").functionTimer()
+				.count()).isEqualTo(1);
+		assertThat(registry.get("ecommerce.preco.sombra.latencia").tag("motor", "referencia").functionTimer()
+				.count()).isEqualTo(1);
+	}
+
+	@Test
+	@DisplayName("Valor diferente: guarda a divergência com a impressão digital do carrinho")
+	void deveRegistrarDivergencia()
+	{
+		// Arrange
+		PrecificacaoSombra sombra = new PrecificacaoSombra(motor, EstrategiaPreco.ITEM_A_ITEM, 1.0, Runnable::run, 10);
+		CarrinhoDeCompras carrinho = carrinho(item(livro, 2), item(vaso, 1));
+
+		// Act: o principal cobrou um centavo a mais
+		sombra.comparar(CarrinhoCheckoutDTO.de(carrinho), motor.regrasAtuais(), AjustePreco.NEUTRO,
+				new Dinheiro(25_501));
+
+		// Assert
+		assertThat(sombra.divergentes()).isEqualTo(1);
+		assertThat(sombra.divergencias()).singleElement().satisfies(divergencia -> {
+			assertThat(divergencia.carrinhoId()).isEqualTo(1L);
+			assertThat(divergencia.principal()).isEqualTo(new Dinheiro(25_501));
+			assertThat(divergencia.candidata()).isEqualTo(new Dinheiro(25_500));
+			assertThat(divergencia.impressaoDigital())
+					.isEqualTo(PrecificacaoSombra.impressaoDigital(linhas(item(vaso, 1), item(livro, 2))))
+					.isNotEqualTo(PrecificacaoSombra.impressaoDigital(linhas(item(vaso, 1), item(livro, 3))));
+		});
+	}
+
+	@Test
+	@DisplayName("A candidata vê as linhas do momento da cotação, mesmo que o carrinho mude depois")
+	void deveCompararComLinhasDaCotacao()
+	{
+		// Arrange
+		PrecificacaoSombra sombra = new PrecificacaoSombra(motor, EstrategiaPreco.ITEM_A_ITEM, 1.0, pendentes::add, 10);
+		CarrinhoDeCompras carrinho = carrinho(item(livro, 2));
+		sombra.comparar(CarrinhoCheckoutDTO.de(carrinho), motor.regrasAtuais(), AjustePreco.NEUTRO,
+				motor.calcular(carrinho));
+
+		// Act
+		carrinho.getItens().add(item(vaso, 1));
+		pendentes.forEach(Runnable::run);
+
+		// Assert
+		assertThat(sombra.iguais()).isEqualTo(1);
+	}
+
+	@Test
+	@DisplayName("Fila cheia: a amostra é descartada sem afetar a requisição")
+	void deveDescartarComFilaCheia()
+	{
+		// Arrange
+		PrecificacaoSombra sombra = new PrecificacaoSombra(motor, EstrategiaPreco.ITEM_A_ITEM, 1.0, tarefa -> {
+			throw new RejectedExecutionException();
+		}, 10);
+		CarrinhoDeCompras carrinho = carrinho(item(livro, 1));
+
+		// Act
+		sombra.comparar(CarrinhoCheckoutDTO.de(carrinho), motor.regrasAtuais(), AjustePreco.NEUTRO,
+				motor.calcular(carrinho));
+
+		// Assert
+		assertThat(sombra.descartadas()).isEqualTo(1);
+		assertThat(sombra.iguais() + sombra.divergentes() + sombra.erros()).isZero();
+	}
+
+	@Test
+	@DisplayName("Falha da candidata é contada como erro")
+	void deveContarErroDaCandidata()
+	{
+		// Arrange: peso zero é rejeitado pelo cálculo
+		PrecificacaoSombra sombra = new PrecificacaoSombra(motor, EstrategiaPreco.REFERENCIA, 1.0, Runnable::run, 10);
+		CarrinhoDeCompras carrinho = carrinho(item(produto(3L, "10.00", "0", false), 1));
+
+		// Act
+		sombra.comparar(CarrinhoCheckoutDTO.de(carrinho), motor.regrasAtuais(), AjustePreco.NEUTRO,
+				Dinheiro.ZERO);
+
+		// Assert
+		assertThat(sombra.erros()).isEqualTo(1);
+	}
+
+	@Test
+	@DisplayName("Amostragem zero não agenda comparações")
+	void naoDeveAmostrarQuandoDesligada()
+	{
+		// Arrange
+		PrecificacaoSombra sombra = new PrecificacaoSombra(motor, EstrategiaPreco.ITEM_A_ITEM, 0, pendentes::add, 10);
+		CarrinhoDeCompras carrinho = carrinho(item(livro, 1));
+
+		// Act
+		for (int i = 0; i < 100; i++)
+		{
+			sombra.comparar(CarrinhoCheckoutDTO.de(carrinho), motor.regrasAtuais(), AjustePreco.NEUTRO,
+					motor.calcular(carrinho));
+		}
+
+		// Assert
+		assertThat(pendentes).isEmpty();
+		assertThat(sombra.habilitada()).isFalse();
+		assertThat(PrecificacaoSombra.desligada().habilitada()).isFalse();
+	}
+
+	@Test
+	@DisplayName("Deve guardar apenas as divergências mais recentes")
+	void deveLimitarDivergenciasGuardadas()
+	{
+		// Arrange
+		PrecificacaoSombra sombra = new PrecificacaoSombra(motor, EstrategiaPreco.ITEM_A_ITEM, 1.0, Runnable::run, 2);
+		CarrinhoDeCompras carrinho = carrinho(item(livro, 1));
+
+		// Act
+		for (long centavos = 1; centavos <= 3; centavos++)
+		{
+			sombra.comparar(CarrinhoCheckoutDTO.de(carrinho), motor.regrasAtuais(), AjustePreco.NEUTRO,
+					new Dinheiro(centavos));
+		}
+
+		// Assert
+		assertThat(sombra.divergentes()).isEqualTo(3);
+		assertThat(sombra.divergencias()).extracting(PrecificacaoSombra.Divergencia::principal)
+				.containsExactly(new Dinheiro(2), new Dinheiro(3));
+	}
+
+	@Test
+	@DisplayName("Encerrado com o contexto: o executor próprio recusa novas amostras")
+	void deveEncerrarExecutorProprio()
+	{
+		// Arrange
+		PrecificacaoSombra sombra = new PrecificacaoSombra(motor, EstrategiaPreco.REFERENCIA, 1.0, 1, 10, 10);
+		CarrinhoDeCompras carrinho = carrinho(item(livro, 1));
+
+		// Act
+		sombra.encerrar();
+		sombra.comparar(CarrinhoCheckoutDTO.de(carrinho), motor.regrasAtuais(), AjustePreco.NEUTRO,
+				motor.calcular(carrinho));
+
+		// Assert
+		assertThat(sombra.descartadas()).isEqualTo(1);
+	}
+
+	@Test
+	@DisplayName("Amostragem fora de [0, 1] deve lançar IllegalArgumentException")
+	void deveRejeitarAmostragemInvalida()
+	{
+		assertThrows(IllegalArgumentException.class,
+				() -> new PrecificacaoSombra(motor, EstrategiaPreco.ITEM_A_ITEM, 1.5, Runnable::run, 10));
+	}
+
+	private static Produto produto(Long id, String preco, String peso, boolean fragil)
+	{
+		return new Produto(id, "Produto " + id, null, new BigDecimal(preco), new BigDecimal(peso), null, null, null,
+				fragil, TipoProduto.ELETRONICO);
+	}
+
+	private static ItemCompra item(Produto produto, long quantidade)
+	{
+		return new ItemCompra(null, produto, quantidade);
+	}
+
+	private static CarrinhoDeCompras carrinho(ItemCompra... itens)
+	{
+		return new CarrinhoDeCompras(1L, null, new ArrayList<>(List.of(itens)), LocalDate.now());
+	}
+
+	private static List<LinhaCheckoutDTO> linhas(ItemCompra... itens)
+	{
+		return CarrinhoCheckoutDTO.de(carrinho(itens)).linhas();
+	}
+}
@@ -0,0 +1,164 @@
+package ecommerce.service.preco;
+
+import java.math.BigDecimal;
+import java.time.LocalDate;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+import org.springframework.cloud.context.environment.EnvironmentChangeEvent;
+import org.springframework.mock.env.MockEnvironment;
+
+import ecommerce.dto.Dinheiro;
+import ecommerce.entity.CarrinhoDeCompras;
+import ecommerce.entity.ItemCompra;
+import ecommerce.entity.Produto;
+import ecommerce.entity.Regiao;
+import ecommerce.entity.TipoCliente;
+import ecommerce.entity.TipoProduto;
+
+@DisplayName("RegrasPreco - recarga da configuração com troca atômica")
+public class RegrasPrecoTest
+{
+	private MockEnvironment environment;
+	private RegrasPreco regras;
+	private MotorPreco motor;
+
+	@BeforeEach
+	void setUp()
+	{
+		environment = new MockEnvironment();
+		regras = new RegrasPreco(environment);
+		motor = new MotorPreco(regras);
+	}
+
+	@Test
+	@DisplayName("Sem configuração, deve usar as faixas originais")
+	void deveUsarFaixasOriginaisSemConfiguracao()
+	{
+		// R$ 600,00 (10%) + 6 kg x R$ 2 = 540 + 12
+		assertThat(motor.calcular(carrinho("600.00", "6", false))).isEqualTo(Dinheiro.deReais(new BigDecimal("552.00")));
+	}
+
+	@Test
+	@DisplayName("Deve recarregar as faixas quando as propriedades de preço mudam")
+	void deveRecarregarQuandoPropriedadesMudam()
+	{
+		TabelaRegrasPreco anterior = regras.atual();
+		environment.setProperty("ecommerce.preco.desconto.faixas", "100:50");
+		environment.setProperty("ecommerce.preco.frete.faixas", "1:3");
+		environment.setProperty("ecommerce.preco.frete.multiplicador-acima", "10");
+		environment.setProperty("ecommerce.preco.frete.adicional-fragil", "2.50");
+
+		regras.aoMudarConfiguracao(new EnvironmentChangeEvent(Set.of("ecommerce.preco.desconto.faixas")));
+
+		assertThat(regras.atual()).isNotSameAs(anterior);
+		CarrinhoDeCompras carrinho = carrinho("600.00", "6", true);
+		// 600 x 50% + 6 kg x R$ 10 + R$ 2,50
+		assertThat(motor.calcular(carrinho)).isEqualTo(Dinheiro.deReais(new BigDecimal("362.50")));
+		assertThat(motor.calcular(carrinho)).isEqualTo(motor.calcularReferencia(carrinho));
+	}
+
+	@Test
+	@DisplayName("Deve ler o frete por região e o desconto de fidelidade por tipo de cliente")
+	void deveLerAjustesPorRegiaoETipoCliente()
+	{
+		environment.setProperty("ecommerce.preco.regiao.centro-oeste.frete-percentual", "125");
+		environment.setProperty("ecommerce.preco.fidelidade.ouro.desconto-percentual", "5");
+
+		regras.recarregar();
+
+		assertThat(regras.atual().ajuste(Regiao.CENTRO_OESTE, TipoCliente.OURO)).isEqualTo(new AjustePreco(125, 5));
+		assertThat(regras.atual().ajuste(Regiao.SUL, TipoCliente.BRONZE)).isSameAs(AjustePreco.NEUTRO);
+		// R$ 600,00 com 10% + 5% = 510; 6 kg x R$ 2 x 125% = 15
+		assertThat(motor.calcular(carrinho("600.00", "6", false), Regiao.CENTRO_OESTE, TipoCliente.OURO))
+				.isEqualTo(Dinheiro.deReais(new BigDecimal("525.00")));
+	}
+
+	@Test
+	@DisplayName("Deve ignorar mudanças em propriedades que não são de preço")
+	void deveIgnorarOutrasPropriedades()
+	{
+		TabelaRegrasPreco anterior = regras.atual();
+		environment.setProperty("ecommerce.preco.desconto.faixas", "100:50");
+
+		regras.aoMudarConfiguracao(new EnvironmentChangeEvent(Set.of("ecommerce.outbox.intervalo-ms")));
+
+		assertThat(regras.atual()).isSameAs(anterior);
+	}
+
+	@Test
+	@DisplayName("Configuração inválida: deve manter as regras anteriores")
+	void deveManterRegrasAnterioresQuandoConfiguracaoInvalida()
+	{
+		TabelaRegrasPreco anterior = regras.atual();
+		environment.setProperty("ecommerce.preco.desconto.faixas", "1000:200");
+
+		regras.aoMudarConfiguracao(new EnvironmentChangeEvent(Set.of("ecommerce.preco.desconto.faixas")));
+
+		assertThat(regras.atual()).isSameAs(anterior);
+		assertThrows(IllegalArgumentException.class, regras::recarregar);
+		assertThat(regras.atual()).isSameAs(anterior);
+	}
+
+	@Test
+	@DisplayName("Regras fixas: não há configuração para recarregar")
+	void naoDeveRecarregarRegrasFixas()
+	{
+		RegrasPreco fixas = RegrasPreco.fixas(TabelaRegrasPreco.PADRAO);
+
+		assertThrows(IllegalStateException.class, fixas::recarregar);
+		assertThrows(IllegalArgumentException.class, () -> fixas.substituir(null));
+	}
+
+	@Test
+	@DisplayName("Cálculos concorrentes à troca veem uma tabela inteira, a antiga ou a nova")
+	void deveCalcularComTabelaInteiraDuranteTrocas() throws Exception
+	{
+		TabelaRegrasPreco a = TabelaRegrasPreco.deConfiguracao("500:10", "5:0", 2, BigDecimal.ZERO);
+		TabelaRegrasPreco b = TabelaRegrasPreco.deConfiguracao("500:30", "5:4", 8, BigDecimal.ZERO);
+		CarrinhoDeCompras carrinho = carrinho("600.00", "6", false);
+		// A: 540 + 6 x 2; B: 420 + 6 x 8
+		Dinheiro comA = Dinheiro.deReais(new BigDecimal("552.00"));
+		Dinheiro comB = Dinheiro.deReais(new BigDecimal("468.00"));
+
+		AtomicBoolean parar = new AtomicBoolean();
+		CompletableFuture<Void> trocas = CompletableFuture.runAsync(() -> {
+			while (!parar.get())
+			{
+				regras.substituir(a);
+				regras.substituir(b);
+			}
+		});
+
+		try
+		{
+			for (int i = 0; i < 50_000; i++)
+			{
+				assertThat(motor.calcular(carrinho)).isIn(comA, comB);
+			}
+		}
+		finally
+		{
+			parar.set(true);
+			trocas.get(10, TimeUnit.SECONDS);
+		}
+	}
+
+	private static CarrinhoDeCompras carrinho(String preco, String peso, boolean fragil)
+	{
+		Produto produto = new Produto(null, "Produto", null, new BigDecimal(preco), new BigDecimal(peso), null, null,
+				null, fragil, TipoProduto.ALIMENTO);
+		List<ItemCompra> itens = new ArrayList<>();
+		itens.add(new ItemCompra(null, produto, 1L));
+		return new CarrinhoDeCompras(1L, null, itens, LocalDate.now());
+	}
+}
@@ -0,0 +1,139 @@
+package ecommerce.service.preco;
+
+import java.math.BigDecimal;
+import java.util.Map;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.params.ParameterizedTest;
+import org.junit.jupiter.params.provider.CsvSource;
+import org.junit.jupiter.params.provider.ValueSource;
+
+import ecommerce.entity.Regiao;
+import ecommerce.entity.TipoCliente;
+
+@DisplayName("TabelaRegrasPreco - faixas configuráveis com busca binária")
+public class TabelaRegrasPrecoTest
+{
+	private final TabelaRegrasPreco padrao = TabelaRegrasPreco.PADRAO;
+
+	@ParameterizedTest(name = "{0} centavos = {1}%")
+	@DisplayName("Deve reproduzir as faixas de desconto originais")
+	@CsvSource({ "0, 0", "49999, 0", "50000, 10", "99999, 10", "100000, 20", "9999999999, 20" })
+	void deveReproduzirFaixasDeDescontoOriginais(long centavos, long percentual)
+	{
+		assertThat(padrao.percentualDesconto(centavos)).isEqualTo(percentual);
+		assertThat(padrao.percentualDesconto(BigDecimal.valueOf(centavos, 2))).isEqualTo(percentual);
+	}
+
+	@ParameterizedTest(name = "{0} g = R$ {1}/kg")
+	@DisplayName("Deve reproduzir as faixas de frete originais, com limites inclusivos")
+	@CsvSource({ "1, 0", "5000, 0", "5001, 2", "10000, 2", "10001, 4", "50000, 4", "50001, 7", "999999999, 7" })
+	void deveReproduzirFaixasDeFreteOriginais(long gramas, long multiplicador)
+	{
+		assertThat(padrao.multiplicadorFrete(gramas)).isEqualTo(multiplicador);
+		assertThat(padrao.multiplicadorFrete(BigDecimal.valueOf(gramas, 3))).isEqualTo(multiplicador);
+	}
+
+	@Test
+	@DisplayName("Deve aceitar faixas fora de ordem, com casas decimais, e adicional de frágeis em centavos")
+	void deveCompilarFaixasConfiguradas()
+	{
+		TabelaRegrasPreco tabela = TabelaRegrasPreco.deConfiguracao(" 250.50:5 , 2000:25,750:15", "2.5:1,20:3", 9,
+				new BigDecimal("7.25"));
+
+		assertThat(tabela.percentualDesconto(25049)).isZero();
+		assertThat(tabela.percentualDesconto(25050)).isEqualTo(5);
+		assertThat(tabela.percentualDesconto(75000)).isEqualTo(15);
+		assertThat(tabela.percentualDesconto(new BigDecimal("2000.00"))).isEqualTo(25);
+
+		assertThat(tabela.multiplicadorFrete(2500)).isEqualTo(1);
+		assertThat(tabela.multiplicadorFrete(new BigDecimal("2.501"))).isEqualTo(3);
+		assertThat(tabela.multiplicadorFrete(20001)).isEqualTo(9);
+
+		assertThat(tabela.adicionalFragilCentavos()).isEqualTo(725);
+		assertThat(tabela.adicionalFragil()).isEqualTo(new BigDecimal("7.25"));
+	}
+
+	@ParameterizedTest
+	@DisplayName("Deve rejeitar faixas de desconto inválidas")
+	@ValueSource(strings = { "", "1000", "1000:20:1", "mil:20", "1000:vinte", "1000:101", "1000:-1", "-1:10",
+			"0.001:10", "500:10,500.00:20" })
+	void deveRejeitarFaixasDeDescontoInvalidas(String descontos)
+	{
+		assertThrows(IllegalArgumentException.class,
+				() -> TabelaRegrasPreco.deConfiguracao(descontos, TabelaRegrasPreco.FRETE_PADRAO, 7, BigDecimal.ONE));
+	}
+
+	@ParameterizedTest
+	@DisplayName("Deve rejeitar faixas de frete inválidas")
+	@ValueSource(strings = { "0:1", "5:-1", "0.0001:1", "5:1,5.000:2" })
+	void deveRejeitarFaixasDeFreteInvalidas(String frete)
+	{
+		assertThrows(IllegalArgumentException.class,
+				() -> TabelaRegrasPreco.deConfiguracao(TabelaRegrasPreco.DESCONTOS_PADRAO, frete, 7, BigDecimal.ONE));
+	}
+
+	@Test
+	@DisplayName("Deve rejeitar multiplicador acima negativo e adicional de frágeis fora de centavos")
+	void deveRejeitarValoresAvulsosInvalidos()
+	{
+		String descontos = TabelaRegrasPreco.DESCONTOS_PADRAO;
+		String frete = TabelaRegrasPreco.FRETE_PADRAO;
+
+		assertThrows(IllegalArgumentException.class,
+				() -> TabelaRegrasPreco.deConfiguracao(descontos, frete, -1, BigDecimal.ONE));
+		assertThrows(IllegalArgumentException.class,
+				() -> TabelaRegrasPreco.deConfiguracao(descontos, frete, 7, new BigDecimal("0.005")));
+		assertThrows(IllegalArgumentException.class,
+				() -> TabelaRegrasPreco.deConfiguracao(descontos, frete, 7, BigDecimal.ONE.negate()));
+		assertThrows(IllegalArgumentException.class, () -> TabelaRegrasPreco.deConfiguracao(descontos, frete, 7, null));
+	}
+
+	@Test
+	@DisplayName("Sem ajustes configurados, todas as combinações são neutras")
+	void deveTerAjustesNeutrosPorPadrao()
+	{
+		for (Regiao regiao : Regiao.values())
+		{
+			for (TipoCliente tipo : TipoCliente.values())
+			{
+				assertThat(padrao.ajuste(regiao, tipo)).isSameAs(AjustePreco.NEUTRO);
+			}
+		}
+		assertThat(padrao.ajuste(null, TipoCliente.OURO)).isSameAs(AjustePreco.NEUTRO);
+		assertThat(padrao.ajuste(Regiao.NORTE, null)).isSameAs(AjustePreco.NEUTRO);
+	}
+
+	@Test
+	@DisplayName("Deve combinar o fator da região com o desconto do tipo de cliente, já montado na matriz")
+	void deveMontarMatrizDeAjustes()
+	{
+		TabelaRegrasPreco tabela = padrao.comAjustes(Map.of(Regiao.NORTE, 150L, Regiao.SUL, 90L),
+				Map.of(TipoCliente.OURO, 10L, TipoCliente.PRATA, 5L));
+
+		assertThat(tabela.ajuste(Regiao.NORTE, TipoCliente.OURO)).isEqualTo(new AjustePreco(150, 10));
+		assertThat(tabela.ajuste(Regiao.SUL, TipoCliente.PRATA)).isEqualTo(new AjustePreco(90, 5));
+		assertThat(tabela.ajuste(Regiao.SUDESTE, TipoCliente.BRONZE)).isSameAs(AjustePreco.NEUTRO);
+		assertThat(tabela.ajuste(Regiao.NORTE, TipoCliente.OURO)).isSameAs(tabela.ajuste(Regiao.NORTE,
+				TipoCliente.OURO));
+
+		// Mesmas faixas, versão própria
+		assertThat(tabela.versao()).isNotEqualTo(padrao.versao());
+		assertThat(tabela.percentualDesconto(100000)).isEqualTo(20);
+		assertThat(tabela.multiplicadorFrete(50001)).isEqualTo(7);
+	}
+
+	@Test
+	@DisplayName("Deve rejeitar fatores fora do intervalo")
+	void deveRejeitarAjustesInvalidos()
+	{
+		assertThrows(IllegalArgumentException.class, () -> padrao.comAjustes(Map.of(Regiao.NORTE, -1L), Map.of()));
+		assertThrows(IllegalArgumentException.class,
+				() -> padrao.comAjustes(Map.of(), Map.of(TipoCliente.OURO, 101L)));
+		assertThrows(IllegalArgumentException.class,
+				() -> padrao.comAjustes(Map.of(), Map.of(TipoCliente.OURO, -1L)));
+	}
+}